@@ -0,0 +1,446 @@
+package org.ziqi;
+
+import org.ziqi.model.LevelSetReader;
+import org.ziqi.model.LevelState;
+import org.ziqi.solver.Solver;
+import org.ziqi.solver.SolverResult;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * LevelPackValidator class checks every level of the bundled sets or of a directory of set files without any GameEngine,
+ * so that a broken or unsolvable level is found before it is shipped. <br />
+ * Each level is first checked for structural problems, then all valid levels are solved in parallel over a thread pool,
+ * and one report line per level is written with its solvability, optimal moves and pushes, expanded states and wall time. <br />
+ * It runs e.g. by "gradle validateLevels --args='--dir levels --format json'". Options: <br />
+ * --dir PATH           directory whose *.skb files are validated instead of the bundled sets; <br />
+ * --threads N          number of levels solved at the same time, all processors by default; <br />
+ * --algorithm NAME     A_STAR by default, so that the solutions are optimal; <br />
+ * --weight N           weight of the lower bound, 1 by default; <br />
+ * --time-limit MS      time limit per level in milliseconds; <br />
+ * --memory-limit MB    memory limit per level in megabytes; <br />
+ * --format csv|json    format of the report, csv by default; <br />
+ * --output FILE        file the report is written to, standard output by default. <br />
+ * The exit code is 1 if any level is invalid or unsolvable, so that it can fail a build.
+ *
+ * @author Ziqi Yang
+ * @see LevelSetReader
+ * @see Solver
+ */
+public final class LevelPackValidator {
+
+    /**
+     * Constant string specifying the file extension of set files.
+     */
+    private static final String SET_EXTENSION = "skb";
+
+    /**
+     * Constant string specifying the status of a level failing the structural checks, which is not solved at all.
+     */
+    private static final String STATUS_INVALID = "INVALID";
+
+    /**
+     * Constant array of string specifying the columns of the report.
+     */
+    private static final String[] REPORT_COLUMNS = {"set", "level", "line", "status", "optimal", "moves", "pushes", "expandedStates", "millis", "errors", "warnings"};
+
+    /**
+     * LevelReport class holds the checking and solving outcome of one level.
+     */
+    private static final class LevelReport {
+
+        /**
+         * String value specifying the name of set the level belongs to.
+         */
+        private final String m_SetName;
+
+        /**
+         * Raw level being validated.
+         */
+        private final LevelSetReader.RawLevel m_RawLevel;
+
+        /**
+         * List of strings as structural problems making the level unplayable.
+         */
+        private final List<String> m_Errors = new ArrayList<>();
+
+        /**
+         * List of strings as structural problems the game can cope with.
+         */
+        private final List<String> m_Warnings = new ArrayList<>();
+
+        /**
+         * Result of the solver, or null if the level is invalid.
+         */
+        private SolverResult m_Result;
+
+        /**
+         * Boolean specifying whether a found solution is known to be optimal, i.e. the solver is run without weighting.
+         */
+        private boolean m_Optimal;
+
+        /**
+         * LevelReport constructor with the level to be validated.
+         *
+         * @param setName  String value specifying the name of set.
+         * @param rawLevel Raw level to be validated.
+         */
+        private LevelReport(String setName, LevelSetReader.RawLevel rawLevel) {
+            m_SetName = setName;
+            m_RawLevel = rawLevel;
+        }
+
+        /**
+         * Gets the status of level, which is either INVALID or the status of solver.
+         *
+         * @return String value specifying the status is returned to caller.
+         */
+        private String getM_Status() {
+            return m_Result == null ? STATUS_INVALID : m_Result.getM_Status().name();
+        }
+
+        /**
+         * Checks whether the level is invalid or proven to be unsolvable.
+         *
+         * @return True is returned if the level is broken; Otherwise, false is returned.
+         */
+        private boolean isBroken() {
+            return m_Result == null || m_Result.getM_Status() == SolverResult.Status.UNSOLVABLE;
+        }
+
+        /**
+         * Gets the values of all report columns in the order of REPORT_COLUMNS, with empty values for unknown numbers.
+         *
+         * @return Array of string as column values is returned to caller.
+         */
+        private String[] getM_Values() {
+            boolean solved = m_Result != null && m_Result.isSolved();
+            boolean optimal = solved && m_Optimal;
+            return new String[]{
+                    m_SetName,
+                    m_RawLevel.getM_LevelName(),
+                    String.valueOf(m_RawLevel.getM_LineNumber()),
+                    getM_Status(),
+                    String.valueOf(optimal),
+                    solved ? String.valueOf(m_Result.getM_Moves()) : "",
+                    solved ? String.valueOf(m_Result.getM_Pushes()) : "",
+                    m_Result == null ? "" : String.valueOf(m_Result.getM_ExpandedStates()),
+                    m_Result == null ? "" : String.valueOf(m_Result.getM_ElapsedMillis()),
+                    String.join("; ", m_Errors),
+                    String.join("; ", m_Warnings)
+            };
+        }
+    }
+
+    /**
+     * LevelPackValidator is not to be instantiated.
+     */
+    private LevelPackValidator() {
+    }
+
+    /**
+     * Validates the level sets with the given command line options.
+     *
+     * @param args Contains the supplied command-line arguments as an array of String objects.
+     * @throws IOException          If a set file cannot be read or the report cannot be written.
+     * @throws InterruptedException If the validation is interrupted while waiting for the solvers.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File directory = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Solver.Algorithm algorithm = Solver.Algorithm.A_STAR;
+        int weight = 1;
+        long timeLimitMillis = Solver.DEFAULT_TIME_LIMIT_MILLIS;
+        long memoryLimitBytes = Solver.DEFAULT_MEMORY_LIMIT_BYTES;
+        String format = "csv";
+        String output = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--dir":
+                    directory = new File(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--algorithm":
+                    algorithm = Solver.Algorithm.valueOf(value.toUpperCase());
+                    break;
+                case "--weight":
+                    weight = Integer.parseInt(value);
+                    break;
+                case "--time-limit":
+                    timeLimitMillis = Long.parseLong(value);
+                    break;
+                case "--memory-limit":
+                    memoryLimitBytes = Long.parseLong(value) * 1024 * 1024;
+                    break;
+                case "--format":
+                    format = value.toLowerCase();
+                    break;
+                case "--output":
+                    output = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (!format.equals("csv") && !format.equals("json"))
+            throw new IllegalArgumentException("Unknown format: " + format);
+
+        List<LevelReport> reports = new ArrayList<>();
+        for (Map.Entry<String, List<LevelSetReader.RawLevel>> set : readSets(directory).entrySet()) {
+            Set<String> levelNames = new HashSet<>();
+            for (LevelSetReader.RawLevel rawLevel : set.getValue()) {
+                LevelReport report = new LevelReport(set.getKey(), rawLevel);
+                if (!levelNames.add(rawLevel.getM_LevelName()))
+                    report.m_Warnings.add("duplicate level name in set");
+                check(rawLevel.getM_Lines(), report.m_Errors, report.m_Warnings);
+                reports.add(report);
+            }
+        }
+
+        solve(reports, threads, algorithm, weight, timeLimitMillis, memoryLimitBytes);
+
+        try (Writer writer = output == null ? new OutputStreamWriter(System.out) : new FileWriter(output)) {
+            PrintWriter printer = new PrintWriter(writer);
+            if (format.equals("json"))
+                writeJson(reports, printer);
+            else
+                writeCsv(reports, printer);
+            printer.flush();
+        }
+
+        if (reports.stream().anyMatch(LevelReport::isBroken))
+            System.exit(1);
+    }
+
+    /**
+     * Reads the raw levels of all sets to be validated, keyed by set name in a stable order.
+     *
+     * @param directory Directory whose set files are read, or null for the bundled sets.
+     * @return Map of set name to its raw levels is returned to caller.
+     * @throws IOException If a set file cannot be read.
+     */
+    private static Map<String, List<LevelSetReader.RawLevel>> readSets(File directory) throws IOException {
+        Map<String, List<LevelSetReader.RawLevel>> sets = new LinkedHashMap<>();
+        if (directory == null) {
+            for (String setName : Utils.SET_NAMES) {
+                InputStream input = Utils.getResourcePathAsStream("assets/levelSets" + Utils.getFullFileName(setName, SET_EXTENSION));
+                if (input == null)
+                    throw new IOException("Missing bundled set: " + setName);
+                sets.put(setName, LevelSetReader.read(input));
+            }
+            return sets;
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith("." + SET_EXTENSION));
+        if (files == null)
+            throw new IOException("Not a directory: " + directory);
+        Arrays.sort(files);
+        for (File file : files) {
+            String fileName = file.getName();
+            sets.put(fileName.substring(0, fileName.length() - SET_EXTENSION.length() - 1), LevelSetReader.read(new FileInputStream(file)));
+        }
+        return sets;
+    }
+
+    /**
+     * Checks the map lines of a level for structural problems before it is decoded. <br />
+     * Errors are problems the game cannot load or finish the level with: an empty map, short rows, unknown chars,
+     * no or several players, and fewer crates than diamonds. <br />
+     * Warnings are problems the game copes with: long rows whose extra cells are ignored, spare crates,
+     * and a player not enclosed by walls, who could walk off the map if it is not flying.
+     *
+     * @param lines    List of strings as map lines of the level.
+     * @param errors   List of strings the errors are added to.
+     * @param warnings List of strings the warnings are added to.
+     */
+    static void check(List<String> lines, List<String> errors, List<String> warnings) {
+        if (lines.isEmpty() || lines.get(0).trim().isEmpty()) {
+            errors.add("empty map");
+            return;
+        }
+
+        int rows = lines.size();
+        int columns = lines.get(0).trim().length();
+        int players = 0;
+        int crates = 0;
+        int diamonds = 0;
+        int playerCell = LevelState.OUT_OF_BOUNDS;
+        boolean[] walls = new boolean[rows * columns];
+        for (int row = 0; row < rows; row++) {
+            String line = lines.get(row);
+            if (line.length() < columns) {
+                errors.add("row " + row + " is shorter than " + columns + " columns");
+                return;
+            }
+            if (line.trim().length() > columns)
+                warnings.add("row " + row + " is longer than " + columns + " columns, extra cells are ignored");
+            for (int col = 0; col < columns; col++) {
+                int cell = row * columns + col;
+                switch (line.charAt(col)) {
+                    case 'W', 'Q' -> walls[cell] = true;
+                    case 'C' -> crates++;
+                    case 'D' -> diamonds++;
+                    case 'S' -> {
+                        players++;
+                        playerCell = cell;
+                    }
+                    case ' ' -> {
+                    }
+                    default -> errors.add("unknown char '" + line.charAt(col) + "' at row " + row + ", column " + col);
+                }
+            }
+        }
+
+        if (players == 0)
+            errors.add("no player");
+        else if (players > 1)
+            errors.add(players + " players");
+        if (diamonds == 0)
+            errors.add("no diamond");
+        if (crates < diamonds)
+            errors.add(crates + " crates for " + diamonds + " diamonds");
+        else if (crates > diamonds)
+            warnings.add(crates + " crates for " + diamonds + " diamonds");
+        if (players == 1 && !isEnclosed(walls, rows, columns, playerCell))
+            warnings.add("player is not enclosed by walls");
+    }
+
+    /**
+     * Checks whether the player can walk from its cell to the border of map, by a breadth first search over non-wall cells.
+     *
+     * @param walls      Array of boolean specifying the wall cells.
+     * @param rows       Integer specifying the number of rows.
+     * @param columns    Integer specifying the number of columns.
+     * @param playerCell Integer specifying the cell of player.
+     * @return True is returned if no border cell is reachable; Otherwise, false is returned.
+     */
+    private static boolean isEnclosed(boolean[] walls, int rows, int columns, int playerCell) {
+        boolean[] visited = new boolean[walls.length];
+        Deque<Integer> queue = new ArrayDeque<>();
+        visited[playerCell] = true;
+        queue.add(playerCell);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            int row = cell / columns;
+            int col = cell % columns;
+            if (row == 0 || col == 0 || row == rows - 1 || col == columns - 1)
+                return false;
+            for (int next : new int[]{cell - columns, cell + columns, cell - 1, cell + 1}) {
+                if (!walls[next] && !visited[next]) {
+                    visited[next] = true;
+                    queue.add(next);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves all valid levels in parallel, each with its own single threaded solver, and stores the results in the reports.
+     *
+     * @param reports          List of level reports, of which the valid ones are solved.
+     * @param threads          Integer specifying the number of levels solved at the same time.
+     * @param algorithm        Algorithm of the solvers.
+     * @param weight           Integer specifying the weight of the lower bound.
+     * @param timeLimitMillis  Long value specifying the time limit per level in milliseconds.
+     * @param memoryLimitBytes Long value specifying the memory limit per level in bytes.
+     * @throws InterruptedException If the validation is interrupted while waiting for the solvers.
+     */
+    private static void solve(List<LevelReport> reports, int threads, Solver.Algorithm algorithm, int weight,
+                              long timeLimitMillis, long memoryLimitBytes) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<SolverResult>> futures = new ArrayList<>();
+            for (LevelReport report : reports) {
+                if (!report.m_Errors.isEmpty()) {
+                    futures.add(null);
+                    continue;
+                }
+                LevelState state = LevelState.fromRawLevel(new ArrayList<>(report.m_RawLevel.getM_Lines()));
+                futures.add(executor.submit(() -> new Solver(algorithm, weight, timeLimitMillis, memoryLimitBytes).solve(state)));
+            }
+
+            for (int i = 0; i < reports.size(); i++) {
+                if (futures.get(i) == null)
+                    continue;
+                LevelReport report = reports.get(i);
+                try {
+                    report.m_Result = futures.get(i).get();
+                    report.m_Optimal = weight == 1;
+                } catch (ExecutionException e) {
+                    report.m_Errors.add("solver failed: " + e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the reports as CSV with a header line, quoting values containing separators or quotes.
+     *
+     * @param reports List of level reports.
+     * @param printer PrintWriter the report is written to.
+     */
+    private static void writeCsv(List<LevelReport> reports, PrintWriter printer) {
+        printer.println(String.join(",", REPORT_COLUMNS));
+        for (LevelReport report : reports) {
+            String[] values = report.getM_Values();
+            for (int i = 0; i < values.length; i++) {
+                String value = values[i];
+                if (value.contains(",") || value.contains("\"") || value.contains("\n"))
+                    values[i] = "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+            printer.println(String.join(",", values));
+        }
+    }
+
+    /**
+     * Writes the reports as a JSON array of objects, with numbers and booleans unquoted and unknown numbers as null.
+     *
+     * @param reports List of level reports.
+     * @param printer PrintWriter the report is written to.
+     */
+    private static void writeJson(List<LevelReport> reports, PrintWriter printer) {
+        printer.println("[");
+        for (int r = 0; r < reports.size(); r++) {
+            String[] values = reports.get(r).getM_Values();
+            List<String> fields = new ArrayList<>();
+            for (int i = 0; i < values.length; i++) {
+                String value = values[i];
+                String json;
+                if (i >= 2 && i <= 8 && i != 3)
+                    json = value.isEmpty() ? "null" : value;
+                else
+                    json = "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+                fields.add("\"" + REPORT_COLUMNS[i] + "\": " + json);
+            }
+            printer.println("  {" + String.join(", ", fields) + "}" + (r + 1 < reports.size() ? "," : ""));
+        }
+        printer.println("]");
+    }
+}
@@ -20,7 +20,8 @@ public class Main extends Application {
      * 1. launch(initialize) the GameEngine class to build game environment; <br/>
      * 2. call MusicManager to load media from resource folder; <br/>
      * 3. call EventManager to register input handler; <br/>
-     * 4. call GameEngine to present start screen for user.
+     * 4. call GameEngine to present start screen for user. <br/>
+     * Levels are rendered on one canvas instead of one node per GameObject if the application is launched with "--renderer=canvas".
      *
      * @param  primaryStage  This Stage object represents the primary window of JavaFX application.
      * @see    GameEngine
@@ -30,11 +31,23 @@ public class Main extends Application {
     @Override
     public void start(Stage primaryStage) {
         GameEngine gameEngine = GameEngine.getInstance();
+        gameEngine.setM_CanvasRendering("canvas".equals(getParameters().getNamed().get("renderer")));
         gameEngine.getM_MusicManager().attachMediaPlayers();
         gameEngine.getM_EventManager().register(new PlayerController(), KeyEvent.ANY);
         gameEngine.toStartScreen();
     }
 
+    /**
+     * This override method is called when the JavaFX application exits. <br/>
+     * Score records committed but not written yet are written before the program ends, as they are written in background.
+     *
+     * @see org.ziqi.gameEngine.manager.DataManager#flushScoreRecords()
+     */
+    @Override
+    public void stop() {
+        GameEngine.getInstance().getM_DataManager().flushScoreRecords();
+    }
+
     /**
      * Main method to be called by java program launcher to run the program.
      *
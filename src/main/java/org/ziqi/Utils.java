@@ -53,7 +53,7 @@ public class Utils {
      * @return               An absolute file path by given file name is returned.
      */
     public static String getResourcePath(String resourceName){
-        return Main.class.getResource(resourceName).toExternalForm();
+        return Utils.class.getResource(resourceName).toExternalForm();
     }
 
     /**
@@ -64,7 +64,7 @@ public class Utils {
      * @see URL
      */
     public static URL getResourceURL(String resourceName){
-        return Main.class.getResource(resourceName);
+        return Utils.class.getResource(resourceName);
     }
 
     /**
@@ -75,7 +75,7 @@ public class Utils {
      * @see InputStream
      */
     public static InputStream getResourcePathAsStream(String resourceName){
-        return Main.class.getResourceAsStream(resourceName);
+        return Utils.class.getResourceAsStream(resourceName);
     }
 
     /**
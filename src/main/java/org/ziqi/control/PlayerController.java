@@ -1,10 +1,12 @@
 package org.ziqi.control;
 
 import javafx.event.EventHandler;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import org.ziqi.gameEngine.GameEngine;
+import org.ziqi.gameEngine.manager.ProfilingManager;
+import org.ziqi.gameEngine.manager.ReplayManager;
 import org.ziqi.model.*;
-import java.awt.*;
 
 /**
  * PlayerController class implementing EventHandler<KeyEvent> to handle all user input when playing gaming.
@@ -20,7 +22,13 @@ public class PlayerController implements EventHandler<KeyEvent> {
      * After updating the state of level, gaming screen is updates by informing GameEngine to call screenPlayer to update screen correspondingly: <br />
      * 1. If the level completed after this handling, screenPlayer will pop up score board to indicate user.
      * 2. if the level completed and the whole set is end, screenPlayer will initialize victory screen to indicate user.
-     * 3. Otherwise, the screenPlayer informs GamingScreenController to update screen.
+     * 3. Otherwise, the screenPlayer informs GamingScreenController to update screen. <br />
+     * Pressing W toggles the warn on dead push mode; Pressing C switches between the node and canvas renderers;
+     * Pressing F3 toggles the latency overlay; Pressing Z undoes the last move or flying toggle, and Y redoes it. <br />
+     * Pressing P plays back the replay of minimum move record of current level, or stops the playback; While replaying,
+     * PLUS/EQUALS and MINUS change the playback speed and the level cannot be played until it is restarted. <br />
+     * Each stage of handling a move, undo, redo or flying toggle is timed by ProfilingManager, up to the next pulse of the scene;
+     * Other key presses are not timed, so that they do not dilute the latency of playing the level.
      *
      * @param keyEvent KeyEvent specifying the user input.
      * @see org.ziqi.control.screenController.GamingScreenController
@@ -28,50 +36,165 @@ public class PlayerController implements EventHandler<KeyEvent> {
      * @see GameEngine#popUpScoreBoard()
      * @see GameEngine#updateGamingScreen()
      * @see org.ziqi.gameEngine.viewPlayer.ScreenPlayer
+     * @see ProfilingManager
      */
     @Override
     public void handle(KeyEvent keyEvent) {
         GameEngine gameEngine =  GameEngine.getInstance();
         Player player = gameEngine.getM_LevelManager().getM_CurrentLevel().getM_Player();
         Level currentLevel = gameEngine.getM_LevelManager().getM_CurrentLevel();
+        ProfilingManager profilingManager = gameEngine.getM_ProfilingManager();
+        Direction direction = null;
         boolean moved = false;
 
+        if (keyEvent.getEventType() == KeyEvent.KEY_PRESSED && currentLevel.isReplaying()) {
+            handleReplayInput(keyEvent, gameEngine.getM_ReplayManager());
+            return;
+        }
+
         if (keyEvent.getEventType() == KeyEvent.KEY_PRESSED) {
+            boolean timed = isTimed(keyEvent.getCode());
+            long inputStarted = timed ? profilingManager.beginInput(currentLevel) : 0;
             switch (keyEvent.getCode()) {
                 case UP:
-                    moved = player.move(new Point(-1, 0));
-                    player.updatePlayerStatus(keyEvent.getCode(), new Point(-1, 0));
+                    direction = Direction.UP;
                     break;
 
                 case RIGHT:
-                    moved = player.move(new Point(0, 1));
-                    player.updatePlayerStatus(keyEvent.getCode(), new Point(0, 1));
+                    direction = Direction.RIGHT;
                     break;
 
                 case DOWN:
-                    moved = player.move(new Point(1, 0));
-                    player.updatePlayerStatus(keyEvent.getCode(), new Point(1, 0));
+                    direction = Direction.DOWN;
                     break;
 
                 case LEFT:
-                    moved = player.move(new Point(0, -1));
-                    player.updatePlayerStatus(keyEvent.getCode(), new Point(0, -1));
+                    direction = Direction.LEFT;
+                    break;
+
+                case W:
+                    // toggle warn on dead push mode
+                    gameEngine.getM_LevelManager().setM_WarnOnDeadPush(!gameEngine.getM_LevelManager().getM_WarnOnDeadPush());
+                    gameEngine.getM_MusicManager().playButtonClickMusic();
+                    break;
+
+                case C:
+                    // switch between node and canvas renderers
+                    gameEngine.setM_CanvasRendering(!gameEngine.getM_CanvasRendering());
+                    gameEngine.getM_MusicManager().playButtonClickMusic();
+                    break;
+
+                case F3:
+                    // toggle latency overlay
+                    profilingManager.toggleOverlay();
+                    break;
+
+                case Z:
+                    moved = currentLevel.undo();
+                    break;
+
+                case Y:
+                    // a redone push may complete the level
+                    moved = currentLevel.redo();
+                    break;
+
+                case P:
+                    // play back the replay of minimum move record
+                    if (gameEngine.getM_ReplayManager().play())
+                        gameEngine.getM_MusicManager().playButtonClickMusic();
+                    else
+                        gameEngine.getM_MusicManager().playCannotLandMusic();
                     break;
 
                 case SPACE:
-                    player.updatePlayerStatus(keyEvent.getCode(), new Point(0, 0));
+                    player.updatePlayerStatus(keyEvent.getCode(), null);
+                    break;
 
                 default:
                     break;
             }
 
+            if (direction != null) {
+                long started = System.nanoTime();
+                moved = player.move(direction);
+                profilingManager.record(ProfilingManager.LatencyStage.MOVE, started);
+                player.updatePlayerStatus(keyEvent.getCode(), direction);
+            }
+
+            long started = System.nanoTime();
             GameEngine.getInstance().updateGamingScreen();
+            if (timed)
+                profilingManager.record(ProfilingManager.LatencyStage.UPDATE_SCREEN, started);
 
-            if (moved && currentLevel.isLevelComplete())
+            boolean levelComplete = false;
+            if (moved) {
+                started = System.nanoTime();
+                levelComplete = currentLevel.isLevelComplete();
+                profilingManager.record(ProfilingManager.LatencyStage.LEVEL_COMPLETE, started);
+            }
+            if (timed) {
+                profilingManager.record(ProfilingManager.LatencyStage.HANDLE, inputStarted);
+                profilingManager.awaitPulse(gameEngine.getM_GameScene(), inputStarted);
+            }
+
+            if (levelComplete)
                 if (gameEngine.getM_LevelManager().getM_CurrentLevelIndex() == gameEngine.getM_LevelManager().getM_CurrentSet().size())
                     GameEngine.getInstance().toVictoryScreen();
                 else
                     gameEngine.popUpScoreBoard();
         }
     }
+
+    /**
+     * Checks if a key press is timed by ProfilingManager: only moves, undo, redo and flying toggles are.
+     *
+     * @param code The input key code by user.
+     * @return True is returned if the key press is timed; Otherwise, false is returned.
+     */
+    private static boolean isTimed(KeyCode code) {
+        switch (code) {
+            case UP:
+            case RIGHT:
+            case DOWN:
+            case LEFT:
+            case Z:
+            case Y:
+            case SPACE:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Handles user input while current level is replaying: P stops the playback, PLUS/EQUALS and MINUS change its speed,
+     * and any other key is ignored.
+     *
+     * @param keyEvent      KeyEvent specifying the user input.
+     * @param replayManager ReplayManager playing back the replay.
+     * @see ReplayManager
+     */
+    private void handleReplayInput(KeyEvent keyEvent, ReplayManager replayManager) {
+        switch (keyEvent.getCode()) {
+            case P:
+                if (replayManager.isPlaying())
+                    replayManager.stop();
+                else
+                    replayManager.play();
+                break;
+
+            case PLUS:
+            case EQUALS:
+                replayManager.faster();
+                break;
+
+            case MINUS:
+                replayManager.slower();
+                break;
+
+            default:
+                break;
+        }
+    }
 }
@@ -4,14 +4,23 @@ import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
 import javafx.scene.text.Text;
+import org.ziqi.Debugger;
+import org.ziqi.gameEngine.CanvasLevelRenderer;
 import org.ziqi.gameEngine.GameEngine;
 import org.ziqi.gameEngine.GraphicUnitRenderer;
 import org.ziqi.gameEngine.base.GameObject;
 import org.ziqi.gameEngine.manager.DataManager;
+import org.ziqi.model.DeadlockDetector;
 import org.ziqi.model.Level;
+import org.ziqi.model.LevelState;
+import org.ziqi.model.Player;
 import org.ziqi.view.GraphicUnit;
 import java.net.URL;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 /**
@@ -42,6 +51,8 @@ public class GamingScreenController implements Initializable {
     private StackPane m_Instruction;
     @FXML
     private Text m_TimeString;
+    @FXML
+    private Text m_PlayState;
 
     /**
      * Constant double indicating the horizontal offset of game view when rendering layers of GameObjects onto screen.
@@ -53,6 +64,26 @@ public class GamingScreenController implements Initializable {
      */
     private static final double GAME_VIEW_OFFSET_Y = 80.0;
 
+    /**
+     * Constant string shown as play state while the level may still be completed.
+     */
+    private static final String ALIVE_STATE = "ALIVE";
+
+    /**
+     * Constant color of the play state text once the level is lost.
+     */
+    private static final Color LOST_STATE_COLOR = Color.web("#d01c1c");
+
+    /**
+     * Constant color of the play state text while the level may still be completed.
+     */
+    private static final Color ALIVE_STATE_COLOR = Color.web("#964e4e");
+
+    /**
+     * Constant double indicating the offset of latency overlay from the top left corner of gaming screen.
+     */
+    private static final double LATENCY_OVERLAY_OFFSET = 4.0;
+
     /**
      * Reference to GameEngine instance.
      */
@@ -71,6 +102,30 @@ public class GamingScreenController implements Initializable {
      */
     private AnchorPane[] m_Layers;
 
+    /**
+     * Level whose graphic units are on the layers; Null if nothing is rendered yet.
+     */
+    private Level m_RenderedLevel;
+
+    /**
+     * Map of graphic units of the crates and player on the layers keyed by their GameObjects, which follow their GameObjects as they move.
+     */
+    private final Map<GameObject, GraphicUnit> m_DynamicUnits = new IdentityHashMap<>();
+
+    /**
+     * Renderer drawing the level on a canvas when the canvas renderer is chosen; Null while graphic unit nodes are rendered on the layers.
+     *
+     * @see GameEngine#getM_CanvasRendering()
+     */
+    private CanvasLevelRenderer m_CanvasRenderer;
+
+    /**
+     * Text showing the latency histograms of current level, which is toggled by F3.
+     *
+     * @see org.ziqi.gameEngine.manager.ProfilingManager
+     */
+    private final Text m_LatencyOverlay = new Text();
+
     /**
      * Sets the name of set on text on control panel to show.
      *
@@ -92,13 +147,25 @@ public class GamingScreenController implements Initializable {
     /**
      * Sets the current move count as String on control panel to show.
      *
-     * @param m_MoveCount Integer value from DataManager specifying the current move count of user.
-     * @see DataManager#getM_MoveCount()
+     * @param m_MoveCount Integer value from the session of current level specifying the current move count of user.
+     * @see org.ziqi.model.GameSession#getM_MoveCount()
      */
     public void setM_MoveCount(Integer m_MoveCount) {
         this.m_MoveCount.setText(m_MoveCount.toString());
     }
 
+    /**
+     * Sets the play state on control panel to show, flagging a lost level with the deadlock found.
+     *
+     * @param deadlock Deadlock found in the current play; NONE while the level may still be completed.
+     * @see Level#getM_Deadlock()
+     */
+    public void setM_PlayState(DeadlockDetector.Deadlock deadlock) {
+        boolean lost = deadlock != DeadlockDetector.Deadlock.NONE;
+        this.m_PlayState.setText(lost ? "LOST - " + deadlock : ALIVE_STATE);
+        this.m_PlayState.setFill(lost ? LOST_STATE_COLOR : ALIVE_STATE_COLOR);
+    }
+
     /**
      * Gets the root generated from fxml file.
      *
@@ -168,6 +235,7 @@ public class GamingScreenController implements Initializable {
             m_CurrentLevel = m_GameEngine.getM_LevelManager().nextLevel();
         // update level object
         m_CurrentLevel.refreshLevel();
+        m_GameEngine.getM_DataManager().resetTime();
 
         // update graphic layers on gaming screen
         updateGamingScreen();
@@ -175,12 +243,16 @@ public class GamingScreenController implements Initializable {
         // bind timer display of the control board with the real timer thread of dataManager
         m_TimeString.textProperty().bind(m_GameEngine.getM_DataManager().getM_TimeString());
 
+        // bind latency overlay with the histograms kept by profilingManager
+        initializeLatencyOverlay();
+
         // set restart button clicking handler
         m_RestartButton.setOnMouseClicked(e -> {
             m_GameEngine.getM_MusicManager().playButtonClickMusic();
             m_GameEngine.getM_MusicManager().playGamingMusic();
 
             m_GameEngine.getM_LevelManager().getM_CurrentLevel().refreshLevel();
+            m_GameEngine.getM_DataManager().resetTime();
             updateGamingScreen();
         });
 
@@ -195,8 +267,8 @@ public class GamingScreenController implements Initializable {
             m_GameEngine.getM_MusicManager().playButtonClickMusic();
             m_GameEngine.getM_MusicManager().playGamingMusic();
             m_GameEngine.getM_LevelManager().nextLevel();
-            m_GameEngine.getM_DataManager().resetMoveCount();
             m_GameEngine.getM_LevelManager().getM_CurrentLevel().refreshLevel();
+            m_GameEngine.getM_DataManager().resetTime();
             updateGamingScreen();
         });
     }
@@ -214,27 +286,133 @@ public class GamingScreenController implements Initializable {
     }
 
     /**
-     * Updates the states of both control panel by update information of set name, level name and move count.
+     * Updates the states of both control panel by update information of set name, level name, move count and play state.
      */
     public void updateControlPanel() {
         // bind content of information panel
         this.setM_SetName(m_GameEngine.getM_LevelManager().getM_CurrentSetName());
         this.setM_LevelName(m_CurrentLevel.getM_LevelName());
-        this.setM_MoveCount(m_GameEngine.getM_DataManager().getM_MoveCount());
+        this.setM_MoveCount(m_CurrentLevel.getM_Session().getM_MoveCount());
+        this.setM_PlayState(m_CurrentLevel.getM_Deadlock());
     }
 
     /**
-     * Updates graphic layers section for every GameObject of gaming screen by iterate through the level object and calling GraphicUnitRenderer to render.
+     * Updates graphic layers section of gaming screen incrementally: <br />
+     * 1. When a new level is shown, graphic units of all GameObjects are generated by iterating through the level object; <br />
+     * 2. When the crates and player of the level are regenerated, e.g. by restarting, only their graphic units are generated again; <br />
+     * 3. Otherwise, only the graphic units of the player and the crates at dirty cells are updated, so that no node is created by a move. <br />
+     * If the canvas renderer is chosen, the level is drawn by CanvasLevelRenderer instead.
      *
      * @see Level.LevelIterator
-     * @see GraphicUnitRenderer#renderObjectToGraphic(GameObject[], AnchorPane[])
+     * @see Level#isAllDirty()
+     * @see GraphicUnitRenderer#renderObjectToGraphic(GameObject, int, AnchorPane[])
+     * @see GraphicUnitRenderer#updateGraphic(GameObject, int, GraphicUnit)
+     * @see CanvasLevelRenderer#render(Level)
      */
     public void updateGraphicLayers() {
-        Level.LevelIterator levelGridIterator = (Level.LevelIterator) m_CurrentLevel.iterator();
+        if (m_GameEngine.getM_CanvasRendering() != (m_CanvasRenderer != null))
+            switchRenderer();
+
+        if (m_CanvasRenderer != null)
+            m_CanvasRenderer.render(m_CurrentLevel);
+        else if (m_CurrentLevel != m_RenderedLevel)
+            renderAllLayers();
+        else if (m_CurrentLevel.isAllDirty())
+            renderDynamicLayers();
+        else {
+            for (int i = 0; i < m_CurrentLevel.getM_DirtyCellCount(); i++) {
+                GameObject crate = m_CurrentLevel.getGameObjectAt(GraphicUnit.LAYER_OF_CRATE, m_CurrentLevel.getDirtyCell(i));
+                if (crate != null)
+                    GraphicUnitRenderer.updateGraphic(crate, GraphicUnit.LAYER_OF_CRATE, m_DynamicUnits.get(crate));
+            }
+            // the player may turn or change status without moving
+            Player player = m_CurrentLevel.getM_Player();
+            GraphicUnitRenderer.updateGraphic(player, GraphicUnit.LAYER_OF_PLAYER, m_DynamicUnits.get(player));
+        }
+        m_CurrentLevel.clearDirtyCells();
+    }
+
+    /**
+     * Switches between the node renderer and the canvas renderer as chosen by GameEngine, clearing what the other one has rendered.
+     *
+     * @see GameEngine#getM_CanvasRendering()
+     */
+    private void switchRenderer() {
+        for (int layer = GraphicUnit.LAYER_OF_FLOOR; layer < GraphicUnit.NUM_OF_LAYER; layer++)
+            GraphicUnitRenderer.clearLayer(m_Layers[layer]);
+        m_DynamicUnits.clear();
+        m_RenderedLevel = null;
+
+        if (m_CanvasRenderer == null) {
+            m_CanvasRenderer = new CanvasLevelRenderer();
+            AnchorPane.setTopAnchor(m_CanvasRenderer.getM_Canvas(), GAME_VIEW_OFFSET_Y - m_CanvasRenderer.getM_TopMargin());
+            AnchorPane.setLeftAnchor(m_CanvasRenderer.getM_Canvas(), GAME_VIEW_OFFSET_X);
+            m_LevelPane.getChildren().add(m_CanvasRenderer.getM_Canvas());
+        } else {
+            m_CanvasRenderer.dispose();
+            m_LevelPane.getChildren().remove(m_CanvasRenderer.getM_Canvas());
+            m_CanvasRenderer = null;
+        }
+    }
+
+    /**
+     * Generates graphic units of all GameObjects of the current level by iterating through the level object,
+     * reusing the units of the level shown before.
+     *
+     * @see Level.LevelIterator
+     */
+    private void renderAllLayers() {
         for (int layer = GraphicUnit.LAYER_OF_FLOOR; layer < GraphicUnit.NUM_OF_LAYER; layer++)
-            m_Layers[layer].getChildren().clear();
-        while (levelGridIterator.hasNext())
-            GraphicUnitRenderer.renderObjectToGraphic(levelGridIterator.next(), m_Layers);
+            GraphicUnitRenderer.clearLayer(m_Layers[layer]);
+        m_DynamicUnits.clear();
+
+        Level.LevelIterator levelGridIterator = (Level.LevelIterator) m_CurrentLevel.iterator();
+        while (levelGridIterator.hasNext()) {
+            GameObject[] gameObjects = levelGridIterator.next();
+            for (int layer = GraphicUnit.LAYER_OF_FLOOR; layer < GraphicUnit.NUM_OF_LAYER; layer++) {
+                GraphicUnit graphicUnit = GraphicUnitRenderer.renderObjectToGraphic(gameObjects[layer], layer, m_Layers);
+                if (graphicUnit != null && layer >= GraphicUnit.LAYER_OF_CRATE)
+                    m_DynamicUnits.put(gameObjects[layer], graphicUnit);
+            }
+        }
+        m_RenderedLevel = m_CurrentLevel;
+        Debugger.debugEnd(false, GraphicUnitRenderer.getM_Pool().toString());
+    }
+
+    /**
+     * Generates graphic units of the crates and player of the current level again, keeping the static layers. <br />
+     * The units of the crates and player shown before are reused, so that restarting creates no new unit.
+     */
+    private void renderDynamicLayers() {
+        GraphicUnitRenderer.clearLayer(m_Layers[GraphicUnit.LAYER_OF_CRATE]);
+        GraphicUnitRenderer.clearLayer(m_Layers[GraphicUnit.LAYER_OF_PLAYER]);
+        m_DynamicUnits.clear();
+
+        LevelState state = m_CurrentLevel.getM_State();
+        for (int cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, 0); cell != LevelState.OUT_OF_BOUNDS; cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, cell + 1)) {
+            GameObject crate = m_CurrentLevel.getGameObjectAt(GraphicUnit.LAYER_OF_CRATE, cell);
+            m_DynamicUnits.put(crate, GraphicUnitRenderer.renderObjectToGraphic(crate, GraphicUnit.LAYER_OF_CRATE, m_Layers));
+        }
+        Player player = m_CurrentLevel.getM_Player();
+        m_DynamicUnits.put(player, GraphicUnitRenderer.renderObjectToGraphic(player, GraphicUnit.LAYER_OF_PLAYER, m_Layers));
+        Debugger.debugEnd(false, GraphicUnitRenderer.getM_Pool().toString());
+    }
+
+    /**
+     * Initializes the latency overlay on top of gaming screen by binding its text and visibility to ProfilingManager.
+     *
+     * @see org.ziqi.gameEngine.manager.ProfilingManager#getM_OverlayText()
+     * @see org.ziqi.gameEngine.manager.ProfilingManager#getM_OverlayShown()
+     */
+    private void initializeLatencyOverlay() {
+        m_LatencyOverlay.textProperty().bind(m_GameEngine.getM_ProfilingManager().getM_OverlayText());
+        m_LatencyOverlay.visibleProperty().bind(m_GameEngine.getM_ProfilingManager().getM_OverlayShown());
+        m_LatencyOverlay.setFont(Font.font("Monospaced", 10));
+        m_LatencyOverlay.setFill(Color.WHITE);
+        m_LatencyOverlay.setMouseTransparent(true);
+        AnchorPane.setTopAnchor(m_LatencyOverlay, LATENCY_OVERLAY_OFFSET);
+        AnchorPane.setLeftAnchor(m_LatencyOverlay, LATENCY_OVERLAY_OFFSET);
+        m_FxmlRoot.getChildren().add(m_LatencyOverlay);
     }
 
     /**
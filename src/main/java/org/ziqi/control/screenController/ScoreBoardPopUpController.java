@@ -12,6 +12,7 @@ import javafx.stage.Stage;
 import org.ziqi.gameEngine.GameEngine;
 import org.ziqi.gameEngine.manager.DataManager;
 import org.ziqi.gameEngine.viewPlayer.ViewPlayer;
+import org.ziqi.model.Replay;
 import org.ziqi.model.ScoreRecord;
 import org.ziqi.view.popUp.AlertPopUp;
 
@@ -127,23 +128,24 @@ public class ScoreBoardPopUpController implements Initializable {
     }
 
     /**
-     * When the score board pop up view is initialized from fxml file, GameEngine calls DataManger to read record from file and show them to player.<br />
+     * When the score board pop up view is initialized from fxml file, GameEngine calls DataManger to find the record of current level and show it to player.<br />
      * If the player break any record of the current level, input area is initialize to ask player's name to record; <br />
-     * Otherwise, options are provided for user to restart/ go to next level or go back to start screen.
+     * Otherwise, the play is still kept in the leaderboard of the level under the name last input, and options are provided for user
+     * to restart/ go to next level or go back to start screen.
      *
      * @param location  URL representing a Uniform Resource Locator of fxml file.
      * @param resources Resource bundles contain locale-specific objects of fxml file.
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        // update score board.
-        m_GameEngine.getM_DataManager().readScoreRecords();
         showPlayerScore();
         getRecordOfCurrentLevel();
         if (canUpdateRecord())
             enableInputArea();
-        else
+        else {
+            submitRun();
             enableButtonArea();
+        }
     }
 
     /**
@@ -151,7 +153,7 @@ public class ScoreBoardPopUpController implements Initializable {
      */
     private void showPlayerScore() {
         playerTime = m_GameEngine.getM_DataManager().getM_secondTimer();
-        playerMove = m_GameEngine.getM_DataManager().getM_MoveCount();
+        playerMove = m_GameEngine.getM_LevelManager().getM_CurrentLevel().getM_Session().getM_MoveCount();
         m_TimeString.setText("Your Time: " + m_GameEngine.getM_DataManager().getM_TimeString().getValue());
         m_MoveCountString.setText("Your Move: " + playerMove + " Steps");
     }
@@ -163,8 +165,8 @@ public class ScoreBoardPopUpController implements Initializable {
      */
     private void getRecordOfCurrentLevel() {
         topRecord = m_GameEngine.getM_DataManager().getTopRecord();
-        fastestTime = Integer.parseInt(topRecord.getM_FastestTime());
-        minimumMove = Integer.parseInt(topRecord.getM_MinimumMove());
+        fastestTime = topRecord.getM_FastestTime();
+        minimumMove = topRecord.getM_MinimumMove();
     }
 
     /**
@@ -184,14 +186,25 @@ public class ScoreBoardPopUpController implements Initializable {
 
         if (playerMove < minimumMove || minimumMove == -1) {
             minimumMove = playerMove;
-            m_MMString.setText("You make new record of minimum move!");
+            m_MMString.setText("You make new record of minimum move!" + getParText());
             canUpdateRecord = true;
         } else {
-            m_MMString.setText("Minimum Move" + " By " + topRecord.getM_PlayerOfMM());
+            m_MMString.setText("Minimum Move: " + minimumMove + " By " + topRecord.getM_PlayerOfMM() + getParText());
         }
         return canUpdateRecord;
     }
 
+    /**
+     * Gets the par of current level as text to be shown next to the minimum move.
+     *
+     * @return A string specifying the par is returned; Empty if the par is not known.
+     * @see org.ziqi.gameEngine.manager.LevelManager#getPar(String, String)
+     */
+    private String getParText() {
+        int par = m_GameEngine.getM_LevelManager().getPar(topRecord.getM_SetName(), topRecord.getM_LevelName());
+        return par < 0 ? "" : " (Par: " + par + ")";
+    }
+
     /**
      * Enables the input area to ask for user's name if any record is broken. <br />
      * Input valid check is used here by calling isValidName() method. <br />
@@ -210,13 +223,43 @@ public class ScoreBoardPopUpController implements Initializable {
             m_GameEngine.getM_MusicManager().playButtonClickMusic();
             String playerName = m_PlayerInput.getText(); // get input
             if (isValidName(playerName)) {
-                m_GameEngine.getM_DataManager().updateRecord(fastestTime, minimumMove, playerName, topRecord);
+                m_GameEngine.getM_DataManager().submitRecord(playerTime, playerMove, playerName,
+                        m_GameEngine.getM_LevelManager().getM_CurrentLevel().getM_Session().getReplay())
+                        .whenComplete(this::reportRecord);
                 enableButtonArea();
             } else
                 m_GameEngine.getM_ScreenPlayer().initScreen(new AlertPopUp("Invalid Name", "Name has to be 1-16 word characters!"), ViewPlayer.POP_UP_SCREEN);
         });
     }
 
+    /**
+     * Submits a play breaking no record under the name last input, so that it is ranked in the leaderboard of the level. <br />
+     * No alert is shown, as the player is not asked for anything; Failures are logged by DataManager.
+     *
+     * @see DataManager#getM_LastPlayerName()
+     * @see DataManager#submitRecord(int, int, String, String)
+     */
+    private void submitRun() {
+        m_GameEngine.getM_DataManager().submitRecord(playerTime, playerMove, m_GameEngine.getM_DataManager().getM_LastPlayerName(),
+                m_GameEngine.getM_LevelManager().getM_CurrentLevel().getM_Session().getReplay());
+    }
+
+    /**
+     * Informs user by an alert if the record submitted is rejected or cannot be saved; A record saved is not announced,
+     * as the message of breaking it is shown already. <br />
+     * This method is called on the JavaFX application thread once the record is verified and written in background.
+     *
+     * @param verdict Verdict of the record submitted; Null if it failed.
+     * @param error   Throwable thrown by verifying or saving the record; Null if they succeeded.
+     * @see DataManager#submitRecord(int, int, String, String)
+     */
+    private void reportRecord(Replay.Verdict verdict, Throwable error) {
+        if (error != null)
+            m_GameEngine.getM_ScreenPlayer().initScreen(new AlertPopUp("Not Saved", "Your record cannot be saved!"), ViewPlayer.POP_UP_SCREEN);
+        else if (verdict != Replay.Verdict.VALID)
+            m_GameEngine.getM_ScreenPlayer().initScreen(new AlertPopUp("Rejected", "Your record cannot be verified!"), ViewPlayer.POP_UP_SCREEN);
+    }
+
     /**
      * Enables button area to provide user more options to restart/ go to next level or go back to start screen.
      *
@@ -231,7 +274,8 @@ public class ScoreBoardPopUpController implements Initializable {
             m_GameEngine.getM_MusicManager().playButtonClickMusic();
             m_GameEngine.getM_MusicManager().playGamingMusic();
             m_GameEngine.getM_LevelManager().nextLevel();
-            m_GameEngine.getM_DataManager().resetMoveCount();
+            m_GameEngine.getM_LevelManager().getM_CurrentLevel().refreshLevel();
+            m_GameEngine.getM_DataManager().resetTime();
             m_GameEngine.updateGamingScreen();
             popOff();
         });
@@ -240,6 +284,7 @@ public class ScoreBoardPopUpController implements Initializable {
             m_GameEngine.getM_MusicManager().playButtonClickMusic();
             m_GameEngine.getM_MusicManager().playGamingMusic();
             m_GameEngine.getM_LevelManager().getM_CurrentLevel().refreshLevel();
+            m_GameEngine.getM_DataManager().resetTime();
             m_GameEngine.updateGamingScreen();
             popOff();
         });
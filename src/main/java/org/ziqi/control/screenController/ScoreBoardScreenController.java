@@ -1,21 +1,29 @@
 package org.ziqi.control.screenController;
 
 import javafx.animation.TranslateTransition;
-import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.ObservableList;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.text.Text;
 import org.ziqi.gameEngine.GameEngine;
 import org.ziqi.gameEngine.base.GameScreen;
 import org.ziqi.gameEngine.manager.DataManager;
+import org.ziqi.model.RunHistory;
 import org.ziqi.model.ScoreRecord;
+import org.ziqi.model.ScoreStore;
+import org.ziqi.model.ScoreView;
 
 import java.net.URL;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ResourceBundle;
 
 /**
@@ -29,22 +37,85 @@ public class ScoreBoardScreenController implements Initializable {
     @FXML
     private AnchorPane m_FxmlRoot;
     @FXML
-    private TableColumn<ScoreRecord, SimpleStringProperty> m_SetNameColumn;
+    private TableColumn<ScoreRecord, String> m_SetNameColumn;
     @FXML
-    private TableColumn<ScoreRecord, SimpleStringProperty> m_LevelNameColumn;
+    private TableColumn<ScoreRecord, String> m_LevelNameColumn;
     @FXML
-    private TableColumn<ScoreRecord, SimpleStringProperty> m_FTColumn;
+    private TableColumn<ScoreRecord, Number> m_FTColumn;
     @FXML
-    private TableColumn<ScoreRecord, SimpleStringProperty> m_PlayerFTColumn;
+    private TableColumn<ScoreRecord, String> m_PlayerFTColumn;
     @FXML
-    private TableColumn<ScoreRecord, SimpleStringProperty> m_MMColumn;
+    private TableColumn<ScoreRecord, Number> m_MMColumn;
     @FXML
-    private TableColumn<ScoreRecord, SimpleStringProperty> m_PlayerMMColumn;
+    private TableColumn<ScoreRecord, String> m_ParColumn;
+    @FXML
+    private TableColumn<ScoreRecord, String> m_PlayerMMColumn;
     @FXML
     private TableView<ScoreRecord> m_ScoreTable;
     @FXML
+    private Text m_FilterButton;
+    @FXML
+    private TextField m_FilterInput;
+    @FXML
+    private Text m_RunTitle;
+    @FXML
+    private TableColumn<RunHistory.Run, Number> m_RankColumn;
+    @FXML
+    private TableColumn<RunHistory.Run, String> m_RunPlayerColumn;
+    @FXML
+    private TableColumn<RunHistory.Run, Number> m_RunTimeColumn;
+    @FXML
+    private TableColumn<RunHistory.Run, Number> m_RunMoveColumn;
+    @FXML
+    private TableColumn<RunHistory.Run, String> m_RunDateColumn;
+    @FXML
+    private TableView<RunHistory.Run> m_RunTable;
+    @FXML
+    private Text m_PreviousPageButton;
+    @FXML
+    private Text m_PageText;
+    @FXML
+    private Text m_NextPageButton;
+    @FXML
+    private Text m_RunOrderButton;
+    @FXML
     private Text m_BackButton;
 
+    /**
+     * Constant string shown as par when the par of the level is not known.
+     */
+    private static final String NO_PAR = "-";
+
+    /**
+     * Constant integer specifying the number of runs shown on a page of the run table.
+     */
+    private static final int RUNS_PER_PAGE = 7;
+
+    /**
+     * Constant DateTimeFormatter formatting the time a run is completed in run table.
+     */
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    /**
+     * Filter of the names checked by the text of filter input.
+     */
+    private ScoreStore.Filter m_Filter = ScoreStore.Filter.SET;
+
+    /**
+     * The record of the level whose runs are shown; Null if no level is selected.
+     */
+    private ScoreRecord m_SelectedRecord;
+
+    /**
+     * Order the runs shown are ranked in.
+     */
+    private RunHistory.Order m_RunOrder = RunHistory.Order.TIME;
+
+    /**
+     * Integer specifying the page of runs shown, from 0.
+     */
+    private int m_RunPage = 0;
+
     /**
      * Reference to GameEngine instance.
      */
@@ -61,26 +132,88 @@ public class ScoreBoardScreenController implements Initializable {
 
     /**
      * On initializing:
-     * 1. Reads record data from outside file by calling DataManager and inserts then into tableView sorted by set name and level name respectively.
-     * 2. Register events for each buttons.
+     * 1. Binds tableView to the view of records kept by DataManager, sorted by set name and level name, so that committed records show up at once.
+     * The view reads the records of the visible rows only from the indexes of the store, so that opening, sorting and scrolling never copy
+     * or sort the records: sorting by a column switches the index read, and filtering by set, level or player scans the index once.
+     * Cells bind to the properties of records, which are only created for the visible rows.
+     * The par of each level solved so far is shown next to its minimum move, which is also only asked for the visible rows.
+     * 2. Binds the run table to the runs of the level selected, which are got from its leaderboard one page at a time.
+     * 3. Register events for each buttons.
      *
      * @param location  URL representing a Uniform Resource Locator of fxml file.
      * @param resources Resource bundles contain locale-specific objects of fxml file.
-     * @see DataManager#readScoreRecords()
+     * @see DataManager#getScoreRecords()
+     * @see ScoreView
+     * @see org.ziqi.gameEngine.manager.LevelManager#getPar(String, String)
+     * @see #showRuns()
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
 
         // set table content
-        ObservableList<ScoreRecord> scoreRecords = m_GameEngine.getM_DataManager().readScoreRecords();
+        ScoreView scoreRecords = m_GameEngine.getM_DataManager().getScoreRecords();
+        scoreRecords.setFilter(m_Filter, "");
+        // only the first column sorted is followed, as each order is an index of the store
+        m_ScoreTable.setSortPolicy(table -> {
+            if (table.getSortOrder().isEmpty()) {
+                scoreRecords.setOrder(ScoreStore.Order.SET_LEVEL, false);
+                return true;
+            }
+            TableColumn<ScoreRecord, ?> column = table.getSortOrder().get(0);
+            scoreRecords.setOrder(getOrder(column), column.getSortType() == TableColumn.SortType.DESCENDING);
+            return true;
+        });
         m_SetNameColumn.setCellValueFactory(new PropertyValueFactory<>("m_SetName"));
         m_LevelNameColumn.setCellValueFactory(new PropertyValueFactory<>("m_LevelName"));
         m_FTColumn.setCellValueFactory(new PropertyValueFactory<>("m_FastestTime"));
         m_PlayerFTColumn.setCellValueFactory(new PropertyValueFactory<>("m_PlayerOfFT"));
         m_MMColumn.setCellValueFactory(new PropertyValueFactory<>("m_MinimumMove"));
+        m_ParColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(getParText(cell.getValue())));
         m_PlayerMMColumn.setCellValueFactory(new PropertyValueFactory<>("m_PlayerOfMM"));
         m_ScoreTable.setItems(scoreRecords);
 
+        // set filter event
+        m_FilterInput.setOnAction(e -> scoreRecords.setFilter(m_Filter, m_FilterInput.getText().trim()));
+        m_FilterButton.setOnMouseClicked(e -> {
+            m_GameEngine.getM_MusicManager().playButtonClickMusic();
+            m_Filter = ScoreStore.Filter.values()[(m_Filter.ordinal() + 1) % ScoreStore.Filter.values().length];
+            m_FilterButton.setText(getFilterText(m_Filter));
+            scoreRecords.setFilter(m_Filter, m_FilterInput.getText().trim());
+        });
+
+        // set run table content, ranked by the leaderboard instead of sorted by the table
+        m_RankColumn.setCellValueFactory(cell -> new ReadOnlyIntegerWrapper(cell.getValue().getM_Rank()));
+        m_RunPlayerColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getM_PlayerName()));
+        m_RunTimeColumn.setCellValueFactory(cell -> new ReadOnlyIntegerWrapper(cell.getValue().getM_Seconds()));
+        m_RunMoveColumn.setCellValueFactory(cell -> new ReadOnlyIntegerWrapper(cell.getValue().getM_Moves()));
+        m_RunDateColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                DATE_FORMAT.format(Instant.ofEpochMilli(cell.getValue().getM_Timestamp()).atZone(ZoneId.systemDefault()))));
+        m_ScoreTable.getSelectionModel().selectedItemProperty().addListener((selected, oldRecord, newRecord) -> {
+            m_SelectedRecord = newRecord;
+            m_RunPage = 0;
+            showRuns();
+        });
+        m_GameEngine.getM_DataManager().getM_RunHistory().getM_Loaded().thenRun(this::showRuns);
+        showRuns();
+
+        // set paging buttons event
+        m_PreviousPageButton.setOnMouseClicked(e -> {
+            m_GameEngine.getM_MusicManager().playButtonClickMusic();
+            m_RunPage--;
+            showRuns();
+        });
+        m_NextPageButton.setOnMouseClicked(e -> {
+            m_GameEngine.getM_MusicManager().playButtonClickMusic();
+            m_RunPage++;
+            showRuns();
+        });
+        m_RunOrderButton.setOnMouseClicked(e -> {
+            m_GameEngine.getM_MusicManager().playButtonClickMusic();
+            m_RunOrder = m_RunOrder == RunHistory.Order.TIME ? RunHistory.Order.MOVES : RunHistory.Order.TIME;
+            m_RunPage = 0;
+            showRuns();
+        });
+
         // set button event
         TranslateTransition ttBackButton = new TranslateTransition();
         m_BackButton.setOnMouseEntered(e -> {
@@ -91,6 +224,82 @@ public class ScoreBoardScreenController implements Initializable {
         m_BackButton.setOnMouseClicked(e -> GameEngine.getInstance().toStartScreen());
 
         // set sort order
-        m_ScoreTable.getSortOrder().addAll(m_SetNameColumn, m_LevelNameColumn);
+        m_ScoreTable.getSortOrder().add(m_SetNameColumn);
+    }
+
+    /**
+     * Shows the current page of the runs of the level selected in the run table, which only holds the runs of that page,
+     * and the page number and order of runs in the paging buttons. The page is clamped into the pages the level has.
+     *
+     * @see RunHistory#getRuns(String, String, RunHistory.Order, int, int)
+     */
+    private void showRuns() {
+        m_RunOrderButton.setText(m_RunOrder == RunHistory.Order.TIME ? "By Time" : "By Move");
+        if (m_SelectedRecord == null) {
+            m_RunTitle.setText("Select a level to see all its runs");
+            m_PageText.setText("");
+            m_RunTable.setItems(FXCollections.observableArrayList());
+            return;
+        }
+        RunHistory runHistory = m_GameEngine.getM_DataManager().getM_RunHistory();
+        String setName = m_SelectedRecord.getM_SetName();
+        String levelName = m_SelectedRecord.getM_LevelName();
+        int runCount = runHistory.count(setName, levelName);
+        int pageCount = Math.max(1, (runCount + RUNS_PER_PAGE - 1) / RUNS_PER_PAGE);
+        m_RunPage = Math.max(0, Math.min(m_RunPage, pageCount - 1));
+        m_RunTitle.setText("Runs of " + setName + " - " + levelName + ": " + runCount);
+        m_PageText.setText("Page " + (m_RunPage + 1) + " / " + pageCount);
+        m_RunTable.setItems(FXCollections.observableArrayList(
+                runHistory.getRuns(setName, levelName, m_RunOrder, m_RunPage * RUNS_PER_PAGE, RUNS_PER_PAGE)));
+    }
+
+    /**
+     * Gets the order of records by the scores shown in a column, whose index the view reads. <br />
+     * Par column is not sortable, as pars are not kept by the store.
+     *
+     * @param column TableColumn of the score board table.
+     * @return Order of the records in ascending order of the column is returned.
+     */
+    private ScoreStore.Order getOrder(TableColumn<ScoreRecord, ?> column) {
+        if (column == m_LevelNameColumn)
+            return ScoreStore.Order.LEVEL_SET;
+        if (column == m_FTColumn)
+            return ScoreStore.Order.FASTEST_TIME;
+        if (column == m_PlayerFTColumn)
+            return ScoreStore.Order.PLAYER_OF_FT;
+        if (column == m_MMColumn)
+            return ScoreStore.Order.MINIMUM_MOVE;
+        if (column == m_PlayerMMColumn)
+            return ScoreStore.Order.PLAYER_OF_MM;
+        return ScoreStore.Order.SET_LEVEL;
+    }
+
+    /**
+     * Gets the text of filter button showing the names checked by a filter.
+     *
+     * @param filter Filter of the names checked.
+     * @return A string specifying the names checked is returned.
+     */
+    private String getFilterText(ScoreStore.Filter filter) {
+        switch (filter) {
+            case LEVEL:
+                return "Level";
+            case PLAYER:
+                return "Player";
+            default:
+                return "Set";
+        }
+    }
+
+    /**
+     * Gets the par of the level of a record as text to be shown in par column.
+     *
+     * @param record ScoreRecord of the level.
+     * @return A string specifying the par is returned; NO_PAR if the par is not known.
+     * @see org.ziqi.gameEngine.manager.LevelManager#getPar(String, String)
+     */
+    private String getParText(ScoreRecord record) {
+        int par = m_GameEngine.getM_LevelManager().getPar(record.getM_SetName(), record.getM_LevelName());
+        return par < 0 ? NO_PAR : String.valueOf(par);
     }
 }
@@ -0,0 +1,327 @@
+package org.ziqi.gameEngine;
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.Interpolator;
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
+import org.ziqi.gameEngine.base.GameObject;
+import org.ziqi.gameEngine.manager.EventManager;
+import org.ziqi.gameEngine.manager.MusicManager;
+import org.ziqi.gameEngine.manager.ResourceManager;
+import org.ziqi.model.Crate;
+import org.ziqi.model.Level;
+import org.ziqi.model.LevelState;
+import org.ziqi.model.Player;
+import org.ziqi.model.Wall;
+import org.ziqi.view.GraphicUnit;
+
+/**
+ * CanvasLevelRenderer class renders a level onto one Canvas instead of one GraphicUnit node per GameObject, so that big levels
+ * do not make layout and CSS passes of the scene graph the bottleneck. <br />
+ * The static layers(diamonds and walls) are drawn once per level into a cached snapshot; Each frame, the snapshot is drawn
+ * and only the crate and player layers are drawn over it. <br />
+ * The flying-off, landing and crate sealing animations have the same timing and sound effects as the node renderer.
+ * Note: Sprites of the static layers are drawn at their first frame, as the snapshot is not redrawn.
+ *
+ * @author Ziqi Yang
+ * @see GraphicUnitRenderer
+ * @see org.ziqi.control.screenController.GamingScreenController
+ */
+public class CanvasLevelRenderer {
+
+    /**
+     * Constant double specifying the margin above the level on canvas, so that flying or pushing-UP player on the top row is not cut off.
+     */
+    private static final double TOP_MARGIN = GraphicUnit.UNIT_SIZE;
+
+    /**
+     * Canvas the level is rendered on.
+     */
+    private final Canvas m_Canvas = new Canvas(0, 0);
+
+    /**
+     * Timer redrawing the crate and player layers on every frame while the canvas is shown.
+     */
+    private final AnimationTimer m_FrameTimer;
+
+    /**
+     * Double property specifying the vertical translation of player in pixels, which is animated when flying off or landing.
+     */
+    private final DoubleProperty m_PlayerTranslateY = new SimpleDoubleProperty();
+
+    /**
+     * Shadow effect dropped by player while flying.
+     */
+    private final DropShadow m_FlyingShadow = GraphicUnitRenderer.makeFlyingShadow();
+
+    /**
+     * Level rendered on canvas; Null if nothing is rendered yet.
+     */
+    private Level m_Level;
+
+    /**
+     * Snapshot of the static layers of the rendered level.
+     */
+    private WritableImage m_StaticSnapshot;
+
+    /**
+     * Double value specifying the vertical offset of player in units according to its status.
+     */
+    private double m_PlayerOffsetX;
+
+    /**
+     * Boolean value specifying if the player drops a shadow.
+     */
+    private boolean m_PlayerShadowed;
+
+    /**
+     * Boolean value specifying if the canvas has been shown in a window, after which the frame timer stops once it is not any more.
+     */
+    private boolean m_Shown;
+
+    /**
+     * CanvasLevelRenderer constructor to start redrawing on every frame.
+     */
+    public CanvasLevelRenderer() {
+        m_FrameTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                Scene scene = m_Canvas.getScene();
+                boolean showing = scene != null && scene.getWindow() != null;
+                // the gaming screen has been replaced by another screen
+                if (m_Shown && !showing) {
+                    stop();
+                    return;
+                }
+                m_Shown = showing;
+                drawDynamicLayers();
+            }
+        };
+        m_FrameTimer.start();
+    }
+
+    /**
+     * Gets the canvas the level is rendered on, which is to be added onto the gaming screen.
+     *
+     * @return Canvas the level is rendered on is returned to caller.
+     */
+    public Canvas getM_Canvas() {
+        return m_Canvas;
+    }
+
+    /**
+     * Gets the margin above the level on canvas, which the canvas is to be moved up by on the gaming screen.
+     *
+     * @return Double value specifying the margin in pixels is returned to caller.
+     */
+    public double getM_TopMargin() {
+        return TOP_MARGIN;
+    }
+
+    /**
+     * Renders the given level after it is loaded, regenerated or played: <br />
+     * 1. If the level is not the one rendered, its static layers are drawn into a new snapshot; <br />
+     * 2. Animations and sound effects are started for crates at dirty cells and the player according to their status; <br />
+     * 3. The crate and player layers are drawn over the snapshot.
+     *
+     * @param level Level to be rendered.
+     * @see Level#getDirtyCell(int)
+     */
+    public void render(Level level) {
+        if (level != m_Level) {
+            m_Level = level;
+            drawStaticLayers();
+        }
+        if (!level.isAllDirty())
+            for (int i = 0; i < level.getM_DirtyCellCount(); i++) {
+                GameObject crate = level.getGameObjectAt(GraphicUnit.LAYER_OF_CRATE, level.getDirtyCell(i));
+                if (crate != null)
+                    renderCrate((Crate) crate);
+            }
+        renderPlayer(level.getM_Player());
+        drawDynamicLayers();
+    }
+
+    /**
+     * Stops redrawing, e.g. when switching back to the node renderer.
+     */
+    public void dispose() {
+        m_FrameTimer.stop();
+    }
+
+    /**
+     * Resizes the canvas to the level and draws its diamond and wall layers into the static snapshot,
+     * walls being drawn from the sprite atlas already tinted by the hue of current set.
+     *
+     * @see GraphicUnit#getM_WallColorHue()
+     * @see ResourceManager#getAtlasViewport(String)
+     */
+    private void drawStaticLayers() {
+        LevelState state = m_Level.getM_State();
+        double width = state.getM_Columns() * GraphicUnit.UNIT_SIZE;
+        double height = state.getM_Rows() * GraphicUnit.UNIT_SIZE + TOP_MARGIN;
+        m_Canvas.setWidth(width);
+        m_Canvas.setHeight(height);
+
+        Canvas staticCanvas = new Canvas(width, height);
+        GraphicsContext graphics = staticCanvas.getGraphicsContext2D();
+        drawPlane(graphics, LevelState.PLANE_OF_DIAMOND, GraphicUnit.LAYER_OF_DIAMOND);
+
+        ResourceManager resourceManager = GameEngine.getInstance().getM_ResourceManager();
+        for (int cell = state.nextSetCell(LevelState.PLANE_OF_WALL, 0); cell != LevelState.OUT_OF_BOUNDS; cell = state.nextSetCell(LevelState.PLANE_OF_WALL, cell + 1)) {
+            Wall wall = (Wall) m_Level.getGameObjectAt(GraphicUnit.LAYER_OF_WALL, cell);
+            Rectangle2D viewport = resourceManager.getAtlasViewport(ResourceManager.getTintedSpriteName(wall.getM_WallStatusAsString(), GraphicUnit.getM_WallColorHue()));
+            double x = state.getColumnOf(cell) * GraphicUnit.UNIT_SIZE;
+            double y = state.getRowOf(cell) * GraphicUnit.UNIT_SIZE + TOP_MARGIN;
+            if (viewport != null)
+                graphics.drawImage(resourceManager.getM_SpriteAtlas(), viewport.getMinX(), viewport.getMinY(), viewport.getWidth(), viewport.getHeight(),
+                        x, y, GraphicUnit.UNIT_SIZE, GraphicUnit.UNIT_SIZE);
+            // the hue is not of any set, so the wall is not packed in the atlas
+            else if (GraphicUnit.getSpriteOf(wall) != null)
+                graphics.drawImage(GraphicUnit.getSpriteOf(wall), x, y, GraphicUnit.UNIT_SIZE, GraphicUnit.UNIT_SIZE);
+        }
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        m_StaticSnapshot = staticCanvas.snapshot(parameters, null);
+    }
+
+    /**
+     * Draws the snapshot of static layers, then the crate and player layers of the rendered level.
+     */
+    private void drawDynamicLayers() {
+        if (m_Level == null)
+            return;
+        GraphicsContext graphics = m_Canvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, m_Canvas.getWidth(), m_Canvas.getHeight());
+        graphics.drawImage(m_StaticSnapshot, 0, 0);
+        drawPlane(graphics, LevelState.PLANE_OF_CRATE, GraphicUnit.LAYER_OF_CRATE);
+
+        Player player = m_Level.getM_Player();
+        Image sprite = GraphicUnit.getSpriteOf(player);
+        if (sprite == null)
+            return;
+        graphics.save();
+        if (m_PlayerShadowed)
+            graphics.setEffect(m_FlyingShadow);
+        graphics.drawImage(sprite, player.getM_Position().y * GraphicUnit.UNIT_SIZE,
+                (player.getM_Position().x + m_PlayerOffsetX) * GraphicUnit.UNIT_SIZE + m_PlayerTranslateY.get() + TOP_MARGIN,
+                GraphicUnit.UNIT_SIZE, GraphicUnit.UNIT_SIZE);
+        graphics.restore();
+    }
+
+    /**
+     * Draws the GameObjects of one layer at the cells set in the corresponding plane of the level state.
+     *
+     * @param graphics GraphicsContext to draw on.
+     * @param plane    Integer specifying the plane of level state.
+     * @param layer    Integer specifying the layer of the GameObjects.
+     */
+    private void drawPlane(GraphicsContext graphics, int plane, int layer) {
+        LevelState state = m_Level.getM_State();
+        for (int cell = state.nextSetCell(plane, 0); cell != LevelState.OUT_OF_BOUNDS; cell = state.nextSetCell(plane, cell + 1)) {
+            Image sprite = GraphicUnit.getSpriteOf(m_Level.getGameObjectAt(layer, cell));
+            if (sprite != null)
+                graphics.drawImage(sprite, state.getColumnOf(cell) * GraphicUnit.UNIT_SIZE,
+                        state.getRowOf(cell) * GraphicUnit.UNIT_SIZE + TOP_MARGIN, GraphicUnit.UNIT_SIZE, GraphicUnit.UNIT_SIZE);
+        }
+    }
+
+    /**
+     * Plays the blooming animation with music if the crate is sealing, as the node renderer does. <br />
+     * Note: When an animation is playing, player input handler is temporarily unsubscribed to avoid refresh off the animation.
+     *
+     * @param crate Crate object to be checked.
+     * @see MusicManager#playBloomingMusic()
+     * @see EventManager#unsubscribe()
+     */
+    private void renderCrate(Crate crate) {
+        if (crate.getM_CrateStatus() != Crate.CrateStatus.CRATE_SEALING)
+            return;
+        GameEngine gameEngine = GameEngine.getInstance();
+        gameEngine.getM_MusicManager().playBloomingMusic();
+        gameEngine.getM_EventManager().unsubscribe();
+        Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(GraphicUnitRenderer.SEALING_ANIMATION_SECONDS), event -> {
+            crate.setM_CrateStatus(Crate.CrateStatus.CRATE_SEALED);
+            gameEngine.getM_EventManager().subscribe();
+        }));
+        timeline.setCycleCount(1);
+        timeline.play();
+    }
+
+    /**
+     * Sets the offset and shadow of the player according to its status, playing the flying-off or landing animation with music as the node renderer does. <br />
+     * The vertical translation is animated with the same duration and interpolation as the TranslateTransition of the node renderer.
+     * Note: When an animation is playing, player input handler is temporarily unsubscribed to avoid refresh off the animation.
+     *
+     * @param player Player object to be checked.
+     * @see MusicManager#playFlyingOffMusic()
+     * @see MusicManager#playLandingMusic()
+     * @see MusicManager#playPushingMusic()
+     */
+    private void renderPlayer(Player player) {
+        GameEngine gameEngine = GameEngine.getInstance();
+        m_PlayerTranslateY.set(0);
+        m_PlayerShadowed = false;
+        m_PlayerOffsetX = 0;
+
+        switch (player.getM_PlayerStatus()) {
+            case FLYING_OFF:
+                gameEngine.getM_EventManager().unsubscribe();
+                m_PlayerShadowed = true;
+                gameEngine.getM_MusicManager().playFlyingOffMusic();
+                animatePlayer(-GraphicUnit.FLYING_OFFSET * GraphicUnit.UNIT_SIZE, () -> player.setM_PlayerStatus(Player.PlayerStatus.FLYING));
+                break;
+            case LANDING:
+                gameEngine.getM_EventManager().unsubscribe();
+                m_PlayerOffsetX = -GraphicUnit.FLYING_OFFSET;
+                m_PlayerShadowed = true;
+                gameEngine.getM_MusicManager().playLandingMusic();
+                animatePlayer(GraphicUnit.FLYING_OFFSET * GraphicUnit.UNIT_SIZE, () -> {
+                    m_PlayerShadowed = false;
+                    player.setM_PlayerStatus(Player.PlayerStatus.IDLE);
+                });
+                break;
+            case PUSHING:
+                gameEngine.getM_MusicManager().playPushingMusic();
+                if (player.getM_PlayerDirection() == Player.PlayerDirection.UP)
+                    m_PlayerOffsetX = -GraphicUnit.PUSHING_OFFSET;
+                break;
+            case FLYING:
+                m_PlayerShadowed = true;
+                m_PlayerOffsetX = -GraphicUnit.FLYING_OFFSET;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Animates the vertical translation of player by given pixels, then resumes player input.
+     *
+     * @param byY      Double value specifying the vertical translation in pixels.
+     * @param onFinish Runnable updating the player status when the animation finishes.
+     */
+    private void animatePlayer(double byY, Runnable onFinish) {
+        Timeline timeline = new Timeline(new KeyFrame(Duration.millis(GraphicUnitRenderer.FLYING_ANIMATION_MILLIS),
+                new KeyValue(m_PlayerTranslateY, byY, Interpolator.EASE_BOTH)));
+        timeline.setOnFinished(e -> {
+            onFinish.run();
+            GameEngine.getInstance().getM_EventManager().subscribe();
+        });
+        timeline.play();
+    }
+}
@@ -25,6 +25,8 @@ import java.util.ResourceBundle;
  * @see DataManager
  * @see MusicManager
  * @see ResourceManager
+ * @see ProfilingManager
+ * @see ReplayManager
  * @see ScreenPlayer
  */
 public class GameEngine {
@@ -64,6 +66,16 @@ public class GameEngine {
      */
     private final ResourceManager m_ResourceManager = new ResourceManager();
 
+    /**
+     * ProfilingManager object to be used by GameEngine.
+     */
+    private final ProfilingManager m_ProfilingManager = new ProfilingManager();
+
+    /**
+     * ReplayManager object to be used by GameEngine.
+     */
+    private final ReplayManager m_ReplayManager = new ReplayManager();
+
     /**
      * ScreenPlayer object to be used by GameEngine.
      */
@@ -79,6 +91,14 @@ public class GameEngine {
      */
     private Image m_GamingBG;
 
+    /**
+     * Boolean value specifying if levels are rendered on one canvas instead of one graphic unit node per GameObject.
+     *
+     * @see CanvasLevelRenderer
+     * @see GraphicUnitRenderer
+     */
+    private boolean m_CanvasRendering = false;
+
     /**
      * This is a singleton getter to keep track of and return the unique instance of GameEngine class.
      *
@@ -136,6 +156,24 @@ public class GameEngine {
         return m_MusicManager;
     }
 
+    /**
+     * Gets the ProfilingManager object member variable of GameEngine instance.
+     *
+     * @return  The ProfilingManager object member variable is returned to the caller.
+     */
+    public ProfilingManager getM_ProfilingManager() {
+        return m_ProfilingManager;
+    }
+
+    /**
+     * Gets the ReplayManager object member variable of GameEngine instance.
+     *
+     * @return  The ReplayManager object member variable is returned to the caller.
+     */
+    public ReplayManager getM_ReplayManager() {
+        return m_ReplayManager;
+    }
+
     /**
      * Gets the EventManager object member variable of GameEngine instance.
      *
@@ -175,6 +213,25 @@ public class GameEngine {
         this.m_GamingBG = m_GamingBG;
     }
 
+    /**
+     * Gets if levels are rendered on one canvas instead of one graphic unit node per GameObject.
+     *
+     * @return  True is returned if the canvas renderer is chosen; Otherwise, false is returned for the node renderer.
+     */
+    public boolean getM_CanvasRendering() {
+        return m_CanvasRendering;
+    }
+
+    /**
+     * Sets if levels are rendered on one canvas instead of one graphic unit node per GameObject, which gaming screen follows on its next update.
+     *
+     * @param  m_CanvasRendering  Boolean value specifying if the canvas renderer is chosen.
+     * @see     org.ziqi.control.screenController.GamingScreenController#updateGraphicLayers()
+     */
+    public void setM_CanvasRendering(boolean m_CanvasRendering) {
+        this.m_CanvasRendering = m_CanvasRendering;
+    }
+
     /**
      * Assigns tasks to GameManagers and ScreenPlayer to present start screen for the user. <br />
      * When called, MusicManager will be called to play start screen background music; <br />
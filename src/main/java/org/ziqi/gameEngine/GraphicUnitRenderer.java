@@ -3,6 +3,7 @@ package org.ziqi.gameEngine;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.animation.TranslateTransition;
+import javafx.scene.Node;
 import javafx.scene.effect.BlurType;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.image.ImageView;
@@ -18,6 +19,7 @@ import org.ziqi.gameEngine.manager.MusicManager;
 import org.ziqi.model.Crate;
 import org.ziqi.model.Player;
 import org.ziqi.view.GraphicUnit;
+import org.ziqi.view.GraphicUnitPool;
 
 import java.awt.*;
 
@@ -33,36 +35,103 @@ import java.awt.*;
 public class GraphicUnitRenderer {
 
     /**
-     * Generates and renders one set of graphic units on given layers accordingly by given GameObject array at the same position. <br />
-     * This method will be called by GamingScreenController class everytime when the screen needs to be updated,
-     * as a user is playing the game(gaming screen is showing) and inputs a key that is handled;
+     * Constant integer specifying the duration in milliseconds of flying-off and landing animations of player.
+     */
+    static final int FLYING_ANIMATION_MILLIS = 800;
+
+    /**
+     * Constant double specifying the duration in seconds of sealing animation of crate.
+     */
+    static final double SEALING_ANIMATION_SECONDS = 0.8;
+
+    /**
+     * Pool of graphic units removed from gaming screen, which are reused by all gaming screens.
+     */
+    private static final GraphicUnitPool m_Pool = new GraphicUnitPool();
+
+    /**
+     * Gets the pool of graphic units, e.g. to read its hit and miss counters.
+     *
+     * @return GraphicUnitPool used by the renderer is returned to caller.
+     */
+    public static GraphicUnitPool getM_Pool() {
+        return m_Pool;
+    }
+
+    /**
+     * Renders one graphic unit on its layer for the given GameObject, reusing a free unit of the pool if any. <br />
+     * This method is called by GamingScreenController only when a level is loaded or its crate and player layers are regenerated,
+     * as the graphic units then follow their GameObjects by updateGraphic().
      *
-     * @param gameObjects Array of GameObjects provided by level iterator as all layers of objects at the same position.
-     * @param layers      Array of AnchorPanes that will shows the whole rendered level(layers of graphic units)
+     * @param gameObject GameObject to be rendered; Null if nothing is at that position of the layer.
+     * @param layer      Integer specifying the layer index of the GameObject.
+     * @param layers     Array of AnchorPanes that will shows the whole rendered level(layers of graphic units)
+     * @return The GraphicUnit added to its layer is returned; Null if no graphic unit is needed.
      * @see org.ziqi.control.screenController.GamingScreenController
+     * @see GraphicUnitPool#acquire(GameObject)
      * @see GamingScreenController#updateGamingScreen()
      * @see org.ziqi.model.Level.LevelIterator
      * @see GraphicUnit
      */
-    public static void renderObjectToGraphic(GameObject[] gameObjects, AnchorPane[] layers) {
+    public static GraphicUnit renderObjectToGraphic(GameObject gameObject, int layer, AnchorPane[] layers) {
         // no need to render floor
-        for (int layer = GraphicUnit.LAYER_OF_DIAMOND; layer < GraphicUnit.NUM_OF_LAYER; layer++) {
-            GraphicUnit graphicUnit = new GraphicUnit(gameObjects[layer]);
-            if (gameObjects[layer] == null && graphicUnit.getImage() == null)
-                continue;
+        if (gameObject == null || layer == GraphicUnit.LAYER_OF_FLOOR)
+            return null;
+        GraphicUnit graphicUnit = m_Pool.acquire(gameObject);
+        if (graphicUnit.getImage() == null) {
+            m_Pool.release(graphicUnit);
+            return null;
+        }
 
-            Point position = gameObjects[layer].getM_Position();
+        renderGraphic(gameObject, layer, graphicUnit);
+        layers[layer].getChildren().add(graphicUnit);
+        Debugger.debugEnd(false, "Unit rendered!");
+        return graphicUnit;
+    }
 
-            if (layer == GraphicUnit.LAYER_OF_PLAYER)
-                renderPlayerGraphic(graphicUnit, position);
-            else if (layer == GraphicUnit.LAYER_OF_CRATE)
-                renderCrateGraphic(((Crate) gameObjects[layer]), graphicUnit, position);
-            else
-                setUpGraphicLayout(graphicUnit, position, 0, 0);
+    /**
+     * Removes all graphic units from the given layer, giving them back to the pool to be reused.
+     *
+     * @param layer AnchorPane to be cleared.
+     * @see GraphicUnitPool#release(GraphicUnit)
+     */
+    public static void clearLayer(AnchorPane layer) {
+        for (Node node : layer.getChildren())
+            if (node instanceof GraphicUnit)
+                m_Pool.release((GraphicUnit) node);
+        layer.getChildren().clear();
+    }
 
-            layers[layer].getChildren().add(graphicUnit);
-        }
-        Debugger.debugEnd(false, "ALl units updated!");
+    /**
+     * Updates the existing graphic unit of the given GameObject after it is moved or its status is changed, without creating any node. <br />
+     * The sprite is reloaded for the current status and the unit is laid out again, including animations.
+     *
+     * @param gameObject  GameObject rendered by the graphic unit.
+     * @param layer       Integer specifying the layer index of the GameObject.
+     * @param graphicUnit GraphicUnit rendering the GameObject.
+     * @see GraphicUnit#updateSprite(GameObject)
+     */
+    public static void updateGraphic(GameObject gameObject, int layer, GraphicUnit graphicUnit) {
+        graphicUnit.updateSprite(gameObject);
+        renderGraphic(gameObject, layer, graphicUnit);
+    }
+
+    /**
+     * Lays out the graphic unit of the given GameObject at its position according to its layer.
+     *
+     * @param gameObject  GameObject rendered by the graphic unit.
+     * @param layer       Integer specifying the layer index of the GameObject.
+     * @param graphicUnit GraphicUnit rendering the GameObject.
+     */
+    private static void renderGraphic(GameObject gameObject, int layer, GraphicUnit graphicUnit) {
+        Point position = gameObject.getM_Position();
+
+        if (layer == GraphicUnit.LAYER_OF_PLAYER)
+            renderPlayerGraphic((Player) gameObject, graphicUnit, position);
+        else if (layer == GraphicUnit.LAYER_OF_CRATE)
+            renderCrateGraphic(((Crate) gameObject), graphicUnit, position);
+        else
+            setUpGraphicLayout(graphicUnit, position, 0, 0);
     }
 
     /**
@@ -96,7 +165,7 @@ public class GraphicUnitRenderer {
                 // stop handle player input
                 gameEngine.getM_EventManager().unsubscribe();
             });
-            KeyFrame k2 = new KeyFrame(Duration.seconds(0.8), event -> {
+            KeyFrame k2 = new KeyFrame(Duration.seconds(SEALING_ANIMATION_SECONDS), event -> {
                 crateModel.setM_CrateStatus(Crate.CrateStatus.CRATE_SEALED);
                 crateGraphic.setImage(gameEngine.getM_ResourceManager().loadSprite(crateModel.getM_CrateStatusAsString()));
                 // resume player input
@@ -120,7 +189,8 @@ public class GraphicUnitRenderer {
      * 3. If the Player is PUSHING/FLYING/IDLE, then the according graphic and music will be normally renderer. <br />
      * Note: When an animation is playing, player input handler is temporarily unsubscribed to avoid refresh off the animation.
      *
-     * @param playerGraphic Player object to be checked and rendered.
+     * @param player        Player object to be checked and rendered.
+     * @param playerGraphic The graphic of the Player object, which may be left translated or shadowed by its last rendering.
      * @param position      Point object specifying the position to be rendered on the layer.
      * @see Player
      * @see org.ziqi.model.Player.PlayerStatus
@@ -132,9 +202,12 @@ public class GraphicUnitRenderer {
      * @see EventManager#subscribe()
      * @see EventManager#unsubscribe()
      */
-    private static void renderPlayerGraphic(GraphicUnit playerGraphic, Point position) {
+    private static void renderPlayerGraphic(Player player, GraphicUnit playerGraphic, Point position) {
         GameEngine gameEngine = GameEngine.getInstance();
-        Player player = gameEngine.getM_LevelManager().getM_CurrentLevel().getM_Player();
+
+        // clear what the last rendering of this graphic left
+        playerGraphic.setTranslateY(0);
+        playerGraphic.setEffect(null);
 
         // play flying off animation
         if (player.getM_PlayerStatus() == Player.PlayerStatus.FLYING_OFF) {
@@ -146,7 +219,7 @@ public class GraphicUnitRenderer {
             // play sound effect
             gameEngine.getM_MusicManager().playFlyingOffMusic();
             TranslateTransition ttFlyingOff = new TranslateTransition();
-            GameScreen.makeTranslateTransition(ttFlyingOff, playerGraphic, 800, 0, -GraphicUnit.FLYING_OFFSET * GraphicUnit.UNIT_SIZE, 1);
+            GameScreen.makeTranslateTransition(ttFlyingOff, playerGraphic, FLYING_ANIMATION_MILLIS, 0, -GraphicUnit.FLYING_OFFSET * GraphicUnit.UNIT_SIZE, 1);
             ttFlyingOff.setOnFinished(e -> {
                 player.setM_PlayerStatus(Player.PlayerStatus.FLYING);
                 playerGraphic.setImage(gameEngine.getM_ResourceManager().loadSprite(player.getM_PlayerStatusAsString() + "_" + player.getM_PlayerDirectionAsString()));
@@ -159,7 +232,7 @@ public class GraphicUnitRenderer {
             gameEngine.getM_EventManager().unsubscribe();
             setUpGraphicLayout(playerGraphic, position, -GraphicUnit.FLYING_OFFSET, 0);
             TranslateTransition ttFlyingOff = new TranslateTransition();
-            GameScreen.makeTranslateTransition(ttFlyingOff, playerGraphic, 800, 0, GraphicUnit.FLYING_OFFSET * GraphicUnit.UNIT_SIZE, 1);
+            GameScreen.makeTranslateTransition(ttFlyingOff, playerGraphic, FLYING_ANIMATION_MILLIS, 0, GraphicUnit.FLYING_OFFSET * GraphicUnit.UNIT_SIZE, 1);
             // drop flying shadow
             addDropShadow(playerGraphic);
             // play sound effect
@@ -198,10 +271,21 @@ public class GraphicUnitRenderer {
      * Adds shadow effect on player graphic when player is flying.
      *
      * @param imageView The Player graphic to be added.
+     * @see #makeFlyingShadow()
+     */
+    private static void addDropShadow(ImageView imageView) {
+        imageView.setEffect(makeFlyingShadow());
+    }
+
+    /**
+     * Makes the shadow effect dropped by flying player, which is shared by the node renderer and the canvas renderer.
+     *
+     * @return A new DropShadow is returned to caller.
      * @see DropShadow
      * @see javafx.scene.effect.Effect
+     * @see CanvasLevelRenderer
      */
-    private static void addDropShadow(ImageView imageView) {
+    static DropShadow makeFlyingShadow() {
         DropShadow dropShadow = new DropShadow();
 
         //setting the type of blur for the shadow
@@ -217,7 +301,6 @@ public class GraphicUnitRenderer {
         dropShadow.setOffsetX(0);
         dropShadow.setOffsetY(14);
 
-        //Applying shadow effect to the text
-        imageView.setEffect(dropShadow);
+        return dropShadow;
     }
 }
@@ -1,6 +1,7 @@
 package org.ziqi.gameEngine.base;
 
 import org.ziqi.gameEngine.manager.GameManager;
+import org.ziqi.model.Direction;
 
 import java.awt.*;
 
@@ -53,10 +54,10 @@ public abstract class GameObject {
     /**
      * Abstract method to be implemented by its children to check if the one GameObject can move to a certain given direction, if so, move the object.
      *
-     * @param direction A Point object specifying the direction vector the GameObject to be moved to.
+     * @param direction Direction specifying the direction the GameObject to be moved to.
      * @return          If the GameObject can move, the method move the GameObject and true value is returned; Otherwise, false is returned.
-     * @see org.ziqi.model.Player#move(Point) 
-     * @see org.ziqi.model.Crate#move(Point)
+     * @see org.ziqi.model.Player#move(Direction)
+     * @see org.ziqi.model.Crate#move(Direction)
      */
-    public abstract boolean move(Point direction);
+    public abstract boolean move(Direction direction);
 }
\ No newline at end of file
@@ -1,27 +1,38 @@
 package org.ziqi.gameEngine.manager;
 
-import com.opencsv.CSVReader;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.util.Duration;
 import org.ziqi.gameEngine.GameEngine;
 import org.ziqi.Utils;
 import org.ziqi.Debugger;
+import org.ziqi.model.Replay;
+import org.ziqi.model.RunHistory;
 import org.ziqi.model.ScoreRecord;
+import org.ziqi.model.ScoreStore;
+import org.ziqi.model.ScoreView;
+import org.ziqi.server.ScoreVerifier;
 
-import java.io.*;
-import java.util.Arrays;
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * DataManager class as game manager to take charge of recording high scores(timing and move count) of players for each levels.
- * Records will be handled by data manager to read from outside file, keep updating records and write into file.
+ * Records will be handled by data manager to read from outside file, keep updating records and write into file. <br />
+ * Each record keeps the replay of its minimum move, so that the record can be verified and played back. <br />
+ * A new record is only committed after its claim is verified by replaying it on the worker threads of ScoreVerifier,
+ * so that the JavaFX application thread is never blocked; Rejected claims are logged and never written. <br />
+ * Records are read and written by the writer thread of the score store, whose futures complete on the JavaFX application thread,
+ * so that no file is touched on it; A burst of committed records is written by one fsync. <br />
+ * Besides the records, every verified run is kept in the run history, so that each level has a full leaderboard paged by the score board.
  *
  * @author Ziqi Yang
  * @see GameManager
+ * @see ScoreVerifier
  */
 public class DataManager extends GameManager {
 
@@ -32,9 +43,9 @@ public class DataManager extends GameManager {
     private static final int MAX_TIMEOUT = 3600;
 
     /**
-     * Integer specifying the the valid move count of player in current level.
+     * Constant integer specifying the most seconds to wait for pending records to be written when the application stops.
      */
-    private int m_MoveCount;
+    private static final int FLUSH_TIMEOUT = 5;
 
     /**
      * Unformatted integer specifying the second time elapsed from last reset/start.
@@ -53,19 +64,39 @@ public class DataManager extends GameManager {
     private final SimpleStringProperty m_TimeString = new SimpleStringProperty();
 
     /**
-     *  ObservableList of type ScoreRecord containing all records read from data file.
+     * ScoreStore keeping all records of data file in memory, indexed by set name and level name.
      */
-    private ObservableList<ScoreRecord> m_ScoreRecords;
+    private final ScoreStore m_ScoreStore = new ScoreStore(new File(System.getProperty("user.dir") + "/data/ScoreBoard.csv"), Platform::runLater);
+
+    /**
+     * RunHistory keeping every verified run of every level, ranked by time and by moves.
+     */
+    private final RunHistory m_RunHistory = new RunHistory(new File(System.getProperty("user.dir") + "/data/Runs.csv"), Platform::runLater);
+
+    /**
+     * String value specifying the name the player last submitted a record under, which later runs are kept under.
+     */
+    private String m_LastPlayerName = ScoreRecord.ANONYMOUS;
+
+    /**
+     * ScoreVerifier verifying every claimed record before it is committed, leaving one processor to the JavaFX application thread.
+     */
+    private final ScoreVerifier m_ScoreVerifier = new ScoreVerifier(Runtime.getRuntime().availableProcessors() - 1);
 
     /**
      * DataManager constructor. <br />
-     * When instantiating the DataManager object, a timeline is played to keep track of time elapsed during playing the game.
+     * When instantiating the DataManager object, a timeline is played to keep track of time elapsed during playing the game,
+     * and the records and runs start to be read in background.
      *
      * @see DataManager#startTimer()
+     * @see DataManager#reloadScoreRecords()
+     * @see DataManager#loadRunHistory()
      * @see Timeline
      */
     public DataManager() {
         startTimer();
+        reloadScoreRecords();
+        loadRunHistory();
     }
 
     /**
@@ -90,35 +121,6 @@ public class DataManager extends GameManager {
         return m_secondTimer;
     }
 
-    /**
-     * Gets the integer specifying the the valid move count of player in current level.
-     *
-     * @return  The integer specifying the the valid move count of player in current level is returned to the caller.
-     */
-    public int getM_MoveCount() {
-        return m_MoveCount;
-    }
-
-    /**
-     * Increments the move count by given value. <br />
-     * When player is grounded, move count increment by 1 for every valid move; <br />
-     * When player is flying, move count increment by 2 for every valid move.
-     *
-     * @param  increment  Integer specifying the value to increment on move count.
-     * @see    org.ziqi.model.Player
-     */
-    public void incrementMoveCount(int increment) {
-        this.m_MoveCount += increment;
-    }
-
-    /**
-     * Resets the move count integer to zero. <br />
-     * This method is called when user intends to restart the level or a new level begins.
-     */
-    public void resetMoveCount() {
-        this.m_MoveCount = 0;
-    }
-
     /**
      * Resets the second time integer to zero. <br />
      * This method is called when user intends to restart the level or a new level begins.
@@ -146,102 +148,209 @@ public class DataManager extends GameManager {
     }
 
     /**
-     * Reads all permanent high-score records from record file into a list of records. <br />
-     * This method is called when the score board screen or pop up screen is displayed.
+     * Gets all permanent high-score records in memory, and reads record file again in background if it is changed by anyone else. <br />
+     * This method is called when the score board screen is displayed, whose table binds to the returned view and follows the reading.
      *
-     * @return  An ObservableList of type ScoreBoard containing all permanent high-score records is returned to caller.
-     * @see     ScoreRecord
+     * @return  A ScoreView of all permanent high-score records in the order and under the filter asked for by the table is returned to caller;
+     *          Empty until the file is read.
+     * @see     ScoreStore#getM_View()
      * @see     org.ziqi.control.screenController.ScoreBoardScreenController
      */
-    public ObservableList<ScoreRecord> readScoreRecords() {
-        m_ScoreRecords = FXCollections.observableArrayList();
-        InputStream recordFilePath;
+    public ScoreView getScoreRecords() {
+        reloadScoreRecords();
+        return m_ScoreStore.getM_View();
+    }
+
+    /**
+     * Reads record file in background if it is not read yet or changed by anyone else, replacing the records in memory once it is read.
+     * Failures are logged.
+     *
+     * @see ScoreStore#reloadIfChanged()
+     */
+    private void reloadScoreRecords() {
+        m_ScoreStore.reloadIfChanged().exceptionally(error -> {
+            m_Logger.severe("Cannot read score records: " + error.getMessage());
+            return false;
+        });
+    }
+
+    /**
+     * Reads runs file in background, replacing the runs in memory once it is read. Failures are logged.
+     *
+     * @see RunHistory#load()
+     */
+    private void loadRunHistory() {
+        m_RunHistory.load().exceptionally(error -> {
+            m_Logger.severe("Cannot read runs: " + error.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Gets the run history keeping every verified run of every level, to be paged by the score board.
+     *
+     * @return  RunHistory of all levels is returned to caller.
+     * @see     RunHistory#getRuns(String, String, RunHistory.Order, int, int)
+     */
+    public RunHistory getM_RunHistory() {
+        return m_RunHistory;
+    }
+
+    /**
+     * Gets the name the player last submitted a record under.
+     *
+     * @return  A string specifying the player name is returned to caller; ANONYMOUS if no record is submitted yet.
+     */
+    public String getM_LastPlayerName() {
+        return m_LastPlayerName;
+    }
+
+    /**
+     * Waits for all committed records and runs to be written into record file and runs file, for at most FLUSH_TIMEOUT seconds. <br />
+     * This method is called when the application stops, as the writer threads do not keep it alive.
+     *
+     * @see ScoreStore#flush()
+     * @see RunHistory#flush()
+     */
+    public void flushScoreRecords() {
         try {
-            File file = new File(System.getProperty("user.dir") + "/data/ScoreBoard.csv");
-            recordFilePath = new FileInputStream(file);
-            // Read existing file
-            CSVReader reader = new CSVReader(new InputStreamReader(recordFilePath));
-            for (String[] fields : reader) {
-                ScoreRecord record = new ScoreRecord(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]);
-                m_ScoreRecords.add(record);
-            }
-        } catch (FileNotFoundException e) {
-            File directory = new File(System.getProperty("user.dir") + "/data");
-            directory.mkdirs();
+            CompletableFuture.allOf(m_ScoreStore.flush(), m_RunHistory.flush()).get(FLUSH_TIMEOUT, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            m_Logger.severe("Cannot flush score records: " + e);
         }
-        return m_ScoreRecords;
     }
 
     /**
-     * Finds and gets the high score record of current level from m_ScoreRecords observableList. <br />
-     * If no record exists for this level, then create an empty record and add it to the m_ScoreRecords observableList. <br />
-     * The new create empty record has value -1 as time and move count and "anonymous" as player name.
+     * Finds and gets the high score record of current level from the score store by its index, without waiting for record file. <br />
+     * If no record exists for this level, an empty record is returned without being added to the store. <br />
+     * The new create empty record has NO_SCORE as time and move count and ANONYMOUS as player name.
      *
      * @return  A ScoreRecord object either found from high score records or new-created is return to caller.
      * @see     ScoreRecord
-     * @see     DataManager#m_ScoreRecords
+     * @see     ScoreStore#find(String, String)
      */
     public ScoreRecord getTopRecord() {
         String currentSetName = GameEngine.getInstance().getM_LevelManager().getM_CurrentSetName();
         String currentLevelName = GameEngine.getInstance().getM_LevelManager().getM_CurrentLevel().getM_LevelName();
+        ScoreRecord record = m_ScoreStore.find(currentSetName, currentLevelName);
+        return record != null ? record : new ScoreRecord(currentSetName, currentLevelName);
+    }
 
-        // get current top record from list
-        for (ScoreRecord currentRecord : m_ScoreRecords) {
-            if (currentRecord.getM_SetName().equals(currentSetName) && currentRecord.getM_LevelName().equals(currentLevelName))
-                return currentRecord;
-        }
-        // if no record for this level, then create one to list
-        ScoreRecord newRecord = new ScoreRecord(currentSetName, currentLevelName, "-1", "anonymous", "-1", "anonymous");
-        m_ScoreRecords.add(newRecord);
-        return newRecord;
+    /**
+     * Submits the play of current level as a claimed record, to be verified by replaying it on a worker thread. <br />
+     * Once verified and the records are read, and the runs are read or failed to be, the claim is committed on the JavaFX application thread
+     * by commitRecord(), which compares it with the records again, as other claims of the same level may be committed in between.
+     * This method never blocks.
+     *
+     * @param  playerTime  Integer specifying the time of the play in seconds.
+     * @param  playerMove  Integer specifying the move count of the play.
+     * @param  playerName  String value specifying player's name got from input, which is remembered for the later runs.
+     * @param  replay      String value specifying the replay of the play; Null if the play is too long to be replayed, which is then rejected.
+     * @return  A CompletableFuture completed on the JavaFX application thread is returned to caller, with the verdict once a rejected claim
+     *          is logged or a valid one is committed and written; It completes exceptionally if the claim cannot be verified or written.
+     * @see     ScoreVerifier#submit(ScoreVerifier.Claim)
+     * @see     DataManager#commitRecord(ScoreVerifier.Claim, long, Replay.Verdict, Throwable)
+     */
+    public CompletableFuture<Replay.Verdict> submitRecord(int playerTime, int playerMove, String playerName, String replay) {
+        ScoreVerifier.Claim claim = new ScoreVerifier.Claim(GameEngine.getInstance().getM_LevelManager().getM_CurrentSetName(),
+                GameEngine.getInstance().getM_LevelManager().getM_CurrentLevel().getM_LevelName(), playerName, playerTime, playerMove, replay);
+        long finishedAt = System.currentTimeMillis();
+        m_LastPlayerName = playerName;
+        return m_ScoreVerifier.submit(claim)
+                // runs that cannot be read only stop runs from being written, which writeRun() logs
+                .thenCombine(CompletableFuture.allOf(m_ScoreStore.getM_Loaded(), m_RunHistory.getM_Loaded().handle((loaded, error) -> null)),
+                        (verdict, loaded) -> verdict)
+                .handleAsync((verdict, error) -> commitRecord(claim, finishedAt, verdict, error), Platform::runLater)
+                .thenCompose(written -> written);
     }
 
     /**
-     * Compares and updates the fields of given ScoreRecord object by given parameters. <br />
-     * After updating the ScoreRecord object, this method calls writeAllScoreRecords() to write new records into data file.
+     * Commits a verified claim as a run of its level into the run history, and into the record of its level if it breaks the fastest time
+     * or minimum move, writing the run into runs file and the record into data file. <br />
+     * The replay is kept with the minimum move. A rejected claim is only logged.
      *
-     * @param  fastestTime  Integer specifying current fastest time record of current level.
-     *                       If this value is equal to value of given scoreRecord, then no need to update this record.
-     * @param  minimumMove  Integer specifying current minimum move record of current level.
-     *                       If this value is equal to value of given scoreRecord, then no need to update this record.
-     * @param  playerName   String value specifying player's name got from input.
-     * @param  scoreRecord  ScoreRecord object to be updated by above parameters.
-     * @see    DataManager#writeAllScoreRecords()
-     * @see    ScoreRecord
-     * @see    DataManager#m_ScoreRecords
+     * @param  claim       ScoreVerifier.Claim that was verified.
+     * @param  finishedAt  Long integer specifying the time the claim was submitted, in milliseconds since the epoch.
+     * @param  verdict     Verdict of the claim; Null if verifying failed.
+     * @param  error       Throwable thrown by verifying or reading the records; Null if they succeeded.
+     * @return  A CompletableFuture completed with the verdict once the run and the record are written, or at once if nothing is written, is returned to caller;
+     *          It completes exceptionally with the error, or if the record cannot be written.
+     * @see    DataManager#writeRun(ScoreVerifier.Claim, long)
+     * @see    DataManager#writeScoreRecord(ScoreRecord)
      */
-    public void updateRecord(int fastestTime, int minimumMove, String playerName, ScoreRecord scoreRecord) {
-        if (fastestTime != Integer.parseInt(scoreRecord.getM_FastestTime())) {
-            scoreRecord.setM_FastestTime(String.valueOf(fastestTime));
-            scoreRecord.setM_PlayerOfFT(playerName);
+    private CompletableFuture<Replay.Verdict> commitRecord(ScoreVerifier.Claim claim, long finishedAt, Replay.Verdict verdict, Throwable error) {
+        if (error != null || verdict != Replay.Verdict.VALID) {
+            m_Logger.warning("Rejected record claim " + claim + ": " + (error != null ? error.getMessage() : verdict.name()));
+            if (error == null)
+                return CompletableFuture.completedFuture(verdict);
+            CompletableFuture<Replay.Verdict> failed = new CompletableFuture<>();
+            failed.completeExceptionally(error);
+            return failed;
         }
-        if (minimumMove != Integer.parseInt(scoreRecord.getM_MinimumMove())) {
-            scoreRecord.setM_MinimumMove(String.valueOf(minimumMove));
-            scoreRecord.setM_PlayerOfMM(playerName);
+
+        CompletableFuture<Void> runWritten = writeRun(claim, finishedAt);
+        ScoreRecord scoreRecord = m_ScoreStore.find(claim.getM_SetName(), claim.getM_LevelName());
+        if (scoreRecord == null)
+            scoreRecord = m_ScoreStore.add(claim.getM_SetName(), claim.getM_LevelName());
+        boolean broken = false;
+        int fastestTime = scoreRecord.getM_FastestTime();
+        if (claim.getM_Seconds() < fastestTime || fastestTime == ScoreRecord.NO_SCORE) {
+            scoreRecord.setM_FastestTime(claim.getM_Seconds());
+            scoreRecord.setM_PlayerOfFT(claim.getM_PlayerName());
+            broken = true;
         }
-        writeAllScoreRecords();
+        int minimumMove = scoreRecord.getM_MinimumMove();
+        if (claim.getM_Moves() < minimumMove || minimumMove == ScoreRecord.NO_SCORE) {
+            scoreRecord.setM_MinimumMove(claim.getM_Moves());
+            scoreRecord.setM_PlayerOfMM(claim.getM_PlayerName());
+            scoreRecord.setM_Replay(claim.getM_Replay());
+            broken = true;
+        }
+        // a better claim of the level may be committed since this one was submitted
+        if (!broken)
+            return runWritten.thenApply(written -> verdict);
+        return writeScoreRecord(scoreRecord).thenCombine(runWritten, (written, runWrittenToo) -> verdict);
     }
 
     /**
-     * Writes all score records contained in ObservableList<ScoreRecord> m_ScoreRecords into data file permanently. <br />
-     * This method is called when any record is updated from m_ScoreRecords.
+     * Writes a verified claim as a run of its level into runs file permanently, by adding it to the run history. <br />
+     * This method is called when any verified claim is committed, whether or not it breaks a record. <br />
+     * Failures are logged and never fail the record of the claim: if the runs file cannot be read, the run is not written at all.
      *
-     * @see  ScoreRecord
-     * @see  DataManager#m_ScoreRecords
-     * @see  DataManager#updateRecord(int, int, String, ScoreRecord) 
+     * @param  claim       ScoreVerifier.Claim that was verified.
+     * @param  finishedAt  Long integer specifying the time the claim was submitted, in milliseconds since the epoch.
+     * @return  A CompletableFuture completed on the JavaFX application thread once the run is forced onto the disk or cannot be written
+     *          is returned to caller; It completes at once if the run is not written.
+     * @see    RunHistory#add(String, String, String, int, int, long, String)
      */
-    private void writeAllScoreRecords() {
-        FileWriter writer;
-        try {
-            writer = new FileWriter(System.getProperty("user.dir") + "/data/ScoreBoard.csv", false);
-            Debugger.debugBegin(false, "New board contains items of " + m_ScoreRecords.size());
-            for (ScoreRecord record : m_ScoreRecords) {
-                writer.write(record.toCSVFormat() + "\n");
-                writer.flush();
-            }
-        } catch (IOException e) {
-            m_Logger.severe(Arrays.toString(e.getStackTrace()));
+    private CompletableFuture<Void> writeRun(ScoreVerifier.Claim claim, long finishedAt) {
+        if (m_RunHistory.getM_Loaded().isCompletedExceptionally()) {
+            m_Logger.severe("Cannot write run " + claim + ": runs cannot be read");
+            return CompletableFuture.completedFuture(null);
         }
+        return m_RunHistory.add(claim.getM_SetName(), claim.getM_LevelName(), claim.getM_PlayerName(), claim.getM_Seconds(), claim.getM_Moves(),
+                finishedAt, claim.getM_Replay()).handle((written, error) -> {
+            if (error != null)
+                m_Logger.severe("Cannot write run " + claim + ": " + error.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Writes a score record of the score store into data file permanently, by appending it to the journal of the store. <br />
+     * This method is called when any verified record is committed into the score store; Failures are logged.
+     *
+     * @param  scoreRecord  ScoreRecord added or updated.
+     * @return  A CompletableFuture completed on the JavaFX application thread once the record is forced onto the disk is returned to caller.
+     * @see    ScoreStore#commit(ScoreRecord)
+     * @see    DataManager#commitRecord(ScoreVerifier.Claim, long, Replay.Verdict, Throwable)
+     */
+    private CompletableFuture<Void> writeScoreRecord(ScoreRecord scoreRecord) {
+        Debugger.debugBegin(false, "New board contains items of " + m_ScoreStore.size());
+        return m_ScoreStore.commit(scoreRecord).whenComplete((written, error) -> {
+            if (error != null)
+                m_Logger.severe("Cannot write score record " + scoreRecord.toCSVFormat() + ": " + error.getMessage());
+        });
     }
 
     /**
@@ -249,7 +358,6 @@ public class DataManager extends GameManager {
      * If the time is greater than or equals to the MAX_TIMEOUT, then the time string won't be updated.
      *
      * @see  DataManager#m_TimeString
-     * @see  DataManager#m_ScoreRecords
      * @see  DataManager#MAX_TIMEOUT
      * @see  Utils#getTimeString(long)
      */
@@ -4,12 +4,16 @@ import org.ziqi.gameEngine.GameEngine;
 import org.ziqi.Debugger;
 import org.ziqi.Utils;
 import org.ziqi.model.Level;
+import org.ziqi.model.LevelSetReader;
+import org.ziqi.solver.Solver;
+import org.ziqi.solver.SolverResult;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * LevelManager class as game manager to take charge of loading, arranging levels and sets of levels for user to choose and play.
@@ -18,6 +22,37 @@ import java.util.*;
  * @see GameManager
  */
 public class LevelManager extends GameManager {
+    /**
+     * Constant integer returned as par when the par of a level is not known (yet).
+     */
+    public static final int UNKNOWN_PAR = -1;
+
+    /**
+     * Constant long integer specifying the time limit in milliseconds of solving a level for its par.
+     */
+    private static final long PAR_TIME_LIMIT_MILLIS = 5_000;
+
+    /**
+     * Constant long integer specifying the memory limit in bytes of solving a level for its par.
+     */
+    private static final long PAR_MEMORY_LIMIT_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Map of pars (optimal move counts found by Solver) keyed by set name and level name.
+     *
+     * @see #getPar(String, String)
+     */
+    private final Map<String, Integer> m_Pars = new ConcurrentHashMap<>();
+
+    /**
+     * Single background thread solving levels for their pars, so that the UI thread is never blocked by the Solver.
+     */
+    private final ExecutorService m_ParSolver = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ParSolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Set as List of levels specifying the current set the user is playing.
      */
@@ -42,6 +77,13 @@ public class LevelManager extends GameManager {
      */
     private int m_CurrentLevelIndex = 0;
 
+    /**
+     * Boolean value specifying if pushes dooming the level are refused with a warning, which is applied to the sessions of all levels of the current set.
+     *
+     * @see org.ziqi.model.GameSession#setM_WarnOnDeadPush(boolean)
+     */
+    private boolean m_WarnOnDeadPush = false;
+
 
     /**
      * Gets the the name of current set the user is playing.
@@ -80,6 +122,27 @@ public class LevelManager extends GameManager {
     }
 
 
+    /**
+     * Gets if pushes dooming the level are refused with a warning.
+     *
+     * @return True is returned if the warn on dead push mode is on; Otherwise, false is returned.
+     */
+    public boolean getM_WarnOnDeadPush() {
+        return m_WarnOnDeadPush;
+    }
+
+    /**
+     * Sets if pushes dooming the level are refused with a warning.
+     *
+     * @param m_WarnOnDeadPush Boolean value specifying if the warn on dead push mode is on.
+     */
+    public void setM_WarnOnDeadPush(boolean m_WarnOnDeadPush) {
+        this.m_WarnOnDeadPush = m_WarnOnDeadPush;
+        if (m_CurrentSet != null)
+            for (Level level : m_CurrentSet)
+                level.getM_Session().setM_WarnOnDeadPush(m_WarnOnDeadPush);
+    }
+
     /**
      * Loads, decodes and saves all levels of a given set inputStream from resource file. <br />
      * When a level is down decoding, a new level object is instantiated and add to set list. <br />
@@ -88,6 +151,7 @@ public class LevelManager extends GameManager {
      * @param  input    InputStream specifying the input as set of levels to read from.
      * @param  setName  String value specifying the name of set to be loaded.
      * @see Level
+     * @see LevelSetReader#read(InputStream)
      * @see LevelManager#m_CurrentSet
      * @see org.ziqi.control.screenController.LevelSetScreenController
      * @see org.ziqi.control.screenController.StartScreenController
@@ -97,44 +161,11 @@ public class LevelManager extends GameManager {
         m_CurrentSetName = setName;
         m_CurrentLevelIndex = 0;
         int levelIndex = 0;
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
-            List<String> rawLevel = new ArrayList<>();
-            String levelName = "";
-            boolean parsedFirstLevel = false;
-
-            while (true) {
-                String line = reader.readLine();
-
-                // Break the loop if EOF is reached
-                if (line == null) {
-                    if (rawLevel.size() != 0) {
-                        Debugger.debugBegin(false, "Parsing level from raw file..");
-                        Level parsedLevel = new Level(levelName, ++levelIndex, rawLevel);
-                        m_CurrentSet.add(parsedLevel);
-                        Debugger.debugEnd(false, "Parse done!" + m_CurrentSet.size());
-                    }
-                    break;
-                }
-
-                // load LevelName
-                if (line.contains("LevelName")) {
-                    if (parsedFirstLevel) {
-                        Level parsedLevel = new Level(levelName, ++levelIndex, rawLevel);
-                        m_CurrentSet.add(parsedLevel);
-                        rawLevel = new ArrayList<>();
-                    } else {
-                        parsedFirstLevel = true;
-                    }
-                    levelName = line.replace("LevelName: ", "");
-                    continue;
-                }
-
-                // load map of current level
-                line = line.trim().toUpperCase();
-                // if the line begins with '='. then read as level
-                if (line.matches("=.*"))
-                    rawLevel.add(line.substring(1));
-                Debugger.debugBegin(false, line);
+        try {
+            for (LevelSetReader.RawLevel rawLevel : LevelSetReader.read(input)) {
+                Debugger.debugBegin(false, "Parsing level from raw file..");
+                m_CurrentSet.add(new Level(rawLevel.getM_LevelName(), ++levelIndex, new ArrayList<>(rawLevel.getM_Lines())));
+                Debugger.debugEnd(false, "Parse done!" + m_CurrentSet.size());
             }
         } catch (IOException e) {
             m_Logger.severe("Error trying to load the game file: ");
@@ -142,6 +173,53 @@ public class LevelManager extends GameManager {
         } catch (NullPointerException e) {
             m_Logger.severe("Cannot open the requested file: " + e);
         }
+
+        for (Level level : m_CurrentSet) {
+            level.getM_Session().setM_WarnOnDeadPush(m_WarnOnDeadPush);
+            requestPar(setName, level);
+        }
+    }
+
+    /**
+     * Requests the par of given level to be solved in background if it is not solved before. <br />
+     * The par is only recorded when Solver proves the optimal move count within the limits.
+     *
+     * @param setName String value specifying the set name of the level.
+     * @param level   Level to be solved.
+     * @see Solver
+     */
+    private void requestPar(String setName, Level level) {
+        String key = getParKey(setName, level.getM_LevelName());
+        if (m_Pars.containsKey(key))
+            return;
+        m_ParSolver.execute(() -> {
+            SolverResult result = new Solver(Solver.Algorithm.A_STAR, 1, PAR_TIME_LIMIT_MILLIS, PAR_MEMORY_LIMIT_BYTES).solve(level.getM_InitialState());
+            m_Pars.put(key, result.isSolved() ? result.getM_Moves() : UNKNOWN_PAR);
+            if (!result.isSolved())
+                m_Logger.info("No par for " + key + ": " + result);
+        });
+    }
+
+    /**
+     * Gets the par of given level, which is the optimal move count found by Solver.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return Integer specifying the par is returned; UNKNOWN_PAR if it is not solved (yet).
+     */
+    public int getPar(String setName, String levelName) {
+        return m_Pars.getOrDefault(getParKey(setName, levelName), UNKNOWN_PAR);
+    }
+
+    /**
+     * Gets the key of given level in the par map.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return String value specifying the key is returned.
+     */
+    private static String getParKey(String setName, String levelName) {
+        return setName + "/" + levelName;
     }
 
     /**
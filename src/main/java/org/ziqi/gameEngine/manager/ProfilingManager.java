@@ -0,0 +1,286 @@
+package org.ziqi.gameEngine.manager;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.scene.Scene;
+import javafx.util.Duration;
+import org.ziqi.gameEngine.GameEngine;
+import org.ziqi.model.Level;
+import org.ziqi.server.LatencyHistogram;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ProfilingManager class as game manager to take charge of timing how long a key press takes to show up on gaming screen. <br />
+ * Each stage of handling a key press is recorded into a latency histogram of the level being played, from PlayerController
+ * handling the input to the next pulse of the scene. <br />
+ * The histograms of current level are shown on a debug overlay of gaming screen, and the histograms of all levels are dumped
+ * periodically into the logs directory. All histograms are only accessed by the JavaFX application thread, which formats a dump
+ * and hands it over to a background thread to be written, so that a slow disk never stalls a frame.
+ *
+ * @author Ziqi Yang
+ * @see GameManager
+ * @see LatencyHistogram
+ * @see org.ziqi.control.PlayerController
+ */
+public class ProfilingManager extends GameManager {
+
+    /**
+     * LatencyStage enumeration defines all timed stages of handling a key press.
+     */
+    public enum LatencyStage {
+        HANDLE,
+        MOVE,
+        LEVEL_COMPLETE,
+        UPDATE_SCREEN,
+        INPUT_TO_PULSE
+    }
+
+    /**
+     * Constant integer specifying the seconds between refreshes of the overlay text.
+     */
+    private static final int OVERLAY_PERIOD = 1;
+
+    /**
+     * Constant integer specifying the seconds between dumps of all histograms into the logs directory.
+     */
+    private static final int DUMP_PERIOD = 60;
+
+    /**
+     * Constant string specifying the name of file the histograms are dumped into, which is overwritten by every dump.
+     */
+    private static final String DUMP_FILE_NAME = "Latency.log";
+
+    /**
+     * Map of histograms of every stage keyed by set name and level name, in the order levels are first played.
+     */
+    private final Map<String, LatencyHistogram[]> m_Histograms = new LinkedHashMap<>();
+
+    /**
+     * Formatted SimpleStringProperty showing the histograms of current level on the overlay.
+     */
+    private final SimpleStringProperty m_OverlayText = new SimpleStringProperty("");
+
+    /**
+     * SimpleBooleanProperty specifying if the overlay is shown.
+     */
+    private final SimpleBooleanProperty m_OverlayShown = new SimpleBooleanProperty(false);
+
+    /**
+     * Level whose histograms are being recorded into; Null if no key press is handled yet.
+     */
+    private Level m_Level;
+
+    /**
+     * Histograms of every stage of the level being recorded.
+     */
+    private LatencyHistogram[] m_LevelHistograms;
+
+    /**
+     * Long integer specifying the nano time the last key press began to be handled, until the next pulse; -1 if no pulse is awaited.
+     */
+    private long m_PulseAwaitedSince = -1;
+
+    /**
+     * Histograms the awaited pulse is recorded into.
+     */
+    private LatencyHistogram[] m_PulseHistograms;
+
+    /**
+     * Scene listened to for pulses.
+     */
+    private Scene m_PulseScene;
+
+    /**
+     * Listener of pulses of the scene, recording the latency from the key press awaiting it.
+     */
+    private final Runnable m_PulseListener = this::onPulse;
+
+    /**
+     * Boolean value specifying if anything is recorded since the last dump.
+     */
+    private boolean m_Recorded;
+
+    /**
+     * Single background thread writing the dumps of histograms, so that the JavaFX application thread never waits for the logs directory.
+     */
+    private final ExecutorService m_DumpWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LatencyDumpWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * ProfilingManager constructor. <br />
+     * When instantiating the ProfilingManager object, a timeline is played to refresh the overlay and dump the histograms periodically.
+     *
+     * @see ProfilingManager#startTimer()
+     */
+    public ProfilingManager() {
+        startTimer();
+    }
+
+    /**
+     * Gets the formatted SimpleStringProperty showing the histograms of current level on the overlay.
+     *
+     * @return The SimpleStringProperty is returned to the caller.
+     */
+    public SimpleStringProperty getM_OverlayText() {
+        return m_OverlayText;
+    }
+
+    /**
+     * Gets the SimpleBooleanProperty specifying if the overlay is shown.
+     *
+     * @return The SimpleBooleanProperty is returned to the caller.
+     */
+    public SimpleBooleanProperty getM_OverlayShown() {
+        return m_OverlayShown;
+    }
+
+    /**
+     * Shows the overlay if hidden, or hides it if shown. <br />
+     * This method is called when user presses F3 on gaming screen.
+     */
+    public void toggleOverlay() {
+        m_OverlayShown.set(!m_OverlayShown.get());
+        updateOverlayText();
+    }
+
+    /**
+     * Begins timing a key press on given level, whose histograms the following stages are recorded into.
+     *
+     * @param level Level the key press is handled on.
+     * @return Long integer specifying the nano time the key press began to be handled is returned.
+     */
+    public long beginInput(Level level) {
+        if (level != m_Level) {
+            m_Level = level;
+            m_LevelHistograms = m_Histograms.computeIfAbsent(GameEngine.getInstance().getM_LevelManager().getM_CurrentSetName() + "/" + level.getM_LevelName(),
+                    key -> newHistograms());
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since given nano time as latency of given stage of the level being recorded.
+     *
+     * @param stage   LatencyStage specifying the stage timed.
+     * @param started Long integer specifying the nano time the stage began.
+     */
+    public void record(LatencyStage stage, long started) {
+        m_LevelHistograms[stage.ordinal()].record(System.nanoTime() - started);
+        m_Recorded = true;
+    }
+
+    /**
+     * Awaits the next pulse of given scene, which records the latency from the key press to the rendering of its result.
+     *
+     * @param scene        Scene showing the result of the key press.
+     * @param inputStarted Long integer specifying the nano time the key press began to be handled.
+     * @see LatencyStage#INPUT_TO_PULSE
+     */
+    public void awaitPulse(Scene scene, long inputStarted) {
+        if (scene != m_PulseScene) {
+            if (m_PulseScene != null)
+                m_PulseScene.removePostLayoutPulseListener(m_PulseListener);
+            m_PulseScene = scene;
+            if (scene != null)
+                scene.addPostLayoutPulseListener(m_PulseListener);
+        }
+        m_PulseAwaitedSince = inputStarted;
+        m_PulseHistograms = m_LevelHistograms;
+    }
+
+    /**
+     * Records the latency from the key press awaiting the pulse, if any.
+     */
+    private void onPulse() {
+        if (m_PulseAwaitedSince < 0)
+            return;
+        m_PulseHistograms[LatencyStage.INPUT_TO_PULSE.ordinal()].record(System.nanoTime() - m_PulseAwaitedSince);
+        m_PulseAwaitedSince = -1;
+    }
+
+    /**
+     * Starts to play a new timeline to refresh the overlay and dump the histograms periodically. <br />
+     * This method is called when the ProfilingManager is instantiated.
+     *
+     * @see ProfilingManager#updateOverlayText()
+     * @see ProfilingManager#dumpHistograms()
+     */
+    public void startTimer() {
+        int[] seconds = {0};
+        Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(OVERLAY_PERIOD), event -> {
+            if (m_OverlayShown.get())
+                updateOverlayText();
+            seconds[0] += OVERLAY_PERIOD;
+            if (seconds[0] % DUMP_PERIOD == 0 && m_Recorded)
+                dumpHistograms();
+        }));
+        timeline.setCycleCount(Animation.INDEFINITE);
+        timeline.play();
+    }
+
+    /**
+     * Formats the histograms of the level being recorded into the overlay text, one stage per line.
+     */
+    private void updateOverlayText() {
+        if (m_LevelHistograms == null) {
+            m_OverlayText.set("No key press timed yet");
+            return;
+        }
+        StringBuilder text = new StringBuilder(m_Level.getM_LevelName());
+        for (LatencyStage stage : LatencyStage.values()) {
+            LatencyHistogram histogram = m_LevelHistograms[stage.ordinal()];
+            text.append(String.format("%n%-15s n=%-6d p50=%7.1fus p99=%7.1fus max=%7.1fus", stage, histogram.getM_Count(),
+                    histogram.getPercentile(0.5) / 1000.0, histogram.getPercentile(0.99) / 1000.0, histogram.getM_Max() / 1000.0));
+        }
+        m_OverlayText.set(text.toString());
+    }
+
+    /**
+     * Formats the histograms of every stage of all levels played, and writes them into the dump file of the logs directory
+     * on the dump writer thread, replacing the last dump. Failures are logged.
+     *
+     * @see org.ziqi.gameEngine.Logger
+     */
+    private void dumpHistograms() {
+        StringBuilder dump = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram[]> entry : m_Histograms.entrySet())
+            for (LatencyStage stage : LatencyStage.values())
+                dump.append(entry.getKey()).append(' ').append(stage).append(' ').append(entry.getValue()[stage.ordinal()]).append('\n');
+        m_Recorded = false;
+        m_DumpWriter.execute(() -> {
+            File directory = new File(System.getProperty("user.dir") + "/logs");
+            directory.mkdirs();
+            try (FileWriter writer = new FileWriter(new File(directory, DUMP_FILE_NAME), false)) {
+                writer.write(dump.toString());
+            } catch (IOException e) {
+                m_Logger.severe(Arrays.toString(e.getStackTrace()));
+            }
+        });
+    }
+
+    /**
+     * Creates empty histograms of every stage.
+     *
+     * @return Array of histograms indexed by the ordinal of stages is returned.
+     */
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[LatencyStage.values().length];
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = new LatencyHistogram();
+        return histograms;
+    }
+}
@@ -0,0 +1,151 @@
+package org.ziqi.gameEngine.manager;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+import org.ziqi.gameEngine.GameEngine;
+import org.ziqi.model.Level;
+import org.ziqi.model.Replay;
+
+/**
+ * ReplayManager class as game manager to take charge of playing back the replay of a level on gaming screen. <br />
+ * The replay kept with the minimum move record of current level is loaded into the level, whose steps are then redone
+ * one after another by a timeline at a speed from MIN_SPEED to MAX_SPEED times. <br />
+ * While replaying, the level is not played by the user and completing it pops up nothing; Refreshing the level stops the playback.
+ *
+ * @author Ziqi Yang
+ * @see GameManager
+ * @see Level#loadReplay(String)
+ * @see Replay
+ */
+public class ReplayManager extends GameManager {
+
+    /**
+     * Constant integer specifying the milliseconds between two steps at normal speed.
+     */
+    private static final int STEP_MILLIS = 200;
+
+    /**
+     * Constant integer specifying the slowest playback speed.
+     */
+    public static final int MIN_SPEED = 1;
+
+    /**
+     * Constant integer specifying the fastest playback speed.
+     */
+    public static final int MAX_SPEED = 64;
+
+    /**
+     * Timeline redoing one step of the level every STEP_MILLIS at normal speed.
+     */
+    private final Timeline m_Timeline;
+
+    /**
+     * Level being played back; Null if no replay is played.
+     */
+    private Level m_Level;
+
+    /**
+     * Integer specifying the playback speed, a power of two between MIN_SPEED and MAX_SPEED.
+     */
+    private int m_Speed = MIN_SPEED;
+
+    /**
+     * ReplayManager constructor, creating the timeline to play back replays.
+     */
+    public ReplayManager() {
+        m_Timeline = new Timeline(new KeyFrame(Duration.millis(STEP_MILLIS), event -> step()));
+        m_Timeline.setCycleCount(Animation.INDEFINITE);
+    }
+
+    /**
+     * Gets the playback speed.
+     *
+     * @return Integer specifying how many times faster than normal the replay is played back is returned to caller.
+     */
+    public int getM_Speed() {
+        return m_Speed;
+    }
+
+    /**
+     * Checks if a replay is being played back.
+     *
+     * @return True is returned if a replay is played; Otherwise, false is returned.
+     */
+    public boolean isPlaying() {
+        return m_Level != null;
+    }
+
+    /**
+     * Starts to play back the replay of minimum move record of current level from its start. <br />
+     * This method is called when user presses P on gaming screen.
+     *
+     * @return True is returned if the playback is started; False is returned if no replay of the level is recorded or it cannot be played.
+     * @see DataManager#getTopRecord()
+     * @see Level#loadReplay(String)
+     */
+    public boolean play() {
+        GameEngine gameEngine = GameEngine.getInstance();
+        String replay = gameEngine.getM_DataManager().getTopRecord().getM_Replay();
+        Level level = gameEngine.getM_LevelManager().getM_CurrentLevel();
+        stop();
+        if (replay.isEmpty() || !level.loadReplay(replay)) {
+            m_Logger.info("No replay to play back for level " + level.getM_LevelName());
+            return false;
+        }
+        m_Level = level;
+        m_Timeline.setRate(m_Speed);
+        m_Timeline.play();
+        return true;
+    }
+
+    /**
+     * Stops playing back, leaving the level in the state the playback stops at until it is refreshed.
+     */
+    public void stop() {
+        m_Timeline.stop();
+        m_Level = null;
+    }
+
+    /**
+     * Doubles the playback speed up to MAX_SPEED. <br />
+     * This method is called when user presses PLUS or EQUALS on gaming screen.
+     */
+    public void faster() {
+        setSpeed(Math.min(m_Speed * 2, MAX_SPEED));
+    }
+
+    /**
+     * Halves the playback speed down to MIN_SPEED. <br />
+     * This method is called when user presses MINUS on gaming screen.
+     */
+    public void slower() {
+        setSpeed(Math.max(m_Speed / 2, MIN_SPEED));
+    }
+
+    /**
+     * Sets the playback speed, which takes effect at once.
+     *
+     * @param speed Integer specifying the new playback speed.
+     */
+    private void setSpeed(int speed) {
+        m_Speed = speed;
+        m_Timeline.setRate(speed);
+    }
+
+    /**
+     * Redoes the next step of the level and updates gaming screen, stopping when the replay ends or the level is refreshed.
+     *
+     * @see Level#redo()
+     * @see GameEngine#updateGamingScreen()
+     */
+    private void step() {
+        if (m_Level == null || !m_Level.isReplaying() || m_Level != GameEngine.getInstance().getM_LevelManager().getM_CurrentLevel()
+                || !m_Level.redo()) {
+            stop();
+            return;
+        }
+        GameEngine.getInstance().updateGamingScreen();
+    }
+}
@@ -1,13 +1,20 @@
 package org.ziqi.gameEngine.manager;
 
+import javafx.geometry.Rectangle2D;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.effect.ColorAdjust;
 import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
 import javafx.scene.media.Media;
+import javafx.scene.paint.Color;
 import org.ziqi.Utils;
 import org.ziqi.gameEngine.GameEngine;
 import org.ziqi.model.Crate;
 import org.ziqi.model.Diamond;
 import org.ziqi.model.Player;
 import org.ziqi.model.Wall;
+import org.ziqi.view.GraphicUnit;
 
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -21,6 +28,11 @@ import java.util.HashMap;
  * @see GameManager
  */
 public class ResourceManager extends GameManager {
+    /**
+     * Constant integer specifying the transparent gap in pixels between sprites packed in the sprite atlas, so that scaled sprites do not bleed into each other.
+     */
+    private static final int ATLAS_PADDING = 1;
+
     /**
      * HashMap containing all sprites for gaming screen to render graphicUnits according to gameObjects.
      *
@@ -44,6 +56,27 @@ public class ResourceManager extends GameManager {
      */
     private final HashMap<String, Image> m_Images = new HashMap<>();
 
+    /**
+     * HashMap containing wall sprites tinted by the hue of a set, keyed by tinted sprite names, which are built once on first use.
+     *
+     * @see #getTintedSpriteName(String, double)
+     */
+    private final HashMap<String, Image> m_TintedSprites = new HashMap<>();
+
+    /**
+     * HashMap containing the viewports of sprites packed in the sprite atlas, keyed by tinted sprite names.
+     *
+     * @see #getTintedSpriteName(String, double)
+     */
+    private final HashMap<String, Rectangle2D> m_AtlasViewports = new HashMap<>();
+
+    /**
+     * Image packing the wall sprites tinted by the hue of every set, so that all walls are rendered from one texture without any effect.
+     *
+     * @see #packSpriteAtlas()
+     */
+    private WritableImage m_SpriteAtlas;
+
     /**
      * ResourceManager constructor loads and stores all medias, sprites and background images from resource folder when the GameEngine is launched. <br />
      * This will enhance runtime performance when load game levels and switch screens as resources are hold by ResourceManager beforehand.
@@ -56,6 +89,7 @@ public class ResourceManager extends GameManager {
         loadMediaFromResource(m_Medias);
         loadSpritesFromResource(m_Sprites);
         loadImagesFromResource(m_Images);
+        packSpriteAtlas();
     }
 
     /**
@@ -108,6 +142,61 @@ public class ResourceManager extends GameManager {
         return m_Sprites.get(spriteName);
     }
 
+    /**
+     * Gets a wall sprite tinted by given hue, which is built once on first use and then cached by its sprite name and hue. <br />
+     * The tinted sprite looks as the original one under a ColorAdjust effect of the same hue, which is then no longer needed on every wall.
+     *
+     * @param spriteName String value specifying the sprite name.
+     * @param hue        Double value specifying the hue value to adjust on original color.
+     * @return The tinted sprite image is returned; If no sprite matches, null is returned.
+     * @see GraphicUnit#getM_WallColorHue()
+     * @see #getTintedSpriteName(String, double)
+     */
+    public Image loadTintedSprite(String spriteName, double hue) {
+        String tintedSpriteName = getTintedSpriteName(spriteName, hue);
+        Image tintedSprite = m_TintedSprites.get(tintedSpriteName);
+        if (tintedSprite == null) {
+            Image sprite = m_Sprites.get(spriteName);
+            if (sprite == null)
+                return null;
+            tintedSprite = tintSprite(sprite, hue);
+            m_TintedSprites.put(tintedSpriteName, tintedSprite);
+        }
+        return tintedSprite;
+    }
+
+    /**
+     * Gets the sprite atlas packing the wall sprites tinted by the hue of every set.
+     *
+     * @return The sprite atlas image is returned to caller.
+     * @see #getAtlasViewport(String)
+     */
+    public Image getM_SpriteAtlas() {
+        return m_SpriteAtlas;
+    }
+
+    /**
+     * Gets the viewport of a tinted sprite packed in the sprite atlas.
+     *
+     * @param tintedSpriteName String value specifying the tinted sprite name.
+     * @return Rectangle2D specifying the region of the sprite in the atlas is returned; If the sprite is not packed, null is returned.
+     * @see #getTintedSpriteName(String, double)
+     */
+    public Rectangle2D getAtlasViewport(String tintedSpriteName) {
+        return m_AtlasViewports.get(tintedSpriteName);
+    }
+
+    /**
+     * Gets the name of a sprite tinted by given hue, which keys tinted sprites and their viewports in the sprite atlas.
+     *
+     * @param spriteName String value specifying the sprite name.
+     * @param hue        Double value specifying the hue value to adjust on original color.
+     * @return String value specifying the tinted sprite name is returned.
+     */
+    public static String getTintedSpriteName(String spriteName, double hue) {
+        return spriteName + "@" + hue;
+    }
+
     /**
      * Gets a media by given music name from HashMap hold by ResourceManager. <br />
      *
@@ -194,4 +283,56 @@ public class ResourceManager extends GameManager {
             images.put(imageName, image);
         }
     }
+
+    /**
+     * Packs the wall sprites tinted by the hue of every set into the sprite atlas, one row per hue, and stores their viewports. <br />
+     * This method will only be called with the launching of GameEngine. <br />
+     * Note: Animated sprites are not packed, as only one frame of them could be copied into the atlas.
+     *
+     * @see GraphicUnit#SET_HUES
+     * @see Wall#getSpriteNames()
+     */
+    private void packSpriteAtlas() {
+        ArrayList<String> spriteNames = new ArrayList<>();
+        for (Wall.WallStatus status : Wall.WallStatus.values())
+            if (m_Sprites.containsKey(status.toString()))
+                spriteNames.add(status.toString());
+
+        int slotWidth = 0;
+        int slotHeight = 0;
+        for (String spriteName : spriteNames) {
+            slotWidth = Math.max(slotWidth, (int) Math.ceil(m_Sprites.get(spriteName).getWidth()) + ATLAS_PADDING);
+            slotHeight = Math.max(slotHeight, (int) Math.ceil(m_Sprites.get(spriteName).getHeight()) + ATLAS_PADDING);
+        }
+        m_SpriteAtlas = new WritableImage(Math.max(1, slotWidth * spriteNames.size()), Math.max(1, slotHeight * GraphicUnit.SET_HUES.length));
+
+        for (int row = 0; row < GraphicUnit.SET_HUES.length; row++)
+            for (int column = 0; column < spriteNames.size(); column++) {
+                Image tintedSprite = loadTintedSprite(spriteNames.get(column), GraphicUnit.SET_HUES[row]);
+                int width = (int) tintedSprite.getWidth();
+                int height = (int) tintedSprite.getHeight();
+                m_SpriteAtlas.getPixelWriter().setPixels(column * slotWidth, row * slotHeight, width, height, tintedSprite.getPixelReader(), 0, 0);
+                m_AtlasViewports.put(getTintedSpriteName(spriteNames.get(column), GraphicUnit.SET_HUES[row]),
+                        new Rectangle2D(column * slotWidth, row * slotHeight, width, height));
+            }
+    }
+
+    /**
+     * Tints a sprite by rendering it once under a ColorAdjust effect of given hue.
+     *
+     * @param sprite Image of the original sprite.
+     * @param hue    Double value specifying the hue value to adjust on original color.
+     * @return The tinted image is returned; The original one is returned if the hue is not adjusted.
+     */
+    private static Image tintSprite(Image sprite, double hue) {
+        if (hue == 0)
+            return sprite;
+        ColorAdjust colorAdjust = new ColorAdjust();
+        colorAdjust.setHue(hue);
+        ImageView imageView = new ImageView(sprite);
+        imageView.setEffect(colorAdjust);
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        return imageView.snapshot(parameters, null);
+    }
 }
@@ -1,6 +1,5 @@
 package org.ziqi.model;
 
-import org.ziqi.gameEngine.GameEngine;
 import org.ziqi.gameEngine.base.GameObject;
 import org.ziqi.view.GraphicUnit;
 
@@ -23,13 +22,31 @@ public class Crate extends GameObject {
     private CrateStatus m_CrateStatus;
 
     /**
-     * Crate constructor to initialize the Crate object at given position and set the status as CRATE_RUNE.
+     * Level the Crate object belongs to; Null if the object is only decoded from a raw level.
+     */
+    private final Level m_Level;
+
+    /**
+     * Crate constructor to initialize the Crate object at given position and set the status as CRATE_RUNE. <br />
+     * The Crate object is not bound to any level, so it cannot move.
      *
      * @param position Point object specifying the initial position the object.
      * @see CrateStatus
      */
     public Crate(Point position) {
+        this(position, null);
+    }
+
+    /**
+     * Crate constructor to initialize the Crate object of the given level at given position and set the status as CRATE_RUNE.
+     *
+     * @param position Point object specifying the initial position the object.
+     * @param level    Level the Crate object belongs to.
+     * @see CrateStatus
+     */
+    public Crate(Point position, Level level) {
         super(position);
+        m_Level = level;
         m_CrateStatus = CrateStatus.CRATE_RUNE;
     }
 
@@ -108,33 +125,23 @@ public class Crate extends GameObject {
     }
 
     /**
-     * Checks if the pusher(Player) can move to given direction. <br />
-     * If so, then the crate is moved to new position and true is returned to specify the player can move; <br />
-     * Otherwise, false is returned.
+     * Moves the crate to given direction in the crate layer, after the session of its level has pushed it. <br />
+     * If the crate lands on a diamond, it starts sealing, which is rendered as an animation.
      *
-     * @param direction A Point object specifying the direction vector the GameObject to be moved to.
-     * @return Boolean value specifying if the pusher(player) can move is returned.
+     * @param direction Direction specifying the direction the GameObject to be moved to.
+     * @return True is returned if the crate is moved; False is returned if it is sealed and cannot be moved any more.
+     * @see GameSession#move(Direction)
+     * @see Player#move(Direction)
      */
     @Override
-    public boolean move(Point direction) {
-
+    public boolean move(Direction direction) {
         if (m_CrateStatus != CrateStatus.CRATE_RUNE)
             return false;
 
-        Level currentLevel = GameEngine.getInstance().getM_LevelManager().getM_CurrentLevel();
-        HashMap<Integer, GameObject> Targets = new HashMap<>();
-
-        for (int layer = GraphicUnit.LAYER_OF_FLOOR; layer <= GraphicUnit.LAYER_OF_CRATE; layer++)
-            Targets.put(layer, currentLevel.getGameObjectBy(layer, getM_Position(), direction));
-
-        if (Targets.get(GraphicUnit.LAYER_OF_FLOOR) != null && Targets.get(GraphicUnit.LAYER_OF_CRATE) == null) {
-            // exchange position
-            if (currentLevel.getGameObjectBy(GraphicUnit.LAYER_OF_DIAMOND, getM_Position(), direction) != null)
-                m_CrateStatus = CrateStatus.CRATE_SEALING;
-
-            currentLevel.getM_Layers()[GraphicUnit.LAYER_OF_CRATE].translateObjectBy(getM_Position(), direction);
-            return true;
-        } else
-            return false;
+        m_Level.moveGameObject(GraphicUnit.LAYER_OF_CRATE, getM_Position(), direction);
+        LevelState state = m_Level.getM_State();
+        if (state.isDiamond(state.getCellIndex(getM_Position().x, getM_Position().y)))
+            m_CrateStatus = CrateStatus.CRATE_SEALING;
+        return true;
     }
 }
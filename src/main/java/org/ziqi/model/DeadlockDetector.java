@@ -0,0 +1,516 @@
+package org.ziqi.model;
+
+import java.util.Arrays;
+
+/**
+ * DeadlockDetector class analyses the position right after a crate is pushed and tells if the level can no longer be completed. <br />
+ * Beyond the static dead squares of LevelState, three dynamic patterns around the pushed crate are detected: <br />
+ * 1. 2x2 block: the pushed crate closes a 2x2 square of crates and walls, so that none of its crates can ever move; <br />
+ * 2. Freeze: the pushed crate can move along neither axis, as each axis is blocked by walls, sealed crates or other frozen crates; <br />
+ * 3. Closed area: an area bounded only by walls and immovable crates holds fewer movable crates than empty diamonds.
+ * Since the player can fly to any cell, a corral can never keep the player out, but it can keep crates out once the crates around it are sealed. <br />
+ * A frozen crate off a diamond is lost like a crate on a dead square, which is only fatal when more crates are lost than there are spare crates. <br />
+ * Only the cells around the pushed crate are visited, from the incremental crate positions, and every search is capped by a budget,
+ * so that the cost of one analysis is bounded whatever the size of the level. The cost of each analysis is measured and kept as statistics. <br />
+ * A DeadlockDetector can be plugged into a Level for gameplay and into the Solver for pruning, but is not thread safe.
+ *
+ * @author Ziqi Yang
+ * @see LevelState#isDeadSquare(int)
+ * @see GameSession#move(Direction)
+ * @see org.ziqi.solver.Solver
+ */
+public final class DeadlockDetector {
+
+    /**
+     * Deadlock enumeration defines all kinds of deadlock the detector reports.
+     */
+    public enum Deadlock {
+        NONE("NONE"),
+        DEAD_SQUARE("DEAD SQUARE"),
+        BLOCK_2X2("2x2 BLOCK"),
+        FROZEN("FROZEN CRATE"),
+        CLOSED_AREA("CLOSED AREA");
+
+        /**
+         * String value describing the deadlock.
+         */
+        private final String m_Deadlock;
+
+        /**
+         * Deadlock constructor with its specific string value.
+         *
+         * @param m_Deadlock String value describes the specific deadlock.
+         */
+        Deadlock(String m_Deadlock) {
+            this.m_Deadlock = m_Deadlock;
+        }
+
+        /**
+         * Gets the Deadlock as string.
+         *
+         * @return A string describing the deadlock is returned.
+         */
+        public String toString() {
+            return m_Deadlock;
+        }
+    }
+
+    /**
+     * Constant integer specifying the max number of crates visited by one freeze check.
+     */
+    private static final int MAX_FREEZE_VISITS = 64;
+
+    /**
+     * Constant integer specifying the max number of cells visited by one closed area search.
+     */
+    private static final int MAX_AREA_CELLS = 128;
+
+    /**
+     * Constant array of direction ordinals of the vertical axis followed by the horizontal axis.
+     */
+    private static final int[][] AXES = {
+            {Direction.UP.ordinal(), Direction.DOWN.ordinal()},
+            {Direction.LEFT.ordinal(), Direction.RIGHT.ordinal()}
+    };
+
+    /**
+     * Constant integer specifying the vertical axis in AXES.
+     */
+    private static final int VERTICAL = 0;
+
+    /**
+     * Constant integer specifying the horizontal axis in AXES.
+     */
+    private static final int HORIZONTAL = 1;
+
+    /**
+     * Integer specifying number of cells of the level.
+     */
+    private final int CELLS;
+
+    /**
+     * Array of neighbour cells indexed by cell * 4 + direction ordinal; OUT_OF_BOUNDS if the neighbour is out of bound.
+     */
+    private final int[] m_Neighbours;
+
+    /**
+     * Array of booleans specifying if each cell is a wall.
+     */
+    private final boolean[] m_Walls;
+
+    /**
+     * Array of booleans specifying if each cell is a diamond.
+     */
+    private final boolean[] m_Diamonds;
+
+    /**
+     * Array of booleans specifying if each cell is a dead square.
+     */
+    private final boolean[] m_DeadSquares;
+
+    /**
+     * Integer specifying number of crates more than diamonds, which may be lost without losing the level.
+     */
+    private final int m_SpareCrates;
+
+    /**
+     * Array of stamps marking crates treated as walls by the running freeze check.
+     */
+    private final int[] m_Visiting;
+
+    /**
+     * Array of stamps marking cells visited by the running closed area search.
+     */
+    private final int[] m_Visited;
+
+    /**
+     * Array of cells used as queue by the closed area search.
+     */
+    private final int[] m_AreaQueue;
+
+    /**
+     * Array of the four cells of the 2x2 square being checked.
+     */
+    private final int[] m_Square = new int[4];
+
+    /**
+     * Integer specifying the stamp of the running freeze check or closed area search.
+     */
+    private int m_Stamp;
+
+    /**
+     * Integer specifying the crates the running freeze check may still visit.
+     */
+    private int m_FreezeBudget;
+
+    /**
+     * Array of crate cells used when analysing a LevelState; Allocated on first use.
+     */
+    private int[] m_CrateCells;
+
+    /**
+     * Array of booleans specifying if a crate is at each cell used when analysing a LevelState; Allocated on first use.
+     */
+    private boolean[] m_Occupied;
+
+    /**
+     * Long integer specifying number of analyses made.
+     */
+    private long m_Analyses;
+
+    /**
+     * Long integer specifying number of analyses that found a deadlock.
+     */
+    private long m_Deadlocks;
+
+    /**
+     * Long integer specifying the total nanoseconds spent by all analyses.
+     */
+    private long m_TotalNanos;
+
+    /**
+     * Long integer specifying the nanoseconds spent by the slowest analysis.
+     */
+    private long m_MaxNanos;
+
+    /**
+     * DeadlockDetector constructor to copy walls, diamonds and dead squares from the given state, which never change during a game.
+     *
+     * @param state LevelState of the level to be analysed, whose dead squares are marked.
+     */
+    public DeadlockDetector(LevelState state) {
+        CELLS = state.getM_Rows() * state.getM_Columns();
+        m_Neighbours = new int[CELLS * 4];
+        m_Walls = new boolean[CELLS];
+        m_Diamonds = new boolean[CELLS];
+        m_DeadSquares = new boolean[CELLS];
+        m_Visiting = new int[CELLS];
+        m_Visited = new int[CELLS];
+        m_AreaQueue = new int[MAX_AREA_CELLS];
+        m_SpareCrates = state.getM_SpareCrates();
+
+        Direction[] directions = Direction.values();
+        for (int cell = 0; cell < CELLS; cell++) {
+            m_Walls[cell] = state.isWall(cell);
+            m_Diamonds[cell] = state.isDiamond(cell);
+            m_DeadSquares[cell] = state.isDeadSquare(cell);
+            for (Direction direction : directions)
+                m_Neighbours[cell * 4 + direction.ordinal()] = state.getCellBy(cell, direction.getM_RowDelta(), direction.getM_ColumnDelta());
+        }
+    }
+
+    /**
+     * Analyses the given state right after a crate is pushed onto the given cell. <br />
+     * The crate cells are gathered from the crate plane of the state, which only visits set bits.
+     *
+     * @param state LevelState after the push.
+     * @param to    Integer specifying the cell the crate is pushed to.
+     * @return The Deadlock found is returned; NONE if the level may still be completed.
+     * @see #analyze(int[], int, boolean[], int)
+     */
+    public Deadlock analyze(LevelState state, int to) {
+        if (m_Occupied == null) {
+            m_Occupied = new boolean[CELLS];
+            m_CrateCells = new int[state.countOf(LevelState.PLANE_OF_CRATE)];
+        }
+        int crateCount = 0;
+        for (int cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, 0); cell != LevelState.OUT_OF_BOUNDS; cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, cell + 1)) {
+            m_CrateCells[crateCount++] = cell;
+            m_Occupied[cell] = true;
+        }
+        Deadlock deadlock = analyze(m_CrateCells, crateCount, m_Occupied, to);
+        for (int i = 0; i < crateCount; i++)
+            m_Occupied[m_CrateCells[i]] = false;
+        return deadlock;
+    }
+
+    /**
+     * Analyses the given crates right after a crate is pushed onto the given cell, and measures the cost of the analysis.
+     *
+     * @param crateCells Array of cells of all crates after the push.
+     * @param crateCount Integer specifying number of valid entries of crateCells.
+     * @param occupied   Array of booleans specifying if a crate is at each cell, matching crateCells.
+     * @param to         Integer specifying the cell the crate is pushed to.
+     * @return The Deadlock found is returned; NONE if the level may still be completed.
+     */
+    public Deadlock analyze(int[] crateCells, int crateCount, boolean[] occupied, int to) {
+        long start = System.nanoTime();
+        Deadlock deadlock = detect(crateCells, crateCount, occupied, to);
+        long nanos = System.nanoTime() - start;
+        m_Analyses++;
+        m_TotalNanos += nanos;
+        m_MaxNanos = Math.max(m_MaxNanos, nanos);
+        if (deadlock != Deadlock.NONE)
+            m_Deadlocks++;
+        return deadlock;
+    }
+
+    /**
+     * Detects the deadlocks from the cheapest check to the most expensive one.
+     *
+     * @param crateCells Array of cells of all crates after the push.
+     * @param crateCount Integer specifying number of valid entries of crateCells.
+     * @param occupied   Array of booleans specifying if a crate is at each cell, matching crateCells.
+     * @param to         Integer specifying the cell the crate is pushed to.
+     * @return The Deadlock found is returned; NONE if the level may still be completed.
+     */
+    private Deadlock detect(int[] crateCells, int crateCount, boolean[] occupied, int to) {
+        // without spare crates any lost crate is fatal, so earlier ones need not be counted
+        int lostCrates = m_SpareCrates == 0 ? (m_DeadSquares[to] ? 1 : 0) : countLostCrates(crateCells, crateCount);
+        if (lostCrates > m_SpareCrates)
+            return Deadlock.DEAD_SQUARE;
+
+        if (isBlock2x2(occupied, to, lostCrates))
+            return Deadlock.BLOCK_2X2;
+
+        if (m_Diamonds[to]) {
+            // the crate is sealed and may freeze its neighbours
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbour = m_Neighbours[to * 4 + direction];
+                if (isMovableCrate(occupied, neighbour) && !m_DeadSquares[neighbour] && isFrozen(occupied, neighbour) && lostCrates + 1 > m_SpareCrates)
+                    return Deadlock.FROZEN;
+            }
+            return hasClosedArea(occupied, to) ? Deadlock.CLOSED_AREA : Deadlock.NONE;
+        }
+        if (!m_DeadSquares[to] && isFrozen(occupied, to) && lostCrates + 1 > m_SpareCrates)
+            return Deadlock.FROZEN;
+        return Deadlock.NONE;
+    }
+
+    /**
+     * Counts the crates standing on dead squares.
+     *
+     * @param crateCells Array of cells of all crates.
+     * @param crateCount Integer specifying number of valid entries of crateCells.
+     * @return Integer specifying number of lost crates is returned.
+     */
+    private int countLostCrates(int[] crateCells, int crateCount) {
+        int lostCrates = 0;
+        for (int i = 0; i < crateCount; i++)
+            if (m_DeadSquares[crateCells[i]])
+                lostCrates++;
+        return lostCrates;
+    }
+
+    /**
+     * Checks if the given cell is a crate that can still be pushed, which is a crate not sealed on a diamond.
+     *
+     * @param occupied Array of booleans specifying if a crate is at each cell.
+     * @param cell     Integer specifying the cell index.
+     * @return True is returned if there is a movable crate; Otherwise, false is returned.
+     */
+    private boolean isMovableCrate(boolean[] occupied, int cell) {
+        return cell != LevelState.OUT_OF_BOUNDS && occupied[cell] && !m_Diamonds[cell];
+    }
+
+    /**
+     * Checks if the given cell blocks a crate for good: out of bound, a wall, or a sealed crate.
+     *
+     * @param occupied Array of booleans specifying if a crate is at each cell.
+     * @param cell     Integer specifying the cell index.
+     * @return True is returned if the cell is a fixed obstacle; Otherwise, false is returned.
+     */
+    private boolean isFixed(boolean[] occupied, int cell) {
+        return cell == LevelState.OUT_OF_BOUNDS || m_Walls[cell] || (occupied[cell] && m_Diamonds[cell]);
+    }
+
+    /**
+     * Checks the four 2x2 squares containing the pushed crate. <br />
+     * A square filled by walls and crates freezes all of its crates, which is a deadlock if it holds more movable crates
+     * off dead squares than the spare crates left.
+     *
+     * @param occupied   Array of booleans specifying if a crate is at each cell.
+     * @param to         Integer specifying the cell the crate is pushed to.
+     * @param lostCrates Integer specifying number of crates already lost on dead squares.
+     * @return True is returned if a deadlocked square is found; Otherwise, false is returned.
+     */
+    private boolean isBlock2x2(boolean[] occupied, int to, int lostCrates) {
+        m_Square[0] = to;
+        for (int vertical : AXES[VERTICAL]) {
+            m_Square[1] = m_Neighbours[to * 4 + vertical];
+            for (int horizontal : AXES[HORIZONTAL]) {
+                m_Square[2] = m_Neighbours[to * 4 + horizontal];
+                m_Square[3] = m_Square[1] == LevelState.OUT_OF_BOUNDS ? LevelState.OUT_OF_BOUNDS : m_Neighbours[m_Square[1] * 4 + horizontal];
+                int newlyLost = 0;
+                boolean filled = true;
+                for (int cell : m_Square) {
+                    if (isMovableCrate(occupied, cell)) {
+                        if (!m_DeadSquares[cell])
+                            newlyLost++;
+                    } else if (!isFixed(occupied, cell)) {
+                        filled = false;
+                        break;
+                    }
+                }
+                if (filled && newlyLost > 0 && lostCrates + newlyLost > m_SpareCrates)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the movable crate at given cell is frozen on both axes.
+     *
+     * @param occupied Array of booleans specifying if a crate is at each cell.
+     * @param crate    Integer specifying the cell of the crate.
+     * @return True is returned if the crate can never move; Otherwise, false is returned.
+     */
+    private boolean isFrozen(boolean[] occupied, int crate) {
+        nextStamp();
+        m_FreezeBudget = MAX_FREEZE_VISITS;
+        return isFrozenCrate(occupied, crate);
+    }
+
+    /**
+     * Checks recursively if the crate at given cell is frozen, treating the crates being checked as walls. <br />
+     * An axis is blocked if a fixed obstacle is on either side, if dead squares are on both sides while there are no spare crates,
+     * or if a crate on either side is frozen itself. When the visit budget runs out, the crate is taken as movable,
+     * which may miss a deadlock but never reports a false one.
+     *
+     * @param occupied Array of booleans specifying if a crate is at each cell.
+     * @param crate    Integer specifying the cell of the crate.
+     * @return True is returned if the crate is frozen; Otherwise, false is returned.
+     */
+    private boolean isFrozenCrate(boolean[] occupied, int crate) {
+        if (m_FreezeBudget-- <= 0)
+            return false;
+        m_Visiting[crate] = m_Stamp;
+        boolean frozen = true;
+        for (int axis = 0; axis < AXES.length && frozen; axis++) {
+            int side = m_Neighbours[crate * 4 + AXES[axis][0]];
+            int otherSide = m_Neighbours[crate * 4 + AXES[axis][1]];
+            frozen = isBlocking(occupied, side) || isBlocking(occupied, otherSide)
+                    || (m_SpareCrates == 0 && m_DeadSquares[side] && m_DeadSquares[otherSide])
+                    || isFrozenNeighbour(occupied, side) || isFrozenNeighbour(occupied, otherSide);
+        }
+        m_Visiting[crate] = 0;
+        return frozen;
+    }
+
+    /**
+     * Checks if the given cell is a fixed obstacle or a crate being checked, which is treated as a wall.
+     *
+     * @param occupied Array of booleans specifying if a crate is at each cell.
+     * @param cell     Integer specifying the cell index.
+     * @return True is returned if the cell blocks the axis; Otherwise, false is returned.
+     */
+    private boolean isBlocking(boolean[] occupied, int cell) {
+        return isFixed(occupied, cell) || m_Visiting[cell] == m_Stamp;
+    }
+
+    /**
+     * Checks if the given cell is a movable crate which is frozen itself.
+     *
+     * @param occupied Array of booleans specifying if a crate is at each cell.
+     * @param cell     Integer specifying the cell index.
+     * @return True is returned if the cell holds a frozen crate; Otherwise, false is returned.
+     */
+    private boolean isFrozenNeighbour(boolean[] occupied, int cell) {
+        return isMovableCrate(occupied, cell) && isFrozenCrate(occupied, cell);
+    }
+
+    /**
+     * Checks the areas next to a crate just sealed on the given cell. <br />
+     * Crates can never cross walls or sealed crates, so an area bounded by them has to fill its empty diamonds with its own movable crates.
+     * Each area is searched within MAX_AREA_CELLS cells; A larger area is taken as alive.
+     *
+     * @param occupied Array of booleans specifying if a crate is at each cell.
+     * @param sealed   Integer specifying the cell of the sealed crate.
+     * @return True is returned if an area has fewer movable crates than empty diamonds; Otherwise, false is returned.
+     */
+    private boolean hasClosedArea(boolean[] occupied, int sealed) {
+        nextStamp();
+        for (int direction = 0; direction < 4; direction++) {
+            int start = m_Neighbours[sealed * 4 + direction];
+            if (isFixed(occupied, start) || m_Visited[start] == m_Stamp)
+                continue;
+
+            int head = 0;
+            int tail = 0;
+            int crates = 0;
+            int emptyDiamonds = 0;
+            boolean overflow = false;
+            m_Visited[start] = m_Stamp;
+            m_AreaQueue[tail++] = start;
+            while (head < tail && !overflow) {
+                int cell = m_AreaQueue[head++];
+                if (occupied[cell] && !m_DeadSquares[cell])
+                    crates++;
+                else if (!occupied[cell] && m_Diamonds[cell])
+                    emptyDiamonds++;
+                for (int next = 0; next < 4; next++) {
+                    int neighbour = m_Neighbours[cell * 4 + next];
+                    if (isFixed(occupied, neighbour) || m_Visited[neighbour] == m_Stamp)
+                        continue;
+                    if (tail == MAX_AREA_CELLS) {
+                        overflow = true;
+                        break;
+                    }
+                    m_Visited[neighbour] = m_Stamp;
+                    m_AreaQueue[tail++] = neighbour;
+                }
+            }
+            if (!overflow && crates < emptyDiamonds)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts a new stamp for marking cells, clearing all marks when the stamp wraps around.
+     */
+    private void nextStamp() {
+        if (++m_Stamp == 0) {
+            Arrays.fill(m_Visiting, 0);
+            Arrays.fill(m_Visited, 0);
+            m_Stamp = 1;
+        }
+    }
+
+    /**
+     * Gets number of analyses made.
+     *
+     * @return Long integer specifying number of analyses is returned.
+     */
+    public long getM_Analyses() {
+        return m_Analyses;
+    }
+
+    /**
+     * Gets number of analyses that found a deadlock.
+     *
+     * @return Long integer specifying number of deadlocks found is returned.
+     */
+    public long getM_Deadlocks() {
+        return m_Deadlocks;
+    }
+
+    /**
+     * Gets the average nanoseconds spent by one analysis.
+     *
+     * @return Long integer specifying the average nanoseconds is returned; 0 if no analysis is made.
+     */
+    public long getM_AverageNanos() {
+        return m_Analyses == 0 ? 0 : m_TotalNanos / m_Analyses;
+    }
+
+    /**
+     * Gets the nanoseconds spent by the slowest analysis.
+     *
+     * @return Long integer specifying the max nanoseconds is returned.
+     */
+    public long getM_MaxNanos() {
+        return m_MaxNanos;
+    }
+
+    /**
+     * Gets a readable summary of the statistics.
+     *
+     * @return String value describing the statistics is returned.
+     */
+    @Override
+    public String toString() {
+        return "analyses=" + m_Analyses + " deadlocks=" + m_Deadlocks + " avg=" + getM_AverageNanos() + "ns max=" + m_MaxNanos + "ns";
+    }
+}
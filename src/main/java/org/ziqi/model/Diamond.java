@@ -40,11 +40,11 @@ public class Diamond extends GameObject {
      * Checks if the pusher(Player) can move to given direction. <br />
      * True is always returned to player as diamond in this game is not block-able.
      *
-     * @param direction A Point object specifying the direction vector the GameObject to be moved to.
+     * @param direction Direction specifying the direction the GameObject to be moved to.
      * @return Boolean value specifying if the pusher(player) can move is returned.
      */
     @Override
-    public boolean move(Point direction) {
+    public boolean move(Direction direction) {
         return true;
     }
 }
@@ -0,0 +1,92 @@
+package org.ziqi.model;
+
+/**
+ * Direction enumeration defines all four moving directions in the level with their precomputed row and column deltas. <br />
+ * This is used instead of direction vectors as Point objects, so that handling a move does not allocate any object.
+ *
+ * @author Ziqi Yang
+ * @see org.ziqi.control.PlayerController
+ * @see LevelState#getCellBy(int, int, int)
+ */
+public enum Direction {
+    UP(-1, 0, 'u'),
+    RIGHT(0, 1, 'r'),
+    DOWN(1, 0, 'd'),
+    LEFT(0, -1, 'l');
+
+    /**
+     * Integer specifying the rows to translate by when moving to this direction.
+     */
+    private final int m_RowDelta;
+
+    /**
+     * Integer specifying the columns to translate by when moving to this direction.
+     */
+    private final int m_ColumnDelta;
+
+    /**
+     * Char specifying the LURD code of a move to this direction; The upper case of it specifies a push.
+     */
+    private final char m_Code;
+
+    /**
+     * Direction constructor with its specific row and column delta.
+     *
+     * @param rowDelta    Integer specifying the rows to translate by.
+     * @param columnDelta Integer specifying the columns to translate by.
+     * @param code        Char specifying the LURD code of a move.
+     */
+    Direction(int rowDelta, int columnDelta, char code) {
+        m_RowDelta = rowDelta;
+        m_ColumnDelta = columnDelta;
+        m_Code = code;
+    }
+
+    /**
+     * Gets the rows to translate by when moving to this direction.
+     *
+     * @return Integer specifying the row delta is returned.
+     */
+    public int getM_RowDelta() {
+        return m_RowDelta;
+    }
+
+    /**
+     * Gets the columns to translate by when moving to this direction.
+     *
+     * @return Integer specifying the column delta is returned.
+     */
+    public int getM_ColumnDelta() {
+        return m_ColumnDelta;
+    }
+
+    /**
+     * Gets the LURD code of a move to this direction.
+     *
+     * @return Lower case char specifying the move code is returned.
+     */
+    public char getM_Code() {
+        return m_Code;
+    }
+
+    /**
+     * Gets the direction of a LURD move code, where upper case codes are pushes to the same direction.
+     *
+     * @param code Char specifying the move code.
+     * @return Direction of the code is returned; Null if the char is no move code.
+     */
+    public static Direction fromCode(char code) {
+        switch (Character.toLowerCase(code)) {
+            case 'u':
+                return UP;
+            case 'r':
+                return RIGHT;
+            case 'd':
+                return DOWN;
+            case 'l':
+                return LEFT;
+            default:
+                return null;
+        }
+    }
+}
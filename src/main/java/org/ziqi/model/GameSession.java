@@ -0,0 +1,496 @@
+package org.ziqi.model;
+
+import org.ziqi.Debugger;
+
+/**
+ * GameSession class holds the rules of one play of a level: the current state, the move counter and the flying/landing rules. <br />
+ * It has no JavaFX or GameEngine dependency, so that any number of sessions can be played in one process,
+ * e.g. by bots, replays and load tests; The GUI is only one client of a session, which renders its state after every move. <br />
+ * Every move and flying toggle is recorded in a journal, so that it can be undone and redone. <br />
+ * A session is not thread safe, but sessions do not share anything mutable, so that each one can be played by its own thread.
+ *
+ * @author Ziqi Yang
+ * @see Level#getM_Session()
+ * @see LevelState
+ */
+public final class GameSession {
+
+    /**
+     * Constant integer value specifying the move count number for each move when player is flying as punishment.
+     *
+     * @see #move(Direction)
+     */
+    public static final int FLYING_MOVE_COUNT = 2;
+
+    /**
+     * Constant integer masking the ordinal of direction of a move in journal entries.
+     */
+    private static final int ENTRY_DIRECTION_MASK = 0b11;
+
+    /**
+     * Constant integer flagging a journal entry as a move that pushed a crate.
+     */
+    private static final int ENTRY_PUSH = 1 << 2;
+
+    /**
+     * Constant integer flagging a journal entry as a move made flying, which counts FLYING_MOVE_COUNT.
+     */
+    private static final int ENTRY_FLEW = 1 << 3;
+
+    /**
+     * Constant integer flagging a journal entry as a push that made the deadlock found.
+     */
+    private static final int ENTRY_DEADLOCK = 1 << 4;
+
+    /**
+     * Constant integer flagging a journal entry as a toggle of flying status instead of a move.
+     */
+    private static final int ENTRY_FLYING_TOGGLE = 1 << 5;
+
+    /**
+     * Constant array of all directions indexed by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * MoveResult enumeration specifying the outcome of a move of player.
+     */
+    public enum MoveResult {
+        /**
+         * The player cannot move to the target cell: it is out of map, a wall, or a crate that cannot be pushed.
+         */
+        BLOCKED,
+        /**
+         * The push is refused in warn on dead push mode, as it would make the level unsolvable.
+         */
+        REFUSED,
+        /**
+         * The player walked onto a free cell.
+         */
+        WALKED,
+        /**
+         * The player flew onto any cell.
+         */
+        FLEW,
+        /**
+         * The player pushed a crate onto a free cell.
+         */
+        PUSHED,
+        /**
+         * The player pushed a crate onto a diamond, where it is sealed and cannot be pushed any more.
+         */
+        SEALED;
+
+        /**
+         * Checks if the player has moved.
+         *
+         * @return True is returned if the player is on the target cell now; Otherwise, false is returned.
+         */
+        public boolean isMoved() {
+            return this != BLOCKED && this != REFUSED;
+        }
+
+        /**
+         * Checks if a crate is pushed by the move.
+         *
+         * @return True is returned if a crate is moved along with the player; Otherwise, false is returned.
+         */
+        public boolean isPush() {
+            return this == PUSHED || this == SEALED;
+        }
+    }
+
+    /**
+     * LevelState decoded from the raw level, which is never changed by the session and may be shared by many sessions.
+     */
+    private final LevelState m_InitialState;
+
+    /**
+     * LevelState holding the current walls, diamonds, crates and player of this play.
+     */
+    private final LevelState m_State;
+
+    /**
+     * Integer specifying the number of diamonds in the level. This is used to check the completion of the level.
+     */
+    private final int m_NumberOfDiamonds;
+
+    /**
+     * DeadlockDetector analysing every push of the session; Null if no analysis is wanted.
+     */
+    private DeadlockDetector m_DeadlockDetector;
+
+    /**
+     * Deadlock found since the session is restarted; NONE while the level may still be completed.
+     */
+    private DeadlockDetector.Deadlock m_Deadlock = DeadlockDetector.Deadlock.NONE;
+
+    /**
+     * Integer specifying the move count of this play, where each flying move counts FLYING_MOVE_COUNT.
+     */
+    private int m_MoveCount;
+
+    /**
+     * Integer specifying the number of pushes of this play.
+     */
+    private int m_PushCount;
+
+    /**
+     * Boolean value specifying if the player is flying.
+     */
+    private boolean m_Flying;
+
+    /**
+     * Boolean value specifying if pushes dooming the level are refused.
+     */
+    private boolean m_WarnOnDeadPush;
+
+    /**
+     * MoveJournal recording every move and flying toggle of this play, to be undone and redone.
+     */
+    private final MoveJournal m_Journal = new MoveJournal();
+
+    /**
+     * GameSession constructor to start a play of the level with the given initial state, analysing every push for deadlocks.
+     *
+     * @param initialState LevelState decoded from the raw level, which is never changed by the session.
+     * @see LevelState#fromRawLevel(java.util.List)
+     */
+    public GameSession(LevelState initialState) {
+        this(initialState, new DeadlockDetector(initialState));
+    }
+
+    /**
+     * GameSession constructor to start a play of the level with the given initial state and deadlock detector. <br />
+     * Sessions of the same level may share the initial state, but each one needs its own detector, if any.
+     *
+     * @param initialState     LevelState decoded from the raw level, which is never changed by the session.
+     * @param deadlockDetector DeadlockDetector built from the initial state; Null if no analysis is wanted.
+     */
+    public GameSession(LevelState initialState, DeadlockDetector deadlockDetector) {
+        m_InitialState = initialState;
+        m_State = new LevelState(initialState.getM_Rows(), initialState.getM_Columns());
+        m_NumberOfDiamonds = initialState.countOf(LevelState.PLANE_OF_DIAMOND);
+        m_DeadlockDetector = deadlockDetector;
+        restart();
+    }
+
+    /**
+     * Restarts the play: resets the state by copying the initial state, the counters, the flying status, the deadlock found and the journal.
+     */
+    public void restart() {
+        m_State.copyFrom(m_InitialState);
+        m_Deadlock = DeadlockDetector.Deadlock.NONE;
+        m_MoveCount = 0;
+        m_PushCount = 0;
+        m_Flying = false;
+        m_Journal.clear();
+    }
+
+    /**
+     * Moves the player one cell to given direction by the rules: <br />
+     * 1. A flying player can reach any cell of the map, costing FLYING_MOVE_COUNT moves; <br />
+     * 2. A grounded player can walk onto a free cell or push a crate not sealed onto a free cell, costing 1 move; <br />
+     * 3. In warn on dead push mode, a push onto a dead square that makes the level unsolvable is refused. <br />
+     * Every push made is analysed for deadlocks. Every move made is recorded in the journal, dropping any move that could be redone.
+     *
+     * @param direction Direction specifying the direction the player to be moved to.
+     * @return MoveResult specifying the outcome of the move is returned to caller.
+     * @see LevelState#isDoomedPush(int, int)
+     * @see DeadlockDetector#analyze(LevelState, int)
+     */
+    public MoveResult move(Direction direction) {
+        // find the target cell, out of bound cells are never reachable
+        int target = m_State.getCellBy(m_State.getM_PlayerCell(), direction.getM_RowDelta(), direction.getM_ColumnDelta());
+        if (target == LevelState.OUT_OF_BOUNDS)
+            return MoveResult.BLOCKED;
+
+        // if player is flying, any cell of floor or wall can be reached
+        if (m_Flying) {
+            m_State.setM_PlayerCell(target);
+            m_MoveCount += FLYING_MOVE_COUNT;
+            m_Journal.record(direction.ordinal() | ENTRY_FLEW);
+            return MoveResult.FLEW;
+        }
+
+        if (m_State.isWall(target))
+            return MoveResult.BLOCKED;
+
+        MoveResult result = MoveResult.WALKED;
+        int entry = direction.ordinal();
+        if (m_State.hasCrate(target)) {
+            // crates on diamonds are sealed and cannot be pushed any more
+            int to = m_State.getCellBy(target, direction.getM_RowDelta(), direction.getM_ColumnDelta());
+            if (m_State.isDiamond(target) || to == LevelState.OUT_OF_BOUNDS || m_State.isWall(to) || m_State.hasCrate(to))
+                return MoveResult.BLOCKED;
+            if (m_WarnOnDeadPush && m_State.isDoomedPush(target, to))
+                return MoveResult.REFUSED;
+
+            boolean lost = isLost();
+            m_State.moveCrate(target, to);
+            m_PushCount++;
+            analyzePush(to);
+            result = m_State.isDiamond(to) ? MoveResult.SEALED : MoveResult.PUSHED;
+            entry |= ENTRY_PUSH | (isLost() && !lost ? ENTRY_DEADLOCK : 0);
+        }
+
+        m_State.setM_PlayerCell(target);
+        m_MoveCount++;
+        m_Journal.record(entry);
+        return result;
+    }
+
+    /**
+     * Toggles the flying status of player: a grounded player always takes off, while a flying player can only land on a free floor cell.
+     *
+     * @return True is returned if the player took off or landed; False is returned if the player cannot land here.
+     * @see #canLand()
+     */
+    public boolean toggleFlying() {
+        if (m_Flying && !canLand())
+            return false;
+        m_Flying = !m_Flying;
+        m_Journal.record(ENTRY_FLYING_TOGGLE);
+        return true;
+    }
+
+    /**
+     * Undoes the last move or flying toggle recorded in the journal in constant time, without any allocation: <br />
+     * 1. A move is reverted by moving the player back, pulling the crate it pushed back along and taking back its move count,
+     * which is FLYING_MOVE_COUNT for a flying move; <br />
+     * 2. A push that made the deadlock found resets the deadlock, as the play may be completed again; <br />
+     * 3. A flying toggle is reverted by toggling the flying status back.
+     *
+     * @return True is returned if anything is undone; False is returned if the journal has nothing to undo.
+     * @see #redo()
+     */
+    public boolean undo() {
+        int entry = m_Journal.undo();
+        if (entry < 0)
+            return false;
+        if ((entry & ENTRY_FLYING_TOGGLE) != 0) {
+            m_Flying = !m_Flying;
+            return true;
+        }
+
+        Direction direction = DIRECTIONS[entry & ENTRY_DIRECTION_MASK];
+        int playerCell = m_State.getM_PlayerCell();
+        if ((entry & ENTRY_PUSH) != 0) {
+            m_State.moveCrate(m_State.getCellBy(playerCell, direction.getM_RowDelta(), direction.getM_ColumnDelta()), playerCell);
+            m_PushCount--;
+            if ((entry & ENTRY_DEADLOCK) != 0)
+                m_Deadlock = DeadlockDetector.Deadlock.NONE;
+        }
+        m_State.setM_PlayerCell(m_State.getCellBy(playerCell, -direction.getM_RowDelta(), -direction.getM_ColumnDelta()));
+        m_MoveCount -= (entry & ENTRY_FLEW) != 0 ? FLYING_MOVE_COUNT : 1;
+        return true;
+    }
+
+    /**
+     * Redoes the last move or flying toggle undone, exactly as it was made, even if warn on dead push mode is switched since. <br />
+     * A push that made the deadlock found is analysed again, which finds the same deadlock.
+     *
+     * @return True is returned if anything is redone; False is returned if the journal has nothing to redo.
+     * @see #undo()
+     */
+    public boolean redo() {
+        int entry = m_Journal.redo();
+        if (entry < 0)
+            return false;
+        if ((entry & ENTRY_FLYING_TOGGLE) != 0) {
+            m_Flying = !m_Flying;
+            return true;
+        }
+
+        Direction direction = DIRECTIONS[entry & ENTRY_DIRECTION_MASK];
+        int target = m_State.getCellBy(m_State.getM_PlayerCell(), direction.getM_RowDelta(), direction.getM_ColumnDelta());
+        if ((entry & ENTRY_PUSH) != 0) {
+            int to = m_State.getCellBy(target, direction.getM_RowDelta(), direction.getM_ColumnDelta());
+            m_State.moveCrate(target, to);
+            m_PushCount++;
+            if ((entry & ENTRY_DEADLOCK) != 0)
+                analyzePush(to);
+        }
+        m_State.setM_PlayerCell(target);
+        m_MoveCount += (entry & ENTRY_FLEW) != 0 ? FLYING_MOVE_COUNT : 1;
+        return true;
+    }
+
+    /**
+     * Gets the replay of this play, i.e. every move and flying toggle up to the last one undone, in the LURD format of solutions: <br />
+     * lower case letters are moves, upper case letters are pushes and FLY_TOGGLE_CODE is a toggle of flying status. <br />
+     * Moves undone are left out, so that the replay leads from the initial state straight to the current one.
+     *
+     * @return String value of the replay is returned; Null if the play is too long for its oldest moves to be kept.
+     * @see Replay#verify(GameSession, String, int)
+     * @see Replay#FLY_TOGGLE_CODE
+     */
+    public String getReplay() {
+        if (m_Journal.isTruncated())
+            return null;
+        int count = m_Journal.getM_UndoCount();
+        char[] codes = new char[count];
+        for (int i = 0; i < count; i++) {
+            int entry = m_Journal.get(i);
+            if ((entry & ENTRY_FLYING_TOGGLE) != 0)
+                codes[i] = Replay.FLY_TOGGLE_CODE;
+            else {
+                char code = DIRECTIONS[entry & ENTRY_DIRECTION_MASK].getM_Code();
+                codes[i] = (entry & ENTRY_PUSH) != 0 ? Character.toUpperCase(code) : code;
+            }
+        }
+        return new String(codes);
+    }
+
+    /**
+     * Checks if there is any move or flying toggle to undo.
+     *
+     * @return True is returned if undo() would undo anything; Otherwise, false is returned.
+     */
+    public boolean canUndo() {
+        return m_Journal.getM_UndoCount() > 0;
+    }
+
+    /**
+     * Checks if there is any move or flying toggle to redo.
+     *
+     * @return True is returned if redo() would redo anything; Otherwise, false is returned.
+     */
+    public boolean canRedo() {
+        return m_Journal.getM_RedoCount() > 0;
+    }
+
+    /**
+     * Checks if the flying player can land on the cell below, which must be neither a wall nor a crate.
+     *
+     * @return True is returned if the cell of player is free floor; Otherwise, false is returned.
+     */
+    public boolean canLand() {
+        int cell = m_State.getM_PlayerCell();
+        return !m_State.hasCrate(cell) && !m_State.isWall(cell);
+    }
+
+    /**
+     * Analyses the current state right after a crate is pushed onto the given cell. <br />
+     * A deadlock can never be undone by pushing on, so once found it is kept until the session is restarted and no more analysis is made.
+     *
+     * @param to Integer specifying the cell the crate is pushed to.
+     * @see DeadlockDetector#analyze(LevelState, int)
+     */
+    private void analyzePush(int to) {
+        if (m_DeadlockDetector == null || isLost())
+            return;
+        m_Deadlock = m_DeadlockDetector.analyze(m_State, to);
+        if (isLost())
+            Debugger.debugBegin(false, "[DEADLOCK] " + m_Deadlock + " at cell " + to + " (" + m_DeadlockDetector + ")");
+    }
+
+    /**
+     * Checks if the level is completed, i.e. all diamonds are covered by crates.
+     *
+     * @return True is returned if all crates hit all diamonds; Otherwise, false is returned.
+     * @see LevelState#getM_CratedDiamonds()
+     */
+    public boolean isLevelComplete() {
+        return m_State.getM_CratedDiamonds() == m_NumberOfDiamonds;
+    }
+
+    /**
+     * Checks if the current play can no longer complete the level.
+     *
+     * @return True is returned if a deadlock is found; Otherwise, false is returned.
+     */
+    public boolean isLost() {
+        return m_Deadlock != DeadlockDetector.Deadlock.NONE;
+    }
+
+    /**
+     * Gets the deadlock found since the session is restarted.
+     *
+     * @return Deadlock of the current play is returned to caller; NONE while the level may still be completed.
+     */
+    public DeadlockDetector.Deadlock getM_Deadlock() {
+        return m_Deadlock;
+    }
+
+    /**
+     * Gets the initial state of the level, which is never changed by playing.
+     *
+     * @return LevelState holding the initial content of the level is returned to caller.
+     */
+    public LevelState getM_InitialState() {
+        return m_InitialState;
+    }
+
+    /**
+     * Gets the current state of the play.
+     *
+     * @return LevelState holding the current content of the level is returned to caller.
+     */
+    public LevelState getM_State() {
+        return m_State;
+    }
+
+    /**
+     * Gets the move count of this play.
+     *
+     * @return Integer specifying the move count is returned to caller.
+     */
+    public int getM_MoveCount() {
+        return m_MoveCount;
+    }
+
+    /**
+     * Gets the number of pushes of this play.
+     *
+     * @return Integer specifying the number of pushes is returned to caller.
+     */
+    public int getM_PushCount() {
+        return m_PushCount;
+    }
+
+    /**
+     * Checks if the player is flying.
+     *
+     * @return True is returned if the player is flying; Otherwise, false is returned.
+     */
+    public boolean isFlying() {
+        return m_Flying;
+    }
+
+    /**
+     * Gets if pushes dooming the level are refused.
+     *
+     * @return True is returned if the warn on dead push mode is on; Otherwise, false is returned.
+     */
+    public boolean getM_WarnOnDeadPush() {
+        return m_WarnOnDeadPush;
+    }
+
+    /**
+     * Sets if pushes dooming the level are refused.
+     *
+     * @param m_WarnOnDeadPush Boolean value specifying if the warn on dead push mode is on.
+     */
+    public void setM_WarnOnDeadPush(boolean m_WarnOnDeadPush) {
+        this.m_WarnOnDeadPush = m_WarnOnDeadPush;
+    }
+
+    /**
+     * Gets the DeadlockDetector analysing every push of the session.
+     *
+     * @return DeadlockDetector of the session is returned to caller; Null if no analysis is wanted.
+     */
+    public DeadlockDetector getM_DeadlockDetector() {
+        return m_DeadlockDetector;
+    }
+
+    /**
+     * Sets the DeadlockDetector analysing every push of the session.
+     *
+     * @param m_DeadlockDetector DeadlockDetector built from the initial state of the level; Null to stop analysing pushes.
+     */
+    public void setM_DeadlockDetector(DeadlockDetector m_DeadlockDetector) {
+        this.m_DeadlockDetector = m_DeadlockDetector;
+    }
+}
@@ -1,6 +1,5 @@
 package org.ziqi.model;
 
-import org.ziqi.Utils;
 import org.ziqi.gameEngine.base.GameObject;
 import java.awt.*;
 
@@ -55,17 +54,32 @@ public class Layer {
     }
 
     /**
-     * Translates the GameObject specified by given position in the layer by a given vector distance.
+     * Gets the GameObject at specific row and column.
      *
-     * @param from  Point object specifying the original position of the GameObject to be translated.
-     * @param delta Point object specifying the vector distance to translate to.
+     * @param row    Integer specifying the row of GameObject.
+     * @param column Integer specifying the column of GameObject.
+     * @return If the position is not out of bound, then the specific GameObject is returned;
+     * Otherwise, null is returned.
+     */
+    public GameObject getGameObjectAt(int row, int column) {
+        if (row < 0 || column < 0 || row >= ROWS || column >= COLUMNS)
+            return null;
+        return m_Layer[row][column];
+    }
+
+    /**
+     * Translates the GameObject specified by given position in the layer to a given direction. <br />
+     * The position of the GameObject is translated in place, so that no Point object is created by a move.
+     *
+     * @param from      Point object specifying the original position of the GameObject to be translated.
+     * @param direction Direction specifying the direction to translate to.
      */
-    public void translateObjectBy(Point from, Point delta) {
+    public void translateObjectBy(Point from, Direction direction) {
         GameObject gameObject = getGameObjectAt(from);
-        Point to = Utils.translatePoint(from, delta);
-        gameObject.setM_Position(to);
-        putGameObjectAt(gameObject, to);
         removeGameObjectAt(from);
+        Point position = gameObject.getM_Position();
+        position.translate(direction.getM_RowDelta(), direction.getM_ColumnDelta());
+        putGameObjectAt(gameObject, position);
     }
 
     /**
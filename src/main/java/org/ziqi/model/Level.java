@@ -1,12 +1,9 @@
 package org.ziqi.model;
 
 import javafx.scene.input.KeyEvent;
-import org.ziqi.gameEngine.GameEngine;
-import org.ziqi.Utils;
 import org.ziqi.Debugger;
 import org.ziqi.gameEngine.base.GameObject;
 import org.ziqi.gameEngine.GameObjectFactory;
-import org.ziqi.gameEngine.manager.DataManager;
 import org.ziqi.view.GraphicUnit;
 
 import java.awt.*;
@@ -18,6 +15,7 @@ import java.util.ResourceBundle;
 
 /**
  * Level class represents a game level and contains all information for that game level. <br />
+ * The rules of playing the level are kept by its GameSession, while the level keeps the layers of GameObjects following the session for rendering.
  *
  * @author Ziqi Yang-modified
  * @see org.ziqi.gameEngine.manager.LevelManager
@@ -33,17 +31,64 @@ public final class Level implements Iterable<GameObject[]> {
     private final List<String> m_Raw_level;
 
     /**
-     * Array of Layers storing layers(5 layers) of GameObject in the level, which are generated by decoding the raw level and calling GameObjectFactory.
+     * Array of Layers storing layers(5 layers) of GameObject in the level, which are generated by decoding the raw level and calling GameObjectFactory. <br />
+     * Layers are a facade of the state of m_Session for rendering: floor, diamond and wall layers are generated once, while crate and player layers follow that state.
      *
      * @see GameObjectFactory
      */
     private final Layer[] m_Layers;
 
+    /**
+     * LevelState decoded from the raw level, which is kept untouched to restart the level.
+     *
+     * @see #refreshLevel()
+     */
+    private final LevelState m_InitialState;
+
+    /**
+     * GameSession holding the current state, move count and flying status of the play of the level.
+     *
+     * @see #refreshLevel()
+     */
+    private final GameSession m_Session;
+
+    /**
+     * Constant integer specifying the max number of dirty cells kept between two renderings, as a move changes at most the cells of the player and one crate.
+     */
+    private static final int MAX_DIRTY_CELLS = 4;
+
+    /**
+     * Constant array of all directions, kept to avoid copying Direction.values() on every undo or redo.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Array of integers as cells whose GameObjects are moved since the layers were last rendered.
+     *
+     * @see #moveGameObject(int, Point, Direction)
+     */
+    private final int[] m_DirtyCells = new int[MAX_DIRTY_CELLS];
+
+    /**
+     * Integer specifying the number of dirty cells kept.
+     */
+    private int m_DirtyCellCount = 0;
+
+    /**
+     * Boolean value specifying if the crate and player layers are regenerated or too many cells are changed, so that they must be rendered again as a whole.
+     */
+    private boolean m_AllDirty = true;
+
     /**
      * The Player GameObject in the level.
      */
     private Player m_Player;
 
+    /**
+     * Boolean value specifying if the level is playing back a replay, during which it is not played by the user.
+     */
+    private boolean m_Replaying = false;
+
     /**
      * Integer specifying number of columns of the level.
      */
@@ -64,13 +109,6 @@ public final class Level implements Iterable<GameObject[]> {
      */
     private final int m_Index;
 
-    /**
-     * Integer specifying the number of diamonds in the level. This is used to check the completion of the level.
-     *
-     * @see #isLevelComplete()
-     */
-    private int m_NumberOfDiamonds = 0;
-
 
     /**
      * Level constructor initializes and stores the information of level from given parameters.
@@ -91,6 +129,11 @@ public final class Level implements Iterable<GameObject[]> {
         ROWS = raw_level.size();
         COLUMNS = raw_level.get(0).trim().length();
         m_Layers = new Layer[GraphicUnit.NUM_OF_LAYER];
+        m_InitialState = LevelState.fromRawLevel(raw_level);
+        m_Session = new GameSession(m_InitialState);
+
+        // decode raw level once
+        decodeRawLevel();
 
         // initialize all layers
         refreshLevel();
@@ -105,6 +148,91 @@ public final class Level implements Iterable<GameObject[]> {
         return m_Layers;
     }
 
+    /**
+     * Gets the current state of the level as bitboards.
+     *
+     * @return LevelState holding the current content of the level is returned to caller.
+     */
+    public LevelState getM_State() {
+        return m_Session.getM_State();
+    }
+
+    /**
+     * Gets the session holding the rules and the current play of the level.
+     *
+     * @return GameSession of the level is returned to caller.
+     */
+    public GameSession getM_Session() {
+        return m_Session;
+    }
+
+    /**
+     * Gets the Zobrist hash of the current state, which is kept incrementally as the player and crates move. <br />
+     * States differing only in where the player stands inside the same walkable region have the same hash.
+     *
+     * @return Long value specifying the state hash is returned to caller.
+     * @see LevelState#getM_Hash()
+     */
+    public long getM_Hash() {
+        return m_Session.getM_State().getM_Hash();
+    }
+
+    /**
+     * Checks if given cell is a dead square, which is computed once when the level is loaded.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return True is returned if a crate on the cell can never reach any diamond; Otherwise, false is returned.
+     * @see LevelState#isDeadSquare(int)
+     */
+    public boolean isDeadSquare(int cell) {
+        return m_InitialState.isDeadSquare(cell);
+    }
+
+    /**
+     * Gets the DeadlockDetector analysing every push of the level.
+     *
+     * @return DeadlockDetector of the level is returned to caller; Null if no analysis is wanted.
+     */
+    public DeadlockDetector getM_DeadlockDetector() {
+        return m_Session.getM_DeadlockDetector();
+    }
+
+    /**
+     * Sets the DeadlockDetector analysing every push of the level.
+     *
+     * @param m_DeadlockDetector DeadlockDetector built from the initial state of this level; Null to stop analysing pushes.
+     */
+    public void setM_DeadlockDetector(DeadlockDetector m_DeadlockDetector) {
+        m_Session.setM_DeadlockDetector(m_DeadlockDetector);
+    }
+
+    /**
+     * Gets the deadlock found since the level is refreshed.
+     *
+     * @return Deadlock of the current play is returned to caller; NONE while the level may still be completed.
+     */
+    public DeadlockDetector.Deadlock getM_Deadlock() {
+        return m_Session.getM_Deadlock();
+    }
+
+    /**
+     * Checks if the current play can no longer complete the level.
+     *
+     * @return True is returned if a deadlock is found; Otherwise, false is returned.
+     */
+    public boolean isLost() {
+        return m_Session.isLost();
+    }
+
+    /**
+     * Gets the initial state of the level decoded from the raw level, which is never changed by playing.
+     *
+     * @return LevelState holding the initial content of the level is returned to caller.
+     */
+    public LevelState getM_InitialState() {
+        return m_InitialState;
+    }
+
     /**
      * Gets Player GameObject in the current level.
      *
@@ -135,31 +263,201 @@ public final class Level implements Iterable<GameObject[]> {
     }
 
     /**
-     * Gets the GameObject specified by the given position with a delta distance vector of the given layer.
+     * Gets the GameObject specified at the given cell of the level state of the given layer.
      *
-     * @param layer  Integer specifying the layer index.
-     * @param source Point object specifying the position of GameObject.
-     * @param delta  Point object specifying the delta vector to be translated.
-     * @return The specified GameObject is returned; If the return value is null, meaning no GameObject exists at that position of that layer.
+     * @param layer Integer specifying the layer index.
+     * @param cell  Integer specifying the cell index.
+     * @return The specified GameObject is returned; If the return value is null, meaning no GameObject exists at that cell of that layer.
+     * @see LevelState#getCellIndex(int, int)
      */
-    public GameObject getGameObjectBy(int layer, Point source, Point delta) {
-        return getGameObjectAt(layer, Utils.translatePoint(source, delta));
+    public GameObject getGameObjectAt(int layer, int cell) {
+        return m_Layers[layer].getGameObjectAt(m_InitialState.getRowOf(cell), m_InitialState.getColumnOf(cell));
     }
 
     /**
-     * Generates/Resets the whole information of the current level: <br />
-     * 1. Tells DataManagerReset to reset the move count of player; <br />
-     * 2. Tells DataManagerReset to reset the timer; <br />
-     * 3. Resets and generates all layers of GameObjects by decoding raw level list of strings; <br />
-     * 
-     * @see DataManager#resetMoveCount() 
-     * @see DataManager#resetTime() 
-     * @see org.ziqi.control.screenController.GamingScreenController#initialize(URL, ResourceBundle)
+     * Moves the GameObject at given position of given layer one cell to given direction, and marks both cells dirty for rendering. <br />
+     * This is called by the GameObjects after the session has moved them.
+     *
+     * @param layer     Integer specifying the layer index.
+     * @param from      Point object specifying the position of GameObject.
+     * @param direction Direction specifying the direction to move to.
+     * @see Player#move(Direction)
+     * @see Crate#move(Direction)
      */
-    public void refreshLevel() {
-        GameEngine.getInstance().getM_DataManager().resetMoveCount();
-        GameEngine.getInstance().getM_DataManager().resetTime();
-        m_NumberOfDiamonds = 0;
+    public void moveGameObject(int layer, Point from, Direction direction) {
+        int cell = m_InitialState.getCellIndex(from.x, from.y);
+        markDirty(cell);
+        markDirty(m_InitialState.getCellBy(cell, direction.getM_RowDelta(), direction.getM_ColumnDelta()));
+        m_Layers[layer].translateObjectBy(from, direction);
+    }
+
+    /**
+     * Undoes the last move or flying toggle of the session, and moves the GameObjects back along. <br />
+     * A crate pulled back off a diamond becomes a rune again. While taking off or landing, nothing can be undone.
+     *
+     * @return True is returned if anything is undone; Otherwise, false is returned.
+     * @see GameSession#undo()
+     */
+    public boolean undo() {
+        return step(true);
+    }
+
+    /**
+     * Redoes the last move or flying toggle undone of the session, and moves the GameObjects along. <br />
+     * While taking off or landing, nothing can be redone.
+     *
+     * @return True is returned if anything is redone; Otherwise, false is returned.
+     * @see GameSession#redo()
+     */
+    public boolean redo() {
+        return step(false);
+    }
+
+    /**
+     * Loads a replay to be played back: the level is refreshed, the replay is applied to the session at once and then undone
+     * as a whole, so that each redo() plays back its next step. <br />
+     * The level is replaying until it is refreshed again.
+     *
+     * @param replay String value of the replay in LURD format.
+     * @return True is returned if the replay is loaded; False is returned if it cannot be played as recorded on this level,
+     * which is then left refreshed.
+     * @see Replay#applyAll(GameSession, String)
+     * @see #redo()
+     */
+    public boolean loadReplay(String replay) {
+        refreshLevel();
+        if (Replay.applyAll(m_Session, replay) >= 0) {
+            refreshLevel();
+            return false;
+        }
+        while (m_Session.canUndo())
+            m_Session.undo();
+        m_Replaying = true;
+        return true;
+    }
+
+    /**
+     * Checks if the level is playing back a replay.
+     *
+     * @return True is returned if a replay is loaded since last refresh; Otherwise, false is returned.
+     */
+    public boolean isReplaying() {
+        return m_Replaying;
+    }
+
+    /**
+     * Undoes or redoes one step of the session, and makes the crate and player layers follow the session: <br />
+     * 1. The player is moved between its cells before and after the step; <br />
+     * 2. If the push count changed, the crate pushed is moved the same way, being sealed if it ends on a diamond; <br />
+     * 3. If the flying status changed, the player status is switched at once without animation; Otherwise, the player faces the move.
+     *
+     * @param undo True to undo a step; False to redo one.
+     * @return True is returned if any step is taken; Otherwise, false is returned.
+     */
+    private boolean step(boolean undo) {
+        if (m_Player.getM_PlayerStatus() == Player.PlayerStatus.FLYING_OFF || m_Player.getM_PlayerStatus() == Player.PlayerStatus.LANDING)
+            return false;
+
+        LevelState state = m_Session.getM_State();
+        int playerCell = state.getM_PlayerCell();
+        int pushCount = m_Session.getM_PushCount();
+        boolean flying = m_Session.isFlying();
+        if (undo ? !m_Session.undo() : !m_Session.redo())
+            return false;
+
+        if (flying != m_Session.isFlying()) {
+            m_Player.setM_PlayerStatus(m_Session.isFlying() ? Player.PlayerStatus.FLYING : Player.PlayerStatus.IDLE);
+            markDirty(playerCell);
+            return true;
+        }
+
+        int newCell = state.getM_PlayerCell();
+        Direction direction = directionBetween(playerCell, newCell);
+        if (pushCount != m_Session.getM_PushCount()) {
+            // the crate is pulled from ahead of the player on undo, or pushed from where the player steps on redo
+            int crateCell = undo ? state.getCellBy(playerCell, -direction.getM_RowDelta(), -direction.getM_ColumnDelta()) : newCell;
+            Crate crate = (Crate) getGameObjectAt(GraphicUnit.LAYER_OF_CRATE, crateCell);
+            moveGameObject(GraphicUnit.LAYER_OF_CRATE, crate.getM_Position(), direction);
+            crate.setM_CrateStatus(state.isDiamond(state.getCellBy(crateCell, direction.getM_RowDelta(), direction.getM_ColumnDelta()))
+                    ? Crate.CrateStatus.CRATE_SEALED : Crate.CrateStatus.CRATE_RUNE);
+        }
+        moveGameObject(GraphicUnit.LAYER_OF_PLAYER, m_Player.getM_Position(), direction);
+        m_Player.checkMovingStatus(direction);
+        return true;
+    }
+
+    /**
+     * Finds the direction from a cell to its neighbour.
+     *
+     * @param from Integer specifying the cell index to move from.
+     * @param to   Integer specifying the neighbouring cell index to move to.
+     * @return Direction leading from one cell to the other is returned.
+     */
+    private Direction directionBetween(int from, int to) {
+        int rowDelta = m_InitialState.getRowOf(to) - m_InitialState.getRowOf(from);
+        int columnDelta = m_InitialState.getColumnOf(to) - m_InitialState.getColumnOf(from);
+        for (Direction direction : DIRECTIONS)
+            if (direction.getM_RowDelta() == rowDelta && direction.getM_ColumnDelta() == columnDelta)
+                return direction;
+        throw new IllegalStateException("Cells " + from + " and " + to + " are not neighbours");
+    }
+
+    /**
+     * Marks a cell dirty, or the whole crate and player layers if too many cells are changed since last rendering.
+     *
+     * @param cell Integer specifying the cell index.
+     */
+    private void markDirty(int cell) {
+        if (m_DirtyCellCount == MAX_DIRTY_CELLS)
+            m_AllDirty = true;
+        else
+            m_DirtyCells[m_DirtyCellCount++] = cell;
+    }
+
+    /**
+     * Checks if the crate and player layers must be rendered again as a whole, as they are regenerated or too many cells are changed.
+     *
+     * @return True is returned if every crate and player must be rendered; Otherwise, only the dirty cells need to be.
+     */
+    public boolean isAllDirty() {
+        return m_AllDirty;
+    }
+
+    /**
+     * Gets the number of dirty cells since last rendering.
+     *
+     * @return Integer specifying the number of dirty cells is returned to caller.
+     */
+    public int getM_DirtyCellCount() {
+        return m_DirtyCellCount;
+    }
+
+    /**
+     * Gets a dirty cell by its index.
+     *
+     * @param index Integer specifying the index among dirty cells, below getM_DirtyCellCount().
+     * @return Integer specifying the cell index is returned to caller.
+     */
+    public int getDirtyCell(int index) {
+        return m_DirtyCells[index];
+    }
+
+    /**
+     * Clears all dirty cells, after the layers are rendered.
+     */
+    public void clearDirtyCells() {
+        m_DirtyCellCount = 0;
+        m_AllDirty = false;
+    }
+
+    /**
+     * Decodes raw level list of strings into the static layers(floor, diamond and wall) of GameObjects. <br />
+     * This method is only called once when the level is created, after the initial state is decoded.
+     *
+     * @see GameObjectFactory#getGamModelFromChar(char, Point)
+     * @see LevelState#fromRawLevel(List)
+     */
+    private void decodeRawLevel() {
         for (int layer = 0; layer < GraphicUnit.NUM_OF_LAYER; layer++)
             m_Layers[layer] = new Layer(ROWS, COLUMNS);
 
@@ -172,18 +470,8 @@ public final class Level implements Iterable<GameObject[]> {
                     m_Layers[GraphicUnit.LAYER_OF_WALL].putGameObjectAt(newObject, newObject.getM_Position());
                 else {
                     m_Layers[GraphicUnit.LAYER_OF_FLOOR].putGameObjectAt(new Floor(newObject.getM_Position()), newObject.getM_Position());
-
-                    if (newObject instanceof Player) {
-                        m_Player = (Player) newObject;
-                        m_Layers[GraphicUnit.LAYER_OF_PLAYER].putGameObjectAt(newObject, newObject.getM_Position());
-                    }
-                    if (newObject instanceof Crate)
-                        m_Layers[GraphicUnit.LAYER_OF_CRATE].putGameObjectAt(newObject, newObject.getM_Position());
-
-                    if (newObject instanceof Diamond) {
+                    if (newObject instanceof Diamond)
                         m_Layers[GraphicUnit.LAYER_OF_DIAMOND].putGameObjectAt(newObject, newObject.getM_Position());
-                        m_NumberOfDiamonds++;
-                    }
                 }
                 Debugger.debugBegin(false, "[ADDING LEVEL] LEVEL [" + m_Index + "]: " + m_LevelName);
                 Debugger.debugBegin(false, "Row: " + ROWS + " Col: " + COLUMNS);
@@ -192,25 +480,55 @@ public final class Level implements Iterable<GameObject[]> {
     }
 
     /**
-     * Checks if the current level is completed by counting down all crates that hit diamonds. <br />
+     * Generates/Resets the whole information of the current level: <br />
+     * 1. Restarts the session, which resets the state of level by copying the initial state, the move count, the flying status and the deadlock found; <br />
+     * 2. Regenerates the crate and player layers of GameObjects from the reset state, which must be rendered again as a whole; <br />
+     * 3. Stops replaying, if a replay is loaded. <br />
+     * The timer is reset by the caller, as the level knows nothing about GameEngine.
+     *
+     * @see GameSession#restart()
+     * @see org.ziqi.gameEngine.manager.DataManager#resetTime()
+     * @see org.ziqi.control.screenController.GamingScreenController#initialize(URL, ResourceBundle)
+     */
+    public void refreshLevel() {
+        LevelState state = m_Session.getM_State();
+
+        // remove crates and player of last play from their layers
+        for (int cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, 0); cell != LevelState.OUT_OF_BOUNDS; cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, cell + 1))
+            m_Layers[GraphicUnit.LAYER_OF_CRATE].removeGameObjectAt(getPointOf(cell));
+        if (m_Player != null)
+            m_Layers[GraphicUnit.LAYER_OF_PLAYER].removeGameObjectAt(m_Player.getM_Position());
+
+        m_Session.restart();
+
+        for (int cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, 0); cell != LevelState.OUT_OF_BOUNDS; cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, cell + 1))
+            m_Layers[GraphicUnit.LAYER_OF_CRATE].putGameObjectAt(new Crate(getPointOf(cell), this), getPointOf(cell));
+        m_Player = new Player(getPointOf(state.getM_PlayerCell()), this);
+        m_Layers[GraphicUnit.LAYER_OF_PLAYER].putGameObjectAt(m_Player, m_Player.getM_Position());
+        m_AllDirty = true;
+        m_Replaying = false;
+    }
+
+    /**
+     * Gets the position of given cell of the level state as Point object.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return A new Point object specifying the row and column of the cell is returned.
+     */
+    public Point getPointOf(int cell) {
+        return new Point(m_InitialState.getRowOf(cell), m_InitialState.getColumnOf(cell));
+    }
+
+    /**
+     * Checks if the current level is completed by comparing the count of crates that hit diamonds, which is kept by the level state as crates move. <br />
      * This method is called every time the PlayerController handling a valid user input.
      *
      * @return True is returned if all crates hit all diamonds; Otherwise, false is returned.
      * @see org.ziqi.control.PlayerController#handle(KeyEvent)
+     * @see GameSession#isLevelComplete()
      */
     public boolean isLevelComplete() {
-        int cratedDiamondsCount = 0;
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLUMNS; col++) {
-                if (m_Layers[GraphicUnit.LAYER_OF_DIAMOND].getGameObjectAt(new Point(row, col)) != null
-                        && m_Layers[GraphicUnit.LAYER_OF_CRATE].getGameObjectAt(new Point(row, col)) != null) {
-                    cratedDiamondsCount++;
-                }
-            }
-        }
-        Debugger.debugBegin(false, "cratedDiamondsCount: " + cratedDiamondsCount);
-        Debugger.debugBegin(false, "m_NumberOfDiamonds: " + m_NumberOfDiamonds);
-        return cratedDiamondsCount == m_NumberOfDiamonds;
+        return m_Session.isLevelComplete();
     }
 
     /**
@@ -256,12 +574,8 @@ public final class Level implements Iterable<GameObject[]> {
                 row++;
             }
             GameObject[] gameObjects = new GameObject[GraphicUnit.NUM_OF_LAYER];
-            for (int layer = 0; layer < GraphicUnit.NUM_OF_LAYER; layer++) {
-                gameObjects[layer] = m_Layers[layer].getGameObjectAt(new Point(row, column));
-                Debugger.debugEnd(false, "row: " + row + "col:" + column);
-                if (gameObjects[layer] != null)
-                    Debugger.debugEnd(false, gameObjects[layer].getClass().getName());
-            }
+            for (int layer = 0; layer < GraphicUnit.NUM_OF_LAYER; layer++)
+                gameObjects[layer] = m_Layers[layer].getGameObjectAt(row, column);
             column++;
             return gameObjects;
         }
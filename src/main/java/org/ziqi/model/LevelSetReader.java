@@ -0,0 +1,134 @@
+package org.ziqi.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LevelSetReader class reads the raw levels of a set file without any GameEngine, so that tools can work on level sets headless. <br />
+ * A set file lists its levels one after another: a "LevelName: " line followed by map lines starting with '='.
+ * Any other line is ignored.
+ *
+ * @author Ziqi Yang
+ * @see org.ziqi.gameEngine.manager.LevelManager#loadSet(InputStream, String)
+ * @see LevelState#fromRawLevel(List)
+ */
+public final class LevelSetReader {
+
+    /**
+     * Constant string specifying the prefix of a level name line.
+     */
+    private static final String LEVEL_NAME_PREFIX = "LevelName: ";
+
+    /**
+     * RawLevel class holds the name and the map lines of one level read from a set file.
+     */
+    public static final class RawLevel {
+
+        /**
+         * String value specifying the name of level.
+         */
+        private final String m_LevelName;
+
+        /**
+         * Integer specifying the line number of the level name line in the set file, starting from 1.
+         */
+        private final int m_LineNumber;
+
+        /**
+         * List of strings as map lines of the level, with the leading '=' removed.
+         */
+        private final List<String> m_Lines;
+
+        /**
+         * RawLevel constructor with all information of the level.
+         *
+         * @param levelName  String value specifying the name of level.
+         * @param lineNumber Integer specifying the line number of the level name line.
+         * @param lines      List of strings as map lines of the level.
+         */
+        private RawLevel(String levelName, int lineNumber, List<String> lines) {
+            m_LevelName = levelName;
+            m_LineNumber = lineNumber;
+            m_Lines = Collections.unmodifiableList(lines);
+        }
+
+        /**
+         * Gets the name of level.
+         *
+         * @return String value specifying the name of level is returned to caller.
+         */
+        public String getM_LevelName() {
+            return m_LevelName;
+        }
+
+        /**
+         * Gets the line number of the level name line in the set file.
+         *
+         * @return Integer specifying the line number starting from 1 is returned to caller.
+         */
+        public int getM_LineNumber() {
+            return m_LineNumber;
+        }
+
+        /**
+         * Gets the map lines of the level.
+         *
+         * @return Unmodifiable list of strings as map lines is returned to caller.
+         */
+        public List<String> getM_Lines() {
+            return m_Lines;
+        }
+    }
+
+    /**
+     * LevelSetReader is not to be instantiated.
+     */
+    private LevelSetReader() {
+    }
+
+    /**
+     * Reads all raw levels of a set from the given input stream, which is closed afterwards. <br />
+     * Map lines are trimmed and upper cased as the game has always read them; Map lines before the first level name are dropped.
+     *
+     * @param input InputStream specifying the set file to read from.
+     * @return List of raw levels in file order is returned to caller.
+     * @throws IOException If the input cannot be read.
+     */
+    public static List<RawLevel> read(InputStream input) throws IOException {
+        List<RawLevel> rawLevels = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
+            List<String> lines = null;
+            String levelName = "";
+            int nameLineNumber = 0;
+            int lineNumber = 0;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+
+                // a new level starts at its name
+                if (line.contains("LevelName")) {
+                    if (lines != null)
+                        rawLevels.add(new RawLevel(levelName, nameLineNumber, lines));
+                    lines = new ArrayList<>();
+                    levelName = line.replace(LEVEL_NAME_PREFIX, "");
+                    nameLineNumber = lineNumber;
+                    continue;
+                }
+
+                // if the line begins with '=', then read as map of current level
+                line = line.trim().toUpperCase();
+                if (lines != null && line.startsWith("="))
+                    lines.add(line.substring(1));
+            }
+            if (lines != null && lines.size() != 0)
+                rawLevels.add(new RawLevel(levelName, nameLineNumber, lines));
+        }
+        return rawLevels;
+    }
+}
@@ -0,0 +1,584 @@
+package org.ziqi.model;
+
+import java.util.List;
+
+/**
+ * LevelState class stores the content of a level as packed bitboards indexed by cell. <br />
+ * Walls, diamonds and crates are each kept as one plane of bits (one bit per cell, cell = row * COLUMNS + column),
+ * and all planes together with the player cell and the crated diamonds count are packed into a single long array, so that restarting a level is a single array copy. <br />
+ * A Zobrist hash of the crates is kept incrementally in the same array as crates move, together with the cached region the player stands in,
+ * so that the hash of the whole state is a cheap key for solvers, replays and undo caches.
+ *
+ * @author Ziqi Yang
+ * @see Level
+ * @see ZobristKeys
+ */
+public final class LevelState {
+
+    /**
+     * Constant integer specifying the index of Wall plane.
+     */
+    public static final int PLANE_OF_WALL = 0;
+
+    /**
+     * Constant integer specifying the index of Diamond plane.
+     */
+    public static final int PLANE_OF_DIAMOND = 1;
+
+    /**
+     * Constant integer specifying the index of Crate plane.
+     */
+    public static final int PLANE_OF_CRATE = 2;
+
+    /**
+     * Constant integer specifying the index of dead square plane: floor cells from which a crate can never be pushed to any diamond.
+     *
+     * @see #markDeadSquares()
+     */
+    public static final int PLANE_OF_DEAD_SQUARE = 3;
+
+    /**
+     * Constant integer specifying number of planes packed in the state.
+     */
+    private static final int NUM_OF_PLANE = 4;
+
+    /**
+     * Constant integer returned as cell index when a position is out of bound of the level.
+     */
+    public static final int OUT_OF_BOUNDS = -1;
+
+    /**
+     * Constant integer stored as region cell when the player region has to be found again.
+     */
+    private static final int UNKNOWN_REGION = -2;
+
+    /**
+     * Constant array of all directions, kept to avoid copying Direction.values() on every search.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Integer specifying number of rows of the level.
+     */
+    private final int ROWS;
+
+    /**
+     * Integer specifying number of columns of the level.
+     */
+    private final int COLUMNS;
+
+    /**
+     * Integer specifying number of long words used by one plane.
+     */
+    private final int WORDS_PER_PLANE;
+
+    /**
+     * Integer specifying the index of the word holding the player cell.
+     */
+    private final int PLAYER_SLOT;
+
+    /**
+     * Integer specifying the index of the word holding the number of crates that hit diamonds.
+     */
+    private final int CRATED_DIAMONDS_SLOT;
+
+    /**
+     * Integer specifying the index of the word holding the Zobrist hash of all crates.
+     */
+    private final int CRATE_HASH_SLOT;
+
+    /**
+     * Integer specifying the index of the word holding the cached region cell of the player.
+     */
+    private final int REGION_SLOT;
+
+    /**
+     * Array of long words holding all planes followed by the player cell, the crated diamonds count, the crate hash and the player region cell.
+     */
+    private final long[] m_Bits;
+
+    /**
+     * Zobrist keys shared by all levels of the same size.
+     */
+    private final ZobristKeys m_Keys;
+
+    /**
+     * Array of cells used as queue when finding the player region; Allocated on first use.
+     */
+    private int[] m_RegionQueue;
+
+    /**
+     * Array of booleans used as visited marks when finding the player region; Allocated on first use.
+     */
+    private boolean[] m_RegionVisited;
+
+    /**
+     * LevelState constructor to initialize an empty state of the given size.
+     *
+     * @param rows    Integer specifying rows of the level.
+     * @param columns Integer specifying columns of the level.
+     */
+    public LevelState(int rows, int columns) {
+        ROWS = rows;
+        COLUMNS = columns;
+        WORDS_PER_PLANE = (rows * columns + Long.SIZE - 1) / Long.SIZE;
+        PLAYER_SLOT = NUM_OF_PLANE * WORDS_PER_PLANE;
+        CRATED_DIAMONDS_SLOT = PLAYER_SLOT + 1;
+        CRATE_HASH_SLOT = CRATED_DIAMONDS_SLOT + 1;
+        REGION_SLOT = CRATE_HASH_SLOT + 1;
+        m_Bits = new long[REGION_SLOT + 1];
+        m_Bits[PLAYER_SLOT] = OUT_OF_BOUNDS;
+        m_Bits[REGION_SLOT] = UNKNOWN_REGION;
+        m_Keys = ZobristKeys.forCells(rows * columns);
+    }
+
+    /**
+     * Decodes raw level lines into a new LevelState without creating any GameObject, so that levels can be decoded headlessly. <br />
+     * Chars are decoded in the same way as GameObjectFactory: W/Q as wall, C as crate, D as diamond, S as player and space as floor.
+     * Dead squares are computed once after decoding.
+     *
+     * @param rawLevel List of strings as raw level lines read from resource file.
+     * @return A new LevelState holding the decoded level is returned to caller.
+     * @throws IllegalArgumentException If a line is shorter than the first line or an unknown char is found.
+     * @see org.ziqi.gameEngine.GameObjectFactory#getGamModelFromChar(char, java.awt.Point)
+     */
+    public static LevelState fromRawLevel(List<String> rawLevel) {
+        int rows = rawLevel.size();
+        int columns = rawLevel.get(0).trim().length();
+        LevelState state = new LevelState(rows, columns);
+
+        for (int row = 0; row < rows; row++) {
+            String line = rawLevel.get(row);
+            if (line.length() < columns)
+                throw new IllegalArgumentException("Row " + row + " is shorter than " + columns + " columns");
+            for (int col = 0; col < columns; col++) {
+                int cell = state.getCellIndex(row, col);
+                switch (Character.toUpperCase(line.charAt(col))) {
+                    case 'W', 'Q' -> state.set(PLANE_OF_WALL, cell);
+                    case 'C' -> state.set(PLANE_OF_CRATE, cell);
+                    case 'D' -> state.set(PLANE_OF_DIAMOND, cell);
+                    case 'S' -> state.setM_PlayerCell(cell);
+                    case ' ' -> {
+                    }
+                    default -> throw new IllegalArgumentException("Unknown char '" + line.charAt(col) + "' at row " + row + ", column " + col);
+                }
+            }
+        }
+        state.markDeadSquares();
+        return state;
+    }
+
+    /**
+     * Marks all dead squares: floor cells from which a crate can never be pushed to any diamond, such as corners and edges along walls without a diamond. <br />
+     * Live cells are found by a backward breadth first search from all diamonds: a crate at cell x can be pushed to x + d
+     * if x + d is not a wall and the player can stand on x - d, which is not a wall either. Crates are ignored since they can move away,
+     * and the player can always fly to the pushing side. This is only called once when the level is decoded.
+     */
+    private void markDeadSquares() {
+        int cells = ROWS * COLUMNS;
+        boolean[] live = new boolean[cells];
+        int[] queue = new int[cells];
+        int head = 0;
+        int tail = 0;
+        for (int cell = nextSetCell(PLANE_OF_DIAMOND, 0); cell != OUT_OF_BOUNDS; cell = nextSetCell(PLANE_OF_DIAMOND, cell + 1)) {
+            live[cell] = true;
+            queue[tail++] = cell;
+        }
+
+        while (head < tail) {
+            int cell = queue[head++];
+            for (Direction direction : DIRECTIONS) {
+                // the crate came from the opposite side, pushed by a player standing one cell further
+                int from = getCellBy(cell, -direction.getM_RowDelta(), -direction.getM_ColumnDelta());
+                if (from == OUT_OF_BOUNDS || live[from] || isWall(from))
+                    continue;
+                int pusher = getCellBy(from, -direction.getM_RowDelta(), -direction.getM_ColumnDelta());
+                if (pusher == OUT_OF_BOUNDS || isWall(pusher))
+                    continue;
+                live[from] = true;
+                queue[tail++] = from;
+            }
+        }
+
+        for (int cell = 0; cell < cells; cell++)
+            if (!live[cell] && !isWall(cell))
+                set(PLANE_OF_DEAD_SQUARE, cell);
+    }
+
+    /**
+     * Copies the whole content of the given state into this state. <br />
+     * Both states must be created with the same size.
+     *
+     * @param source LevelState to be copied from.
+     */
+    public void copyFrom(LevelState source) {
+        System.arraycopy(source.m_Bits, 0, m_Bits, 0, m_Bits.length);
+    }
+
+    /**
+     * Gets number of rows of the level.
+     *
+     * @return Integer specifying number of rows is returned.
+     */
+    public int getM_Rows() {
+        return ROWS;
+    }
+
+    /**
+     * Gets number of columns of the level.
+     *
+     * @return Integer specifying number of columns is returned.
+     */
+    public int getM_Columns() {
+        return COLUMNS;
+    }
+
+    /**
+     * Gets the cell index of given row and column.
+     *
+     * @param row    Integer specifying the row.
+     * @param column Integer specifying the column.
+     * @return The cell index is returned; If out of bound, OUT_OF_BOUNDS is returned.
+     */
+    public int getCellIndex(int row, int column) {
+        if (row < 0 || column < 0 || row >= ROWS || column >= COLUMNS)
+            return OUT_OF_BOUNDS;
+        return row * COLUMNS + column;
+    }
+
+    /**
+     * Gets the cell index translated from the given cell by a delta of rows and columns.
+     *
+     * @param cell        Integer specifying the source cell.
+     * @param rowDelta    Integer specifying the rows to translate by.
+     * @param columnDelta Integer specifying the columns to translate by.
+     * @return The translated cell index is returned; If out of bound, OUT_OF_BOUNDS is returned.
+     */
+    public int getCellBy(int cell, int rowDelta, int columnDelta) {
+        return getCellIndex(getRowOf(cell) + rowDelta, getColumnOf(cell) + columnDelta);
+    }
+
+    /**
+     * Gets the row of given cell.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return Integer specifying the row is returned.
+     */
+    public int getRowOf(int cell) {
+        return cell / COLUMNS;
+    }
+
+    /**
+     * Gets the column of given cell.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return Integer specifying the column is returned.
+     */
+    public int getColumnOf(int cell) {
+        return cell % COLUMNS;
+    }
+
+    /**
+     * Checks if the bit of given cell is set in given plane.
+     *
+     * @param plane Integer specifying the plane index.
+     * @param cell  Integer specifying the cell index.
+     * @return True is returned if the bit is set; Otherwise, false is returned.
+     */
+    public boolean isSet(int plane, int cell) {
+        return (m_Bits[plane * WORDS_PER_PLANE + (cell >>> 6)] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Sets the bit of given cell in given plane. <br />
+     * The crated diamonds count is incremented when a crate and a diamond meet at the cell.
+     *
+     * @param plane Integer specifying the plane index.
+     * @param cell  Integer specifying the cell index.
+     */
+    public void set(int plane, int cell) {
+        if (isSet(plane, cell))
+            return;
+        m_Bits[plane * WORDS_PER_PLANE + (cell >>> 6)] |= 1L << cell;
+        if (isCratedDiamondPlane(plane) && hasCrate(cell) && isDiamond(cell))
+            m_Bits[CRATED_DIAMONDS_SLOT]++;
+        onCellChanged(plane, cell);
+    }
+
+    /**
+     * Clears the bit of given cell in given plane. <br />
+     * The crated diamonds count is decremented when a crate leaves a diamond at the cell.
+     *
+     * @param plane Integer specifying the plane index.
+     * @param cell  Integer specifying the cell index.
+     */
+    public void clear(int plane, int cell) {
+        if (!isSet(plane, cell))
+            return;
+        if (isCratedDiamondPlane(plane) && hasCrate(cell) && isDiamond(cell))
+            m_Bits[CRATED_DIAMONDS_SLOT]--;
+        m_Bits[plane * WORDS_PER_PLANE + (cell >>> 6)] &= ~(1L << cell);
+        onCellChanged(plane, cell);
+    }
+
+    /**
+     * Updates the crate hash and invalidates the player region after a bit of given plane is flipped.
+     *
+     * @param plane Integer specifying the plane index.
+     * @param cell  Integer specifying the cell index.
+     */
+    private void onCellChanged(int plane, int cell) {
+        if (plane == PLANE_OF_CRATE)
+            m_Bits[CRATE_HASH_SLOT] ^= m_Keys.getCrateKey(cell);
+        if (plane == PLANE_OF_CRATE || plane == PLANE_OF_WALL)
+            m_Bits[REGION_SLOT] = UNKNOWN_REGION;
+    }
+
+    /**
+     * Checks if given plane takes part in the crated diamonds count.
+     *
+     * @param plane Integer specifying the plane index.
+     * @return True is returned if the plane is crate or diamond plane; Otherwise, false is returned.
+     */
+    private static boolean isCratedDiamondPlane(int plane) {
+        return plane == PLANE_OF_CRATE || plane == PLANE_OF_DIAMOND;
+    }
+
+    /**
+     * Checks if there is a wall at given cell.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return True is returned if there is a wall; Otherwise, false is returned.
+     */
+    public boolean isWall(int cell) {
+        return isSet(PLANE_OF_WALL, cell);
+    }
+
+    /**
+     * Checks if there is a diamond at given cell.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return True is returned if there is a diamond; Otherwise, false is returned.
+     */
+    public boolean isDiamond(int cell) {
+        return isSet(PLANE_OF_DIAMOND, cell);
+    }
+
+    /**
+     * Checks if there is a crate at given cell.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return True is returned if there is a crate; Otherwise, false is returned.
+     */
+    public boolean hasCrate(int cell) {
+        return isSet(PLANE_OF_CRATE, cell);
+    }
+
+    /**
+     * Checks if given cell is a dead square, from which a crate can never be pushed to any diamond.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return True is returned if the cell is a dead square; Otherwise, false is returned.
+     */
+    public boolean isDeadSquare(int cell) {
+        return isSet(PLANE_OF_DEAD_SQUARE, cell);
+    }
+
+    /**
+     * Checks if pushing a crate from a cell onto another makes the level unsolvable. <br />
+     * A crate on a dead square is lost, which is only affordable while there are spare crates (more crates than diamonds) left.
+     * A crate pushed from a dead square is lost already, so that pushing it on loses no more crates.
+     *
+     * @param from Integer specifying the cell of the crate pushed.
+     * @param to   Integer specifying the cell the crate is pushed to.
+     * @return True is returned if the push dooms the level; Otherwise, false is returned.
+     */
+    public boolean isDoomedPush(int from, int to) {
+        return isDeadSquare(to) && getM_LostCrates() + (isDeadSquare(from) ? 0 : 1) > getM_SpareCrates();
+    }
+
+    /**
+     * Gets number of crates standing on dead squares, which can never reach any diamond.
+     *
+     * @return Integer specifying number of lost crates is returned.
+     */
+    public int getM_LostCrates() {
+        int lostCrates = 0;
+        int crateOffset = PLANE_OF_CRATE * WORDS_PER_PLANE;
+        int deadOffset = PLANE_OF_DEAD_SQUARE * WORDS_PER_PLANE;
+        for (int word = 0; word < WORDS_PER_PLANE; word++)
+            lostCrates += Long.bitCount(m_Bits[crateOffset + word] & m_Bits[deadOffset + word]);
+        return lostCrates;
+    }
+
+    /**
+     * Gets number of crates more than diamonds, which may be lost without losing the level.
+     *
+     * @return Integer specifying number of spare crates is returned.
+     */
+    public int getM_SpareCrates() {
+        return countOf(PLANE_OF_CRATE) - countOf(PLANE_OF_DIAMOND);
+    }
+
+    /**
+     * Moves the crate bit from one cell to another. <br />
+     * The crated diamonds count is kept up to date by clear() and set().
+     *
+     * @param from Integer specifying the cell the crate is moved from.
+     * @param to   Integer specifying the cell the crate is moved to.
+     */
+    public void moveCrate(int from, int to) {
+        clear(PLANE_OF_CRATE, from);
+        set(PLANE_OF_CRATE, to);
+    }
+
+    /**
+     * Gets the cell the player is standing on.
+     *
+     * @return Integer specifying the player cell is returned; If no player is placed, OUT_OF_BOUNDS is returned.
+     */
+    public int getM_PlayerCell() {
+        return (int) m_Bits[PLAYER_SLOT];
+    }
+
+    /**
+     * Sets the cell the player is standing on.
+     *
+     * @param playerCell Integer specifying the new player cell.
+     */
+    public void setM_PlayerCell(int playerCell) {
+        int lastCell = getM_PlayerCell();
+        // a step between two free cells stays in the same region; any other move has to find it again
+        if (lastCell == OUT_OF_BOUNDS || !isFree(lastCell) || playerCell == OUT_OF_BOUNDS || !isFree(playerCell)
+                || Math.abs(getRowOf(lastCell) - getRowOf(playerCell)) + Math.abs(getColumnOf(lastCell) - getColumnOf(playerCell)) != 1)
+            m_Bits[REGION_SLOT] = UNKNOWN_REGION;
+        m_Bits[PLAYER_SLOT] = playerCell;
+    }
+
+    /**
+     * Checks if the player can stand on given cell on the ground.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return True is returned if there is neither a wall nor a crate; Otherwise, false is returned.
+     */
+    public boolean isFree(int cell) {
+        return !isWall(cell) && !hasCrate(cell);
+    }
+
+    /**
+     * Gets the region cell of the player, which is the smallest cell the player can walk to without pushing any crate. <br />
+     * If the player is flying over a wall or a crate, the player cell itself is returned. The region is cached until a crate moves or the player leaves it.
+     *
+     * @return Integer specifying the region cell is returned; If no player is placed, OUT_OF_BOUNDS is returned.
+     */
+    public int getM_PlayerRegionCell() {
+        int playerCell = getM_PlayerCell();
+        if (playerCell == OUT_OF_BOUNDS || !isFree(playerCell))
+            return playerCell;
+        if (m_Bits[REGION_SLOT] == UNKNOWN_REGION)
+            m_Bits[REGION_SLOT] = findRegionCell(playerCell);
+        return (int) m_Bits[REGION_SLOT];
+    }
+
+    /**
+     * Finds the smallest free cell connected to the given free cell by a breadth first search.
+     *
+     * @param start Integer specifying the free cell to start from.
+     * @return Integer specifying the smallest connected cell is returned.
+     */
+    private int findRegionCell(int start) {
+        int cells = ROWS * COLUMNS;
+        if (m_RegionQueue == null) {
+            m_RegionQueue = new int[cells];
+            m_RegionVisited = new boolean[cells];
+        }
+        int head = 0;
+        int tail = 0;
+        int smallest = start;
+        m_RegionQueue[tail++] = start;
+        m_RegionVisited[start] = true;
+        while (head < tail) {
+            int cell = m_RegionQueue[head++];
+            smallest = Math.min(smallest, cell);
+            for (Direction direction : DIRECTIONS) {
+                int next = getCellBy(cell, direction.getM_RowDelta(), direction.getM_ColumnDelta());
+                if (next != OUT_OF_BOUNDS && !m_RegionVisited[next] && isFree(next)) {
+                    m_RegionVisited[next] = true;
+                    m_RegionQueue[tail++] = next;
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++)
+            m_RegionVisited[m_RegionQueue[i]] = false;
+        return smallest;
+    }
+
+    /**
+     * Gets the Zobrist hash of all crates, which is kept incrementally as crates move.
+     *
+     * @return Long value specifying the crate hash is returned.
+     */
+    public long getM_CrateHash() {
+        return m_Bits[CRATE_HASH_SLOT];
+    }
+
+    /**
+     * Gets the Zobrist hash of the state: the crate hash combined with the key of the player region cell. <br />
+     * States differing only in where the player stands inside the same walkable region have the same hash.
+     *
+     * @return Long value specifying the state hash is returned.
+     * @see #getM_PlayerRegionCell()
+     */
+    public long getM_Hash() {
+        int regionCell = getM_PlayerRegionCell();
+        return regionCell == OUT_OF_BOUNDS ? getM_CrateHash() : getM_CrateHash() ^ m_Keys.getPlayerKey(regionCell);
+    }
+
+    /**
+     * Counts the set bits of given plane.
+     *
+     * @param plane Integer specifying the plane index.
+     * @return Integer specifying the number of set bits is returned.
+     */
+    public int countOf(int plane) {
+        int count = 0;
+        int offset = plane * WORDS_PER_PLANE;
+        for (int word = 0; word < WORDS_PER_PLANE; word++)
+            count += Long.bitCount(m_Bits[offset + word]);
+        return count;
+    }
+
+    /**
+     * Gets the number of crates that hit diamonds, which is kept incrementally as crates move.
+     *
+     * @return Integer specifying the number of crated diamonds is returned.
+     */
+    public int getM_CratedDiamonds() {
+        return (int) m_Bits[CRATED_DIAMONDS_SLOT];
+    }
+
+    /**
+     * Finds the next set cell of given plane starting from the given cell inclusively.
+     *
+     * @param plane    Integer specifying the plane index.
+     * @param fromCell Integer specifying the cell to start searching from.
+     * @return The next set cell is returned; If none exists, OUT_OF_BOUNDS is returned.
+     */
+    public int nextSetCell(int plane, int fromCell) {
+        int cells = ROWS * COLUMNS;
+        if (fromCell < 0 || fromCell >= cells)
+            return OUT_OF_BOUNDS;
+        int offset = plane * WORDS_PER_PLANE;
+        int word = fromCell >>> 6;
+        long bits = m_Bits[offset + word] & (-1L << fromCell);
+        while (true) {
+            if (bits != 0) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return cell < cells ? cell : OUT_OF_BOUNDS;
+            }
+            if (++word == WORDS_PER_PLANE)
+                return OUT_OF_BOUNDS;
+            bits = m_Bits[offset + word];
+        }
+    }
+}
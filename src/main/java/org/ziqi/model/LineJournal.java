@@ -0,0 +1,189 @@
+package org.ziqi.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * LineJournal class appends lines to a file on its own single writer thread, so that the thread appending never waits for a disk. <br />
+ * Lines appended while the writer is busy are coalesced: they are written together and forced onto the disk by one fsync, after which
+ * all their futures complete. Lines are written in the order they are appended, and any other file access of the owner is run on the
+ * writer thread too by submit(), so that it sees all lines appended before. <br />
+ * Subclasses may prepare the file before and maintain it after each batch of lines.
+ *
+ * @author Ziqi Yang
+ * @see ScorePersistence
+ * @see RunHistory
+ */
+class LineJournal {
+
+    /**
+     * PendingLine class holds a line waiting to be appended and the future completed once it is on the disk.
+     */
+    private static final class PendingLine {
+
+        /**
+         * String value specifying the line without its line break.
+         */
+        private final String m_Line;
+
+        /**
+         * CompletableFuture completed once the line is forced onto the disk.
+         */
+        private final CompletableFuture<Void> m_Written = new CompletableFuture<>();
+
+        /**
+         * PendingLine constructor.
+         *
+         * @param line String value specifying the line without its line break.
+         */
+        private PendingLine(String line) {
+            m_Line = line;
+        }
+    }
+
+    /**
+     * File the lines are appended to.
+     */
+    private final File m_File;
+
+    /**
+     * ExecutorService of the single writer thread.
+     */
+    private final ExecutorService m_Writer;
+
+    /**
+     * List of lines waiting to be appended, guarded by this object.
+     */
+    private List<PendingLine> m_Pending = new ArrayList<>();
+
+    /**
+     * Boolean value specifying if the writer is asked to append the pending lines, guarded by this object.
+     */
+    private boolean m_DrainQueued = false;
+
+    /**
+     * LineJournal constructor of the given file, starting its daemon writer thread.
+     *
+     * @param file       File the lines are appended to; Its directory is created on the first write if missing.
+     * @param threadName String value specifying the name of the writer thread.
+     */
+    LineJournal(File file, String threadName) {
+        m_File = file;
+        m_Writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the file the lines are appended to.
+     *
+     * @return File of this journal is returned.
+     */
+    File getM_File() {
+        return m_File;
+    }
+
+    /**
+     * Queues a line to be appended, together with all lines queued while the writer is busy.
+     *
+     * @param line String value specifying the line without its line break.
+     * @return A CompletableFuture completed once the line is forced onto the disk is returned; It completes exceptionally if it cannot be written.
+     */
+    CompletableFuture<Void> append(String line) {
+        PendingLine pending = new PendingLine(line);
+        synchronized (this) {
+            m_Pending.add(pending);
+            if (!m_DrainQueued) {
+                m_DrainQueued = true;
+                m_Writer.execute(this::drain);
+            }
+        }
+        return pending.m_Written;
+    }
+
+    /**
+     * Runs a task on the writer thread, after all lines queued before.
+     *
+     * @param task Callable to be run, e.g. reading the file.
+     * @param <T>  Type of result of the task.
+     * @return A CompletableFuture completed with the result of the task is returned; It completes exceptionally if the task throws.
+     */
+    <T> CompletableFuture<T> submit(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, m_Writer);
+    }
+
+    /**
+     * Waits on the writer thread for all lines queued so far.
+     *
+     * @return A CompletableFuture completed once all lines queued before are written is returned.
+     */
+    CompletableFuture<Void> flush() {
+        return submit(() -> null);
+    }
+
+    /**
+     * Prepares the file on the writer thread before a batch of lines is appended. Nothing is done by default.
+     *
+     * @throws IOException If the file cannot be prepared, in which case the lines are not appended.
+     */
+    void beforeAppend() throws IOException {
+    }
+
+    /**
+     * Maintains the file on the writer thread after a batch of lines is forced onto the disk, before their futures complete.
+     * Nothing is done by default.
+     *
+     * @param lines Integer specifying the number of lines appended.
+     * @throws IOException If the file cannot be maintained, in which case the futures of the lines complete exceptionally.
+     */
+    void afterAppend(int lines) throws IOException {
+    }
+
+    /**
+     * Appends all pending lines by one write and one fsync, completing their futures.
+     */
+    private void drain() {
+        List<PendingLine> pending;
+        synchronized (this) {
+            pending = m_Pending;
+            m_Pending = new ArrayList<>();
+            m_DrainQueued = false;
+        }
+
+        StringBuilder lines = new StringBuilder();
+        for (PendingLine line : pending)
+            lines.append(line.m_Line).append('\n');
+        try {
+            beforeAppend();
+            m_File.getAbsoluteFile().getParentFile().mkdirs();
+            try (FileOutputStream output = new FileOutputStream(m_File, true)) {
+                output.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+                output.getFD().sync();
+            }
+            afterAppend(pending.size());
+        } catch (IOException e) {
+            for (PendingLine line : pending)
+                line.m_Written.completeExceptionally(e);
+            return;
+        }
+        for (PendingLine line : pending)
+            line.m_Written.complete(null);
+    }
+}
@@ -0,0 +1,157 @@
+package org.ziqi.model;
+
+/**
+ * MoveJournal class records the steps of a GameSession as packed one byte entries in a ring, so that they can be undone and redone. <br />
+ * Entries before the cursor can be undone, and entries after it can be redone until a new step is recorded. <br />
+ * The ring doubles when full up to MAX_CAPACITY entries, after which the oldest entries are dropped; Undo and redo never allocate,
+ * and a session of ten thousand moves costs ten kilobytes at most. <br />
+ * The meaning of entries is decided by the session.
+ *
+ * @author Ziqi Yang
+ * @see GameSession#undo()
+ * @see GameSession#redo()
+ */
+final class MoveJournal {
+
+    /**
+     * Constant integer specifying the initial number of entries of the ring, which must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Constant integer specifying the max number of entries of the ring, which must be a power of two.
+     */
+    private static final int MAX_CAPACITY = 1 << 20;
+
+    /**
+     * Array of bytes as the ring of entries.
+     */
+    private byte[] m_Entries = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Integer specifying the index in ring of the oldest entry.
+     */
+    private int m_Start;
+
+    /**
+     * Integer specifying the number of entries that can be undone, i.e. the distance of cursor from the oldest entry.
+     */
+    private int m_UndoCount;
+
+    /**
+     * Integer specifying the number of entries after the cursor that can be redone.
+     */
+    private int m_RedoCount;
+
+    /**
+     * Boolean value specifying if any entry of this play is dropped as the ring is full.
+     */
+    private boolean m_Truncated;
+
+    /**
+     * Records a new entry at the cursor, dropping all entries that could be redone.
+     *
+     * @param entry Integer specifying the entry, whose lowest byte is kept.
+     */
+    void record(int entry) {
+        m_RedoCount = 0;
+        if (m_UndoCount == m_Entries.length) {
+            if (m_Entries.length < MAX_CAPACITY)
+                grow();
+            else {
+                // drop the oldest entry
+                m_Start = (m_Start + 1) & (m_Entries.length - 1);
+                m_UndoCount--;
+                m_Truncated = true;
+            }
+        }
+        m_Entries[(m_Start + m_UndoCount) & (m_Entries.length - 1)] = (byte) entry;
+        m_UndoCount++;
+    }
+
+    /**
+     * Moves the cursor back by one entry.
+     *
+     * @return Integer specifying the entry to be undone is returned; -1 if nothing can be undone.
+     */
+    int undo() {
+        if (m_UndoCount == 0)
+            return -1;
+        m_UndoCount--;
+        m_RedoCount++;
+        return m_Entries[(m_Start + m_UndoCount) & (m_Entries.length - 1)] & 0xFF;
+    }
+
+    /**
+     * Moves the cursor forth by one entry.
+     *
+     * @return Integer specifying the entry to be redone is returned; -1 if nothing can be redone.
+     */
+    int redo() {
+        if (m_RedoCount == 0)
+            return -1;
+        int entry = m_Entries[(m_Start + m_UndoCount) & (m_Entries.length - 1)] & 0xFF;
+        m_UndoCount++;
+        m_RedoCount--;
+        return entry;
+    }
+
+    /**
+     * Removes all entries, keeping the ring for the next play.
+     */
+    void clear() {
+        m_Start = 0;
+        m_UndoCount = 0;
+        m_RedoCount = 0;
+        m_Truncated = false;
+    }
+
+    /**
+     * Gets an entry that can be undone by its index, counting from the oldest entry.
+     *
+     * @param index Integer specifying the index of entry, below getM_UndoCount().
+     * @return Integer specifying the entry is returned.
+     */
+    int get(int index) {
+        return m_Entries[(m_Start + index) & (m_Entries.length - 1)] & 0xFF;
+    }
+
+    /**
+     * Checks if any entry of this play is dropped as the ring is full, so that the entries left do not begin from the start of play.
+     *
+     * @return True is returned if the oldest entries are dropped since last clear; Otherwise, false is returned.
+     */
+    boolean isTruncated() {
+        return m_Truncated;
+    }
+
+    /**
+     * Gets the number of entries that can be undone.
+     *
+     * @return Integer specifying the number of entries before the cursor is returned.
+     */
+    int getM_UndoCount() {
+        return m_UndoCount;
+    }
+
+    /**
+     * Gets the number of entries that can be redone.
+     *
+     * @return Integer specifying the number of entries after the cursor is returned.
+     */
+    int getM_RedoCount() {
+        return m_RedoCount;
+    }
+
+    /**
+     * Doubles the ring, moving the entries to its beginning. This is only called when the ring is full and nothing can be redone.
+     */
+    private void grow() {
+        byte[] entries = new byte[m_Entries.length * 2];
+        int head = m_Entries.length - m_Start;
+        System.arraycopy(m_Entries, m_Start, entries, 0, head);
+        System.arraycopy(m_Entries, 0, entries, head, m_Start);
+        m_Entries = entries;
+        m_Start = 0;
+    }
+}
@@ -0,0 +1,124 @@
+package org.ziqi.model;
+
+import java.util.Arrays;
+
+/**
+ * NameDictionary class encodes names as small integer codes, so that a name repeated by many records is kept only once. <br />
+ * Set names are shared by all levels of a set and player names by all records they break, so a score table stores their codes
+ * instead of one string per record. Codes are given in the order names are first encoded and are never reused. <br />
+ * Codes are found through an open addressing hash table of codes, so that a name costs its string and three integers.
+ *
+ * @author Ziqi Yang
+ * @see ScoreTable
+ */
+final class NameDictionary {
+
+    /**
+     * Constant integer specifying the names a new dictionary has room for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * String array of names indexed by their codes.
+     */
+    private String[] m_Names = new String[INITIAL_CAPACITY];
+
+    /**
+     * Integer specifying the number of names encoded.
+     */
+    private int m_Size = 0;
+
+    /**
+     * Open addressing hash table of codes plus one keyed by names; 0 is an empty slot.
+     * Its length is a power of two at least twice the number of names.
+     */
+    private int[] m_Slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Encodes a name, giving it the next code if it is not encoded yet.
+     *
+     * @param name String value of the name.
+     * @return Integer specifying the code of the name is returned.
+     */
+    int encode(String name) {
+        int slot = findSlot(name);
+        if (m_Slots[slot] != 0)
+            return m_Slots[slot] - 1;
+        if (m_Size == m_Names.length) {
+            grow();
+            slot = findSlot(name);
+        }
+        m_Names[m_Size] = name;
+        m_Slots[slot] = ++m_Size;
+        return m_Size - 1;
+    }
+
+    /**
+     * Finds the code of a name without encoding it.
+     *
+     * @param name String value of the name.
+     * @return Integer specifying the code of the name is returned; -1 if the name is not encoded.
+     */
+    int find(String name) {
+        return m_Slots[findSlot(name)] - 1;
+    }
+
+    /**
+     * Decodes a code into its name.
+     *
+     * @param code Integer specifying the code given by encode(String).
+     * @return String value of the name is returned.
+     */
+    String decode(int code) {
+        return m_Names[code];
+    }
+
+    /**
+     * Counts the names encoded.
+     *
+     * @return Integer specifying the number of distinct names is returned.
+     */
+    int size() {
+        return m_Size;
+    }
+
+    /**
+     * Finds the slot of a name in the hash table by linear probing.
+     *
+     * @param name String value of the name.
+     * @return Integer specifying the slot holding the code of the name is returned; If it is not encoded, the empty slot it would be put into.
+     */
+    private int findSlot(String name) {
+        int mask = m_Slots.length - 1;
+        int slot = hash(name) & mask;
+        while (m_Slots[slot] != 0 && !m_Names[m_Slots[slot] - 1].equals(name))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Doubles the room of names and the hash table, putting all codes into the new hash table.
+     */
+    private void grow() {
+        m_Names = Arrays.copyOf(m_Names, m_Names.length * 2);
+        m_Slots = new int[m_Names.length * 2];
+        int mask = m_Slots.length - 1;
+        for (int code = 0; code < m_Size; code++) {
+            int slot = hash(m_Names[code]) & mask;
+            while (m_Slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            m_Slots[slot] = code + 1;
+        }
+    }
+
+    /**
+     * Hashes a name, spreading similar names over the hash table.
+     *
+     * @param name String value of the name.
+     * @return Integer specifying the hash is returned.
+     */
+    private static int hash(String name) {
+        int hash = name.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -4,7 +4,6 @@ package org.ziqi.model;
 import javafx.scene.input.KeyCode;
 import org.ziqi.gameEngine.GameEngine;
 import org.ziqi.gameEngine.base.GameObject;
-import org.ziqi.Debugger;
 import org.ziqi.gameEngine.manager.MusicManager;
 import org.ziqi.view.GraphicUnit;
 
@@ -30,22 +29,33 @@ public class Player extends GameObject {
     private PlayerDirection m_PlayerDirection;
 
     /**
-     * Constant integer value specifying the move count number for each move when player is in FLYING status as punishment.
-     *
-     * @see PlayerStatus#FLYING
-     * @see Player#move(Point)
+     * Level the Player object belongs to, whose session holds the rules; Null if the object is only decoded from a raw level.
      */
-    private final static int FLYING_MOVE_COUNT = 2;
+    private final Level m_Level;
 
     /**
-     * Player constructor to initialize the Player object at given position and set the status as IDLE and facing direction as DOWN.
+     * Player constructor to initialize the Player object at given position and set the status as IDLE and facing direction as DOWN. <br />
+     * The Player object is not bound to any level, so it cannot move.
      *
      * @param position Point object specifying the initial position the object.
      * @see PlayerStatus
      * @see PlayerDirection
      */
     public Player(Point position) {
+        this(position, null);
+    }
+
+    /**
+     * Player constructor to initialize the Player object of the given level at given position and set the status as IDLE and facing direction as DOWN.
+     *
+     * @param position Point object specifying the initial position the object.
+     * @param level    Level the Player object belongs to.
+     * @see PlayerStatus
+     * @see PlayerDirection
+     */
+    public Player(Point position, Level level) {
         super(position);
+        m_Level = level;
         m_PlayerStatus = PlayerStatus.IDLE;
         m_PlayerDirection = PlayerDirection.DOWN;
     }
@@ -182,57 +192,34 @@ public class Player extends GameObject {
     }
 
     /**
-     * Checks if the Player can move to given direction. <br />
-     * This method will get all targets at the moving direction of the Player and call their the override move method to check: <br />
+     * Moves the Player to given direction by the rules of the session of its level, and updates the layers of GameObjects accordingly. <br />
+     * If a crate is pushed, the crate is moved along; If the push is refused in warn on dead push mode, an alert sound is played. <br />
+     * The move count is kept by the session. While taking off or landing, the Player cannot move.
      * This method is called by PlayerController when handling valid user input(move).
      *
-     * @param direction A Point object specifying the direction vector the GameObject to be moved to.
-     * @return Boolean value specifying if the pusher(player) can move is returned; <br />
-     * If so, then the Player is moved to new position, move count increment according to current status(FLYING/grounded) and true is returned to specify the player has moved; <br />
-     * Otherwise, false is returned.
-     * @see org.ziqi.gameEngine.manager.DataManager#incrementMoveCount(int)
+     * @param direction Direction specifying the direction the GameObject to be moved to.
+     * @return True is returned if the Player has moved; Otherwise, false is returned.
+     * @see GameSession#move(Direction)
+     * @see Crate#move(Direction)
      * @see org.ziqi.control.PlayerController
      * @see Layer
      */
     @Override
-    public boolean move(Point direction) {
-        GameEngine gameEngine = GameEngine.getInstance();
-        Level currentLevel = gameEngine.getM_LevelManager().getM_CurrentLevel();
-        HashMap<Integer, GameObject> Targets = new HashMap<>();
-
-        // find all game objects in target place
-        for (int layer = GraphicUnit.LAYER_OF_FLOOR; layer <= GraphicUnit.LAYER_OF_CRATE; layer++)
-            Targets.put(layer, currentLevel.getGameObjectBy(layer, getM_Position(), direction));
-
-
-        boolean moved = false;
-        // if player is grounded
-        if (m_PlayerStatus == PlayerStatus.IDLE || m_PlayerStatus == PlayerStatus.PUSHING) {
-            if (Targets.get(GraphicUnit.LAYER_OF_FLOOR) != null)
-                moved = true;
-
-            if (Targets.get(GraphicUnit.LAYER_OF_CRATE) != null)
-                moved = (Targets.get(GraphicUnit.LAYER_OF_CRATE)).move(direction);
-
-            if (Targets.get(GraphicUnit.LAYER_OF_WALL) != null)
-                moved = false;
-        }
-        // if player is flying
-        else if (m_PlayerStatus == PlayerStatus.FLYING)
-            if (Targets.get(GraphicUnit.LAYER_OF_FLOOR) != null || Targets.get(GraphicUnit.LAYER_OF_WALL) != null)
-                moved = true;
-
-
-        if (moved) {
-            currentLevel.getM_Layers()[GraphicUnit.LAYER_OF_PLAYER].translateObjectBy(getM_Position(), direction);
-            // if player is flying, double move count
-            if (m_PlayerStatus != PlayerStatus.FLYING)
-                gameEngine.getM_DataManager().incrementMoveCount(1);
-            else
-                gameEngine.getM_DataManager().incrementMoveCount(FLYING_MOVE_COUNT);
-            Debugger.debugBegin(true, "m_MovesCount: " + gameEngine.getM_DataManager().getM_MoveCount());
-        }
-        return moved;
+    public boolean move(Direction direction) {
+        if (m_PlayerStatus == PlayerStatus.FLYING_OFF || m_PlayerStatus == PlayerStatus.LANDING)
+            return false;
+
+        GameSession.MoveResult result = m_Level.getM_Session().move(direction);
+        if (result == GameSession.MoveResult.REFUSED)
+            GameEngine.getInstance().getM_MusicManager().playCannotLandMusic();
+        if (!result.isMoved())
+            return false;
+
+        // the crate pushed is still drawn on the cell the session has just moved the player onto
+        if (result.isPush())
+            m_Level.getGameObjectAt(GraphicUnit.LAYER_OF_CRATE, m_Level.getM_Session().getM_State().getM_PlayerCell()).move(direction);
+        m_Level.moveGameObject(GraphicUnit.LAYER_OF_PLAYER, getM_Position(), direction);
+        return true;
     }
 
     /**
@@ -241,16 +228,16 @@ public class Player extends GameObject {
      * Otherwise, checkMovingStatus() is called.
      *
      * @param code      The input key code by user.
-     * @param direction The new facing direction.
+     * @param direction The new facing direction; Null if SPACE is pressed.
      * @see org.ziqi.control.PlayerController
      * @see Player#checkFlyingStatus()
-     * @see Player#checkMovingStatus(KeyCode, Point)
+     * @see Player#checkMovingStatus(Direction)
      */
-    public void updatePlayerStatus(KeyCode code, Point direction) {
+    public void updatePlayerStatus(KeyCode code, Direction direction) {
         if (code == KeyCode.SPACE)
             checkFlyingStatus();
-        else
-            checkMovingStatus(code, direction);
+        else if (direction != null)
+            checkMovingStatus(direction);
     }
 
     /**
@@ -258,33 +245,34 @@ public class Player extends GameObject {
      * If player is grounded, then updates status to flying-off. <br />
      * If player is flying, then check if player can land. If so, player status will be set as landing.
      * Otherwise, alert sound effect wil be played.<br />
+     * The flying status itself is switched by the session at once, while the Player status follows after the animation.
      *
+     * @see GameSession#toggleFlying()
      * @see MusicManager#playCannotLandMusic()
      */
     private void checkFlyingStatus() {
-        // if grounded, ready to fly (fly off)
-        if (m_PlayerStatus == PlayerStatus.IDLE || m_PlayerStatus == PlayerStatus.PUSHING)
-            m_PlayerStatus = PlayerStatus.FLYING_OFF;
-            // if flying, check if can land and ready to land
-        else if (m_PlayerStatus == PlayerStatus.FLYING) {
-            Level currentLevel = GameEngine.getInstance().getM_LevelManager().getM_CurrentLevel();
-            GameObject crate = currentLevel.getGameObjectAt(GraphicUnit.LAYER_OF_CRATE, getM_Position());
-            GameObject wall = currentLevel.getGameObjectAt(GraphicUnit.LAYER_OF_WALL, getM_Position());
-
-            if (crate == null && wall == null)
-                m_PlayerStatus = PlayerStatus.LANDING;
-            else
-                GameEngine.getInstance().getM_MusicManager().playCannotLandMusic();
-
-        }
-        // if the player is landing or taking off, do handle this input.
+        // if the player is landing or taking off, do not handle this input.
+        if (m_PlayerStatus == PlayerStatus.FLYING_OFF || m_PlayerStatus == PlayerStatus.LANDING)
+            return;
+
+        GameSession session = m_Level.getM_Session();
+        // grounded player is ready to fly (fly off), flying player is ready to land if it can
+        if (session.toggleFlying())
+            m_PlayerStatus = session.isFlying() ? PlayerStatus.FLYING_OFF : PlayerStatus.LANDING;
+        else
+            GameEngine.getInstance().getM_MusicManager().playCannotLandMusic();
     }
 
     /**
      * Checks current moving status and facing direction and updates new player status. <br />
+     * This is also called by Level when a move is undone or redone, so that the player faces the move.
+     *
+     * @param direction The new facing direction.
+     * @see Level#undo()
+     * @see Level#redo()
      */
-    private void checkMovingStatus(KeyCode code, Point direction) {
-        switch (code) {
+    void checkMovingStatus(Direction direction) {
+        switch (direction) {
             case UP:
                 m_PlayerDirection = PlayerDirection.UP;
                 break;
@@ -302,9 +290,10 @@ public class Player extends GameObject {
         }
         // if grounded, update player status idle/push
         if (m_PlayerStatus != PlayerStatus.FLYING) {
-            Level currentLevel = GameEngine.getInstance().getM_LevelManager().getM_CurrentLevel();
-            GameObject crate = currentLevel.getGameObjectBy(GraphicUnit.LAYER_OF_CRATE, getM_Position(), direction);
-            if (crate == null || ((Crate) crate).getM_CrateStatus() != Crate.CrateStatus.CRATE_RUNE)
+            LevelState state = m_Level.getM_State();
+            int target = state.getCellBy(state.getM_PlayerCell(), direction.getM_RowDelta(), direction.getM_ColumnDelta());
+            // crates on diamonds are sealed and cannot be pushed any more
+            if (target == LevelState.OUT_OF_BOUNDS || !state.hasCrate(target) || state.isDiamond(target))
                 m_PlayerStatus = PlayerStatus.IDLE;
             else
                 m_PlayerStatus = PlayerStatus.PUSHING;
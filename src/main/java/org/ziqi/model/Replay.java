@@ -0,0 +1,123 @@
+package org.ziqi.model;
+
+/**
+ * Replay class re-applies replays of plays recorded by GameSession onto a session, without any JavaFX node or GameEngine. <br />
+ * A replay is written in the LURD format of solutions: lower case letters are moves, upper case letters are pushes and
+ * FLY_TOGGLE_CODE is a SPACE press to take off or land. <br />
+ * Replays are applied strictly: every code must be played exactly as recorded, so that a replay edited by hand
+ * cannot claim a push it does not make. A claimed minimum move record is verified by replaying it at full speed,
+ * and one session can be reused to verify many records of its level.
+ *
+ * @author Ziqi Yang
+ * @see GameSession#getReplay()
+ * @see ScoreRecord#getM_Replay()
+ */
+public final class Replay {
+
+    /**
+     * Verdict enumeration specifying the outcome of verifying a replay.
+     */
+    public enum Verdict {
+        VALID,
+        NO_REPLAY,
+        ILLEGAL_CODE,
+        INCOMPLETE,
+        MOVE_COUNT_MISMATCH,
+        IMPLAUSIBLE_TIME
+    }
+
+    /**
+     * Constant char specifying the code of taking off or landing in a replay or a solution.
+     */
+    public static final char FLY_TOGGLE_CODE = '*';
+
+    /**
+     * Constant integer specifying the most codes a player can key in per second, faster than any key repeat, so that a claimed
+     * time below the length of its replay divided by it is impossible.
+     */
+    public static final int MAX_CODES_PER_SECOND = 30;
+
+    /**
+     * Replay class is never instantiated.
+     */
+    private Replay() {
+    }
+
+    /**
+     * Applies one code of a replay onto the session strictly: <br />
+     * 1. FLY_TOGGLE_CODE must take off or land; <br />
+     * 2. A move code must move the player, pushing a crate if and only if the code is upper case.
+     *
+     * @param session GameSession to be played.
+     * @param code    Char specifying the code to be applied.
+     * @return True is returned if the code is played as recorded; False is returned if it is unknown or cannot be played so.
+     * @see GameSession#move(Direction)
+     * @see GameSession#toggleFlying()
+     */
+    public static boolean apply(GameSession session, char code) {
+        if (code == FLY_TOGGLE_CODE)
+            return session.toggleFlying();
+        Direction direction = Direction.fromCode(code);
+        if (direction == null)
+            return false;
+        GameSession.MoveResult result = session.move(direction);
+        return result.isMoved() && result.isPush() == Character.isUpperCase(code);
+    }
+
+    /**
+     * Applies all codes of a replay onto the session from its current state, stopping at the first code that cannot be played.
+     *
+     * @param session GameSession to be played.
+     * @param replay  String value of the replay.
+     * @return Integer specifying the index of the first code not played as recorded is returned; -1 if all codes are played.
+     * @see #apply(GameSession, char)
+     */
+    public static int applyAll(GameSession session, String replay) {
+        for (int i = 0; i < replay.length(); i++)
+            if (!apply(session, replay.charAt(i)))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Verifies a replay by restarting the session and replaying it at full speed. <br />
+     * The replay is valid if all its codes are played as recorded, it completes the level on its last code and the move count
+     * it makes equals to the claimed one. The session is left in the state the replay ends in.
+     *
+     * @param session      GameSession of the level the replay is recorded on, which is restarted first.
+     * @param replay       String value of the replay; Null or empty if none is recorded.
+     * @param claimedMoves Integer specifying the move count claimed by the record.
+     * @return Verdict specifying the outcome of verifying is returned.
+     */
+    public static Verdict verify(GameSession session, String replay, int claimedMoves) {
+        if (replay == null || replay.isEmpty())
+            return Verdict.NO_REPLAY;
+        session.restart();
+        for (int i = 0; i < replay.length(); i++) {
+            // a replay ends when the level is completed, as the score board pops up
+            if (session.isLevelComplete() || !apply(session, replay.charAt(i)))
+                return Verdict.ILLEGAL_CODE;
+        }
+        if (!session.isLevelComplete())
+            return Verdict.INCOMPLETE;
+        return session.getM_MoveCount() == claimedMoves ? Verdict.VALID : Verdict.MOVE_COUNT_MISMATCH;
+    }
+
+    /**
+     * Verifies a replay with the claimed move count and time, by verify(GameSession, String, int) and then checking that
+     * the replay can be keyed in within the claimed time at MAX_CODES_PER_SECOND.
+     *
+     * @param session        GameSession of the level the replay is recorded on, which is restarted first.
+     * @param replay         String value of the replay; Null or empty if none is recorded.
+     * @param claimedMoves   Integer specifying the move count claimed.
+     * @param claimedSeconds Integer specifying the time claimed in seconds; Negative if no time is claimed.
+     * @return Verdict specifying the outcome of verifying is returned.
+     * @see #verify(GameSession, String, int)
+     */
+    public static Verdict verify(GameSession session, String replay, int claimedMoves, int claimedSeconds) {
+        Verdict verdict = verify(session, replay, claimedMoves);
+        if (verdict == Verdict.VALID && claimedSeconds >= 0 && claimedSeconds < replay.length() / MAX_CODES_PER_SECOND)
+            return Verdict.IMPLAUSIBLE_TIME;
+        return verdict;
+    }
+}
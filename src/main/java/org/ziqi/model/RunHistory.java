@@ -0,0 +1,394 @@
+package org.ziqi.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * RunHistory class keeps every completed run of every level, not only the best ones, so that each level has a full leaderboard. <br />
+ * Runs are kept in the columns of a RunTable in memory, where the runs of each level are sorted by time and by moves, so that a page of
+ * the top runs is a slice of a sorted array and adding a run costs a binary search, however many runs a level has. <br />
+ * Every run is appended as a line to the runs file by the single writer thread of a LineJournal, which coalesces a burst of runs into
+ * one fsync. Replays are long and only needed to play a run back, so they are left in the file and read from the offset of the line of
+ * their run when asked for, instead of being kept in memory. <br />
+ * A history is owned by one thread, the JavaFX application thread in game, and its futures complete on that thread.
+ *
+ * @author Ziqi Yang
+ * @see RunTable
+ * @see LineJournal
+ * @see org.ziqi.gameEngine.manager.DataManager
+ */
+public final class RunHistory {
+
+    /**
+     * Order enum specifying the orders runs of a level are ranked in.
+     */
+    public enum Order {
+
+        /**
+         * Fastest time first, then fewest moves.
+         */
+        TIME,
+
+        /**
+         * Fewest moves first, then fastest time.
+         */
+        MOVES
+    }
+
+    /**
+     * Run class as a read-only view of a run of a level at its rank, which is created for the runs of one page only.
+     */
+    public static final class Run {
+
+        /**
+         * Integer specifying the rank of the run in the order it is got in, from 1 for the best.
+         */
+        private final int m_Rank;
+
+        /**
+         * String value specifying the player name.
+         */
+        private final String m_PlayerName;
+
+        /**
+         * Integer specifying the time in seconds.
+         */
+        private final int m_Seconds;
+
+        /**
+         * Integer specifying the move count.
+         */
+        private final int m_Moves;
+
+        /**
+         * Long integer specifying the time the run is completed, in milliseconds since the epoch.
+         */
+        private final long m_Timestamp;
+
+        /**
+         * Long integer specifying the byte offset of the line of the run in the runs file, where its replay is read from.
+         */
+        private final long m_Offset;
+
+        /**
+         * Run constructor of a run of a table at a rank.
+         *
+         * @param table RunTable keeping the run.
+         * @param run   Integer specifying the run in the table.
+         * @param rank  Integer specifying the rank of the run, from 1 for the best.
+         */
+        private Run(RunTable table, int run, int rank) {
+            m_Rank = rank;
+            m_PlayerName = table.getPlayerName(run);
+            m_Seconds = table.getSeconds(run);
+            m_Moves = table.getMoves(run);
+            m_Timestamp = table.getTimestamp(run);
+            m_Offset = table.getOffset(run);
+        }
+
+        /**
+         * Gets the rank of this run.
+         *
+         * @return An integer specifying the rank in the order the run is got in, from 1 for the best, is returned.
+         */
+        public int getM_Rank() {
+            return m_Rank;
+        }
+
+        /**
+         * Gets the player name of this run.
+         *
+         * @return A string specifying the player name is returned.
+         */
+        public String getM_PlayerName() {
+            return m_PlayerName;
+        }
+
+        /**
+         * Gets the time of this run.
+         *
+         * @return An integer specifying the time in seconds is returned.
+         */
+        public int getM_Seconds() {
+            return m_Seconds;
+        }
+
+        /**
+         * Gets the move count of this run.
+         *
+         * @return An integer specifying the move count is returned.
+         */
+        public int getM_Moves() {
+            return m_Moves;
+        }
+
+        /**
+         * Gets the time this run is completed.
+         *
+         * @return A long integer specifying the time in milliseconds since the epoch is returned.
+         */
+        public long getM_Timestamp() {
+            return m_Timestamp;
+        }
+    }
+
+    /**
+     * Loaded class holds a table read from the runs file together with the length of the file read, where the next run is appended.
+     */
+    private static final class Loaded {
+
+        /**
+         * RunTable of all runs read.
+         */
+        private final RunTable m_Table;
+
+        /**
+         * Long integer specifying the length of the file in bytes.
+         */
+        private final long m_Length;
+
+        /**
+         * Loaded constructor.
+         *
+         * @param table  RunTable of all runs read.
+         * @param length Long integer specifying the length of the file in bytes.
+         */
+        private Loaded(RunTable table, long length) {
+            m_Table = table;
+            m_Length = length;
+        }
+    }
+
+    /**
+     * Constant integer specifying the number of fields of a line of a run.
+     */
+    private static final int FIELDS = 7;
+
+    /**
+     * LineJournal appending runs to the runs file on its writer thread.
+     */
+    private final LineJournal m_Journal;
+
+    /**
+     * Executor running tasks on the thread owning the history, e.g. Platform::runLater.
+     */
+    private final Executor m_Owner;
+
+    /**
+     * RunTable keeping all runs, replaced once the runs file is read.
+     */
+    private RunTable m_Table = new RunTable();
+
+    /**
+     * Long integer specifying the length of the runs file in bytes after the runs written so far, i.e. the offset of the next run written.
+     */
+    private long m_Length = 0;
+
+    /**
+     * CompletableFuture completed on the owner thread once the runs file is read.
+     */
+    private final CompletableFuture<Void> m_Loaded = new CompletableFuture<>();
+
+    /**
+     * RunHistory constructor of the given runs file, which is not read until load() is called.
+     *
+     * @param file  Runs file every run is appended to; Its directory is created on the first write if missing.
+     * @param owner Executor running tasks on the thread owning the history, e.g. Platform::runLater.
+     */
+    public RunHistory(File file, Executor owner) {
+        m_Journal = new LineJournal(file, "RunWriter-" + file.getName());
+        m_Owner = owner;
+    }
+
+    /**
+     * Reads the runs file on the writer thread, replacing the runs in memory on the owner thread. <br />
+     * A missing file is an empty history, and a last line torn by a crash while appending is cut off the file, so that the offsets
+     * of the runs appended afterwards are their offsets in the file.
+     *
+     * @return A CompletableFuture completed on the owner thread once the runs are read is returned to caller;
+     * It completes exceptionally if the file cannot be read.
+     */
+    public CompletableFuture<Void> load() {
+        m_Journal.submit(this::read).whenCompleteAsync((loaded, error) -> {
+            if (error != null) {
+                m_Loaded.completeExceptionally(error);
+                return;
+            }
+            m_Table = loaded.m_Table;
+            m_Length = loaded.m_Length;
+            m_Loaded.complete(null);
+        }, m_Owner);
+        return m_Loaded;
+    }
+
+    /**
+     * Gets the future of reading the runs file.
+     *
+     * @return A CompletableFuture completed on the owner thread once the runs are read is returned to caller.
+     */
+    public CompletableFuture<Void> getM_Loaded() {
+        return m_Loaded;
+    }
+
+    /**
+     * Adds a completed run, which is appended to the runs file on the writer thread and ranked on the owner thread once it is written. <br />
+     * Runs are written and ranked in the order they are added, so that the offset of a run is the length of the file before it.
+     * Runs may only be added once the runs file is read, as the runs read would replace them.
+     *
+     * @param setName    String value specifying the set name of the level.
+     * @param levelName  String value specifying the level name.
+     * @param playerName String value specifying the player name.
+     * @param seconds    Integer specifying the time in seconds.
+     * @param moves      Integer specifying the move count.
+     * @param timestamp  Long integer specifying the time the run is completed, in milliseconds since the epoch.
+     * @param replay     String value specifying the replay in LURD format.
+     * @return A CompletableFuture completed on the owner thread once the run is forced onto the disk and ranked is returned to caller;
+     * It completes exceptionally if the file cannot be written, and the run is then not ranked.
+     * @throws IllegalStateException If the runs file is not read yet, or cannot be read.
+     */
+    public CompletableFuture<Void> add(String setName, String levelName, String playerName, int seconds, int moves, long timestamp, String replay) {
+        if (!m_Loaded.isDone())
+            throw new IllegalStateException("Runs are not loaded yet");
+        if (m_Loaded.isCompletedExceptionally())
+            throw new IllegalStateException("Runs cannot be loaded");
+        String line = String.join(",", new String[]{setName, levelName, playerName, String.valueOf(seconds), String.valueOf(moves),
+                String.valueOf(timestamp), replay});
+        return m_Journal.append(line).thenRunAsync(() -> {
+            m_Table.add(setName, levelName, playerName, seconds, moves, timestamp, m_Length);
+            m_Length += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        }, m_Owner);
+    }
+
+    /**
+     * Counts the runs of a level.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return Integer specifying the number of runs is returned to caller; 0 if the level has none.
+     */
+    public int count(String setName, String levelName) {
+        return m_Table.count(setName, levelName);
+    }
+
+    /**
+     * Gets a page of the runs of a level in the given order, e.g. the top ten runs from 0.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @param order     Order of the runs.
+     * @param from      Integer specifying the position of the first run, from 0 for the best.
+     * @param count     Integer specifying the most runs to get.
+     * @return List of runs ranked from from + 1 is returned to caller; Shorter than count at the end, or empty if the level has no run there.
+     */
+    public List<Run> getRuns(String setName, String levelName, Order order, int from, int count) {
+        int[] runs = m_Table.getRuns(setName, levelName, order, from, count);
+        List<Run> page = new ArrayList<>(runs.length);
+        for (int i = 0; i < runs.length; i++)
+            page.add(new Run(m_Table, runs[i], from + i + 1));
+        return page;
+    }
+
+    /**
+     * Reads the replay of a run from its line in the runs file on the writer thread, after all runs added before are written.
+     *
+     * @param run Run got from this history.
+     * @return A CompletableFuture completed on the owner thread with the replay in LURD format is returned to caller;
+     * It completes exceptionally if the file cannot be read.
+     */
+    public CompletableFuture<String> readReplay(Run run) {
+        return m_Journal.submit(() -> readLine(run.m_Offset)).thenApplyAsync(line -> line.substring(line.lastIndexOf(',') + 1), m_Owner);
+    }
+
+    /**
+     * Waits for all runs added so far to be written.
+     *
+     * @return A CompletableFuture completed on the writer thread once all runs added before are forced onto the disk is returned to caller.
+     */
+    public CompletableFuture<Void> flush() {
+        return m_Journal.flush();
+    }
+
+    /**
+     * Reads all runs of the runs file into a new table, cutting off a last line torn by a crash.
+     * Lines of too few fields or of scores that are not integers are skipped, but still take their bytes in the file.
+     *
+     * @return Loaded holding the table read and the length of the file is returned.
+     * @throws IOException If the file cannot be read or cut.
+     */
+    private Loaded read() throws IOException {
+        File file = m_Journal.getM_File();
+        RunTable table = new RunTable();
+        if (!file.exists())
+            return new Loaded(table, 0);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int length = 0;
+        for (int end = 0; end < bytes.length; end++) {
+            if (bytes[end] != '\n')
+                continue;
+            readRun(table, new String(bytes, length, end - length, StandardCharsets.UTF_8), length);
+            length = end + 1;
+        }
+        if (length < bytes.length) {
+            // a line without its line break is torn by a crash while appending, and was never written
+            try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+                output.setLength(length);
+            }
+        }
+        return new Loaded(table, length);
+    }
+
+    /**
+     * Reads a line of the runs file into a run of the table. The fields are taken from the end of the line,
+     * so that a set name containing commas is still read.
+     *
+     * @param table  RunTable the run is added to.
+     * @param line   String value of the line without its line break.
+     * @param offset Long integer specifying the byte offset of the line in the file.
+     */
+    private static void readRun(RunTable table, String line, long offset) {
+        String[] fields = line.split(",", -1);
+        int n = fields.length;
+        if (n < FIELDS)
+            return;
+        try {
+            table.add(String.join(",", Arrays.copyOf(fields, n - FIELDS + 1)), fields[n - 6], fields[n - 5],
+                    Integer.parseInt(fields[n - 4]), Integer.parseInt(fields[n - 3]), Long.parseLong(fields[n - 2]), offset);
+        } catch (NumberFormatException ignored) {
+            // a malformed line is not a run
+        }
+    }
+
+    /**
+     * Reads the line starting at an offset of the runs file.
+     *
+     * @param offset Long integer specifying the byte offset of the line.
+     * @return String value of the line without its line break is returned.
+     * @throws IOException If the file cannot be read.
+     */
+    private String readLine(long offset) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(m_Journal.getM_File(), "r")) {
+            input.seek(offset);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                int end = 0;
+                while (end < read && buffer[end] != '\n')
+                    end++;
+                line.write(buffer, 0, end);
+                if (end < read)
+                    break;
+            }
+            return new String(line.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package org.ziqi.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * RunTable class keeps every completed run of every level in columns, like ScoreTable keeps the best scores: player names are codes
+ * of a NameDictionary, times, moves, timestamps and the offsets of the lines of runs in their file are int and long columns. <br />
+ * Runs of each level are indexed by two arrays of run numbers sorted by time and by moves, so that the top runs of a level are a slice
+ * of an array. Adding a run inserts it into both arrays of its level, finding its positions by binary search. <br />
+ * A table holds no JavaFX object and is owned by one thread at a time: it is built by the writer thread of RunHistory when the file
+ * is read, and handed over to the thread owning the history.
+ *
+ * @author Ziqi Yang
+ * @see RunHistory
+ * @see ScoreTable
+ */
+final class RunTable {
+
+    /**
+     * Constant integer specifying the runs a new table or a new level index has room for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * LevelRuns class holds the runs of one level sorted by time and by moves.
+     */
+    private static final class LevelRuns {
+
+        /**
+         * Integer array of runs sorted by time, then moves, then the order they are added.
+         */
+        private int[] m_ByTime = new int[INITIAL_CAPACITY];
+
+        /**
+         * Integer array of runs sorted by moves, then time, then the order they are added.
+         */
+        private int[] m_ByMoves = new int[INITIAL_CAPACITY];
+
+        /**
+         * Integer specifying the number of runs of the level.
+         */
+        private int m_Size = 0;
+    }
+
+    /**
+     * NameDictionary encoding set, level and player names.
+     */
+    private final NameDictionary m_Names = new NameDictionary();
+
+    /**
+     * Integer column of codes of player names.
+     */
+    private int[] m_Players = new int[INITIAL_CAPACITY];
+
+    /**
+     * Integer column of times in seconds.
+     */
+    private int[] m_Seconds = new int[INITIAL_CAPACITY];
+
+    /**
+     * Integer column of move counts.
+     */
+    private int[] m_Moves = new int[INITIAL_CAPACITY];
+
+    /**
+     * Long integer column of the times runs are completed, in milliseconds since the epoch.
+     */
+    private long[] m_Timestamps = new long[INITIAL_CAPACITY];
+
+    /**
+     * Long integer column of the byte offsets of the lines of runs in their file, where their replays are read from.
+     */
+    private long[] m_Offsets = new long[INITIAL_CAPACITY];
+
+    /**
+     * Integer specifying the number of runs.
+     */
+    private int m_Size = 0;
+
+    /**
+     * HashMap of the runs of each level keyed by the codes of its set name and level name.
+     *
+     * @see #getLevelKey(int, int)
+     */
+    private final HashMap<Long, LevelRuns> m_Levels = new HashMap<>();
+
+    /**
+     * Counts all runs.
+     *
+     * @return Integer specifying the number of runs is returned.
+     */
+    int size() {
+        return m_Size;
+    }
+
+    /**
+     * Adds a completed run, inserting it into the indexes of its level.
+     *
+     * @param setName    String value specifying the set name of the level.
+     * @param levelName  String value specifying the level name.
+     * @param playerName String value specifying the player name.
+     * @param seconds    Integer specifying the time in seconds.
+     * @param moves      Integer specifying the move count.
+     * @param timestamp  Long integer specifying the time the run is completed, in milliseconds since the epoch.
+     * @param offset     Long integer specifying the byte offset of the line of the run in its file.
+     * @return Integer specifying the new run is returned.
+     */
+    int add(String setName, String levelName, String playerName, int seconds, int moves, long timestamp, long offset) {
+        if (m_Size == m_Players.length)
+            grow();
+        int run = m_Size++;
+        m_Players[run] = m_Names.encode(playerName);
+        m_Seconds[run] = seconds;
+        m_Moves[run] = moves;
+        m_Timestamps[run] = timestamp;
+        m_Offsets[run] = offset;
+
+        LevelRuns level = m_Levels.computeIfAbsent(getLevelKey(m_Names.encode(setName), m_Names.encode(levelName)), key -> new LevelRuns());
+        if (level.m_Size == level.m_ByTime.length) {
+            level.m_ByTime = Arrays.copyOf(level.m_ByTime, level.m_Size * 2);
+            level.m_ByMoves = Arrays.copyOf(level.m_ByMoves, level.m_Size * 2);
+        }
+        insert(level.m_ByTime, level.m_Size, run, RunHistory.Order.TIME);
+        insert(level.m_ByMoves, level.m_Size, run, RunHistory.Order.MOVES);
+        level.m_Size++;
+        return run;
+    }
+
+    /**
+     * Counts the runs of a level.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return Integer specifying the number of runs is returned; 0 if the level has none.
+     */
+    int count(String setName, String levelName) {
+        LevelRuns level = findLevel(setName, levelName);
+        return level == null ? 0 : level.m_Size;
+    }
+
+    /**
+     * Gets a slice of the runs of a level in the given order, e.g. the top runs from 0 or a page of them.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @param order     Order of the runs.
+     * @param from      Integer specifying the position of the first run, from 0 for the best.
+     * @param count     Integer specifying the most runs to get.
+     * @return Integer array of runs from the position is returned; Shorter than count at the end, or empty if the level has no run there.
+     */
+    int[] getRuns(String setName, String levelName, RunHistory.Order order, int from, int count) {
+        LevelRuns level = findLevel(setName, levelName);
+        if (level == null || from >= level.m_Size)
+            return new int[0];
+        int[] runs = order == RunHistory.Order.TIME ? level.m_ByTime : level.m_ByMoves;
+        return Arrays.copyOfRange(runs, from, Math.min(level.m_Size, from + count));
+    }
+
+    /**
+     * Gets the player name of a run.
+     *
+     * @param run Integer specifying the run.
+     * @return String value specifying the player name is returned.
+     */
+    String getPlayerName(int run) {
+        return m_Names.decode(m_Players[run]);
+    }
+
+    /**
+     * Gets the time of a run.
+     *
+     * @param run Integer specifying the run.
+     * @return Integer specifying the time in seconds is returned.
+     */
+    int getSeconds(int run) {
+        return m_Seconds[run];
+    }
+
+    /**
+     * Gets the move count of a run.
+     *
+     * @param run Integer specifying the run.
+     * @return Integer specifying the move count is returned.
+     */
+    int getMoves(int run) {
+        return m_Moves[run];
+    }
+
+    /**
+     * Gets the time a run is completed.
+     *
+     * @param run Integer specifying the run.
+     * @return Long integer specifying the time in milliseconds since the epoch is returned.
+     */
+    long getTimestamp(int run) {
+        return m_Timestamps[run];
+    }
+
+    /**
+     * Gets the byte offset of the line of a run in its file.
+     *
+     * @param run Integer specifying the run.
+     * @return Long integer specifying the offset is returned.
+     */
+    long getOffset(int run) {
+        return m_Offsets[run];
+    }
+
+    /**
+     * Inserts a run into a sorted array of runs, after all runs comparing equal to it as it is added last.
+     *
+     * @param runs  Integer array of runs sorted in the order, with room for one more.
+     * @param size  Integer specifying the number of runs in the array.
+     * @param run   Integer specifying the run to be inserted.
+     * @param order Order of the array.
+     */
+    private void insert(int[] runs, int size, int run, RunHistory.Order order) {
+        int position = search(runs, size, run, order);
+        System.arraycopy(runs, position, runs, position + 1, size - position);
+        runs[position] = run;
+    }
+
+    /**
+     * Searches a sorted array of runs for the position of a run by binary search.
+     *
+     * @param runs  Integer array of runs sorted in the order.
+     * @param size  Integer specifying the number of runs in the array.
+     * @param run   Integer specifying the run searched for.
+     * @param order Order of the array.
+     * @return Integer specifying the position of the first run not better than the given run is returned.
+     */
+    private int search(int[] runs, int size, int run, RunHistory.Order order) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(runs[middle], run, order) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Compares two runs in the given order: by time then moves, or by moves then time, and then by the order they are added.
+     *
+     * @param a     Integer specifying the first run.
+     * @param b     Integer specifying the second run.
+     * @param order Order of the comparison.
+     * @return Negative integer, zero, or positive integer is returned as the first run is better than, the same as, or worse than the second.
+     */
+    private int compare(int a, int b, RunHistory.Order order) {
+        int first = order == RunHistory.Order.TIME ? Integer.compare(m_Seconds[a], m_Seconds[b]) : Integer.compare(m_Moves[a], m_Moves[b]);
+        if (first != 0)
+            return first;
+        int second = order == RunHistory.Order.TIME ? Integer.compare(m_Moves[a], m_Moves[b]) : Integer.compare(m_Seconds[a], m_Seconds[b]);
+        return second != 0 ? second : Integer.compare(a, b);
+    }
+
+    /**
+     * Finds the runs of a level.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return LevelRuns of the level is returned; Null if the level has no run.
+     */
+    private LevelRuns findLevel(String setName, String levelName) {
+        int setCode = m_Names.find(setName);
+        int levelCode = m_Names.find(levelName);
+        if (setCode < 0 || levelCode < 0)
+            return null;
+        return m_Levels.get(getLevelKey(setCode, levelCode));
+    }
+
+    /**
+     * Doubles the room of all columns.
+     */
+    private void grow() {
+        int capacity = m_Players.length * 2;
+        m_Players = Arrays.copyOf(m_Players, capacity);
+        m_Seconds = Arrays.copyOf(m_Seconds, capacity);
+        m_Moves = Arrays.copyOf(m_Moves, capacity);
+        m_Timestamps = Arrays.copyOf(m_Timestamps, capacity);
+        m_Offsets = Arrays.copyOf(m_Offsets, capacity);
+    }
+
+    /**
+     * Gets the key of a level in the map of level runs.
+     *
+     * @param setCode   Integer specifying the code of set name.
+     * @param levelCode Integer specifying the code of level name.
+     * @return Long integer specifying the key is returned.
+     */
+    private static long getLevelKey(int setCode, int levelCode) {
+        return (long) setCode << 32 | levelCode;
+    }
+}
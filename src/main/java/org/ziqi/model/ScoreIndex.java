@@ -0,0 +1,115 @@
+package org.ziqi.model;
+
+import java.util.Arrays;
+
+/**
+ * ScoreIndex class keeps the rows of a ScoreTable sorted in one order of the score board, so that any window of the sorted records
+ * is read by position without sorting them, e.g. the rows visible in the score board table. <br />
+ * An index is built once by ScoreTable when the table is read, sorting packed integer keys instead of comparing rows.
+ * It is then kept sorted as rows change: a row is removed by binary search before its scores change and inserted again after,
+ * which costs one array copy however many rows the table has.
+ *
+ * @author Ziqi Yang
+ * @see ScoreTable
+ * @see ScoreView
+ */
+final class ScoreIndex {
+
+    /**
+     * ScoreTable whose rows are indexed.
+     */
+    private final ScoreTable m_Table;
+
+    /**
+     * Order the rows are sorted in.
+     */
+    private final ScoreStore.Order m_Order;
+
+    /**
+     * Integer array of rows in the order.
+     */
+    private int[] m_Rows;
+
+    /**
+     * Integer specifying the number of rows indexed.
+     */
+    private int m_Size;
+
+    /**
+     * ScoreIndex constructor of all rows of a table already sorted.
+     *
+     * @param table ScoreTable whose rows are indexed.
+     * @param order Order the rows are sorted in.
+     * @param rows  Integer array of all rows of the table sorted in the order, which becomes owned by this index.
+     * @see ScoreTable#buildIndexes()
+     */
+    ScoreIndex(ScoreTable table, ScoreStore.Order order, int[] rows) {
+        m_Table = table;
+        m_Order = order;
+        m_Size = rows.length;
+        m_Rows = rows;
+    }
+
+    /**
+     * Counts the rows indexed.
+     *
+     * @return Integer specifying the number of rows is returned.
+     */
+    int size() {
+        return m_Size;
+    }
+
+    /**
+     * Gets the row at a position of the order.
+     *
+     * @param position Integer specifying the position from 0.
+     * @return Integer specifying the row is returned.
+     */
+    int get(int position) {
+        return m_Rows[position];
+    }
+
+    /**
+     * Inserts a row at its position of the order, after it is added or its scores are changed.
+     *
+     * @param row Integer specifying the row, which is not indexed.
+     */
+    void insert(int row) {
+        if (m_Size == m_Rows.length)
+            m_Rows = Arrays.copyOf(m_Rows, Math.max(16, m_Size * 2));
+        int position = search(row);
+        System.arraycopy(m_Rows, position, m_Rows, position + 1, m_Size - position);
+        m_Rows[position] = row;
+        m_Size++;
+    }
+
+    /**
+     * Removes a row from its position of the order, before its scores are changed.
+     *
+     * @param row Integer specifying the row, which is indexed by its current scores.
+     */
+    void remove(int row) {
+        int position = search(row);
+        m_Size--;
+        System.arraycopy(m_Rows, position + 1, m_Rows, position, m_Size - position);
+    }
+
+    /**
+     * Searches the position of a row by binary search, comparing its current scores with the rows indexed.
+     *
+     * @param row Integer specifying the row.
+     * @return Integer specifying the position of the row if it is indexed is returned; Otherwise, the position it is to be inserted at.
+     */
+    private int search(int row) {
+        int low = 0;
+        int high = m_Size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (m_Table.compare(m_Rows[middle], row, m_Order) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+}
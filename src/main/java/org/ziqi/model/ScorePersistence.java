@@ -0,0 +1,314 @@
+package org.ziqi.model;
+
+import com.opencsv.CSVReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ScorePersistence class does all file access of a ScoreStore on the single writer thread of its journal, so that the thread owning
+ * the store never waits for a disk, however slow. <br />
+ * The score board file is a snapshot, and every record committed since is appended as a whole line to a journal next to it.
+ * Lines appended while the writer is busy are coalesced into one fsync by LineJournal. Once the journal has as many lines as there are
+ * records, it is compacted: a new snapshot is written into a temporary file, which atomically replaces the snapshot before the journal is deleted. <br />
+ * Reading replays the journal over the snapshot into a ScoreTable, the last line of a level winning, and cuts a line torn by a crash
+ * off the journal, so that the next line appended does not continue it.
+ * As replaying the journal again changes nothing, the files recover from a kill at any point of appending or compacting.
+ * Tools outside the game read the records the same way by readLatestRecords(File). <br />
+ * The writer thread keeps no record in memory: a table read is handed over to the store, and compacting reads the files again,
+ * so that the records are never kept twice and the table of the store is never touched by the writer thread.
+ *
+ * @author Ziqi Yang
+ * @see ScoreStore
+ * @see LineJournal
+ */
+public final class ScorePersistence extends LineJournal {
+
+    /**
+     * Constant string specifying the suffix of journal file name to the snapshot file name.
+     */
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    /**
+     * Constant string specifying the suffix of temporary snapshot file name to the snapshot file name.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Constant integer specifying the fewest journal lines to be compacted, so that small stores are not compacted on every commit.
+     */
+    private static final int MIN_COMPACTION_LINES = 1024;
+
+    /**
+     * Score board file as the snapshot the records are read from and compacted into.
+     */
+    private final File m_File;
+
+    /**
+     * Journal file every committed record is appended to.
+     */
+    private final File m_Journal;
+
+    /**
+     * Integer specifying the number of records when the files were last read, only accessed by the writer thread.
+     */
+    private int m_RecordCount;
+
+    /**
+     * Integer specifying the number of lines in the journal, only accessed by the writer thread.
+     */
+    private int m_JournalLines;
+
+    /**
+     * Boolean value specifying if the files are read, only accessed by the writer thread.
+     */
+    private boolean m_Loaded = false;
+
+    /**
+     * Long integer specifying the sum of modification times of snapshot and journal when they were last read or written.
+     */
+    private long m_LoadedModified;
+
+    /**
+     * Long integer specifying the sum of sizes of snapshot and journal when they were last read or written.
+     */
+    private long m_LoadedLength;
+
+    /**
+     * ScorePersistence constructor of the given score board file, starting its daemon writer thread.
+     *
+     * @param file Score board file as the snapshot, whose journal is the file of the same name ending with JOURNAL_SUFFIX;
+     *             Its directory is created on the first write if missing.
+     */
+    ScorePersistence(File file) {
+        super(new File(file.getPath() + JOURNAL_SUFFIX), "ScoreWriter-" + file.getName());
+        m_File = file;
+        m_Journal = getM_File();
+    }
+
+    /**
+     * Reads the snapshot and the journal on the writer thread if they are not read yet, or if their sizes or modification times differ
+     * from when they were last read or written. A temporary snapshot left by a compaction killed halfway is deleted.
+     *
+     * @return A CompletableFuture completed with a new table of the latest record of every level, to be owned by the caller, is returned;
+     * It completes with null if the files are not changed.
+     */
+    CompletableFuture<ScoreTable> reloadIfChanged() {
+        return submit(this::read);
+    }
+
+    /**
+     * Reads the files before the first lines are appended, so that the lines in the journal and the records are counted.
+     *
+     * @throws IOException If the files cannot be read.
+     */
+    @Override
+    void beforeAppend() throws IOException {
+        if (!m_Loaded)
+            read();
+    }
+
+    /**
+     * Compacts the journal once it has MIN_COMPACTION_LINES lines or as many lines as there are records, whichever is more,
+     * so that committing costs constant bytes written in the long run.
+     *
+     * @param lines Integer specifying the number of lines appended.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    @Override
+    void afterAppend(int lines) throws IOException {
+        m_JournalLines += lines;
+        if (m_JournalLines >= Math.max(MIN_COMPACTION_LINES, m_RecordCount))
+            compact();
+        else
+            stampFiles();
+    }
+
+    /**
+     * Compacts the journal into the snapshot: the files are read again, and the latest record of every level is written into
+     * a temporary file forced onto the disk, which then atomically replaces the snapshot before the journal is deleted. <br />
+     * If the process is killed before the replacement, the old snapshot and the journal are read as before;
+     * If it is killed after, the journal is replayed over the new snapshot, which already holds all its lines.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    private void compact() throws IOException {
+        ScoreTable table = readTable();
+        File temporary = new File(m_File.getPath() + TEMPORARY_SUFFIX);
+        m_File.getAbsoluteFile().getParentFile().mkdirs();
+        try (FileOutputStream output = new FileOutputStream(temporary, false);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+            for (int row = 0; row < table.size(); row++) {
+                writer.write(table.toCSVFormat(row));
+                writer.write('\n');
+            }
+            writer.flush();
+            output.getFD().sync();
+        }
+        Files.move(temporary.toPath(), m_File.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(m_Journal.toPath());
+        m_JournalLines = 0;
+        stampFiles();
+    }
+
+    /**
+     * Reads the snapshot and the journal if they are not read yet or changed since, building the indexes of the table read,
+     * so that the owner thread never sorts the records.
+     *
+     * @return A new indexed ScoreTable of the latest record of every level is returned; Null if the files are not changed.
+     * @throws IOException If the files cannot be read.
+     */
+    private ScoreTable read() throws IOException {
+        if (m_Loaded && getFilesModified() == m_LoadedModified && getFilesLength() == m_LoadedLength)
+            return null;
+        ScoreTable table = readTable();
+        table.buildIndexes();
+        m_Loaded = true;
+        stampFiles();
+        return table;
+    }
+
+    /**
+     * Reads the snapshot and then the journal into a new table, deleting a temporary snapshot left by a compaction killed halfway
+     * and cutting a journal line torn by a crash off the journal.
+     *
+     * @return A new ScoreTable of the latest record of every level is returned, in the order levels are first read.
+     * @throws IOException If the files cannot be read.
+     */
+    private ScoreTable readTable() throws IOException {
+        Files.deleteIfExists(new File(m_File.getPath() + TEMPORARY_SUFFIX).toPath());
+        ScoreTable table = new ScoreTable();
+        readSnapshot(m_File, table);
+        m_JournalLines = readJournal(m_Journal, table, true);
+        m_RecordCount = table.size();
+        return table;
+    }
+
+    /**
+     * Reads the latest record of every level of a score board file, replaying its journal over it as the game does,
+     * without starting a writer thread or changing any file, e.g. to verify the records by ScoreVerifier. <br />
+     * Malformed lines are skipped, and a last journal line torn by a crash is ignored.
+     *
+     * @param file Score board file as the snapshot, whose journal is read too if any.
+     * @return List of the fields of every record is returned to caller, in the order levels are first read: set name, level name,
+     * fastest time, its player, minimum move, its player and the replay, which is empty if none is recorded.
+     * @throws IOException If the files cannot be read.
+     * @see org.ziqi.server.ScoreVerifier#main(String[])
+     */
+    public static List<String[]> readLatestRecords(File file) throws IOException {
+        ScoreTable table = new ScoreTable();
+        readSnapshot(file, table);
+        readJournal(new File(file.getPath() + JOURNAL_SUFFIX), table, false);
+        List<String[]> records = new ArrayList<>(table.size());
+        for (int row = 0; row < table.size(); row++)
+            records.add(new String[]{table.getSetName(row), table.getLevelName(row), String.valueOf(table.getFastestTime(row)),
+                    table.getPlayerOfFT(row), String.valueOf(table.getMinimumMove(row)), table.getPlayerOfMM(row), table.getReplay(row)});
+        return records;
+    }
+
+    /**
+     * Reads the records of a snapshot into a table.
+     *
+     * @param file  Snapshot file; Nothing is read if it is missing.
+     * @param table ScoreTable the records are put into.
+     * @throws IOException If the file cannot be read.
+     */
+    private static void readSnapshot(File file, ScoreTable table) throws IOException {
+        if (!file.exists())
+            return;
+        try (CSVReader reader = new CSVReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            readRecords(reader, table);
+        }
+    }
+
+    /**
+     * Replays the records of a journal over a table, ignoring a last line torn by a crash. <br />
+     * The torn line is cut off the file if asked, so that the next line appended does not continue it.
+     *
+     * @param file     Journal file; Nothing is read if it is missing.
+     * @param table    ScoreTable the records are put into.
+     * @param truncate Boolean value specifying if a torn last line is cut off the file, which is only done by the writer thread.
+     * @return Integer specifying the number of whole lines in the journal is returned.
+     * @throws IOException If the file cannot be read or cut.
+     */
+    private static int readJournal(File file, ScoreTable table, boolean truncate) throws IOException {
+        if (!file.exists())
+            return 0;
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int length = bytes.length;
+        // a line without its line break is torn by a crash while appending, and was never committed
+        while (length > 0 && bytes[length - 1] != '\n')
+            length--;
+        if (truncate && length < bytes.length) {
+            try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+                output.setLength(length);
+            }
+        }
+        try (CSVReader reader = new CSVReader(new StringReader(new String(bytes, 0, length, StandardCharsets.UTF_8)))) {
+            return readRecords(reader, table);
+        }
+    }
+
+    /**
+     * Reads records into the rows of their levels, a record of a level already read replacing the old one.
+     * Lines of too few fields or of scores that are not integers are skipped.
+     *
+     * @param reader CSVReader of the records.
+     * @param table  ScoreTable the records are put into.
+     * @return Integer specifying the number of lines read is returned.
+     */
+    private static int readRecords(CSVReader reader, ScoreTable table) {
+        int lines = 0;
+        for (String[] fields : reader) {
+            lines++;
+            if (fields.length < 6)
+                continue;
+            try {
+                table.put(fields);
+            } catch (NumberFormatException ignored) {
+                // a malformed line is not a record
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Remembers the sizes and modification times of snapshot and journal, after they are read or written.
+     */
+    private void stampFiles() {
+        m_LoadedModified = getFilesModified();
+        m_LoadedLength = getFilesLength();
+    }
+
+    /**
+     * Sums the modification times of snapshot and journal.
+     *
+     * @return Long integer specifying the sum of modification times is returned; Missing files count zero.
+     */
+    private long getFilesModified() {
+        return m_File.lastModified() + m_Journal.lastModified();
+    }
+
+    /**
+     * Sums the sizes of snapshot and journal.
+     *
+     * @return Long integer specifying the sum of sizes is returned; Missing files count zero.
+     */
+    private long getFilesLength() {
+        return m_File.length() + m_Journal.length();
+    }
+}
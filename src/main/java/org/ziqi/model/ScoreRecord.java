@@ -1,102 +1,173 @@
 package org.ziqi.model;
 
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import org.ziqi.gameEngine.manager.DataManager;
 
 /**
- * ScoreRecord class as to store information of high scores of each level.
+ * ScoreRecord class as to store information of high scores of each level. <br />
+ * A record is a light adapter of a row of a ScoreTable, where the scores are kept in columns: its getters and setters read and write
+ * the row directly. JavaFX properties, which the score board table binds to, are only created when asked for, i.e. for the rows
+ * visible in the table, and follow the setters of this record from then on.
  *
  * @author Ziqi Yang
  * @see DataManager
+ * @see ScoreTable
  */
 public class ScoreRecord {
 
     /**
-     * SimpleStringProperty specifying set name.
+     * Constant integer specifying the fastest time or minimum move of a level nobody has completed yet.
      */
-    private final SimpleStringProperty m_SetName;
+    public static final int NO_SCORE = -1;
 
     /**
-     * SimpleStringProperty specifying level name.
+     * Constant string specifying the player name of a score nobody has made yet.
      */
-    private final SimpleStringProperty m_LevelName;
+    public static final String ANONYMOUS = "anonymous";
 
     /**
-     * SimpleStringProperty specifying formatted fastest time.
+     * ScoreTable keeping the scores of this record.
      */
-    private final SimpleStringProperty m_FastestTime;
+    private final ScoreTable m_Table;
 
     /**
-     * SimpleStringProperty specifying the record breaker's name of the fastest time.
+     * Integer specifying the row of this record in the table.
      */
-    private final SimpleStringProperty m_PlayerOfFT;
+    private final int m_Row;
 
     /**
-     * SimpleStringProperty specifying minimum move.
+     * Properties of this record shown by the score board table; Null until any of them is asked for.
      */
-    private final SimpleStringProperty m_MinimumMove;
+    private Properties m_Properties;
 
     /**
-     * SimpleStringProperty specifying the record breaker's name of the minimum move.
+     * Properties class holds the JavaFX properties of a record, which are all created together when its row becomes visible,
+     * so that a record not shown costs one null reference instead of six properties.
      */
-    private final SimpleStringProperty m_PlayerOfMM;
+    private static final class Properties {
+
+        /**
+         * SimpleStringProperty specifying set name.
+         */
+        private final SimpleStringProperty m_SetName;
+
+        /**
+         * SimpleStringProperty specifying level name.
+         */
+        private final SimpleStringProperty m_LevelName;
+
+        /**
+         * SimpleIntegerProperty specifying fastest time in seconds.
+         */
+        private final SimpleIntegerProperty m_FastestTime;
+
+        /**
+         * SimpleStringProperty specifying the record breaker's name of the fastest time.
+         */
+        private final SimpleStringProperty m_PlayerOfFT;
+
+        /**
+         * SimpleIntegerProperty specifying minimum move.
+         */
+        private final SimpleIntegerProperty m_MinimumMove;
+
+        /**
+         * SimpleStringProperty specifying the record breaker's name of the minimum move.
+         */
+        private final SimpleStringProperty m_PlayerOfMM;
+
+        /**
+         * Properties constructor to initialize all properties by the scores of a record.
+         *
+         * @param record ScoreRecord whose scores are read.
+         */
+        private Properties(ScoreRecord record) {
+            m_SetName = new SimpleStringProperty(record.getM_SetName());
+            m_LevelName = new SimpleStringProperty(record.getM_LevelName());
+            m_FastestTime = new SimpleIntegerProperty(record.getM_FastestTime());
+            m_PlayerOfFT = new SimpleStringProperty(record.getM_PlayerOfFT());
+            m_MinimumMove = new SimpleIntegerProperty(record.getM_MinimumMove());
+            m_PlayerOfMM = new SimpleStringProperty(record.getM_PlayerOfMM());
+        }
+    }
 
     /**
-     * ScoreRecord constructor to initialize all information stored in this object by given parameters. <br />
-     * It is DataManager's job to instantiate new ScoreRecord, update and save them into file.
+     * ScoreRecord constructor of a level without any score, which is kept in a table of its own and not added to any store. <br />
+     * Its times and moves are NO_SCORE and its players are ANONYMOUS.
      *
-     * @param m_SetName     String value specifying set name.
-     * @param m_LevelName   String value specifying level name.
-     * @param m_FastestTime String value specifying formatted fastest time.
-     * @param m_PlayerOfFT  String value specifying record breaker's name of the fastest time.
-     * @param m_MinimumMove String value specifying minimum move.
-     * @param m_PlayerOfMM  String value specifying record breaker's name of the minimum move.
+     * @param setName   String value specifying set name.
+     * @param levelName String value specifying level name.
      * @see DataManager#getTopRecord()
      */
-    public ScoreRecord(String m_SetName, String m_LevelName, String m_FastestTime,
-                       String m_PlayerOfFT, String m_MinimumMove, String m_PlayerOfMM) {
-        this.m_SetName = new SimpleStringProperty(m_SetName);
-        this.m_LevelName = new SimpleStringProperty(m_LevelName);
-        this.m_FastestTime = new SimpleStringProperty(m_FastestTime);
-        this.m_PlayerOfFT = new SimpleStringProperty(m_PlayerOfFT);
-        this.m_MinimumMove = new SimpleStringProperty(m_MinimumMove);
-        this.m_PlayerOfMM = new SimpleStringProperty(m_PlayerOfMM);
+    public ScoreRecord(String setName, String levelName) {
+        m_Table = new ScoreTable();
+        m_Row = m_Table.add(setName, levelName);
+    }
+
+    /**
+     * ScoreRecord constructor of a row of a table.
+     *
+     * @param table ScoreTable keeping the scores.
+     * @param row   Integer specifying the row in the table.
+     * @see ScoreStore
+     */
+    ScoreRecord(ScoreTable table, int row) {
+        m_Table = table;
+        m_Row = row;
     }
 
     /**
-     * Sets new fastest time by given String value into ScoreRecord object.
+     * Sets new fastest time into ScoreRecord object.
      *
-     * @param m_FastestTime String value specifying new fastest time;
+     * @param fastestTime Integer specifying new fastest time in seconds.
      */
-    public void setM_FastestTime(String m_FastestTime) {
-        this.m_FastestTime.set(m_FastestTime);
+    public void setM_FastestTime(int fastestTime) {
+        m_Table.setFastestTime(m_Row, fastestTime);
+        if (m_Properties != null)
+            m_Properties.m_FastestTime.set(fastestTime);
     }
 
     /**
      * Sets new breaker name by given String value into ScoreRecord object.
      *
-     * @param m_PlayerOfFT String value specifying breaker name.
+     * @param playerOfFT String value specifying breaker name.
      */
-    public void setM_PlayerOfFT(String m_PlayerOfFT) {
-        this.m_PlayerOfFT.set(m_PlayerOfFT);
+    public void setM_PlayerOfFT(String playerOfFT) {
+        m_Table.setPlayerOfFT(m_Row, playerOfFT);
+        if (m_Properties != null)
+            m_Properties.m_PlayerOfFT.set(playerOfFT);
     }
 
     /**
-     * Sets new minimum move count by given String value into ScoreRecord object.
+     * Sets new minimum move count into ScoreRecord object.
      *
-     * @param m_MinimumMove String value specifying new minimum move count.
+     * @param minimumMove Integer specifying new minimum move count.
      */
-    public void setM_MinimumMove(String m_MinimumMove) {
-        this.m_MinimumMove.set(m_MinimumMove);
+    public void setM_MinimumMove(int minimumMove) {
+        m_Table.setMinimumMove(m_Row, minimumMove);
+        if (m_Properties != null)
+            m_Properties.m_MinimumMove.set(minimumMove);
     }
 
     /**
      * Sets new breaker name by given String value into ScoreRecord object.
      *
-     * @param m_PlayerOfMM String value specifying breaker name.
+     * @param playerOfMM String value specifying breaker name.
+     */
+    public void setM_PlayerOfMM(String playerOfMM) {
+        m_Table.setPlayerOfMM(m_Row, playerOfMM);
+        if (m_Properties != null)
+            m_Properties.m_PlayerOfMM.set(playerOfMM);
+    }
+
+    /**
+     * Sets new replay of minimum move by given String value into ScoreRecord object.
+     *
+     * @param replay String value specifying the replay in LURD format; Empty if none is recorded.
      */
-    public void setM_PlayerOfMM(String m_PlayerOfMM) {
-        this.m_PlayerOfMM.set(m_PlayerOfMM);
+    public void setM_Replay(String replay) {
+        m_Table.setReplay(m_Row, replay);
     }
 
     /**
@@ -105,7 +176,7 @@ public class ScoreRecord {
      * @return A string specifying set name of this ScoreRecord object is returned.
      */
     public String getM_SetName() {
-        return m_SetName.get();
+        return m_Table.getSetName(m_Row);
     }
 
     /**
@@ -114,16 +185,16 @@ public class ScoreRecord {
      * @return A string specifying level name of this ScoreRecord object is returned.
      */
     public String getM_LevelName() {
-        return m_LevelName.get();
+        return m_Table.getLevelName(m_Row);
     }
 
     /**
-     * Gets the fastest time as String of this ScoreRecord object.
+     * Gets the fastest time of this ScoreRecord object.
      *
-     * @return A string specifying the fastest time of this ScoreRecord object is returned.
+     * @return An integer specifying the fastest time in seconds is returned; NO_SCORE if there is none.
      */
-    public String getM_FastestTime() {
-        return m_FastestTime.get();
+    public int getM_FastestTime() {
+        return m_Table.getFastestTime(m_Row);
     }
 
     /**
@@ -132,16 +203,16 @@ public class ScoreRecord {
      * @return A string specifying breaker name of fastest time of this ScoreRecord object is returned.
      */
     public String getM_PlayerOfFT() {
-        return m_PlayerOfFT.get();
+        return m_Table.getPlayerOfFT(m_Row);
     }
 
     /**
-     * Gets minimum move as String of this ScoreRecord object.
+     * Gets minimum move of this ScoreRecord object.
      *
-     * @return A string specifying minimum move of this ScoreRecord object is returned.
+     * @return An integer specifying the minimum move is returned; NO_SCORE if there is none.
      */
-    public String getM_MinimumMove() {
-        return m_MinimumMove.get();
+    public int getM_MinimumMove() {
+        return m_Table.getMinimumMove(m_Row);
     }
 
     /**
@@ -150,18 +221,110 @@ public class ScoreRecord {
      * @return A string specifying breaker name of minimum move of this ScoreRecord object is returned.
      */
     public String getM_PlayerOfMM() {
-        return m_PlayerOfMM.get();
+        return m_Table.getPlayerOfMM(m_Row);
+    }
+
+    /**
+     * Gets the replay of minimum move as String of this ScoreRecord object.
+     *
+     * @return A string specifying the replay in LURD format is returned; Empty if none is recorded.
+     */
+    public String getM_Replay() {
+        return m_Table.getReplay(m_Row);
+    }
+
+    /**
+     * Gets the property of set name, creating the properties of this record on first call. <br />
+     * This method is called by the PropertyValueFactory of score board table when the row of this record becomes visible.
+     *
+     * @return SimpleStringProperty specifying set name is returned.
+     */
+    public SimpleStringProperty m_SetNameProperty() {
+        return getProperties().m_SetName;
+    }
+
+    /**
+     * Gets the property of level name, creating the properties of this record on first call.
+     *
+     * @return SimpleStringProperty specifying level name is returned.
+     */
+    public SimpleStringProperty m_LevelNameProperty() {
+        return getProperties().m_LevelName;
+    }
+
+    /**
+     * Gets the property of fastest time, creating the properties of this record on first call.
+     *
+     * @return SimpleIntegerProperty specifying fastest time in seconds is returned.
+     */
+    public SimpleIntegerProperty m_FastestTimeProperty() {
+        return getProperties().m_FastestTime;
+    }
+
+    /**
+     * Gets the property of breaker name of fastest time, creating the properties of this record on first call.
+     *
+     * @return SimpleStringProperty specifying breaker name is returned.
+     */
+    public SimpleStringProperty m_PlayerOfFTProperty() {
+        return getProperties().m_PlayerOfFT;
+    }
+
+    /**
+     * Gets the property of minimum move, creating the properties of this record on first call.
+     *
+     * @return SimpleIntegerProperty specifying minimum move is returned.
+     */
+    public SimpleIntegerProperty m_MinimumMoveProperty() {
+        return getProperties().m_MinimumMove;
+    }
+
+    /**
+     * Gets the property of breaker name of minimum move, creating the properties of this record on first call.
+     *
+     * @return SimpleStringProperty specifying breaker name is returned.
+     */
+    public SimpleStringProperty m_PlayerOfMMProperty() {
+        return getProperties().m_PlayerOfMM;
+    }
+
+    /**
+     * Gets the properties of this record, creating them on first call.
+     *
+     * @return Properties of this record is returned.
+     */
+    private Properties getProperties() {
+        if (m_Properties == null)
+            m_Properties = new Properties(this);
+        return m_Properties;
     }
 
     /**
      * Gets CSV formatted record string to be store into outside file permanently. <br />
-     * This method will be called by DataManager when intending to write records into file.
+     * This method will be called by ScoreStore when intending to write records into file.
      *
      * @return A CSV formatted record string is returned.
-     * @see DataManager
+     * @see ScoreTable#toCSVFormat(int)
      */
     public String toCSVFormat() {
-        return String.join(",", new String[]{m_SetName.get(), m_LevelName.get(), m_FastestTime.get(), m_PlayerOfFT.get(), m_MinimumMove.get(), m_PlayerOfMM.get()});
+        return m_Table.toCSVFormat(m_Row);
     }
-}
 
+    /**
+     * Gets the table keeping the scores of this record.
+     *
+     * @return ScoreTable of this record is returned.
+     */
+    ScoreTable getM_Table() {
+        return m_Table;
+    }
+
+    /**
+     * Gets the row of this record in its table.
+     *
+     * @return Integer specifying the row is returned.
+     */
+    int getM_Row() {
+        return m_Row;
+    }
+}
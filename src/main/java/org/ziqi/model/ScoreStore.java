@@ -0,0 +1,284 @@
+package org.ziqi.model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * ScoreStore class keeps all score records of a score board file in memory, indexed by set name and level name, so that the record
+ * of a level is found in constant time however many levels the community packs add. <br />
+ * The scores are kept in the columns of a ScoreTable, and each record is a light adapter of its row, whose JavaFX properties are
+ * only created for the rows the score board table shows. <br />
+ * A store is owned by one thread, the JavaFX application thread in game, and never touches the files on it: reading and committing
+ * are done by the single writer thread of ScorePersistence, and return futures completed on the owner thread, so that a slow or
+ * network-mounted home directory never stalls a frame. Records committed in a burst are forced onto the disk by one fsync. <br />
+ * The files are only parsed on first reload, or again if they are changed by anyone else, which is detected by their sizes and modification times. <br />
+ * The records are kept in an ObservableList in the order of their rows: adding or committing a record notifies the list listeners,
+ * and updating one notifies the listeners of its properties created. The score board table binds to a ScoreView instead,
+ * which reads the records of its visible rows from the indexes of the table in the order and under the filter asked for. <br />
+ * The indexes are built by the writer thread when the files are read, and kept sorted as records are added or updated.
+ *
+ * @author Ziqi Yang
+ * @see ScoreRecord
+ * @see ScorePersistence
+ * @see ScoreView
+ * @see org.ziqi.gameEngine.manager.DataManager
+ */
+public final class ScoreStore {
+
+    /**
+     * Order enum specifying the orders records are indexed in, each of which sorts a column of the score board.
+     */
+    public enum Order {
+
+        /**
+         * By set name, then level name.
+         */
+        SET_LEVEL,
+
+        /**
+         * By level name, then set name.
+         */
+        LEVEL_SET,
+
+        /**
+         * By fastest time.
+         */
+        FASTEST_TIME,
+
+        /**
+         * By the record breaker's name of the fastest time.
+         */
+        PLAYER_OF_FT,
+
+        /**
+         * By minimum move.
+         */
+        MINIMUM_MOVE,
+
+        /**
+         * By the record breaker's name of the minimum move.
+         */
+        PLAYER_OF_MM
+    }
+
+    /**
+     * Filter enum specifying the names records are filtered by.
+     */
+    public enum Filter {
+
+        /**
+         * By set name.
+         */
+        SET,
+
+        /**
+         * By level name.
+         */
+        LEVEL,
+
+        /**
+         * By either record breaker's name.
+         */
+        PLAYER
+    }
+
+    /**
+     * ScorePersistence reading and writing the files on its writer thread.
+     */
+    private final ScorePersistence m_Persistence;
+
+    /**
+     * Executor running tasks on the thread owning the store, e.g. Platform::runLater.
+     */
+    private final Executor m_Owner;
+
+    /**
+     * ScoreTable keeping the scores of all records, indexed by set name and level name.
+     */
+    private ScoreTable m_Table = new ScoreTable();
+
+    /**
+     * ObservableList of all records in the order of their rows, which the score board table binds to.
+     */
+    private final ObservableList<ScoreRecord> m_Records = FXCollections.observableArrayList();
+
+    /**
+     * CompletableFuture completed on the owner thread once the files are read for the first time.
+     */
+    private final CompletableFuture<Void> m_Loaded = new CompletableFuture<>();
+
+    /**
+     * Integer specifying the number of reloads issued but not applied yet.
+     */
+    private int m_ReloadsInFlight = 0;
+
+    /**
+     * List of records committed while a reload is in flight, which the reload may have read before they are written.
+     */
+    private final List<ScoreRecord> m_CommittedInFlight = new ArrayList<>();
+
+    /**
+     * ScoreView of all records, which the score board table binds to.
+     */
+    private final ScoreView m_View;
+
+    /**
+     * ScoreStore constructor of the given score board file, which is not read until the first reload.
+     *
+     * @param file  Score board file as the snapshot, whose journal is kept next to it;
+     *              Its directory is created on the first write if missing.
+     * @param owner Executor running tasks on the thread owning the store, e.g. Platform::runLater.
+     */
+    public ScoreStore(File file, Executor owner) {
+        m_Persistence = new ScorePersistence(file);
+        m_Owner = owner;
+        m_View = new ScoreView(this);
+    }
+
+    /**
+     * Gets all records in memory, without touching the files; Call reloadIfChanged() to follow changes of anyone else.
+     *
+     * @return ObservableList of all records, which stays the same list as records are added or reloaded, is returned to caller.
+     */
+    public ObservableList<ScoreRecord> getM_Records() {
+        return m_Records;
+    }
+
+    /**
+     * Gets the view of records in the order and under the filter asked for by the score board table, which follows this store.
+     *
+     * @return ScoreView of all records is returned to caller.
+     */
+    public ScoreView getM_View() {
+        return m_View;
+    }
+
+    /**
+     * Gets the future of first reading of the files.
+     *
+     * @return A CompletableFuture completed on the owner thread once the records are read for the first time is returned to caller;
+     * It completes exceptionally if the files cannot be read.
+     */
+    public CompletableFuture<Void> getM_Loaded() {
+        return m_Loaded;
+    }
+
+    /**
+     * Finds the record of given level by the index, without touching the files.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return ScoreRecord of the level is returned; Null if the level has no record yet, or the files are not read yet.
+     */
+    public ScoreRecord find(String setName, String levelName) {
+        int row = m_Table.find(setName, levelName);
+        return row < 0 ? null : m_Records.get(row);
+    }
+
+    /**
+     * Adds the record of a level having no record yet, without any score, which notifies the listeners of records.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return ScoreRecord added is returned to caller.
+     * @throws IllegalArgumentException If the level already has a record.
+     */
+    public ScoreRecord add(String setName, String levelName) {
+        ScoreRecord record = new ScoreRecord(m_Table, m_Table.add(setName, levelName));
+        m_Records.add(record);
+        return record;
+    }
+
+    /**
+     * Counts all records.
+     *
+     * @return Integer specifying the number of records is returned to caller.
+     */
+    public int size() {
+        return m_Records.size();
+    }
+
+    /**
+     * Commits a record added or updated into the files, by queueing it as a line of the journal on the writer thread. <br />
+     * The line is taken at once, so that the record may be updated again before it is written.
+     * The listeners of records are notified of the record replaced by itself, e.g. the view, as its position in the indexes may change.
+     *
+     * @param record ScoreRecord of the store to be committed.
+     * @return A CompletableFuture completed on the owner thread once the record is forced onto the disk is returned to caller;
+     * It completes exceptionally if the files cannot be written.
+     * @see ScorePersistence#append(String)
+     */
+    public CompletableFuture<Void> commit(ScoreRecord record) {
+        if (m_ReloadsInFlight > 0)
+            m_CommittedInFlight.add(record);
+        m_Records.set(record.getM_Row(), record);
+        return m_Persistence.append(record.toCSVFormat())
+                .whenCompleteAsync((ignored, error) -> {
+                }, m_Owner);
+    }
+
+    /**
+     * Reads the files again on the writer thread if they are not read yet, or if their sizes or modification times differ from when
+     * they were last read or written. <br />
+     * Records are replaced in place on the owner thread, so that bound tables follow; Records committed meanwhile are kept.
+     * Missing files are an empty store, and a temporary snapshot left by a compaction killed halfway is deleted.
+     *
+     * @return A CompletableFuture completed on the owner thread is returned to caller, with true if the files are read and false if
+     * they are not changed; It completes exceptionally if the files cannot be read.
+     * @see ScorePersistence#reloadIfChanged()
+     */
+    public CompletableFuture<Boolean> reloadIfChanged() {
+        m_ReloadsInFlight++;
+        return m_Persistence.reloadIfChanged().whenCompleteAsync((table, error) -> {
+            m_ReloadsInFlight--;
+            if (table != null)
+                apply(table, m_CommittedInFlight);
+            if (m_ReloadsInFlight == 0)
+                m_CommittedInFlight.clear();
+            if (error != null)
+                m_Loaded.completeExceptionally(error);
+            else
+                m_Loaded.complete(null);
+        }, m_Owner).thenApply(table -> table != null);
+    }
+
+    /**
+     * Waits for all records committed so far to be written.
+     *
+     * @return A CompletableFuture completed on the writer thread once all records committed before are forced onto the disk is returned to caller.
+     */
+    public CompletableFuture<Void> flush() {
+        return m_Persistence.flush();
+    }
+
+    /**
+     * Gets the table keeping the scores of all records, whose indexes the view reads.
+     *
+     * @return ScoreTable of this store is returned.
+     */
+    ScoreTable getM_Table() {
+        return m_Table;
+    }
+
+    /**
+     * Replaces all records by the table read, keeping the scores committed since it was read.
+     *
+     * @param table     ScoreTable read, which becomes the table of this store.
+     * @param committed List of records committed since the table was read, whose scores win over the rows of their levels.
+     */
+    private void apply(ScoreTable table, List<ScoreRecord> committed) {
+        for (ScoreRecord record : committed)
+            table.put(record.getM_Table(), record.getM_Row());
+        List<ScoreRecord> records = new ArrayList<>(table.size());
+        for (int row = 0; row < table.size(); row++)
+            records.add(new ScoreRecord(table, row));
+        m_Table = table;
+        m_Records.setAll(records);
+    }
+}
@@ -0,0 +1,568 @@
+package org.ziqi.model;
+
+import java.util.Arrays;
+
+/**
+ * ScoreTable class keeps score records in columns instead of one object per record: times and move counts are int columns,
+ * and set, level and player names are int columns of codes of a NameDictionary. <br />
+ * A record is a row, whose index never changes as rows are only added. Rows are indexed by set name and level name in an open
+ * addressing hash table of row numbers, so that finding a row allocates nothing. A row costs about 30 bytes besides its replay,
+ * where six string properties and their strings cost hundreds. <br />
+ * Once indexes are built, the rows are also kept sorted in every order of the score board by a ScoreIndex each, which every setter
+ * keeps up to date, so that the score board reads the records of any window in any order without sorting. <br />
+ * A table holds no JavaFX object and is owned by one thread at a time: it is built by the writer thread of ScorePersistence
+ * when the files are read, and handed over to the thread owning the score store.
+ *
+ * @author Ziqi Yang
+ * @see ScoreRecord
+ * @see ScoreStore
+ * @see ScoreIndex
+ */
+final class ScoreTable {
+
+    /**
+     * Constant integer specifying the rows a new table has room for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * NameDictionary encoding set, level and player names.
+     */
+    private final NameDictionary m_Names = new NameDictionary();
+
+    /**
+     * Integer column of codes of set names.
+     */
+    private int[] m_SetNames = new int[INITIAL_CAPACITY];
+
+    /**
+     * Integer column of codes of level names.
+     */
+    private int[] m_LevelNames = new int[INITIAL_CAPACITY];
+
+    /**
+     * Integer column of fastest times in seconds.
+     */
+    private int[] m_FastestTimes = new int[INITIAL_CAPACITY];
+
+    /**
+     * Integer column of codes of the record breakers' names of the fastest times.
+     */
+    private int[] m_PlayersOfFT = new int[INITIAL_CAPACITY];
+
+    /**
+     * Integer column of minimum moves.
+     */
+    private int[] m_MinimumMoves = new int[INITIAL_CAPACITY];
+
+    /**
+     * Integer column of codes of the record breakers' names of the minimum moves.
+     */
+    private int[] m_PlayersOfMM = new int[INITIAL_CAPACITY];
+
+    /**
+     * String column of replays of minimum moves in LURD format; Empty if none is recorded.
+     */
+    private String[] m_Replays = new String[INITIAL_CAPACITY];
+
+    /**
+     * Integer specifying the number of rows.
+     */
+    private int m_Size = 0;
+
+    /**
+     * Open addressing hash table of row numbers plus one keyed by set name and level name; 0 is an empty slot.
+     * Its length is a power of two at least twice the number of rows.
+     */
+    private int[] m_Slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * ScoreIndex array of rows sorted in every order, indexed by the ordinals of orders; Null until indexes are built.
+     */
+    private ScoreIndex[] m_Indexes;
+
+    /**
+     * Counts the rows.
+     *
+     * @return Integer specifying the number of rows is returned.
+     */
+    int size() {
+        return m_Size;
+    }
+
+    /**
+     * Finds the row of a level.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return Integer specifying the row is returned; -1 if the level has no row.
+     */
+    int find(String setName, String levelName) {
+        int setCode = m_Names.find(setName);
+        int levelCode = m_Names.find(levelName);
+        if (setCode < 0 || levelCode < 0)
+            return -1;
+        int slot = findSlot(setCode, levelCode);
+        return m_Slots[slot] - 1;
+    }
+
+    /**
+     * Adds the row of a level having no row yet, without any score: times and moves are -1, players are "anonymous" and the replay is empty.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return Integer specifying the new row is returned.
+     * @throws IllegalArgumentException If the level already has a row.
+     */
+    int add(String setName, String levelName) {
+        int setCode = m_Names.encode(setName);
+        int levelCode = m_Names.encode(levelName);
+        if (m_Slots[findSlot(setCode, levelCode)] != 0)
+            throw new IllegalArgumentException("Record exists: " + setName + "/" + levelName);
+        if (m_Size == m_SetNames.length)
+            grow();
+        int row = m_Size++;
+        m_SetNames[row] = setCode;
+        m_LevelNames[row] = levelCode;
+        m_FastestTimes[row] = ScoreRecord.NO_SCORE;
+        m_PlayersOfFT[row] = m_Names.encode(ScoreRecord.ANONYMOUS);
+        m_MinimumMoves[row] = ScoreRecord.NO_SCORE;
+        m_PlayersOfMM[row] = m_PlayersOfFT[row];
+        m_Replays[row] = "";
+        // the slot is found again, as growing rehashes the rows
+        m_Slots[findSlot(setCode, levelCode)] = row + 1;
+        insertIntoIndexes(row);
+        return row;
+    }
+
+    /**
+     * Puts the fields of a record read from CSV format into the row of its level, adding the row if the level has none. <br />
+     * Records written before replays were kept have no replay field.
+     *
+     * @param fields String array of set name, level name, fastest time, its player, minimum move, its player and optionally the replay.
+     * @return Integer specifying the row put is returned.
+     * @throws NumberFormatException If the time or the move count is not an integer, in which case nothing is put.
+     */
+    int put(String[] fields) {
+        int fastestTime = Integer.parseInt(fields[2]);
+        int minimumMove = Integer.parseInt(fields[4]);
+        int row = find(fields[0], fields[1]);
+        if (row < 0)
+            row = add(fields[0], fields[1]);
+        removeFromIndexes(row);
+        m_FastestTimes[row] = fastestTime;
+        m_PlayersOfFT[row] = m_Names.encode(fields[3]);
+        m_MinimumMoves[row] = minimumMove;
+        m_PlayersOfMM[row] = m_Names.encode(fields[5]);
+        m_Replays[row] = fields.length > 6 ? fields[6] : "";
+        insertIntoIndexes(row);
+        return row;
+    }
+
+    /**
+     * Copies a row of another table into the row of its level in this table, adding the row if the level has none.
+     *
+     * @param table ScoreTable to copy from.
+     * @param row   Integer specifying the row of the other table.
+     */
+    void put(ScoreTable table, int row) {
+        int to = find(table.getSetName(row), table.getLevelName(row));
+        if (to < 0)
+            to = add(table.getSetName(row), table.getLevelName(row));
+        removeFromIndexes(to);
+        m_FastestTimes[to] = table.getFastestTime(row);
+        m_PlayersOfFT[to] = m_Names.encode(table.getPlayerOfFT(row));
+        m_MinimumMoves[to] = table.getMinimumMove(row);
+        m_PlayersOfMM[to] = m_Names.encode(table.getPlayerOfMM(row));
+        m_Replays[to] = table.getReplay(row);
+        insertIntoIndexes(to);
+    }
+
+    /**
+     * Gets the set name of a row.
+     *
+     * @param row Integer specifying the row.
+     * @return String value specifying the set name is returned.
+     */
+    String getSetName(int row) {
+        return m_Names.decode(m_SetNames[row]);
+    }
+
+    /**
+     * Gets the level name of a row.
+     *
+     * @param row Integer specifying the row.
+     * @return String value specifying the level name is returned.
+     */
+    String getLevelName(int row) {
+        return m_Names.decode(m_LevelNames[row]);
+    }
+
+    /**
+     * Gets the fastest time of a row.
+     *
+     * @param row Integer specifying the row.
+     * @return Integer specifying the fastest time in seconds is returned; -1 if there is none.
+     */
+    int getFastestTime(int row) {
+        return m_FastestTimes[row];
+    }
+
+    /**
+     * Gets the record breaker's name of the fastest time of a row.
+     *
+     * @param row Integer specifying the row.
+     * @return String value specifying the player name is returned.
+     */
+    String getPlayerOfFT(int row) {
+        return m_Names.decode(m_PlayersOfFT[row]);
+    }
+
+    /**
+     * Gets the minimum move of a row.
+     *
+     * @param row Integer specifying the row.
+     * @return Integer specifying the minimum move is returned; -1 if there is none.
+     */
+    int getMinimumMove(int row) {
+        return m_MinimumMoves[row];
+    }
+
+    /**
+     * Gets the record breaker's name of the minimum move of a row.
+     *
+     * @param row Integer specifying the row.
+     * @return String value specifying the player name is returned.
+     */
+    String getPlayerOfMM(int row) {
+        return m_Names.decode(m_PlayersOfMM[row]);
+    }
+
+    /**
+     * Gets the replay of minimum move of a row.
+     *
+     * @param row Integer specifying the row.
+     * @return String value specifying the replay in LURD format is returned; Empty if none is recorded.
+     */
+    String getReplay(int row) {
+        return m_Replays[row];
+    }
+
+    /**
+     * Sets the fastest time of a row.
+     *
+     * @param row         Integer specifying the row.
+     * @param fastestTime Integer specifying the fastest time in seconds.
+     */
+    void setFastestTime(int row, int fastestTime) {
+        removeFromIndex(row, ScoreStore.Order.FASTEST_TIME);
+        m_FastestTimes[row] = fastestTime;
+        insertIntoIndex(row, ScoreStore.Order.FASTEST_TIME);
+    }
+
+    /**
+     * Sets the record breaker's name of the fastest time of a row.
+     *
+     * @param row        Integer specifying the row.
+     * @param playerName String value specifying the player name.
+     */
+    void setPlayerOfFT(int row, String playerName) {
+        removeFromIndex(row, ScoreStore.Order.PLAYER_OF_FT);
+        m_PlayersOfFT[row] = m_Names.encode(playerName);
+        insertIntoIndex(row, ScoreStore.Order.PLAYER_OF_FT);
+    }
+
+    /**
+     * Sets the minimum move of a row.
+     *
+     * @param row         Integer specifying the row.
+     * @param minimumMove Integer specifying the minimum move.
+     */
+    void setMinimumMove(int row, int minimumMove) {
+        removeFromIndex(row, ScoreStore.Order.MINIMUM_MOVE);
+        m_MinimumMoves[row] = minimumMove;
+        insertIntoIndex(row, ScoreStore.Order.MINIMUM_MOVE);
+    }
+
+    /**
+     * Sets the record breaker's name of the minimum move of a row.
+     *
+     * @param row        Integer specifying the row.
+     * @param playerName String value specifying the player name.
+     */
+    void setPlayerOfMM(int row, String playerName) {
+        removeFromIndex(row, ScoreStore.Order.PLAYER_OF_MM);
+        m_PlayersOfMM[row] = m_Names.encode(playerName);
+        insertIntoIndex(row, ScoreStore.Order.PLAYER_OF_MM);
+    }
+
+    /**
+     * Sets the replay of minimum move of a row.
+     *
+     * @param row    Integer specifying the row.
+     * @param replay String value specifying the replay in LURD format; Empty if none is recorded.
+     */
+    void setReplay(int row, String replay) {
+        m_Replays[row] = replay;
+    }
+
+    /**
+     * Gets CSV formatted record string of a row, as written into the score board file. The replay is the last field,
+     * whose LURD codes need no quoting.
+     *
+     * @param row Integer specifying the row.
+     * @return A CSV formatted record string is returned.
+     */
+    String toCSVFormat(int row) {
+        return String.join(",", new String[]{getSetName(row), getLevelName(row), String.valueOf(m_FastestTimes[row]), getPlayerOfFT(row),
+                String.valueOf(m_MinimumMoves[row]), getPlayerOfMM(row), m_Replays[row]});
+    }
+
+    /**
+     * Builds the indexes of rows in every order, ranking the names once for all of them, so that rows are sorted by integer keys. <br />
+     * Orders by two names are sorted twice, by the second name and then by the first name keeping the order of the second.
+     * This method is called by the writer thread when the files are read, so that the owner thread never sorts the rows.
+     */
+    void buildIndexes() {
+        int[] ranks = rankNames();
+        ScoreIndex[] indexes = new ScoreIndex[ScoreStore.Order.values().length];
+        indexes[ScoreStore.Order.SET_LEVEL.ordinal()] = new ScoreIndex(this, ScoreStore.Order.SET_LEVEL,
+                sortRows(m_SetNames, ranks, sortRows(m_LevelNames, ranks, null)));
+        indexes[ScoreStore.Order.LEVEL_SET.ordinal()] = new ScoreIndex(this, ScoreStore.Order.LEVEL_SET,
+                sortRows(m_LevelNames, ranks, sortRows(m_SetNames, ranks, null)));
+        indexes[ScoreStore.Order.FASTEST_TIME.ordinal()] = new ScoreIndex(this, ScoreStore.Order.FASTEST_TIME, sortRows(m_FastestTimes, null, null));
+        indexes[ScoreStore.Order.PLAYER_OF_FT.ordinal()] = new ScoreIndex(this, ScoreStore.Order.PLAYER_OF_FT, sortRows(m_PlayersOfFT, ranks, null));
+        indexes[ScoreStore.Order.MINIMUM_MOVE.ordinal()] = new ScoreIndex(this, ScoreStore.Order.MINIMUM_MOVE, sortRows(m_MinimumMoves, null, null));
+        indexes[ScoreStore.Order.PLAYER_OF_MM.ordinal()] = new ScoreIndex(this, ScoreStore.Order.PLAYER_OF_MM, sortRows(m_PlayersOfMM, ranks, null));
+        m_Indexes = indexes;
+    }
+
+    /**
+     * Gets the index of rows in an order, building the indexes if they are not built yet.
+     *
+     * @param order Order of the rows.
+     * @return ScoreIndex of rows in the order is returned.
+     */
+    ScoreIndex getIndex(ScoreStore.Order order) {
+        if (m_Indexes == null)
+            buildIndexes();
+        return m_Indexes[order.ordinal()];
+    }
+
+    /**
+     * Compares two rows in an order, and then by the rows themselves, so that no two rows compare equal.
+     *
+     * @param a     Integer specifying the first row.
+     * @param b     Integer specifying the second row.
+     * @param order Order of the comparison.
+     * @return Negative integer, zero, or positive integer is returned as the first row comes before, is, or comes after the second.
+     */
+    int compare(int a, int b, ScoreStore.Order order) {
+        int result;
+        switch (order) {
+            case SET_LEVEL:
+                result = compareNames(m_SetNames[a], m_SetNames[b]);
+                if (result == 0)
+                    result = compareNames(m_LevelNames[a], m_LevelNames[b]);
+                break;
+            case LEVEL_SET:
+                result = compareNames(m_LevelNames[a], m_LevelNames[b]);
+                if (result == 0)
+                    result = compareNames(m_SetNames[a], m_SetNames[b]);
+                break;
+            case FASTEST_TIME:
+                result = Integer.compare(m_FastestTimes[a], m_FastestTimes[b]);
+                break;
+            case PLAYER_OF_FT:
+                result = compareNames(m_PlayersOfFT[a], m_PlayersOfFT[b]);
+                break;
+            case MINIMUM_MOVE:
+                result = Integer.compare(m_MinimumMoves[a], m_MinimumMoves[b]);
+                break;
+            default:
+                result = compareNames(m_PlayersOfMM[a], m_PlayersOfMM[b]);
+        }
+        return result != 0 ? result : Integer.compare(a, b);
+    }
+
+    /**
+     * Finds the names starting with a prefix, ignoring case.
+     *
+     * @param prefix String value specifying the prefix.
+     * @return Boolean array specifying if each name starts with the prefix is returned, indexed by the codes of names.
+     */
+    boolean[] matchNames(String prefix) {
+        boolean[] matches = new boolean[m_Names.size()];
+        for (int code = 0; code < matches.length; code++)
+            matches[code] = m_Names.decode(code).regionMatches(true, 0, prefix, 0, prefix.length());
+        return matches;
+    }
+
+    /**
+     * Checks if a row passes a filter of the score board.
+     *
+     * @param row     Integer specifying the row.
+     * @param filter  Filter specifying the names checked: set name, level name, or either player name.
+     * @param matches Boolean array of names passing the filter given by matchNames(String).
+     * @return True is returned if the name checked of the row passes; Otherwise, false is returned.
+     */
+    boolean matches(int row, ScoreStore.Filter filter, boolean[] matches) {
+        switch (filter) {
+            case SET:
+                return matches[m_SetNames[row]];
+            case LEVEL:
+                return matches[m_LevelNames[row]];
+            default:
+                return matches[m_PlayersOfFT[row]] || matches[m_PlayersOfMM[row]];
+        }
+    }
+
+    /**
+     * Ranks all names in alphabetical order, so that sorting rows compares integers instead of strings.
+     *
+     * @return Integer array of ranks from 0 indexed by the codes of names is returned.
+     */
+    private int[] rankNames() {
+        String[] names = new String[m_Names.size()];
+        for (int code = 0; code < names.length; code++)
+            names[code] = m_Names.decode(code);
+        Arrays.sort(names);
+        int[] ranks = new int[names.length];
+        // names are distinct, so each is found at its own rank
+        for (int code = 0; code < ranks.length; code++)
+            ranks[code] = Arrays.binarySearch(names, m_Names.decode(code));
+        return ranks;
+    }
+
+    /**
+     * Sorts rows by a column, and then by their positions in a previous order, or by the rows themselves if there is none. <br />
+     * Each row is packed into a long integer of its key in the high bits and its position in the low bits, so that sorting compares primitives.
+     *
+     * @param column   Integer column of keys, or of codes of names.
+     * @param ranks    Integer array of ranks of names if the column holds codes of names; Null if it holds the keys themselves.
+     * @param previous Integer array of all rows in a previous order; Null if there is none.
+     * @return Integer array of all rows sorted is returned.
+     */
+    private int[] sortRows(int[] column, int[] ranks, int[] previous) {
+        long[] packed = new long[m_Size];
+        for (int position = 0; position < m_Size; position++) {
+            int row = previous == null ? position : previous[position];
+            int key = ranks == null ? column[row] : ranks[column[row]];
+            packed[position] = (long) key << 32 | position;
+        }
+        Arrays.sort(packed);
+        int[] rows = new int[m_Size];
+        for (int i = 0; i < m_Size; i++) {
+            int position = (int) packed[i];
+            rows[i] = previous == null ? position : previous[position];
+        }
+        return rows;
+    }
+
+    /**
+     * Compares two names by their strings.
+     *
+     * @param a Integer specifying the code of the first name.
+     * @param b Integer specifying the code of the second name.
+     * @return Negative integer, zero, or positive integer is returned as the first name comes before, is, or comes after the second.
+     */
+    private int compareNames(int a, int b) {
+        return a == b ? 0 : m_Names.decode(a).compareTo(m_Names.decode(b));
+    }
+
+    /**
+     * Removes a row from the index of an order before the scores it is sorted by change; Nothing is done if indexes are not built.
+     *
+     * @param row   Integer specifying the row.
+     * @param order Order of the index.
+     */
+    private void removeFromIndex(int row, ScoreStore.Order order) {
+        if (m_Indexes != null)
+            m_Indexes[order.ordinal()].remove(row);
+    }
+
+    /**
+     * Inserts a row into the index of an order after the scores it is sorted by change; Nothing is done if indexes are not built.
+     *
+     * @param row   Integer specifying the row.
+     * @param order Order of the index.
+     */
+    private void insertIntoIndex(int row, ScoreStore.Order order) {
+        if (m_Indexes != null)
+            m_Indexes[order.ordinal()].insert(row);
+    }
+
+    /**
+     * Removes a row from the indexes of all orders before its scores change.
+     *
+     * @param row Integer specifying the row.
+     */
+    private void removeFromIndexes(int row) {
+        for (ScoreStore.Order order : ScoreStore.Order.values())
+            removeFromIndex(row, order);
+    }
+
+    /**
+     * Inserts a row into the indexes of all orders after it is added or its scores change.
+     *
+     * @param row Integer specifying the row.
+     */
+    private void insertIntoIndexes(int row) {
+        for (ScoreStore.Order order : ScoreStore.Order.values())
+            insertIntoIndex(row, order);
+    }
+
+    /**
+     * Finds the slot of a level in the hash table by linear probing.
+     *
+     * @param setCode   Integer specifying the code of set name.
+     * @param levelCode Integer specifying the code of level name.
+     * @return Integer specifying the slot holding the row of the level is returned; If it has no row, the empty slot it would be put into.
+     */
+    private int findSlot(int setCode, int levelCode) {
+        int mask = m_Slots.length - 1;
+        int slot = hash(setCode, levelCode) & mask;
+        while (m_Slots[slot] != 0) {
+            int row = m_Slots[slot] - 1;
+            if (m_SetNames[row] == setCode && m_LevelNames[row] == levelCode)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the room of all columns and the hash table, putting all rows into the new hash table.
+     */
+    private void grow() {
+        int capacity = m_SetNames.length * 2;
+        m_SetNames = Arrays.copyOf(m_SetNames, capacity);
+        m_LevelNames = Arrays.copyOf(m_LevelNames, capacity);
+        m_FastestTimes = Arrays.copyOf(m_FastestTimes, capacity);
+        m_PlayersOfFT = Arrays.copyOf(m_PlayersOfFT, capacity);
+        m_MinimumMoves = Arrays.copyOf(m_MinimumMoves, capacity);
+        m_PlayersOfMM = Arrays.copyOf(m_PlayersOfMM, capacity);
+        m_Replays = Arrays.copyOf(m_Replays, capacity);
+
+        m_Slots = new int[capacity * 2];
+        int mask = m_Slots.length - 1;
+        for (int row = 0; row < m_Size; row++) {
+            int slot = hash(m_SetNames[row], m_LevelNames[row]) & mask;
+            while (m_Slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            m_Slots[slot] = row + 1;
+        }
+    }
+
+    /**
+     * Hashes the codes of a level, spreading consecutive codes over the hash table.
+     *
+     * @param setCode   Integer specifying the code of set name.
+     * @param levelCode Integer specifying the code of level name.
+     * @return Integer specifying the hash is returned.
+     */
+    private static int hash(int setCode, int levelCode) {
+        int hash = (setCode * 31 + levelCode) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
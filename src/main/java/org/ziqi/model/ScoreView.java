@@ -0,0 +1,154 @@
+package org.ziqi.model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableListBase;
+
+import java.util.Collections;
+
+/**
+ * ScoreView class is the paged data source of the score board table: an ObservableList of the records of a score store in the order
+ * and under the filter asked for by the table, which never copies or sorts the records. <br />
+ * The record at a position is read from the index of the order kept by the table of the store, so that the score board table, which only
+ * gets the records of its visible rows, reads only its visible window however many records there are. Sorting switches the index read,
+ * and filtering scans the index once for the positions passing the filter. <br />
+ * A view follows its store: adding, updating or reloading records refreshes it. As the records before a refresh are not kept,
+ * a refresh is announced as all records being replaced.
+ *
+ * @author Ziqi Yang
+ * @see ScoreStore#getM_View()
+ * @see ScoreIndex
+ */
+public final class ScoreView extends ObservableListBase<ScoreRecord> {
+
+    /**
+     * ScoreStore whose records are viewed.
+     */
+    private final ScoreStore m_Store;
+
+    /**
+     * Order of the records viewed.
+     */
+    private ScoreStore.Order m_Order = ScoreStore.Order.SET_LEVEL;
+
+    /**
+     * Boolean value specifying if the records are viewed in descending order.
+     */
+    private boolean m_Descending = false;
+
+    /**
+     * Filter of the records viewed; Null if all records are viewed.
+     */
+    private ScoreStore.Filter m_Filter;
+
+    /**
+     * String value specifying the prefix of the names passing the filter, ignoring case.
+     */
+    private String m_FilterText = "";
+
+    /**
+     * Integer array of the rows passing the filter in the order; Null if all records are viewed.
+     */
+    private int[] m_FilteredRows;
+
+    /**
+     * Integer specifying the number of rows passing the filter.
+     */
+    private int m_FilteredSize;
+
+    /**
+     * Integer specifying the number of records viewed when last announced to the listeners.
+     */
+    private int m_Size;
+
+    /**
+     * ScoreView constructor of all records of a store in SET_LEVEL order, which follows the changes of the store.
+     *
+     * @param store ScoreStore whose records are viewed.
+     */
+    ScoreView(ScoreStore store) {
+        m_Store = store;
+        m_Size = store.size();
+        store.getM_Records().addListener((ListChangeListener<ScoreRecord>) change -> refresh());
+    }
+
+    /**
+     * Gets the record at a position of this view, from the index of the order. <br />
+     * This method is called by the score board table for its visible rows only.
+     *
+     * @param index Integer specifying the position from 0.
+     * @return ScoreRecord at the position is returned to caller.
+     */
+    @Override
+    public ScoreRecord get(int index) {
+        int position = m_Descending ? size() - 1 - index : index;
+        int row = m_FilteredRows != null ? m_FilteredRows[position] : m_Store.getM_Table().getIndex(m_Order).get(position);
+        return m_Store.getM_Records().get(row);
+    }
+
+    /**
+     * Counts the records of this view.
+     *
+     * @return Integer specifying the number of records passing the filter is returned to caller.
+     */
+    @Override
+    public int size() {
+        return m_FilteredRows != null ? m_FilteredSize : m_Store.size();
+    }
+
+    /**
+     * Views the records in another order, by reading another index of the store.
+     *
+     * @param order      Order of the records viewed.
+     * @param descending Boolean value specifying if the records are viewed in descending order.
+     */
+    public void setOrder(ScoreStore.Order order, boolean descending) {
+        m_Order = order;
+        m_Descending = descending;
+        refresh();
+    }
+
+    /**
+     * Views only the records whose set name, level name or either player name starts with a text, ignoring case.
+     *
+     * @param filter Filter specifying the names checked; Null to view all records.
+     * @param text   String value specifying the prefix of the names passing; Empty to view all records.
+     */
+    public void setFilter(ScoreStore.Filter filter, String text) {
+        m_Filter = text == null || text.isEmpty() ? null : filter;
+        m_FilterText = m_Filter == null ? "" : text;
+        refresh();
+    }
+
+    /**
+     * Finds the rows passing the filter again if any, and announces all records replaced to the listeners, e.g. the score board table.
+     */
+    private void refresh() {
+        if (m_Filter != null)
+            filter();
+        else
+            m_FilteredRows = null;
+        int removed = m_Size;
+        m_Size = size();
+        beginChange();
+        nextReplace(0, m_Size, Collections.nCopies(removed, null));
+        endChange();
+    }
+
+    /**
+     * Scans the index of the order for the rows passing the filter, checking the codes of their names against the names passing.
+     */
+    private void filter() {
+        ScoreTable table = m_Store.getM_Table();
+        ScoreIndex index = table.getIndex(m_Order);
+        boolean[] matches = table.matchNames(m_FilterText);
+        int[] rows = new int[index.size()];
+        int size = 0;
+        for (int position = 0; position < index.size(); position++) {
+            int row = index.get(position);
+            if (table.matches(row, m_Filter, matches))
+                rows[size++] = row;
+        }
+        m_FilteredRows = rows;
+        m_FilteredSize = size;
+    }
+}
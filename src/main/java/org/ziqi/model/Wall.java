@@ -89,11 +89,11 @@ public class Wall extends GameObject {
      * Checks if the pusher(Player) can move to given direction. <br />
      * False is always returned to player as Wall in this game is block-able.
      *
-     * @param direction A Point object specifying the direction vector the GameObject to be moved to.
+     * @param direction Direction specifying the direction the GameObject to be moved to.
      * @return Boolean value specifying if the pusher(player) can move is returned.
      */
     @Override
-    public boolean move(Point direction) {
+    public boolean move(Direction direction) {
         return false;
     }
 }
@@ -0,0 +1,82 @@
+package org.ziqi.model;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ZobristKeys class holds the random 64-bit keys of a crate and of the player at each cell, used to hash level states. <br />
+ * The hash of a state is the XOR of the keys of all its crates and the player, so that a move only XORs a few keys in and out.
+ * Keys are generated from a fixed seed and shared by all levels of the same number of cells, so that hashes are stable between runs.
+ *
+ * @author Ziqi Yang
+ * @see LevelState#getM_Hash()
+ * @see org.ziqi.solver.Solver
+ */
+public final class ZobristKeys {
+
+    /**
+     * Constant long value seeding the keys.
+     */
+    private static final long SEED = 0x5EED_50C0_BA11L;
+
+    /**
+     * Map of shared keys keyed by number of cells.
+     */
+    private static final Map<Integer, ZobristKeys> SHARED_KEYS = new ConcurrentHashMap<>();
+
+    /**
+     * Array of keys of a crate at each cell.
+     */
+    private final long[] m_CrateKeys;
+
+    /**
+     * Array of keys of the player at each cell.
+     */
+    private final long[] m_PlayerKeys;
+
+    /**
+     * ZobristKeys constructor to generate keys for the given number of cells.
+     *
+     * @param cells Integer specifying number of cells.
+     */
+    private ZobristKeys(int cells) {
+        Random random = new Random(SEED);
+        m_CrateKeys = new long[cells];
+        m_PlayerKeys = new long[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            m_CrateKeys[cell] = random.nextLong();
+            m_PlayerKeys[cell] = random.nextLong();
+        }
+    }
+
+    /**
+     * Gets the shared keys for the given number of cells.
+     *
+     * @param cells Integer specifying number of cells.
+     * @return ZobristKeys for the given number of cells is returned to caller.
+     */
+    public static ZobristKeys forCells(int cells) {
+        return SHARED_KEYS.computeIfAbsent(cells, ZobristKeys::new);
+    }
+
+    /**
+     * Gets the key of a crate at given cell.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return Long value specifying the key is returned.
+     */
+    public long getCrateKey(int cell) {
+        return m_CrateKeys[cell];
+    }
+
+    /**
+     * Gets the key of the player at given cell.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return Long value specifying the key is returned.
+     */
+    public long getPlayerKey(int cell) {
+        return m_PlayerKeys[cell];
+    }
+}
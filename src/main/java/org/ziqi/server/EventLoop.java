@@ -0,0 +1,185 @@
+package org.ziqi.server;
+
+import org.ziqi.model.GameSession;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * EventLoop class is a single thread owning a shard of the sessions of SimulationServer. <br />
+ * Every command on a session is queued to the loop owning it and run there one after another,
+ * so that each session is only ever touched by one thread and needs no lock. <br />
+ * The latency of each command, from being queued to being completed, and its service time are recorded by the loop.
+ *
+ * @author Ziqi Yang
+ * @see SimulationServer
+ */
+final class EventLoop implements Runnable {
+
+    /**
+     * Constant integer specifying the max number of commands taken from the queue at once.
+     */
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * Queue of commands to be run by the loop thread.
+     */
+    private final BlockingQueue<Runnable> m_Queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Map of sessions owned by the loop keyed by session id, which is only accessed by the loop thread.
+     */
+    private final Map<Integer, GameSession> m_Sessions = new HashMap<>();
+
+    /**
+     * Histogram of latencies of session commands, from being queued to being completed, only recorded by the loop thread.
+     */
+    private final LatencyHistogram m_Latency = new LatencyHistogram();
+
+    /**
+     * Histogram of service times of session commands, i.e. running the command itself, only recorded by the loop thread.
+     */
+    private final LatencyHistogram m_ServiceTime = new LatencyHistogram();
+
+    /**
+     * Thread running the loop.
+     */
+    private final Thread m_Thread;
+
+    /**
+     * Boolean value specifying if the loop is still running.
+     */
+    private volatile boolean m_Running = true;
+
+    /**
+     * EventLoop constructor to start a daemon loop thread with the given name.
+     *
+     * @param name String value specifying the name of loop thread.
+     */
+    EventLoop(String name) {
+        m_Thread = new Thread(this, name);
+        m_Thread.setDaemon(true);
+        m_Thread.start();
+    }
+
+    /**
+     * Runs queued commands in batches until the loop is shut down.
+     */
+    @Override
+    public void run() {
+        List<Runnable> batch = new ArrayList<>(MAX_BATCH);
+        while (m_Running) {
+            try {
+                batch.add(m_Queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            m_Queue.drainTo(batch, MAX_BATCH - 1);
+            for (Runnable command : batch)
+                command.run();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Queues a task to be run by the loop thread.
+     *
+     * @param task Runnable to be run.
+     */
+    void execute(Runnable task) {
+        m_Queue.add(task);
+    }
+
+    /**
+     * Queues a command on the given session, which is completed by the loop thread with the result of the action. <br />
+     * Stages depending on the returned future run on the loop thread, so they must never block.
+     *
+     * @param sessionId Integer specifying the id of session owned by this loop.
+     * @param action    Function applied to the session on the loop thread.
+     * @param <T>       Type of the result of action.
+     * @return CompletableFuture of the result is returned; It completes exceptionally with IllegalArgumentException if no such session is open.
+     */
+    <T> CompletableFuture<T> submit(int sessionId, Function<GameSession, T> action) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long queued = System.nanoTime();
+        m_Queue.add(() -> {
+            GameSession session = m_Sessions.get(sessionId);
+            if (session == null) {
+                future.completeExceptionally(new IllegalArgumentException("Unknown session: " + sessionId));
+                return;
+            }
+            long started = System.nanoTime();
+            try {
+                T result = action.apply(session);
+                long completed = System.nanoTime();
+                m_ServiceTime.record(completed - started);
+                m_Latency.record(completed - queued);
+                future.complete(result);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Queues adding a session to the loop.
+     *
+     * @param sessionId Integer specifying the id of session.
+     * @param session   GameSession to be owned by the loop.
+     * @return CompletableFuture completed once the session is added is returned to caller.
+     */
+    CompletableFuture<Void> open(int sessionId, GameSession session) {
+        return CompletableFuture.runAsync(() -> m_Sessions.put(sessionId, session), this::execute);
+    }
+
+    /**
+     * Queues removing a session from the loop.
+     *
+     * @param sessionId Integer specifying the id of session.
+     * @return CompletableFuture of true if the session was open is returned to caller.
+     */
+    CompletableFuture<Boolean> close(int sessionId) {
+        return CompletableFuture.supplyAsync(() -> m_Sessions.remove(sessionId) != null, this::execute);
+    }
+
+    /**
+     * Queues taking a snapshot of the histograms of the loop, optionally resetting them.
+     *
+     * @param reset Boolean value specifying if the histograms are reset after the snapshot.
+     * @return CompletableFuture of an array of latency and service time histograms is returned to caller.
+     */
+    CompletableFuture<LatencyHistogram[]> snapshot(boolean reset) {
+        return CompletableFuture.supplyAsync(() -> {
+            LatencyHistogram[] histograms = {m_Latency.copy(), m_ServiceTime.copy()};
+            if (reset) {
+                m_Latency.reset();
+                m_ServiceTime.reset();
+            }
+            return histograms;
+        }, this::execute);
+    }
+
+    /**
+     * Queues counting the sessions owned by the loop.
+     *
+     * @return CompletableFuture of the number of sessions is returned to caller.
+     */
+    CompletableFuture<Integer> countSessions() {
+        return CompletableFuture.supplyAsync(m_Sessions::size, this::execute);
+    }
+
+    /**
+     * Stops the loop thread, dropping any command not run yet.
+     */
+    void shutdown() {
+        m_Running = false;
+        m_Thread.interrupt();
+    }
+}
@@ -0,0 +1,183 @@
+package org.ziqi.server;
+
+import java.util.Arrays;
+
+/**
+ * LatencyHistogram class records latencies in nanoseconds into log-linear buckets, so that percentiles can be reported
+ * with a bounded relative error (1 / SUB_BUCKETS) and a fixed footprint, no matter how many values are recorded. <br />
+ * Values below SUB_BUCKETS are exact; Above that, each power of two range is split into SUB_BUCKETS equal buckets. <br />
+ * A histogram is not thread safe: each thread records into its own one, and snapshots are merged for reporting.
+ *
+ * @author Ziqi Yang
+ * @see EventLoop
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Constant integer specifying the bits of a value kept below its highest set bit.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * Constant integer specifying number of buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Constant integer specifying number of buckets, covering all positive long values.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * Array of long integers specifying the count of values in each bucket.
+     */
+    private final long[] m_Counts = new long[BUCKETS];
+
+    /**
+     * Long integer specifying the number of values recorded.
+     */
+    private long m_Count;
+
+    /**
+     * Long integer specifying the sum of values recorded.
+     */
+    private long m_Total;
+
+    /**
+     * Long integer specifying the max value recorded.
+     */
+    private long m_Max;
+
+    /**
+     * Records a value, negative values being recorded as zero.
+     *
+     * @param nanos Long integer specifying the latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        m_Counts[indexOf(value)]++;
+        m_Count++;
+        m_Total += value;
+        m_Max = Math.max(m_Max, value);
+    }
+
+    /**
+     * Adds all values recorded by the given histogram into this one.
+     *
+     * @param other LatencyHistogram to be merged, which is not changed.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+            m_Counts[bucket] += other.m_Counts[bucket];
+        m_Count += other.m_Count;
+        m_Total += other.m_Total;
+        m_Max = Math.max(m_Max, other.m_Max);
+    }
+
+    /**
+     * Creates a copy of this histogram.
+     *
+     * @return A new LatencyHistogram holding the same values is returned to caller.
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Removes all values recorded.
+     */
+    public void reset() {
+        Arrays.fill(m_Counts, 0);
+        m_Count = 0;
+        m_Total = 0;
+        m_Max = 0;
+    }
+
+    /**
+     * Gets the value at given quantile, as the upper bound of the bucket holding it, which is never above the max value.
+     *
+     * @param quantile Double value between 0 and 1, e.g. 0.99 for the 99th percentile.
+     * @return Long integer specifying the latency in nanoseconds is returned; 0 if nothing is recorded.
+     */
+    public long getPercentile(double quantile) {
+        if (m_Count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * m_Count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += m_Counts[bucket];
+            if (seen >= rank)
+                return Math.min(m_Max, upperBoundOf(bucket));
+        }
+        return m_Max;
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return Long integer specifying the count is returned to caller.
+     */
+    public long getM_Count() {
+        return m_Count;
+    }
+
+    /**
+     * Gets the max value recorded.
+     *
+     * @return Long integer specifying the max latency in nanoseconds is returned to caller.
+     */
+    public long getM_Max() {
+        return m_Max;
+    }
+
+    /**
+     * Gets the mean of values recorded.
+     *
+     * @return Double value specifying the mean latency in nanoseconds is returned; 0 if nothing is recorded.
+     */
+    public double getM_Mean() {
+        return m_Count == 0 ? 0 : (double) m_Total / m_Count;
+    }
+
+    /**
+     * Gets the bucket of given value.
+     *
+     * @param value Long integer specifying a non negative value.
+     * @return Integer specifying the bucket index is returned.
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        // the top SUB_BUCKET_BITS + 1 bits, from SUB_BUCKETS to 2 * SUB_BUCKETS - 1
+        return exponent * SUB_BUCKETS + (int) (value >>> exponent);
+    }
+
+    /**
+     * Gets the largest value falling into given bucket.
+     *
+     * @param bucket Integer specifying the bucket index.
+     * @return Long integer specifying the upper bound of bucket is returned.
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+
+    /**
+     * Describes the histogram by its count, mean, main percentiles and max, in microseconds.
+     *
+     * @return String value describing the histogram is returned.
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                m_Count, getM_Mean() / 1000, getPercentile(0.5) / 1000.0, getPercentile(0.9) / 1000.0,
+                getPercentile(0.99) / 1000.0, getPercentile(0.999) / 1000.0, m_Max / 1000.0);
+    }
+}
@@ -0,0 +1,317 @@
+package org.ziqi.server;
+
+import org.ziqi.Utils;
+import org.ziqi.model.GameSession;
+import org.ziqi.model.LevelSetReader;
+import org.ziqi.model.LevelState;
+import org.ziqi.model.Replay;
+import org.ziqi.model.ScorePersistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ScoreVerifier class verifies claimed scores by replaying their replays against the bundled levels on a pool of worker threads,
+ * so that a record is only committed after its claim is proven possible by the rules of GameSession. <br />
+ * Claims are queued and verified in parallel, and each worker reuses one session per level, so that a backlog of thousands of
+ * claims is verified without any JavaFX node or GameEngine. Levels are decoded once and shared read-only by all workers. <br />
+ * The records of a score board file can be verified as a backlog by "gradle verifyScores --args='--file data/ScoreBoard.csv'".
+ *
+ * @author Ziqi Yang
+ * @see Replay
+ * @see org.ziqi.gameEngine.manager.DataManager
+ */
+public final class ScoreVerifier {
+
+    /**
+     * Claim class holds one play claimed to break a record: the level, the player, the time and move count and the replay.
+     */
+    public static final class Claim {
+
+        /**
+         * String value specifying the set name of the level.
+         */
+        private final String m_SetName;
+
+        /**
+         * String value specifying the level name.
+         */
+        private final String m_LevelName;
+
+        /**
+         * String value specifying the name of player.
+         */
+        private final String m_PlayerName;
+
+        /**
+         * Integer specifying the time claimed in seconds; Negative if no time is claimed.
+         */
+        private final int m_Seconds;
+
+        /**
+         * Integer specifying the move count claimed.
+         */
+        private final int m_Moves;
+
+        /**
+         * String value specifying the replay of the play; Null if none is recorded.
+         */
+        private final String m_Replay;
+
+        /**
+         * Claim constructor.
+         *
+         * @param setName    String value specifying the set name of the level.
+         * @param levelName  String value specifying the level name.
+         * @param playerName String value specifying the name of player.
+         * @param seconds    Integer specifying the time claimed in seconds; Negative if no time is claimed.
+         * @param moves      Integer specifying the move count claimed.
+         * @param replay     String value specifying the replay of the play; Null if none is recorded.
+         */
+        public Claim(String setName, String levelName, String playerName, int seconds, int moves, String replay) {
+            m_SetName = setName;
+            m_LevelName = levelName;
+            m_PlayerName = playerName;
+            m_Seconds = seconds;
+            m_Moves = moves;
+            m_Replay = replay;
+        }
+
+        /**
+         * Gets the set name of the level.
+         *
+         * @return String value specifying the set name is returned to caller.
+         */
+        public String getM_SetName() {
+            return m_SetName;
+        }
+
+        /**
+         * Gets the level name.
+         *
+         * @return String value specifying the level name is returned to caller.
+         */
+        public String getM_LevelName() {
+            return m_LevelName;
+        }
+
+        /**
+         * Gets the name of player.
+         *
+         * @return String value specifying the player name is returned to caller.
+         */
+        public String getM_PlayerName() {
+            return m_PlayerName;
+        }
+
+        /**
+         * Gets the time claimed.
+         *
+         * @return Integer specifying the time in seconds is returned to caller; Negative if no time is claimed.
+         */
+        public int getM_Seconds() {
+            return m_Seconds;
+        }
+
+        /**
+         * Gets the move count claimed.
+         *
+         * @return Integer specifying the move count is returned to caller.
+         */
+        public int getM_Moves() {
+            return m_Moves;
+        }
+
+        /**
+         * Gets the replay of the play.
+         *
+         * @return String value specifying the replay in LURD format is returned to caller; Null if none is recorded.
+         */
+        public String getM_Replay() {
+            return m_Replay;
+        }
+
+        /**
+         * Describes the claim by its level, player, time and move count.
+         *
+         * @return String value describing the claim is returned.
+         */
+        @Override
+        public String toString() {
+            return m_SetName + "/" + m_LevelName + " by " + m_PlayerName + " time=" + m_Seconds + " moves=" + m_Moves;
+        }
+    }
+
+    /**
+     * ExecutorService of worker threads verifying the queued claims.
+     */
+    private final ExecutorService m_Workers;
+
+    /**
+     * Integer specifying the number of worker threads.
+     */
+    private final int m_WorkerCount;
+
+    /**
+     * Map of initial states of bundled levels keyed by set name and level name, which are decoded on first use.
+     */
+    private final Map<String, LevelState> m_Levels = new ConcurrentHashMap<>();
+
+    /**
+     * Sessions of each worker thread keyed by the initial state of their level, so that verifying allocates no session per claim.
+     */
+    private final ThreadLocal<Map<LevelState, GameSession>> m_Sessions = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    /**
+     * ScoreVerifier constructor to start the given number of daemon worker threads.
+     *
+     * @param workers Integer specifying the number of worker threads, e.g. the number of processors.
+     */
+    public ScoreVerifier(int workers) {
+        m_WorkerCount = Math.max(1, workers);
+        AtomicInteger nextWorker = new AtomicInteger();
+        m_Workers = Executors.newFixedThreadPool(m_WorkerCount, runnable -> {
+            Thread thread = new Thread(runnable, "ScoreVerifier-" + nextWorker.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the number of worker threads.
+     *
+     * @return Integer specifying the number of workers is returned to caller.
+     */
+    public int getM_WorkerCount() {
+        return m_WorkerCount;
+    }
+
+    /**
+     * Queues a claim to be verified by a worker thread.
+     *
+     * @param claim Claim to be verified.
+     * @return A CompletableFuture completed by the worker with the verdict is returned; It completes exceptionally if the level is unknown.
+     * @see #verify(Claim)
+     */
+    public CompletableFuture<Replay.Verdict> submit(Claim claim) {
+        return CompletableFuture.supplyAsync(() -> verify(claim), m_Workers);
+    }
+
+    /**
+     * Verifies a claim on the calling thread by replaying it against its bundled level at full speed.
+     *
+     * @param claim Claim to be verified.
+     * @return Verdict specifying the outcome of verifying is returned.
+     * @throws IllegalArgumentException If there is no such set or level.
+     * @see Replay#verify(GameSession, String, int, int)
+     */
+    public Replay.Verdict verify(Claim claim) {
+        LevelState level;
+        try {
+            level = getLevel(claim.getM_SetName(), claim.getM_LevelName());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read set " + claim.getM_SetName(), e);
+        }
+        GameSession session = m_Sessions.get().computeIfAbsent(level, initialState -> new GameSession(initialState, null));
+        return Replay.verify(session, claim.getM_Replay(), claim.getM_Moves(), claim.getM_Seconds());
+    }
+
+    /**
+     * Gets the initial state of a bundled level, decoding its set on first use.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return LevelState holding the initial content of the level, shared by all workers, is returned to caller.
+     * @throws IOException If the set cannot be read.
+     * @throws IllegalArgumentException If there is no such set or level.
+     */
+    public LevelState getLevel(String setName, String levelName) throws IOException {
+        LevelState level = m_Levels.get(setName + "/" + levelName);
+        if (level != null)
+            return level;
+
+        InputStream input = Utils.getResourcePathAsStream("assets/levelSets" + Utils.getFullFileName(setName, "skb"));
+        if (input == null)
+            throw new IllegalArgumentException("Unknown set: " + setName);
+        for (LevelSetReader.RawLevel rawLevel : LevelSetReader.read(input))
+            m_Levels.putIfAbsent(setName + "/" + rawLevel.getM_LevelName(), LevelState.fromRawLevel(new ArrayList<>(rawLevel.getM_Lines())));
+
+        level = m_Levels.get(setName + "/" + levelName);
+        if (level == null)
+            throw new IllegalArgumentException("Unknown level: " + setName + "/" + levelName);
+        return level;
+    }
+
+    /**
+     * Stops the worker threads after the queued claims are verified.
+     */
+    public void shutdown() {
+        m_Workers.shutdown();
+    }
+
+    /**
+     * Verifies the minimum move records of a score board file as a backlog, printing the verdict of every record and
+     * exiting with code 1 if any record is rejected. Records have no claimed time here, as the replay kept is of the minimum move. <br />
+     * The records are read as the game reads them: the journal of the file is replayed over it, and malformed lines are skipped. Options: <br />
+     * --file PATH          score board file, data/ScoreBoard.csv of working directory by default; <br />
+     * --threads N          number of worker threads, all processors by default.
+     *
+     * @param args Contains the supplied command-line arguments as an array of String objects.
+     * @throws IOException If the score board file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        String file = System.getProperty("user.dir") + "/data/ScoreBoard.csv";
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--file":
+                    file = value;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        List<Claim> claims = new ArrayList<>();
+        for (String[] fields : ScorePersistence.readLatestRecords(new File(file)))
+            if (!fields[4].equals("-1"))
+                claims.add(new Claim(fields[0], fields[1], fields[5], -1, Integer.parseInt(fields[4]), fields[6]));
+
+        ScoreVerifier verifier = new ScoreVerifier(threads);
+        long started = System.nanoTime();
+        List<CompletableFuture<Replay.Verdict>> verdicts = new ArrayList<>();
+        for (Claim claim : claims)
+            verdicts.add(verifier.submit(claim));
+
+        int rejected = 0;
+        for (int i = 0; i < claims.size(); i++) {
+            String verdict;
+            try {
+                verdict = verdicts.get(i).join().name();
+            } catch (RuntimeException e) {
+                verdict = "ERROR " + e.getCause().getMessage();
+            }
+            if (!verdict.equals(Replay.Verdict.VALID.name()))
+                rejected++;
+            System.out.println(claims.get(i) + ": " + verdict);
+        }
+        System.out.println(claims.size() + " records verified by " + verifier.getM_WorkerCount() + " workers in "
+                + (System.nanoTime() - started) / 1_000_000 + " ms, " + rejected + " rejected");
+        verifier.shutdown();
+        System.exit(rejected == 0 ? 0 : 1);
+    }
+}
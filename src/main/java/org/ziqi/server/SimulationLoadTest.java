@@ -0,0 +1,138 @@
+package org.ziqi.server;
+
+import org.ziqi.model.Direction;
+import org.ziqi.model.LevelState;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * SimulationLoadTest class load tests a SimulationServer in process with many concurrent sessions over all bundled levels. <br />
+ * Each session is driven by an agent making random moves, with a few fly toggles, one after another:
+ * the next move is only sent once the last one is completed, so that every session has one command in flight. <br />
+ * The latency and service time percentiles of all moves are printed after a warm up round.
+ * It runs e.g. by "gradle loadTest --args='--sessions 10000 --moves 200'". Options: <br />
+ * --sessions N         number of concurrent sessions, 10000 by default; <br />
+ * --loops N            number of loop threads, all processors by default; <br />
+ * --moves N            number of moves per session measured, 200 by default; <br />
+ * --warmup N           number of moves per session before measuring, 50 by default; <br />
+ * --seed N             seed of the random agents.
+ *
+ * @author Ziqi Yang
+ * @see SimulationServer
+ */
+public final class SimulationLoadTest {
+
+    /**
+     * Constant integer specifying one in how many commands of an agent toggles flying.
+     */
+    private static final int FLY_TOGGLE_ODDS = 20;
+
+    /**
+     * SimulationLoadTest is not to be instantiated.
+     */
+    private SimulationLoadTest() {
+    }
+
+    /**
+     * Runs the load test with the given command line options.
+     *
+     * @param args Contains the supplied command-line arguments as an array of String objects.
+     * @throws IOException          If a bundled set cannot be read.
+     * @throws InterruptedException If the test is interrupted while waiting for the agents.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int sessions = 10_000;
+        int loops = Runtime.getRuntime().availableProcessors();
+        int moves = 200;
+        int warmup = 50;
+        long seed = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--sessions":
+                    sessions = Integer.parseInt(value);
+                    break;
+                case "--loops":
+                    loops = Integer.parseInt(value);
+                    break;
+                case "--moves":
+                    moves = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        SimulationServer server = new SimulationServer(loops);
+        List<LevelState> levels = server.getBundledLevels();
+        int[] sessionIds = new int[sessions];
+        long started = System.nanoTime();
+        for (int session = 0; session < sessions; session++)
+            sessionIds[session] = server.openSession(levels.get(session % levels.size())).join();
+        System.out.printf("Opened %d sessions of %d levels on %d loops in %d ms%n", server.countSessions(), levels.size(),
+                server.getM_LoopCount(), (System.nanoTime() - started) / 1_000_000);
+
+        drive(server, sessionIds, warmup, seed);
+        server.getLatencies(true);
+
+        started = System.nanoTime();
+        drive(server, sessionIds, moves, seed + 1);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        LatencyHistogram[] histograms = server.getLatencies(false);
+        System.out.printf("Played %d commands in %.2f s, %.0f commands/s%n", histograms[0].getM_Count(), seconds, histograms[0].getM_Count() / seconds);
+        System.out.println("Latency per command: " + histograms[0]);
+        System.out.println("Service time per command: " + histograms[1]);
+        server.shutdown();
+    }
+
+    /**
+     * Drives all sessions by random agents, each making the given number of commands one after another, and waits for all of them.
+     *
+     * @param server     SimulationServer hosting the sessions.
+     * @param sessionIds Array of integers as ids of sessions.
+     * @param commands   Integer specifying the number of commands per session.
+     * @param seed       Long value specifying the seed of the agents.
+     * @throws InterruptedException If interrupted while waiting for the agents.
+     */
+    private static void drive(SimulationServer server, int[] sessionIds, int commands, long seed) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(sessionIds.length);
+        for (int sessionId : sessionIds)
+            step(server, sessionId, new Random(seed * 31 + sessionId), commands, done);
+        done.await();
+    }
+
+    /**
+     * Sends the next command of an agent, chaining the rest on its completion, which runs on the loop thread of the session.
+     *
+     * @param server    SimulationServer hosting the session.
+     * @param sessionId Integer specifying the id of session.
+     * @param random    Random of the agent.
+     * @param remaining Integer specifying the number of commands left.
+     * @param done      CountDownLatch counted down when the agent is done.
+     */
+    private static void step(SimulationServer server, int sessionId, Random random, int remaining, CountDownLatch done) {
+        if (remaining == 0) {
+            done.countDown();
+            return;
+        }
+        CompletableFuture<?> command = random.nextInt(FLY_TOGGLE_ODDS) == 0 ? server.toggleFlying(sessionId)
+                : server.move(sessionId, Direction.values()[random.nextInt(Direction.values().length)]);
+        command.whenComplete((result, error) -> {
+            if (error != null) {
+                System.err.println("Session " + sessionId + " failed: " + error);
+                done.countDown();
+            } else
+                step(server, sessionId, random, remaining - 1, done);
+        });
+    }
+}
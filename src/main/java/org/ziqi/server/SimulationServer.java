@@ -0,0 +1,241 @@
+package org.ziqi.server;
+
+import org.ziqi.Utils;
+import org.ziqi.model.Direction;
+import org.ziqi.model.GameSession;
+import org.ziqi.model.LevelSetReader;
+import org.ziqi.model.LevelState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * SimulationServer class hosts many independent GameSessions in one process, e.g. for load testing AI agents and replaying tournaments. <br />
+ * Sessions are sharded over a few EventLoops by their id: a session is only ever played by the thread of its loop,
+ * so sessions share nothing mutable and no GameEngine is involved. All commands are asynchronous and return a CompletableFuture,
+ * which completes on the loop thread. <br />
+ * Levels are decoded once and their initial states are shared read-only by all sessions of the same level.
+ *
+ * @author Ziqi Yang
+ * @see GameSession
+ * @see EventLoop
+ * @see SimulationSocketServer
+ */
+public final class SimulationServer {
+
+    /**
+     * Array of loops owning the sessions, where a session is owned by the loop at its id modulo the number of loops.
+     */
+    private final EventLoop[] m_Loops;
+
+    /**
+     * Next session id to be given.
+     */
+    private final AtomicInteger m_NextSessionId = new AtomicInteger();
+
+    /**
+     * Map of initial states of bundled levels keyed by set name and level name, which are decoded on first use.
+     *
+     * @see #getLevel(String, String)
+     */
+    private final Map<String, LevelState> m_Levels = new ConcurrentHashMap<>();
+
+    /**
+     * SimulationServer constructor to start the given number of event loops.
+     *
+     * @param loops Integer specifying the number of loop threads, e.g. the number of processors.
+     */
+    public SimulationServer(int loops) {
+        m_Loops = new EventLoop[Math.max(1, loops)];
+        for (int loop = 0; loop < m_Loops.length; loop++)
+            m_Loops[loop] = new EventLoop("SimulationLoop-" + loop);
+    }
+
+    /**
+     * Gets the initial state of a bundled level, decoding its set on first use.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return LevelState holding the initial content of the level, shared by all its sessions, is returned to caller.
+     * @throws IOException If the set cannot be read.
+     * @throws IllegalArgumentException If there is no such set or level.
+     */
+    public LevelState getLevel(String setName, String levelName) throws IOException {
+        LevelState level = m_Levels.get(getLevelKey(setName, levelName));
+        if (level != null)
+            return level;
+
+        InputStream input = Utils.getResourcePathAsStream("assets/levelSets" + Utils.getFullFileName(setName, "skb"));
+        if (input == null)
+            throw new IllegalArgumentException("Unknown set: " + setName);
+        for (LevelSetReader.RawLevel rawLevel : LevelSetReader.read(input))
+            m_Levels.putIfAbsent(getLevelKey(setName, rawLevel.getM_LevelName()), LevelState.fromRawLevel(new ArrayList<>(rawLevel.getM_Lines())));
+
+        level = m_Levels.get(getLevelKey(setName, levelName));
+        if (level == null)
+            throw new IllegalArgumentException("Unknown level: " + levelName + " in set " + setName);
+        return level;
+    }
+
+    /**
+     * Gets the initial states of all levels of the bundled sets.
+     *
+     * @return List of LevelStates holding the initial content of each level in set order is returned to caller.
+     * @throws IOException If a set cannot be read.
+     */
+    public List<LevelState> getBundledLevels() throws IOException {
+        List<LevelState> levels = new ArrayList<>();
+        for (String setName : Utils.SET_NAMES) {
+            InputStream input = Utils.getResourcePathAsStream("assets/levelSets" + Utils.getFullFileName(setName, "skb"));
+            for (LevelSetReader.RawLevel rawLevel : LevelSetReader.read(input))
+                levels.add(getLevel(setName, rawLevel.getM_LevelName()));
+        }
+        return levels;
+    }
+
+    /**
+     * Opens a new session playing the level with the given initial state, with its own deadlock detector.
+     *
+     * @param initialState LevelState holding the initial content of the level, which is never changed.
+     * @return CompletableFuture of the id of new session is returned; It completes once the session can take commands.
+     */
+    public CompletableFuture<Integer> openSession(LevelState initialState) {
+        int sessionId = m_NextSessionId.getAndIncrement();
+        GameSession session = new GameSession(initialState);
+        return getLoopOf(sessionId).open(sessionId, session).thenApply(done -> sessionId);
+    }
+
+    /**
+     * Moves the player of a session one cell to given direction.
+     *
+     * @param sessionId Integer specifying the id of session.
+     * @param direction Direction specifying the direction the player to be moved to.
+     * @return CompletableFuture of the outcome of the move is returned to caller.
+     * @see GameSession#move(Direction)
+     */
+    public CompletableFuture<GameSession.MoveResult> move(int sessionId, Direction direction) {
+        return submit(sessionId, session -> session.move(direction));
+    }
+
+    /**
+     * Toggles the flying status of the player of a session.
+     *
+     * @param sessionId Integer specifying the id of session.
+     * @return CompletableFuture of true if the player took off or landed is returned to caller.
+     * @see GameSession#toggleFlying()
+     */
+    public CompletableFuture<Boolean> toggleFlying(int sessionId) {
+        return submit(sessionId, GameSession::toggleFlying);
+    }
+
+    /**
+     * Restarts a session.
+     *
+     * @param sessionId Integer specifying the id of session.
+     * @return CompletableFuture completed once the session is restarted is returned to caller.
+     * @see GameSession#restart()
+     */
+    public CompletableFuture<Void> restart(int sessionId) {
+        return submit(sessionId, session -> {
+            session.restart();
+            return null;
+        });
+    }
+
+    /**
+     * Runs any query or command on a session on the thread of its loop, e.g. to read its counters. <br />
+     * The action must not keep the session, as it is only safe to access on that thread.
+     *
+     * @param sessionId Integer specifying the id of session.
+     * @param action    Function applied to the session.
+     * @param <T>       Type of the result of action.
+     * @return CompletableFuture of the result is returned; It completes exceptionally with IllegalArgumentException if no such session is open.
+     */
+    public <T> CompletableFuture<T> submit(int sessionId, Function<GameSession, T> action) {
+        return getLoopOf(sessionId).submit(sessionId, action);
+    }
+
+    /**
+     * Closes a session, which takes no more commands.
+     *
+     * @param sessionId Integer specifying the id of session.
+     * @return CompletableFuture of true if the session was open is returned to caller.
+     */
+    public CompletableFuture<Boolean> closeSession(int sessionId) {
+        return getLoopOf(sessionId).close(sessionId);
+    }
+
+    /**
+     * Counts the open sessions of all loops.
+     *
+     * @return Integer specifying the number of open sessions is returned to caller.
+     */
+    public int countSessions() {
+        int sessions = 0;
+        for (EventLoop loop : m_Loops)
+            sessions += loop.countSessions().join();
+        return sessions;
+    }
+
+    /**
+     * Merges the latency histograms of all loops: latency of commands from being queued to being completed, and their service time.
+     *
+     * @param reset Boolean value specifying if the histograms of loops are reset, e.g. after warming up.
+     * @return Array of the merged latency and service time histograms is returned to caller.
+     */
+    public LatencyHistogram[] getLatencies(boolean reset) {
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        for (EventLoop loop : m_Loops) {
+            LatencyHistogram[] histograms = loop.snapshot(reset).join();
+            latency.merge(histograms[0]);
+            serviceTime.merge(histograms[1]);
+        }
+        return new LatencyHistogram[]{latency, serviceTime};
+    }
+
+    /**
+     * Gets the number of loop threads.
+     *
+     * @return Integer specifying the number of loops is returned to caller.
+     */
+    public int getM_LoopCount() {
+        return m_Loops.length;
+    }
+
+    /**
+     * Stops all loops, dropping commands not run yet.
+     */
+    public void shutdown() {
+        for (EventLoop loop : m_Loops)
+            loop.shutdown();
+    }
+
+    /**
+     * Gets the loop owning the given session.
+     *
+     * @param sessionId Integer specifying the id of session.
+     * @return EventLoop owning the session is returned.
+     */
+    private EventLoop getLoopOf(int sessionId) {
+        return m_Loops[Math.floorMod(sessionId, m_Loops.length)];
+    }
+
+    /**
+     * Gets the key of given level in the level map.
+     *
+     * @param setName   String value specifying the set name of the level.
+     * @param levelName String value specifying the level name.
+     * @return String value specifying the key is returned.
+     */
+    private static String getLevelKey(String setName, String levelName) {
+        return setName + "/" + levelName;
+    }
+}
@@ -0,0 +1,265 @@
+package org.ziqi.server;
+
+import org.ziqi.model.Direction;
+import org.ziqi.model.GameSession;
+import org.ziqi.model.Replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * SimulationSocketServer class serves a SimulationServer over a local socket, so that agents written in any language can play sessions. <br />
+ * It only listens on the loopback address. Each connection is served by its own thread with a line protocol,
+ * one request per line and one response line starting with "OK" or "ERR" per request: <br />
+ * OPEN set level       opens a session of a bundled level, responding its id; <br />
+ * MOVE id codes        plays LURD codes, where '*' toggles flying, responding the outcome of each code; <br />
+ * STATE id             responds moves, pushes, flying, complete and deadlock of a session; <br />
+ * RESTART id           restarts a session; <br />
+ * CLOSE id             closes a session; <br />
+ * STATS                responds the latency and service time histograms of all session commands so far; <br />
+ * QUIT                 closes the connection. <br />
+ * It runs e.g. by "gradle simulationServer --args='--port 7878 --loops 4'".
+ *
+ * @author Ziqi Yang
+ * @see SimulationServer
+ */
+public final class SimulationSocketServer implements Runnable {
+
+    /**
+     * Constant integer specifying the default port.
+     */
+    public static final int DEFAULT_PORT = 7878;
+
+    /**
+     * SimulationServer hosting the sessions.
+     */
+    private final SimulationServer m_Server;
+
+    /**
+     * ServerSocket accepting local connections.
+     */
+    private final ServerSocket m_ServerSocket;
+
+    /**
+     * SimulationSocketServer constructor binding the given port on the loopback address.
+     *
+     * @param server SimulationServer hosting the sessions.
+     * @param port   Integer specifying the port to listen on; 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public SimulationSocketServer(SimulationServer server, int port) throws IOException {
+        m_Server = server;
+        m_ServerSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Gets the port listened on.
+     *
+     * @return Integer specifying the local port is returned to caller.
+     */
+    public int getM_Port() {
+        return m_ServerSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server socket is closed, serving each one by a new daemon thread.
+     */
+    @Override
+    public void run() {
+        while (!m_ServerSocket.isClosed()) {
+            try {
+                Socket socket = m_ServerSocket.accept();
+                Thread thread = new Thread(() -> serve(socket), "SimulationClient-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!m_ServerSocket.isClosed())
+                    System.err.println("Cannot accept connection: " + e);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections.
+     *
+     * @throws IOException If the server socket cannot be closed.
+     */
+    public void close() throws IOException {
+        m_ServerSocket.close();
+    }
+
+    /**
+     * Serves requests of one connection until QUIT or the end of input. <br />
+     * Sessions opened by the connection are closed when it ends.
+     *
+     * @param socket Socket of the connection.
+     */
+    private void serve(Socket socket) {
+        List<Integer> sessionIds = new ArrayList<>();
+        try (socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String request = line.trim();
+                if (request.isEmpty())
+                    continue;
+                if (request.equalsIgnoreCase("QUIT"))
+                    break;
+                String response;
+                try {
+                    response = "OK" + handle(request.split("\\s+"), sessionIds);
+                } catch (CompletionException e) {
+                    response = "ERR " + e.getCause().getMessage();
+                } catch (RuntimeException | IOException e) {
+                    response = "ERR " + e.getMessage();
+                }
+                writer.println(response);
+            }
+        } catch (IOException e) {
+            System.err.println("Connection lost: " + e);
+        } finally {
+            for (int sessionId : sessionIds)
+                m_Server.closeSession(sessionId);
+        }
+    }
+
+    /**
+     * Handles one request, waiting for its session command to complete.
+     *
+     * @param words      Array of string as words of the request.
+     * @param sessionIds List of integers as ids of sessions opened by the connection.
+     * @return String value to follow "OK" in the response is returned.
+     * @throws IOException If the set of a level cannot be read.
+     * @throws IllegalArgumentException If the request is malformed.
+     */
+    private String handle(String[] words, List<Integer> sessionIds) throws IOException {
+        switch (words[0].toUpperCase()) {
+            case "OPEN": {
+                requireWords(words, 3);
+                int sessionId = m_Server.openSession(m_Server.getLevel(words[1], words[2])).join();
+                sessionIds.add(sessionId);
+                return " " + sessionId;
+            }
+            case "MOVE": {
+                requireWords(words, 3);
+                String codes = words[2];
+                return m_Server.submit(parseId(words[1]), session -> play(session, codes)).join();
+            }
+            case "STATE":
+                requireWords(words, 2);
+                return m_Server.submit(parseId(words[1]), session -> " moves=" + session.getM_MoveCount() + " pushes=" + session.getM_PushCount()
+                        + " flying=" + session.isFlying() + " complete=" + session.isLevelComplete() + " deadlock=" + session.getM_Deadlock().name()).join();
+            case "RESTART":
+                requireWords(words, 2);
+                m_Server.restart(parseId(words[1])).join();
+                return "";
+            case "CLOSE": {
+                requireWords(words, 2);
+                int sessionId = parseId(words[1]);
+                sessionIds.remove(Integer.valueOf(sessionId));
+                return " " + m_Server.closeSession(sessionId).join();
+            }
+            case "STATS": {
+                LatencyHistogram[] histograms = m_Server.getLatencies(false);
+                return " latency: " + histograms[0] + " | service: " + histograms[1];
+            }
+            default:
+                throw new IllegalArgumentException("Unknown request: " + words[0]);
+        }
+    }
+
+    /**
+     * Plays LURD codes on a session one after another. <br />
+     * This runs on the loop thread of the session; Codes before an unknown code stay played.
+     *
+     * @param session GameSession to be played.
+     * @param codes   String value of LURD codes, where FLY_TOGGLE_CODE toggles flying.
+     * @return String value listing the outcome of each code is returned.
+     * @throws IllegalArgumentException If a code is neither a move code nor FLY_TOGGLE_CODE.
+     * @see Replay#FLY_TOGGLE_CODE
+     */
+    private static String play(GameSession session, String codes) {
+        StringBuilder outcomes = new StringBuilder();
+        for (int i = 0; i < codes.length(); i++) {
+            char code = codes.charAt(i);
+            if (code == Replay.FLY_TOGGLE_CODE) {
+                boolean toggled = session.toggleFlying();
+                outcomes.append(' ').append(!toggled ? "CANNOT_LAND" : session.isFlying() ? "TOOK_OFF" : "LANDED");
+                continue;
+            }
+            Direction direction = Direction.fromCode(code);
+            if (direction == null)
+                throw new IllegalArgumentException("Unknown move code: " + code);
+            outcomes.append(' ').append(session.move(direction).name());
+        }
+        return outcomes.toString();
+    }
+
+    /**
+     * Checks that a request has at least the given number of words.
+     *
+     * @param words Array of string as words of the request.
+     * @param count Integer specifying the number of words needed.
+     * @throws IllegalArgumentException If words are missing.
+     */
+    private static void requireWords(String[] words, int count) {
+        if (words.length < count)
+            throw new IllegalArgumentException("Missing arguments for " + words[0].toUpperCase());
+    }
+
+    /**
+     * Parses a session id.
+     *
+     * @param word String value of the id.
+     * @return Integer specifying the session id is returned.
+     * @throws IllegalArgumentException If the word is no integer.
+     */
+    private static int parseId(String word) {
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad session id: " + word);
+        }
+    }
+
+    /**
+     * Runs the socket server until the process is killed. Options: <br />
+     * --port N             port to listen on, DEFAULT_PORT by default; <br />
+     * --loops N            number of loop threads, all processors by default.
+     *
+     * @param args Contains the supplied command-line arguments as an array of String objects.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int loops = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--loops":
+                    loops = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        SimulationServer server = new SimulationServer(loops);
+        SimulationSocketServer socketServer = new SimulationSocketServer(server, port);
+        System.out.println("Simulation server listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + socketServer.getM_Port()
+                + " with " + server.getM_LoopCount() + " loops");
+        socketServer.run();
+    }
+}
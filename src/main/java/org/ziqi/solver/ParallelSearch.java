@@ -0,0 +1,533 @@
+package org.ziqi.solver;
+
+import org.ziqi.model.DeadlockDetector;
+import org.ziqi.model.LevelState;
+import org.ziqi.model.ZobristKeys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ParallelSearch class runs the IDA* search of Solver on many threads of a ForkJoinPool. <br />
+ * The top of the search tree is split into SearchTasks, one per push, which idle threads steal from busy ones.
+ * A task keeps splitting while few tasks are queued and runs the rest of its subtree depth first on its own otherwise,
+ * so that the pool stays busy without creating a task for every state. <br />
+ * All threads share one StripedTranspositionTable, the bound of the iteration and the first solution found;
+ * Each thread has its own scratch arrays, PlayerDistances and DeadlockDetector. Any solution found within the bound is as good as the sequential one.
+ *
+ * @author Ziqi Yang
+ * @see Solver
+ * @see StripedTranspositionTable
+ */
+final class ParallelSearch {
+
+    /**
+     * Constant integer specifying how many expanded states a thread passes between two checks of the time limit.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * Constant integer specifying the deepest push at which a task may still be split.
+     */
+    private static final int MAX_SPLIT_DEPTH = 16;
+
+    /**
+     * Constant integer specifying how many queued tasks a thread may have beyond those stolen from it and still split.
+     */
+    private static final int SURPLUS_TASKS = 2;
+
+    /**
+     * Static information of the level being solved.
+     */
+    private final PushDistanceTable m_Table;
+
+    /**
+     * Zobrist keys of the level being solved.
+     */
+    private final ZobristKeys m_Keys;
+
+    /**
+     * LevelState of the level being solved, from which each thread builds its DeadlockDetector.
+     */
+    private final LevelState m_State;
+
+    /**
+     * Integer specifying number of crates of the level being solved.
+     */
+    private final int m_CrateCount;
+
+    /**
+     * Integer specifying the weight of the lower bound.
+     */
+    private final int m_Weight;
+
+    /**
+     * Integer specifying number of threads of the pool.
+     */
+    private final int m_Threads;
+
+    /**
+     * Long integer specifying the nano time the solving started at.
+     */
+    private final long m_StartTime;
+
+    /**
+     * Long integer specifying the time limit in milliseconds.
+     */
+    private final long m_TimeLimitMillis;
+
+    /**
+     * Transposition table shared by all threads, cleared on every iteration.
+     */
+    private final StripedTranspositionTable m_Transpositions;
+
+    /**
+     * Scratch state of each thread.
+     */
+    private final ThreadLocal<Worker> m_Workers = ThreadLocal.withInitial(Worker::new);
+
+    /**
+     * Number of states expanded by all threads.
+     */
+    private final LongAdder m_Expanded = new LongAdder();
+
+    /**
+     * Smallest estimated cost exceeding the bound of the current iteration.
+     */
+    private final AtomicInteger m_NextBound = new AtomicInteger();
+
+    /**
+     * Pushes of the first solution found; Null until then.
+     */
+    private final AtomicReference<int[]> m_Solution = new AtomicReference<>();
+
+    /**
+     * Integer specifying the bound of estimated total moves of the current iteration.
+     */
+    private volatile int m_Bound;
+
+    /**
+     * Status specifying why the search is aborted; Null while the search is running.
+     */
+    private volatile SolverResult.Status m_AbortStatus;
+
+    /**
+     * ParallelSearch constructor with the level being solved and the settings of Solver.
+     *
+     * @param state            LevelState of the level being solved, whose dead squares are marked.
+     * @param table            PushDistanceTable of the level.
+     * @param keys             ZobristKeys of the level.
+     * @param weight           Integer specifying the weight of the lower bound.
+     * @param threads          Integer specifying number of threads to search on.
+     * @param startTime        Long integer specifying the nano time the solving started at.
+     * @param timeLimitMillis  Long integer specifying the time limit in milliseconds.
+     * @param memoryLimitBytes Long integer specifying the memory limit in bytes, which bounds the transposition table.
+     */
+    ParallelSearch(LevelState state, PushDistanceTable table, ZobristKeys keys, int weight, int threads, long startTime, long timeLimitMillis, long memoryLimitBytes) {
+        m_State = state;
+        m_Table = table;
+        m_Keys = keys;
+        m_CrateCount = state.countOf(LevelState.PLANE_OF_CRATE);
+        m_Weight = weight;
+        m_Threads = threads;
+        m_StartTime = startTime;
+        m_TimeLimitMillis = timeLimitMillis;
+        m_Transpositions = new StripedTranspositionTable((int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryLimitBytes / TranspositionTable.BYTES_PER_ENTRY)));
+    }
+
+    /**
+     * Searches the solution by iterations of growing bounds, each searched by all threads of a new pool.
+     *
+     * @param rootCrates Array of crate cells of the initial state.
+     * @param rootPlayer Integer specifying the player cell of the initial state.
+     * @param rootHash   Long value specifying the hash of the initial state.
+     * @param bound      Integer specifying the bound of the first iteration.
+     * @return Array of pushes of the solution, each as crate cell * 4 + direction ordinal, is returned;
+     * Null if none is found, with the reason given by getM_AbortStatus().
+     */
+    int[] search(int[] rootCrates, int rootPlayer, long rootHash, int bound) {
+        ForkJoinPool pool = new ForkJoinPool(m_Threads);
+        try {
+            while (true) {
+                m_Transpositions.clear();
+                m_Transpositions.putIfLower(rootHash, 0);
+                m_NextBound.set(Integer.MAX_VALUE);
+                m_Bound = bound;
+                pool.invoke(new SearchTask(rootCrates.clone(), rootPlayer, rootHash, 0, new int[0]));
+                if (m_Solution.get() != null || m_AbortStatus != null || m_NextBound.get() == Integer.MAX_VALUE)
+                    return m_Solution.get();
+                bound = m_NextBound.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the status specifying why the search is aborted.
+     *
+     * @return Status of the abort is returned; Null if the search is not aborted.
+     */
+    SolverResult.Status getM_AbortStatus() {
+        return m_AbortStatus;
+    }
+
+    /**
+     * Gets number of states expanded by all threads.
+     *
+     * @return Long integer specifying number of expanded states is returned.
+     */
+    long getM_Expanded() {
+        return m_Expanded.sum();
+    }
+
+    /**
+     * Checks if the search has to stop, because a solution is found or a limit is reached.
+     *
+     * @return True is returned if the search has to stop; Otherwise, false is returned.
+     */
+    private boolean isStopped() {
+        return m_Solution.get() != null || m_AbortStatus != null;
+    }
+
+    /**
+     * SearchTask class searches the subtree of one state, which it owns exclusively.
+     */
+    private final class SearchTask extends RecursiveAction {
+
+        /**
+         * Constant long integer specifying the serialization version, as RecursiveAction is Serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Array of crate cells of the state.
+         */
+        private final int[] m_Crates;
+
+        /**
+         * Integer specifying the player cell of the state.
+         */
+        private final int m_Player;
+
+        /**
+         * Long value specifying the hash of the state.
+         */
+        private final long m_Hash;
+
+        /**
+         * Integer specifying the moves made to reach the state.
+         */
+        private final int m_Moves;
+
+        /**
+         * Array of pushes made to reach the state.
+         */
+        private final int[] m_Path;
+
+        /**
+         * SearchTask constructor with the state to be searched.
+         *
+         * @param crates Array of crate cells of the state.
+         * @param player Integer specifying the player cell of the state.
+         * @param hash   Long value specifying the hash of the state.
+         * @param moves  Integer specifying the moves made to reach the state.
+         * @param path   Array of pushes made to reach the state.
+         */
+        SearchTask(int[] crates, int player, long hash, int moves, int[] path) {
+            m_Crates = crates;
+            m_Player = player;
+            m_Hash = hash;
+            m_Moves = moves;
+            m_Path = path;
+        }
+
+        /**
+         * Splits the state into a task per push while the pool is hungry; Otherwise searches the whole subtree on this thread.
+         */
+        @Override
+        protected void compute() {
+            Worker worker = m_Workers.get();
+            if (m_Path.length < MAX_SPLIT_DEPTH && getSurplusQueuedTaskCount() <= SURPLUS_TASKS)
+                invokeAll(worker.split(this));
+            else
+                worker.run(this);
+        }
+    }
+
+    /**
+     * Worker class holds the scratch state of one thread. <br />
+     * A worker is only used between the start of a task and its fork or end, so that tasks run by the same thread while joining never share it.
+     */
+    private final class Worker {
+
+        /**
+         * Array of booleans specifying if a crate is at each cell of the state being searched.
+         */
+        private final boolean[] m_Occupied = new boolean[m_Table.getM_Cells()];
+
+        /**
+         * DeadlockDetector of this thread.
+         */
+        private final DeadlockDetector m_Detector = new DeadlockDetector(m_State);
+
+        /**
+         * Pushes of the path being searched.
+         */
+        private int[] m_Path = new int[64];
+
+        /**
+         * PlayerDistances for each depth of the path being searched.
+         */
+        private PlayerDistances[] m_DistancesByDepth = new PlayerDistances[64];
+
+        /**
+         * Long integer specifying number of states expanded by this thread.
+         */
+        private long m_LocalExpanded;
+
+        /**
+         * Expands the state of given task into a task per push that survives the checks.
+         *
+         * @param task SearchTask of the state to be split.
+         * @return List of child tasks is returned; Empty if the state is cut off, solved or the search is stopped.
+         */
+        List<SearchTask> split(SearchTask task) {
+            List<SearchTask> children = new ArrayList<>();
+            int depth = task.m_Path.length;
+            load(task);
+            if (enter(task.m_Crates, task.m_Moves, depth)) {
+                PlayerDistances distances = distancesAt(depth);
+                distances.compute(m_Occupied, task.m_Player);
+                int[] crates = task.m_Crates;
+                for (int i = 0; i < m_CrateCount; i++) {
+                    int crate = crates[i];
+                    if (m_Table.isDiamond(crate))
+                        continue;
+                    for (int direction = 0; direction < 4; direction++) {
+                        int cost = pushCost(distances, crate, direction);
+                        if (cost == PlayerDistances.UNREACHABLE)
+                            continue;
+                        int target = m_Table.getNeighbour(crate, direction);
+                        int nextMoves = task.m_Moves + cost + 1;
+                        long nextHash = nextHash(task.m_Hash, task.m_Player, crate, target);
+                        if (!m_Transpositions.putIfLower(nextHash, nextMoves))
+                            continue;
+                        if (push(crates, i, target)) {
+                            int[] path = Arrays.copyOf(task.m_Path, depth + 1);
+                            path[depth] = crate * 4 + direction;
+                            children.add(new SearchTask(crates.clone(), crate, nextHash, nextMoves, path));
+                        }
+                        undo(crates, i, crate);
+                    }
+                }
+            }
+            unload(task);
+            return children;
+        }
+
+        /**
+         * Searches the whole subtree of given task on this thread.
+         *
+         * @param task SearchTask of the state to be searched.
+         */
+        void run(SearchTask task) {
+            load(task);
+            search(task.m_Crates, task.m_Player, task.m_Hash, task.m_Moves, task.m_Path.length);
+            unload(task);
+        }
+
+        /**
+         * Marks the crates of given task as occupied and copies its path.
+         *
+         * @param task SearchTask of the state to be searched.
+         */
+        private void load(SearchTask task) {
+            for (int crate : task.m_Crates)
+                m_Occupied[crate] = true;
+            ensureDepth(task.m_Path.length);
+            System.arraycopy(task.m_Path, 0, m_Path, 0, task.m_Path.length);
+        }
+
+        /**
+         * Clears the crates of given task from the occupied cells.
+         *
+         * @param task SearchTask of the searched state.
+         */
+        private void unload(SearchTask task) {
+            for (int crate : task.m_Crates)
+                m_Occupied[crate] = false;
+        }
+
+        /**
+         * Searches depth first from the given state within the bound, as Solver does on a single thread.
+         *
+         * @param crates Array of crate cells, changed in place by each push and restored afterwards.
+         * @param player Integer specifying the player cell.
+         * @param hash   Long value specifying the hash of the state.
+         * @param moves  Integer specifying the moves made to reach the state.
+         * @param depth  Integer specifying the pushes made to reach the state.
+         */
+        private void search(int[] crates, int player, long hash, int moves, int depth) {
+            if (!enter(crates, moves, depth))
+                return;
+            PlayerDistances distances = distancesAt(depth);
+            distances.compute(m_Occupied, player);
+
+            for (int i = 0; i < m_CrateCount; i++) {
+                int crate = crates[i];
+                if (m_Table.isDiamond(crate))
+                    continue;
+                for (int direction = 0; direction < 4; direction++) {
+                    int cost = pushCost(distances, crate, direction);
+                    if (cost == PlayerDistances.UNREACHABLE)
+                        continue;
+                    int target = m_Table.getNeighbour(crate, direction);
+                    int nextMoves = moves + cost + 1;
+                    long nextHash = nextHash(hash, player, crate, target);
+                    if (!m_Transpositions.putIfLower(nextHash, nextMoves))
+                        continue;
+                    if (push(crates, i, target)) {
+                        m_Path[depth] = crate * 4 + direction;
+                        search(crates, crate, nextHash, nextMoves, depth + 1);
+                    }
+                    undo(crates, i, crate);
+                    if (isStopped())
+                        return;
+                }
+            }
+        }
+
+        /**
+         * Checks the state on entering it: cuts it off by the bound, records it if solved, and counts it as expanded.
+         *
+         * @param crates Array of crate cells of the state.
+         * @param moves  Integer specifying the moves made to reach the state.
+         * @param depth  Integer specifying the pushes made to reach the state.
+         * @return True is returned if the pushes of the state have to be searched; Otherwise, false is returned.
+         */
+        private boolean enter(int[] crates, int moves, int depth) {
+            if (isStopped())
+                return false;
+            int estimate = m_Table.estimate(crates, m_CrateCount, m_Occupied);
+            if (estimate == PushDistanceTable.UNREACHABLE)
+                return false;
+            int cost = moves + m_Weight * estimate;
+            if (cost > m_Bound) {
+                m_NextBound.accumulateAndGet(cost, Math::min);
+                return false;
+            }
+            if (estimate == 0 && isSolved(crates)) {
+                m_Solution.compareAndSet(null, Arrays.copyOf(m_Path, depth));
+                return false;
+            }
+            m_Expanded.increment();
+            if (++m_LocalExpanded % CHECK_INTERVAL == 0 && (System.nanoTime() - m_StartTime) / 1_000_000 >= m_TimeLimitMillis)
+                m_AbortStatus = SolverResult.Status.TIME_LIMIT_EXCEEDED;
+            ensureDepth(depth);
+            return !isStopped();
+        }
+
+        /**
+         * Gets the moves the player takes to push the crate at given cell to given direction.
+         *
+         * @param distances PlayerDistances of the current state.
+         * @param crate     Integer specifying the cell of the crate.
+         * @param direction Integer specifying the direction ordinal.
+         * @return Integer specifying the moves to reach the pusher cell is returned; UNREACHABLE if the push is impossible.
+         */
+        private int pushCost(PlayerDistances distances, int crate, int direction) {
+            int pusher = m_Table.getNeighbour(crate, PushDistanceTable.opposite(direction));
+            int target = m_Table.getNeighbour(crate, direction);
+            if (pusher == LevelState.OUT_OF_BOUNDS || target == LevelState.OUT_OF_BOUNDS || m_Table.isWall(target) || m_Occupied[target]
+                    || distances.getDistance(pusher) == PlayerDistances.UNREACHABLE)
+                return PlayerDistances.UNREACHABLE;
+            return distances.getDistance(pusher);
+        }
+
+        /**
+         * Computes the hash of the state after the crate at given cell is pushed onto target, which leaves the player on the crate cell.
+         *
+         * @param hash   Long value specifying the hash of the current state.
+         * @param player Integer specifying the player cell of the current state.
+         * @param crate  Integer specifying the cell of the crate.
+         * @param target Integer specifying the cell the crate is pushed to.
+         * @return Long value specifying the hash of the next state is returned.
+         */
+        private long nextHash(long hash, int player, int crate, int target) {
+            return hash ^ m_Keys.getCrateKey(crate) ^ m_Keys.getCrateKey(target) ^ m_Keys.getPlayerKey(player) ^ m_Keys.getPlayerKey(crate);
+        }
+
+        /**
+         * Pushes the crate of given index onto target and checks the result for deadlocks.
+         *
+         * @param crates Array of crate cells.
+         * @param index  Integer specifying the index of the crate.
+         * @param target Integer specifying the cell the crate is pushed to.
+         * @return True is returned if the state after the push may still be solved; Otherwise, false is returned.
+         */
+        private boolean push(int[] crates, int index, int target) {
+            m_Occupied[crates[index]] = false;
+            m_Occupied[target] = true;
+            crates[index] = target;
+            return m_Detector.analyze(crates, m_CrateCount, m_Occupied, target) == DeadlockDetector.Deadlock.NONE;
+        }
+
+        /**
+         * Moves the crate of given index back to its cell before the push.
+         *
+         * @param crates Array of crate cells.
+         * @param index  Integer specifying the index of the crate.
+         * @param crate  Integer specifying the cell of the crate before the push.
+         */
+        private void undo(int[] crates, int index, int crate) {
+            m_Occupied[crates[index]] = false;
+            m_Occupied[crate] = true;
+            crates[index] = crate;
+        }
+
+        /**
+         * Grows the path and the PlayerDistances by depth so that a push can be made at given depth.
+         *
+         * @param depth Integer specifying the depth.
+         */
+        private void ensureDepth(int depth) {
+            while (depth >= m_Path.length) {
+                m_Path = Arrays.copyOf(m_Path, m_Path.length * 2);
+                m_DistancesByDepth = Arrays.copyOf(m_DistancesByDepth, m_Path.length);
+            }
+        }
+
+        /**
+         * Gets the PlayerDistances of given depth, creating it on first use.
+         *
+         * @param depth Integer specifying the depth.
+         * @return PlayerDistances of the depth is returned.
+         */
+        private PlayerDistances distancesAt(int depth) {
+            if (m_DistancesByDepth[depth] == null)
+                m_DistancesByDepth[depth] = new PlayerDistances(m_Table);
+            return m_DistancesByDepth[depth];
+        }
+
+        /**
+         * Checks if all diamonds are filled by the given crates.
+         *
+         * @param crates Array of crate cells.
+         * @return True is returned if the level is completed; Otherwise, false is returned.
+         */
+        private boolean isSolved(int[] crates) {
+            int cratedDiamonds = 0;
+            for (int crate : crates)
+                if (m_Table.isDiamond(crate))
+                    cratedDiamonds++;
+            return cratedDiamonds == m_Table.getM_DiamondCount();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.ziqi.solver;
+
+import org.ziqi.model.Direction;
+import org.ziqi.model.LevelState;
+import org.ziqi.model.Replay;
+
+import java.util.Arrays;
+
+/**
+ * PlayerDistances class computes the minimum move count for the player to reach every cell with the crates fixed in place. <br />
+ * The player either walks on the ground (1 move per step over free cells) or flies (2 moves per step over any cell),
+ * taking off anywhere on the ground and landing on any free cell for free. This is solved by a shortest path search over
+ * two layers of cells, ground and air, with a bucket queue since all edge costs are 0, 1 or 2.
+ *
+ * @author Ziqi Yang
+ * @see org.ziqi.model.Player#move(Direction)
+ */
+final class PlayerDistances {
+
+    /**
+     * Constant integer specifying a cell the player cannot stand on.
+     */
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Constant integer specifying the move cost of a walking step.
+     */
+    private static final int WALKING_COST = 1;
+
+    /**
+     * Constant integer specifying the move cost of a flying step.
+     *
+     * @see org.ziqi.model.Player
+     */
+    private static final int FLYING_COST = 2;
+
+    /**
+     * Constant integer specifying number of buckets, which must be greater than the largest edge cost.
+     */
+    private static final int NUM_OF_BUCKET = FLYING_COST + 1;
+
+    /**
+     * Static information of the level.
+     */
+    private final PushDistanceTable m_Table;
+
+    /**
+     * Integer specifying number of cells of the level.
+     */
+    private final int CELLS;
+
+    /**
+     * Distances indexed by node, where node = cell for ground and cell + CELLS for air.
+     */
+    private final int[] m_Distance;
+
+    /**
+     * Previous node on the shortest path indexed by node.
+     */
+    private final int[] m_Parent;
+
+    /**
+     * Buckets of nodes waiting to be settled, indexed by distance modulo NUM_OF_BUCKET.
+     */
+    private final int[][] m_Buckets;
+
+    /**
+     * Sizes of each bucket.
+     */
+    private final int[] m_BucketSizes = new int[NUM_OF_BUCKET];
+
+    /**
+     * PlayerDistances constructor to allocate all working arrays once for the given level.
+     *
+     * @param table Static information of the level.
+     */
+    PlayerDistances(PushDistanceTable table) {
+        m_Table = table;
+        CELLS = table.getM_Cells();
+        m_Distance = new int[CELLS * 2];
+        m_Parent = new int[CELLS * 2];
+        m_Buckets = new int[NUM_OF_BUCKET][CELLS * 2 * 5];
+    }
+
+    /**
+     * Computes the distances of all cells from the given grounded player cell.
+     *
+     * @param occupied Array of booleans specifying if a crate is at each cell.
+     * @param start    Integer specifying the cell the player is standing on.
+     */
+    void compute(boolean[] occupied, int start) {
+        Arrays.fill(m_Distance, UNREACHABLE);
+        Arrays.fill(m_BucketSizes, 0);
+        relax(start, LevelState.OUT_OF_BOUNDS, 0);
+
+        int pending = 1;
+        for (int distance = 0; pending > 0; distance++) {
+            int[] bucket = m_Buckets[distance % NUM_OF_BUCKET];
+            // zero cost edges append to the bucket being settled
+            for (int i = 0; i < m_BucketSizes[distance % NUM_OF_BUCKET]; i++) {
+                pending--;
+                int node = bucket[i];
+                if (m_Distance[node] != distance)
+                    continue;
+                boolean flying = node >= CELLS;
+                int cell = flying ? node - CELLS : node;
+                if (flying) {
+                    if (isFree(occupied, cell))
+                        pending += relax(cell, node, distance);
+                    for (int direction = 0; direction < 4; direction++) {
+                        int next = m_Table.getNeighbour(cell, direction);
+                        if (next != LevelState.OUT_OF_BOUNDS)
+                            pending += relax(next + CELLS, node, distance + FLYING_COST);
+                    }
+                } else {
+                    pending += relax(cell + CELLS, node, distance);
+                    for (int direction = 0; direction < 4; direction++) {
+                        int next = m_Table.getNeighbour(cell, direction);
+                        if (next != LevelState.OUT_OF_BOUNDS && isFree(occupied, next))
+                            pending += relax(next, node, distance + WALKING_COST);
+                    }
+                }
+            }
+            m_BucketSizes[distance % NUM_OF_BUCKET] = 0;
+        }
+    }
+
+    /**
+     * Relaxes the given node by a new distance and queues it if the distance is improved.
+     *
+     * @param node     Integer specifying the node to be relaxed.
+     * @param parent   Integer specifying the node it is reached from.
+     * @param distance Integer specifying the new distance.
+     * @return 1 is returned if the node is queued; Otherwise, 0 is returned.
+     */
+    private int relax(int node, int parent, int distance) {
+        if (distance >= m_Distance[node])
+            return 0;
+        m_Distance[node] = distance;
+        m_Parent[node] = parent;
+        int bucket = distance % NUM_OF_BUCKET;
+        m_Buckets[bucket][m_BucketSizes[bucket]++] = node;
+        return 1;
+    }
+
+    /**
+     * Checks if the player can stand on given cell.
+     *
+     * @param occupied Array of booleans specifying if a crate is at each cell.
+     * @param cell     Integer specifying the cell index.
+     * @return True is returned if there is neither a wall nor a crate; Otherwise, false is returned.
+     */
+    private boolean isFree(boolean[] occupied, int cell) {
+        return !m_Table.isWall(cell) && !occupied[cell];
+    }
+
+    /**
+     * Gets the distance of the player to stand on the given cell, which is grounded.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return Integer specifying the move count is returned; UNREACHABLE if the player cannot stand on it.
+     */
+    int getDistance(int cell) {
+        return m_Distance[cell];
+    }
+
+    /**
+     * Appends the moves of the last computed shortest path to given grounded cell in LURD format. <br />
+     * Walking and flying steps are written as lower case direction codes and taking off or landing as FLY_TOGGLE_CODE.
+     *
+     * @param builder StringBuilder to append moves to.
+     * @param target  Integer specifying the target cell.
+     * @see Replay#FLY_TOGGLE_CODE
+     */
+    void appendPath(StringBuilder builder, int target) {
+        StringBuilder path = new StringBuilder();
+        Direction[] directions = Direction.values();
+        for (int node = target; m_Parent[node] != LevelState.OUT_OF_BOUNDS; node = m_Parent[node]) {
+            int parent = m_Parent[node];
+            int cell = node % CELLS;
+            int parentCell = parent % CELLS;
+            if (cell == parentCell) {
+                path.append(Replay.FLY_TOGGLE_CODE);
+                continue;
+            }
+            for (Direction direction : directions)
+                if (m_Table.getNeighbour(parentCell, direction.ordinal()) == cell)
+                    path.append(direction.getM_Code());
+        }
+        builder.append(path.reverse());
+    }
+}
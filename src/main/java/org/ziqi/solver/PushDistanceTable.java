@@ -0,0 +1,226 @@
+package org.ziqi.solver;
+
+import org.ziqi.model.Direction;
+import org.ziqi.model.LevelState;
+
+import java.util.Arrays;
+
+/**
+ * PushDistanceTable class holds the static information of a level needed by the Solver: walls, diamonds, neighbours of each cell
+ * and the minimum number of pushes to bring a crate from each cell to each diamond. <br />
+ * Push distances only regard walls and ignore all other crates, so that the sum of them is an admissible lower bound of the remaining moves.
+ *
+ * @author Ziqi Yang
+ * @see Solver
+ */
+final class PushDistanceTable {
+
+    /**
+     * Constant integer specifying a cell from which a crate can never be pushed to the diamond.
+     */
+    static final int UNREACHABLE = Integer.MAX_VALUE / 4;
+
+    /**
+     * Integer specifying number of cells of the level.
+     */
+    private final int CELLS;
+
+    /**
+     * Array of neighbour cells indexed by cell * 4 + direction ordinal; OUT_OF_BOUNDS if the neighbour is out of bound.
+     */
+    private final int[] m_Neighbours;
+
+    /**
+     * Array of booleans specifying if each cell is a wall.
+     */
+    private final boolean[] m_Walls;
+
+    /**
+     * Array of booleans specifying if each cell is a diamond.
+     */
+    private final boolean[] m_Diamonds;
+
+    /**
+     * Array of cells of all diamonds.
+     */
+    private final int[] m_DiamondCells;
+
+    /**
+     * Push distances indexed by diamond index and cell.
+     */
+    private final int[][] m_Distances;
+
+    /**
+     * PushDistanceTable constructor to compute all static information from the walls and diamonds of given state.
+     *
+     * @param state LevelState of the level to be analysed.
+     */
+    PushDistanceTable(LevelState state) {
+        CELLS = state.getM_Rows() * state.getM_Columns();
+        m_Neighbours = new int[CELLS * 4];
+        m_Walls = new boolean[CELLS];
+        m_Diamonds = new boolean[CELLS];
+        m_DiamondCells = new int[state.countOf(LevelState.PLANE_OF_DIAMOND)];
+
+        Direction[] directions = Direction.values();
+        int diamondCount = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            m_Walls[cell] = state.isWall(cell);
+            m_Diamonds[cell] = state.isDiamond(cell);
+            if (m_Diamonds[cell])
+                m_DiamondCells[diamondCount++] = cell;
+            for (Direction direction : directions)
+                m_Neighbours[cell * 4 + direction.ordinal()] = state.getCellBy(cell, direction.getM_RowDelta(), direction.getM_ColumnDelta());
+        }
+
+        m_Distances = new int[m_DiamondCells.length][];
+        for (int diamond = 0; diamond < m_DiamondCells.length; diamond++)
+            m_Distances[diamond] = computeDistancesTo(m_DiamondCells[diamond]);
+    }
+
+    /**
+     * Computes the push distances from every cell to the given target by a backward breadth first search. <br />
+     * A crate at cell x can be pushed to x + d if x + d is not a wall and the player can stand on x - d, which is not a wall either.
+     *
+     * @param target Integer specifying the target cell.
+     * @return Array of push distances indexed by cell is returned; UNREACHABLE if the crate can never reach the target.
+     */
+    private int[] computeDistancesTo(int target) {
+        int[] distances = new int[CELLS];
+        Arrays.fill(distances, UNREACHABLE);
+        int[] queue = new int[CELLS];
+        int head = 0;
+        int tail = 0;
+        distances[target] = 0;
+        queue[tail++] = target;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int direction = 0; direction < 4; direction++) {
+                // the crate came from the opposite side, pushed by a player standing one cell further
+                int from = getNeighbour(cell, opposite(direction));
+                if (from == LevelState.OUT_OF_BOUNDS || m_Walls[from] || distances[from] != UNREACHABLE)
+                    continue;
+                int pusher = getNeighbour(from, opposite(direction));
+                if (pusher == LevelState.OUT_OF_BOUNDS || m_Walls[pusher])
+                    continue;
+                distances[from] = distances[cell] + 1;
+                queue[tail++] = from;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Gets the direction ordinal opposite to the given one.
+     *
+     * @param direction Integer specifying the direction ordinal.
+     * @return Integer specifying the opposite direction ordinal is returned.
+     */
+    static int opposite(int direction) {
+        return (direction + 2) & 3;
+    }
+
+    /**
+     * Gets number of cells of the level.
+     *
+     * @return Integer specifying number of cells is returned.
+     */
+    int getM_Cells() {
+        return CELLS;
+    }
+
+    /**
+     * Gets the neighbour of given cell at given direction.
+     *
+     * @param cell      Integer specifying the cell index.
+     * @param direction Integer specifying the direction ordinal.
+     * @return The neighbour cell is returned; If out of bound, OUT_OF_BOUNDS is returned.
+     */
+    int getNeighbour(int cell, int direction) {
+        return m_Neighbours[cell * 4 + direction];
+    }
+
+    /**
+     * Checks if there is a wall at given cell.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return True is returned if there is a wall; Otherwise, false is returned.
+     */
+    boolean isWall(int cell) {
+        return m_Walls[cell];
+    }
+
+    /**
+     * Checks if there is a diamond at given cell.
+     *
+     * @param cell Integer specifying the cell index.
+     * @return True is returned if there is a diamond; Otherwise, false is returned.
+     */
+    boolean isDiamond(int cell) {
+        return m_Diamonds[cell];
+    }
+
+    /**
+     * Gets number of diamonds of the level.
+     *
+     * @return Integer specifying number of diamonds is returned.
+     */
+    int getM_DiamondCount() {
+        return m_DiamondCells.length;
+    }
+
+    /**
+     * Computes the lower bound of moves needed to fill all empty diamonds by given crates. <br />
+     * Every empty diamond needs at least as many pushes as its nearest movable crate is away from it.
+     * If there are no more movable crates than empty diamonds, every movable crate must also be pushed to its nearest empty diamond,
+     * and the greater one of both sums is taken. Crates on diamonds are sealed and neither movable nor counted.
+     *
+     * @param crateCells Array of cells of all crates.
+     * @param crateCount Integer specifying number of valid entries of crateCells.
+     * @param occupied   Array of booleans specifying if a crate is at each cell, matching crateCells.
+     * @return The lower bound is returned; UNREACHABLE if an empty diamond or a necessary crate can never be filled or pushed home, which means the state is dead.
+     */
+    int estimate(int[] crateCells, int crateCount, boolean[] occupied) {
+        int movableCrates = 0;
+        for (int i = 0; i < crateCount; i++)
+            if (!m_Diamonds[crateCells[i]])
+                movableCrates++;
+
+        int diamondBound = 0;
+        int emptyDiamonds = 0;
+        for (int diamond = 0; diamond < m_DiamondCells.length; diamond++) {
+            if (occupied[m_DiamondCells[diamond]])
+                continue;
+            emptyDiamonds++;
+            int[] distances = m_Distances[diamond];
+            int nearest = UNREACHABLE;
+            for (int i = 0; i < crateCount; i++)
+                if (!m_Diamonds[crateCells[i]] && distances[crateCells[i]] < nearest)
+                    nearest = distances[crateCells[i]];
+            if (nearest == UNREACHABLE)
+                return UNREACHABLE;
+            diamondBound += nearest;
+        }
+        if (emptyDiamonds > movableCrates)
+            return UNREACHABLE;
+        if (emptyDiamonds < movableCrates)
+            return diamondBound;
+
+        // no spare crate: every movable crate has to reach an empty diamond
+        int crateBound = 0;
+        for (int i = 0; i < crateCount; i++) {
+            int cell = crateCells[i];
+            if (m_Diamonds[cell])
+                continue;
+            int nearest = UNREACHABLE;
+            for (int diamond = 0; diamond < m_DiamondCells.length; diamond++)
+                if (m_Distances[diamond][cell] < nearest && !occupied[m_DiamondCells[diamond]])
+                    nearest = m_Distances[diamond][cell];
+            if (nearest == UNREACHABLE)
+                return UNREACHABLE;
+            crateBound += nearest;
+        }
+        return Math.max(diamondBound, crateBound);
+    }
+}
@@ -0,0 +1,685 @@
+package org.ziqi.solver;
+
+import org.ziqi.model.DeadlockDetector;
+import org.ziqi.model.Direction;
+import org.ziqi.model.LevelState;
+import org.ziqi.model.ZobristKeys;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Solver class searches the solution of a level with the fewest moves counted as the game does, flying included. <br />
+ * The search works on pushes: between two pushes the player takes the cheapest way, walking or flying, to the side of the crate to be pushed,
+ * which is computed by PlayerDistances. States are ordered by A* or IDA* with the admissible lower bound of PushDistanceTable,
+ * and visited states are kept in a TranspositionTable keyed by a Zobrist hash of the crates and the exact player cell,
+ * as the cost of a state depends on where the player stands. Pushes leading to a deadlock are pruned by a DeadlockDetector. <br />
+ * Both a time limit and a memory limit can be given; The search is stopped with the corresponding status when any of them is reached.
+ * IDA* may search on many threads by ParallelSearch. A Solver can be reused but is not thread safe.
+ *
+ * @author Ziqi Yang
+ * @see SolverResult
+ * @see PushDistanceTable
+ * @see PlayerDistances
+ * @see TranspositionTable
+ * @see DeadlockDetector
+ * @see ParallelSearch
+ */
+public final class Solver {
+
+    /**
+     * Algorithm enumeration specifying the search algorithm to be used.
+     */
+    public enum Algorithm {
+        /**
+         * Best first search keeping every generated state, which is faster but bounded by memory.
+         */
+        A_STAR,
+        /**
+         * Iterative deepening depth first search, which only keeps the transposition table and degrades gracefully when it is full.
+         */
+        IDA_STAR
+    }
+
+    /**
+     * Constant long integer specifying the default time limit in milliseconds.
+     */
+    public static final long DEFAULT_TIME_LIMIT_MILLIS = 10_000;
+
+    /**
+     * Constant long integer specifying the default memory limit in bytes.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * Constant integer specifying how many expanded states to pass between two checks of the time limit.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * Constant integer specifying the initial number of states allocated by A*.
+     */
+    private static final int INITIAL_STATES = 1 << 12;
+
+    /**
+     * Constant integer returned by IDA* when no solution is found under the current bound.
+     */
+    private static final int NOT_FOUND = -1;
+
+    /**
+     * Algorithm to be used.
+     */
+    private final Algorithm m_Algorithm;
+
+    /**
+     * Integer specifying the weight of the lower bound; 1 for optimal solutions, greater for faster near-optimal solutions.
+     */
+    private final int m_Weight;
+
+    /**
+     * Long integer specifying the time limit in milliseconds.
+     */
+    private final long m_TimeLimitMillis;
+
+    /**
+     * Long integer specifying the memory limit in bytes.
+     */
+    private final long m_MemoryLimitBytes;
+
+    /**
+     * Integer specifying number of threads IDA* searches on.
+     */
+    private final int m_Threads;
+
+    /**
+     * Static information of the level being solved.
+     */
+    private PushDistanceTable m_Table;
+
+    /**
+     * DeadlockDetector pruning pushes of the level being solved.
+     */
+    private DeadlockDetector m_Detector;
+
+    /**
+     * Zobrist keys of the level being solved.
+     */
+    private ZobristKeys m_Keys;
+
+    /**
+     * Integer specifying number of crates of the level being solved.
+     */
+    private int m_CrateCount;
+
+    /**
+     * Long integer specifying the nano time the solving started at.
+     */
+    private long m_StartTime;
+
+    /**
+     * Long integer specifying number of states expanded so far.
+     */
+    private long m_Expanded;
+
+    /**
+     * Status specifying why the search is aborted; Null while the search is running.
+     */
+    private SolverResult.Status m_AbortStatus;
+
+    /**
+     * Pushes of the current IDA* path, each as crate cell * 4 + direction ordinal.
+     */
+    private int[] m_PathPushes;
+
+    /**
+     * Smallest estimated cost exceeding the current IDA* bound.
+     */
+    private int m_NextBound;
+
+    /**
+     * PlayerDistances for each depth of the current IDA* path.
+     */
+    private PlayerDistances[] m_DistancesByDepth;
+
+    /**
+     * Solver constructor with the default settings: optimal A* with the default time and memory limits.
+     */
+    public Solver() {
+        this(Algorithm.A_STAR, 1, DEFAULT_TIME_LIMIT_MILLIS, DEFAULT_MEMORY_LIMIT_BYTES);
+    }
+
+    /**
+     * Solver constructor with given settings.
+     *
+     * @param algorithm        Algorithm to be used.
+     * @param weight           Integer specifying the weight of the lower bound; 1 for optimal solutions, greater for faster near-optimal solutions.
+     * @param timeLimitMillis  Long integer specifying the time limit in milliseconds.
+     * @param memoryLimitBytes Long integer specifying the memory limit in bytes.
+     * @throws IllegalArgumentException If weight is less than 1.
+     */
+    public Solver(Algorithm algorithm, int weight, long timeLimitMillis, long memoryLimitBytes) {
+        this(algorithm, weight, timeLimitMillis, memoryLimitBytes, 1);
+    }
+
+    /**
+     * Solver constructor with given settings and number of threads. <br />
+     * IDA* searches on a ForkJoinPool of the given number of threads when more than one is given; A* always searches on the calling thread.
+     *
+     * @param algorithm        Algorithm to be used.
+     * @param weight           Integer specifying the weight of the lower bound; 1 for optimal solutions, greater for faster near-optimal solutions.
+     * @param timeLimitMillis  Long integer specifying the time limit in milliseconds.
+     * @param memoryLimitBytes Long integer specifying the memory limit in bytes.
+     * @param threads          Integer specifying number of threads IDA* searches on.
+     * @throws IllegalArgumentException If weight or threads is less than 1.
+     * @see ParallelSearch
+     */
+    public Solver(Algorithm algorithm, int weight, long timeLimitMillis, long memoryLimitBytes, int threads) {
+        if (weight < 1)
+            throw new IllegalArgumentException("Weight must be at least 1: " + weight);
+        if (threads < 1)
+            throw new IllegalArgumentException("Threads must be at least 1: " + threads);
+        m_Algorithm = algorithm;
+        m_Weight = weight;
+        m_TimeLimitMillis = timeLimitMillis;
+        m_MemoryLimitBytes = memoryLimitBytes;
+        m_Threads = threads;
+    }
+
+    /**
+     * Solves the level given as raw level lines, as LevelManager parses from a set file.
+     *
+     * @param rawLevel List of strings as raw level lines.
+     * @return SolverResult of the solving is returned to caller.
+     * @throws IllegalArgumentException If the raw level cannot be decoded.
+     * @see LevelState#fromRawLevel(List)
+     */
+    public SolverResult solve(List<String> rawLevel) {
+        return solve(LevelState.fromRawLevel(rawLevel));
+    }
+
+    /**
+     * Solves the level from given state. The player is regarded as standing on the ground.
+     *
+     * @param state LevelState to be solved from, which is not changed.
+     * @return SolverResult of the solving is returned to caller.
+     */
+    public SolverResult solve(LevelState state) {
+        m_StartTime = System.nanoTime();
+        m_Expanded = 0;
+        m_AbortStatus = null;
+        m_Table = new PushDistanceTable(state);
+        m_Detector = new DeadlockDetector(state);
+        m_Keys = ZobristKeys.forCells(m_Table.getM_Cells());
+
+        m_CrateCount = state.countOf(LevelState.PLANE_OF_CRATE);
+        int[] crates = new int[m_CrateCount];
+        int count = 0;
+        for (int cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, 0); cell != LevelState.OUT_OF_BOUNDS; cell = state.nextSetCell(LevelState.PLANE_OF_CRATE, cell + 1))
+            crates[count++] = cell;
+        int player = state.getM_PlayerCell();
+        boolean[] occupied = new boolean[m_Table.getM_Cells()];
+        for (int crate : crates)
+            occupied[crate] = true;
+
+        if (player == LevelState.OUT_OF_BOUNDS || m_Table.estimate(crates, m_CrateCount, occupied) == PushDistanceTable.UNREACHABLE)
+            return createResult(SolverResult.Status.UNSOLVABLE);
+        if (m_Algorithm == Algorithm.IDA_STAR && m_Threads > 1)
+            return solveByParallelIdaStar(state, crates, player, m_Table.estimate(crates, m_CrateCount, occupied));
+        if (m_Algorithm == Algorithm.IDA_STAR)
+            return solveByIdaStar(crates, player);
+        return solveByAStar(crates, player);
+    }
+
+    /**
+     * Computes the Zobrist hash of given crates and player cell.
+     *
+     * @param crates Array of crate cells.
+     * @param player Integer specifying the player cell.
+     * @return Long value specifying the hash is returned.
+     */
+    private long hashOf(int[] crates, int player) {
+        long hash = m_Keys.getPlayerKey(player);
+        for (int crate : crates)
+            hash ^= m_Keys.getCrateKey(crate);
+        return hash;
+    }
+
+    /**
+     * Searches the solution by A*. Every generated state is stored in parallel arrays and ordered by a binary heap on estimated total moves.
+     *
+     * @param rootCrates Array of crate cells of the initial state.
+     * @param rootPlayer Integer specifying the player cell of the initial state.
+     * @return SolverResult of the solving is returned.
+     */
+    private SolverResult solveByAStar(int[] rootCrates, int rootPlayer) {
+        final int crateCount = m_CrateCount;
+        long bytesPerState = (long) crateCount * Integer.BYTES + Long.BYTES + 6L * Integer.BYTES + TranspositionTable.BYTES_PER_ENTRY;
+        int maxStates = (int) Math.max(1, Math.min(Integer.MAX_VALUE / Math.max(1, crateCount) - 1, m_MemoryLimitBytes / bytesPerState));
+        TranspositionTable transpositions = new TranspositionTable(maxStates);
+        PlayerDistances distances = new PlayerDistances(m_Table);
+
+        int capacity = Math.min(INITIAL_STATES, maxStates);
+        int[] stateCrates = new int[capacity * crateCount];
+        long[] stateHashes = new long[capacity];
+        int[] stateParents = new int[capacity];
+        int[] statePushes = new int[capacity];
+        int[] statePlayers = new int[capacity];
+        int[] stateMoves = new int[capacity];
+        int[] heapStates = new int[capacity];
+        int[] heapCosts = new int[capacity];
+        int states = 0;
+        int heapSize = 0;
+
+        // root state
+        System.arraycopy(rootCrates, 0, stateCrates, 0, crateCount);
+        stateHashes[0] = hashOf(rootCrates, rootPlayer);
+        stateParents[0] = -1;
+        statePlayers[0] = rootPlayer;
+        stateMoves[0] = 0;
+        transpositions.put(stateHashes[0], 0);
+        states++;
+        heapStates[0] = 0;
+        int[] crates = new int[crateCount];
+        boolean[] occupied = new boolean[m_Table.getM_Cells()];
+        for (int crate : rootCrates)
+            occupied[crate] = true;
+        heapCosts[0] = m_Weight * m_Table.estimate(rootCrates, crateCount, occupied);
+        heapSize++;
+        for (int crate : rootCrates)
+            occupied[crate] = false;
+
+        while (heapSize > 0) {
+            // pop the state with the lowest estimated cost, preferring more moves made on ties
+            int state = heapStates[0];
+            heapSize--;
+            heapStates[0] = heapStates[heapSize];
+            heapCosts[0] = heapCosts[heapSize];
+            siftDown(heapStates, heapCosts, stateMoves, heapSize, 0);
+
+            int moves = stateMoves[state];
+            if (moves > transpositions.get(stateHashes[state]))
+                continue;
+
+            System.arraycopy(stateCrates, state * crateCount, crates, 0, crateCount);
+            if (isSolved(crates))
+                return createSolvedResult(collectPushes(stateParents, statePushes, state), rootCrates, rootPlayer);
+            if (isLimitReached())
+                return createResult(m_AbortStatus);
+
+            for (int crate : crates)
+                occupied[crate] = true;
+            int player = statePlayers[state];
+            long hash = stateHashes[state];
+            distances.compute(occupied, player);
+
+            for (int i = 0; i < crateCount; i++) {
+                int crate = crates[i];
+                // crates on diamonds are sealed
+                if (m_Table.isDiamond(crate))
+                    continue;
+                for (int direction = 0; direction < 4; direction++) {
+                    int pusher = m_Table.getNeighbour(crate, PushDistanceTable.opposite(direction));
+                    int target = m_Table.getNeighbour(crate, direction);
+                    if (pusher == LevelState.OUT_OF_BOUNDS || target == LevelState.OUT_OF_BOUNDS || m_Table.isWall(target) || occupied[target]
+                            || distances.getDistance(pusher) == PlayerDistances.UNREACHABLE)
+                        continue;
+
+                    int nextMoves = moves + distances.getDistance(pusher) + 1;
+                    long nextHash = hash ^ m_Keys.getCrateKey(crate) ^ m_Keys.getCrateKey(target) ^ m_Keys.getPlayerKey(player) ^ m_Keys.getPlayerKey(crate);
+                    if (transpositions.get(nextHash) <= nextMoves)
+                        continue;
+                    crates[i] = target;
+                    occupied[crate] = false;
+                    occupied[target] = true;
+                    int estimate = isDeadlocked(crates, occupied, target) ? PushDistanceTable.UNREACHABLE : m_Table.estimate(crates, crateCount, occupied);
+                    occupied[target] = false;
+                    occupied[crate] = true;
+                    if (estimate != PushDistanceTable.UNREACHABLE) {
+                        if (states == maxStates || !transpositions.put(nextHash, nextMoves)) {
+                            m_AbortStatus = SolverResult.Status.MEMORY_LIMIT_EXCEEDED;
+                            return createResult(m_AbortStatus);
+                        }
+
+                        if (states == stateHashes.length) {
+                            int grown = (int) Math.min(maxStates, 2L * states);
+                            stateCrates = Arrays.copyOf(stateCrates, grown * crateCount);
+                            stateHashes = Arrays.copyOf(stateHashes, grown);
+                            stateParents = Arrays.copyOf(stateParents, grown);
+                            statePushes = Arrays.copyOf(statePushes, grown);
+                            statePlayers = Arrays.copyOf(statePlayers, grown);
+                            stateMoves = Arrays.copyOf(stateMoves, grown);
+                        }
+                        System.arraycopy(crates, 0, stateCrates, states * crateCount, crateCount);
+                        stateHashes[states] = nextHash;
+                        stateParents[states] = state;
+                        statePushes[states] = crate * 4 + direction;
+                        statePlayers[states] = crate;
+                        stateMoves[states] = nextMoves;
+
+                        if (heapSize == heapStates.length) {
+                            heapStates = Arrays.copyOf(heapStates, heapSize * 2);
+                            heapCosts = Arrays.copyOf(heapCosts, heapSize * 2);
+                        }
+                        heapStates[heapSize] = states;
+                        heapCosts[heapSize] = nextMoves + m_Weight * estimate;
+                        siftUp(heapStates, heapCosts, stateMoves, heapSize);
+                        heapSize++;
+                        states++;
+                    }
+                    crates[i] = crate;
+                }
+            }
+            for (int crate : crates)
+                occupied[crate] = false;
+        }
+        return createResult(SolverResult.Status.UNSOLVABLE);
+    }
+
+    /**
+     * Checks if the heap entry a should be popped before the heap entry b.
+     *
+     * @param heapStates Array of states in the heap.
+     * @param heapCosts  Array of estimated costs in the heap.
+     * @param stateMoves Array of move counts indexed by state.
+     * @param a          Integer specifying the first heap index.
+     * @param b          Integer specifying the second heap index.
+     * @return True is returned if a has lower cost, or the same cost with more moves made; Otherwise, false is returned.
+     */
+    private static boolean isBefore(int[] heapStates, int[] heapCosts, int[] stateMoves, int a, int b) {
+        if (heapCosts[a] != heapCosts[b])
+            return heapCosts[a] < heapCosts[b];
+        return stateMoves[heapStates[a]] > stateMoves[heapStates[b]];
+    }
+
+    /**
+     * Moves the heap entry at given index up until the heap order is restored.
+     *
+     * @param heapStates Array of states in the heap.
+     * @param heapCosts  Array of estimated costs in the heap.
+     * @param stateMoves Array of move counts indexed by state.
+     * @param index      Integer specifying the heap index.
+     */
+    private static void siftUp(int[] heapStates, int[] heapCosts, int[] stateMoves, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBefore(heapStates, heapCosts, stateMoves, index, parent))
+                return;
+            swap(heapStates, heapCosts, index, parent);
+            index = parent;
+        }
+    }
+
+    /**
+     * Moves the heap entry at given index down until the heap order is restored.
+     *
+     * @param heapStates Array of states in the heap.
+     * @param heapCosts  Array of estimated costs in the heap.
+     * @param stateMoves Array of move counts indexed by state.
+     * @param heapSize   Integer specifying number of entries in the heap.
+     * @param index      Integer specifying the heap index.
+     */
+    private static void siftDown(int[] heapStates, int[] heapCosts, int[] stateMoves, int heapSize, int index) {
+        while (true) {
+            int first = index;
+            int left = index * 2 + 1;
+            int right = left + 1;
+            if (left < heapSize && isBefore(heapStates, heapCosts, stateMoves, left, first))
+                first = left;
+            if (right < heapSize && isBefore(heapStates, heapCosts, stateMoves, right, first))
+                first = right;
+            if (first == index)
+                return;
+            swap(heapStates, heapCosts, index, first);
+            index = first;
+        }
+    }
+
+    /**
+     * Swaps two heap entries.
+     *
+     * @param heapStates Array of states in the heap.
+     * @param heapCosts  Array of estimated costs in the heap.
+     * @param a          Integer specifying the first heap index.
+     * @param b          Integer specifying the second heap index.
+     */
+    private static void swap(int[] heapStates, int[] heapCosts, int a, int b) {
+        int state = heapStates[a];
+        heapStates[a] = heapStates[b];
+        heapStates[b] = state;
+        int cost = heapCosts[a];
+        heapCosts[a] = heapCosts[b];
+        heapCosts[b] = cost;
+    }
+
+    /**
+     * Collects the pushes leading from the initial state to the given A* state.
+     *
+     * @param stateParents Array of parent states indexed by state.
+     * @param statePushes  Array of pushes indexed by state.
+     * @param state        Integer specifying the last state.
+     * @return Array of pushes in playing order is returned.
+     */
+    private static int[] collectPushes(int[] stateParents, int[] statePushes, int state) {
+        int count = 0;
+        for (int current = state; stateParents[current] != -1; current = stateParents[current])
+            count++;
+        int[] pushes = new int[count];
+        for (int current = state; stateParents[current] != -1; current = stateParents[current])
+            pushes[--count] = statePushes[current];
+        return pushes;
+    }
+
+    /**
+     * Searches the solution by IDA*. Each iteration is a depth first search bounded by the estimated total moves,
+     * and the bound is raised to the smallest exceeding estimate until a solution is found.
+     *
+     * @param crates Array of crate cells of the initial state, which is restored after searching.
+     * @param player Integer specifying the player cell of the initial state.
+     * @return SolverResult of the solving is returned.
+     */
+    private SolverResult solveByIdaStar(int[] crates, int player) {
+        int maxEntries = (int) Math.max(1, Math.min(Integer.MAX_VALUE, m_MemoryLimitBytes / TranspositionTable.BYTES_PER_ENTRY));
+        TranspositionTable transpositions = new TranspositionTable(maxEntries);
+        int[] rootCrates = crates.clone();
+        boolean[] occupied = new boolean[m_Table.getM_Cells()];
+        for (int crate : crates)
+            occupied[crate] = true;
+        long hash = hashOf(crates, player);
+        m_PathPushes = new int[64];
+        m_DistancesByDepth = new PlayerDistances[64];
+
+        int bound = m_Weight * m_Table.estimate(crates, m_CrateCount, occupied);
+        while (true) {
+            transpositions.clear();
+            transpositions.put(hash, 0);
+            m_NextBound = Integer.MAX_VALUE;
+            int depth = search(crates, occupied, player, hash, 0, 0, bound, transpositions);
+            if (depth != NOT_FOUND)
+                return createSolvedResult(Arrays.copyOf(m_PathPushes, depth), rootCrates, player);
+            if (m_AbortStatus != null)
+                return createResult(m_AbortStatus);
+            if (m_NextBound == Integer.MAX_VALUE)
+                return createResult(SolverResult.Status.UNSOLVABLE);
+            bound = m_NextBound;
+        }
+    }
+
+    /**
+     * Searches the solution by IDA* on m_Threads threads.
+     *
+     * @param state    LevelState to be solved from.
+     * @param crates   Array of crate cells of the initial state.
+     * @param player   Integer specifying the player cell of the initial state.
+     * @param estimate Integer specifying the lower bound of the initial state.
+     * @return SolverResult of the solving is returned.
+     * @see ParallelSearch
+     */
+    private SolverResult solveByParallelIdaStar(LevelState state, int[] crates, int player, int estimate) {
+        ParallelSearch search = new ParallelSearch(state, m_Table, m_Keys, m_Weight, m_Threads, m_StartTime, m_TimeLimitMillis, m_MemoryLimitBytes);
+        int[] pushes = search.search(crates, player, hashOf(crates, player), m_Weight * estimate);
+        m_Expanded = search.getM_Expanded();
+        if (pushes != null)
+            return createSolvedResult(pushes, crates, player);
+        return createResult(search.getM_AbortStatus() != null ? search.getM_AbortStatus() : SolverResult.Status.UNSOLVABLE);
+    }
+
+    /**
+     * Searches depth first from the given state within the given bound. The state is changed in place by each push and restored afterwards.
+     *
+     * @param crates         Array of crate cells.
+     * @param occupied       Array of booleans specifying if a crate is at each cell.
+     * @param player         Integer specifying the player cell.
+     * @param hash           Long value specifying the hash of the state.
+     * @param moves          Integer specifying the moves made to reach the state.
+     * @param depth          Integer specifying the pushes made to reach the state.
+     * @param bound          Integer specifying the bound of estimated total moves.
+     * @param transpositions TranspositionTable of the current iteration.
+     * @return The number of pushes of the solution is returned; If not found, NOT_FOUND is returned.
+     */
+    private int search(int[] crates, boolean[] occupied, int player, long hash, int moves, int depth, int bound, TranspositionTable transpositions) {
+        int estimate = m_Table.estimate(crates, m_CrateCount, occupied);
+        if (estimate == PushDistanceTable.UNREACHABLE)
+            return NOT_FOUND;
+        int cost = moves + m_Weight * estimate;
+        if (cost > bound) {
+            m_NextBound = Math.min(m_NextBound, cost);
+            return NOT_FOUND;
+        }
+        if (isSolved(crates))
+            return depth;
+        if (isLimitReached())
+            return NOT_FOUND;
+
+        if (depth == m_DistancesByDepth.length) {
+            m_DistancesByDepth = Arrays.copyOf(m_DistancesByDepth, depth * 2);
+            m_PathPushes = Arrays.copyOf(m_PathPushes, depth * 2);
+        }
+        if (m_DistancesByDepth[depth] == null)
+            m_DistancesByDepth[depth] = new PlayerDistances(m_Table);
+        PlayerDistances distances = m_DistancesByDepth[depth];
+        distances.compute(occupied, player);
+
+        for (int i = 0; i < m_CrateCount; i++) {
+            int crate = crates[i];
+            if (m_Table.isDiamond(crate))
+                continue;
+            for (int direction = 0; direction < 4; direction++) {
+                int pusher = m_Table.getNeighbour(crate, PushDistanceTable.opposite(direction));
+                int target = m_Table.getNeighbour(crate, direction);
+                if (pusher == LevelState.OUT_OF_BOUNDS || target == LevelState.OUT_OF_BOUNDS || m_Table.isWall(target) || occupied[target]
+                        || distances.getDistance(pusher) == PlayerDistances.UNREACHABLE)
+                    continue;
+
+                int nextMoves = moves + distances.getDistance(pusher) + 1;
+                long nextHash = hash ^ m_Keys.getCrateKey(crate) ^ m_Keys.getCrateKey(target) ^ m_Keys.getPlayerKey(player) ^ m_Keys.getPlayerKey(crate);
+                if (transpositions.get(nextHash) <= nextMoves)
+                    continue;
+                // a full table only loses pruning, never correctness
+                transpositions.put(nextHash, nextMoves);
+
+                crates[i] = target;
+                occupied[crate] = false;
+                occupied[target] = true;
+                m_PathPushes[depth] = crate * 4 + direction;
+                int found = isDeadlocked(crates, occupied, target) ? NOT_FOUND
+                        : search(crates, occupied, crate, nextHash, nextMoves, depth + 1, bound, transpositions);
+                occupied[target] = false;
+                occupied[crate] = true;
+                crates[i] = crate;
+                if (found != NOT_FOUND || m_AbortStatus != null)
+                    return found;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Checks if the state right after a crate is pushed onto given cell is a deadlock.
+     *
+     * @param crates   Array of crate cells after the push.
+     * @param occupied Array of booleans specifying if a crate is at each cell after the push.
+     * @param target   Integer specifying the cell the crate is pushed to.
+     * @return True is returned if the level can no longer be completed; Otherwise, false is returned.
+     * @see DeadlockDetector#analyze(int[], int, boolean[], int)
+     */
+    private boolean isDeadlocked(int[] crates, boolean[] occupied, int target) {
+        return m_Detector.analyze(crates, m_CrateCount, occupied, target) != DeadlockDetector.Deadlock.NONE;
+    }
+
+    /**
+     * Gets the DeadlockDetector of the last solving, whose statistics tell how many pushes are pruned and what they cost.
+     *
+     * @return DeadlockDetector of the last solving is returned to caller; Null if nothing is solved yet.
+     */
+    public DeadlockDetector getM_DeadlockDetector() {
+        return m_Detector;
+    }
+
+    /**
+     * Checks if all diamonds are filled by the given crates.
+     *
+     * @param crates Array of crate cells.
+     * @return True is returned if the level is completed; Otherwise, false is returned.
+     */
+    private boolean isSolved(int[] crates) {
+        int cratedDiamonds = 0;
+        for (int crate : crates)
+            if (m_Table.isDiamond(crate))
+                cratedDiamonds++;
+        return cratedDiamonds == m_Table.getM_DiamondCount();
+    }
+
+    /**
+     * Counts an expanded state and checks the time limit every CHECK_INTERVAL states.
+     *
+     * @return True is returned if the time limit is reached; Otherwise, false is returned.
+     */
+    private boolean isLimitReached() {
+        if (++m_Expanded % CHECK_INTERVAL == 0 && (System.nanoTime() - m_StartTime) / 1_000_000 >= m_TimeLimitMillis)
+            m_AbortStatus = SolverResult.Status.TIME_LIMIT_EXCEEDED;
+        return m_AbortStatus != null;
+    }
+
+    /**
+     * Creates the result of a solving ended without a solution.
+     *
+     * @param status Status specifying how the solving is ended.
+     * @return SolverResult without a solution is returned.
+     */
+    private SolverResult createResult(SolverResult.Status status) {
+        return new SolverResult(status, "", -1, -1, m_Expanded, (System.nanoTime() - m_StartTime) / 1_000_000);
+    }
+
+    /**
+     * Creates the result of a found solution by replaying the pushes from the initial state and writing the player path before each push.
+     *
+     * @param pushes      Array of pushes in playing order, each as crate cell * 4 + direction ordinal.
+     * @param rootCrates  Array of crate cells of the initial state.
+     * @param rootPlayer  Integer specifying the player cell of the initial state.
+     * @return SolverResult with the solution is returned.
+     */
+    private SolverResult createSolvedResult(int[] pushes, int[] rootCrates, int rootPlayer) {
+        PlayerDistances distances = new PlayerDistances(m_Table);
+        boolean[] occupied = new boolean[m_Table.getM_Cells()];
+        for (int crate : rootCrates)
+            occupied[crate] = true;
+        Direction[] directions = Direction.values();
+        StringBuilder solution = new StringBuilder();
+        int player = rootPlayer;
+        int moves = 0;
+
+        for (int push : pushes) {
+            int crate = push / 4;
+            int direction = push % 4;
+            int pusher = m_Table.getNeighbour(crate, PushDistanceTable.opposite(direction));
+            distances.compute(occupied, player);
+            distances.appendPath(solution, pusher);
+            solution.append(Character.toUpperCase(directions[direction].getM_Code()));
+            moves += distances.getDistance(pusher) + 1;
+            occupied[crate] = false;
+            occupied[m_Table.getNeighbour(crate, direction)] = true;
+            player = crate;
+        }
+        return new SolverResult(SolverResult.Status.SOLVED, solution.toString(), moves, pushes.length, m_Expanded, (System.nanoTime() - m_StartTime) / 1_000_000);
+    }
+}
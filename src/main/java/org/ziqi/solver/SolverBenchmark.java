@@ -0,0 +1,105 @@
+package org.ziqi.solver;
+
+import org.ziqi.Utils;
+import org.ziqi.model.LevelSetReader;
+import org.ziqi.model.LevelState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SolverBenchmark class solves all levels of the bundled sets with each given number of threads and prints the speedup over the first one. <br />
+ * It runs headless without GameEngine, e.g. by "gradle benchmark --args='--threads 1,2,4,8,16'". Options: <br />
+ * --threads N[,N...]   numbers of threads to compare, 1 and all processors by default; <br />
+ * --algorithm NAME     IDA_STAR by default, as A* is single threaded; <br />
+ * --weight N           weight of the lower bound, 1 by default; <br />
+ * --time-limit MS      time limit per level and thread count in milliseconds; <br />
+ * --memory-limit MB    memory limit per level in megabytes; <br />
+ * --sets NAME[,NAME...] bundled sets to solve, all by default.
+ *
+ * @author Ziqi Yang
+ * @see Solver
+ * @see ParallelSearch
+ */
+public final class SolverBenchmark {
+
+    /**
+     * SolverBenchmark is not to be instantiated.
+     */
+    private SolverBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark with the given command line options.
+     *
+     * @param args Contains the supplied command-line arguments as an array of String objects.
+     * @throws IOException If a bundled set cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] threadCounts = {1, Runtime.getRuntime().availableProcessors()};
+        Solver.Algorithm algorithm = Solver.Algorithm.IDA_STAR;
+        int weight = 1;
+        long timeLimitMillis = Solver.DEFAULT_TIME_LIMIT_MILLIS;
+        long memoryLimitBytes = Solver.DEFAULT_MEMORY_LIMIT_BYTES;
+        String[] setNames = Utils.SET_NAMES;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--threads":
+                    threadCounts = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--algorithm":
+                    algorithm = Solver.Algorithm.valueOf(value.toUpperCase());
+                    break;
+                case "--weight":
+                    weight = Integer.parseInt(value);
+                    break;
+                case "--time-limit":
+                    timeLimitMillis = Long.parseLong(value);
+                    break;
+                case "--memory-limit":
+                    memoryLimitBytes = Long.parseLong(value) * 1024 * 1024;
+                    break;
+                case "--sets":
+                    setNames = value.split(",");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        System.out.printf("%-32s %7s %-22s %6s %10s %8s %8s%n", "LEVEL", "THREADS", "STATUS", "MOVES", "STATES", "MILLIS", "SPEEDUP");
+        long[] totalMillis = new long[threadCounts.length];
+        for (String setName : setNames) {
+            InputStream input = Utils.getResourcePathAsStream("assets/levelSets" + Utils.getFullFileName(setName, "skb"));
+            if (input == null)
+                throw new IllegalArgumentException("Unknown set: " + setName);
+            for (LevelSetReader.RawLevel rawLevel : LevelSetReader.read(input)) {
+                LevelState state = LevelState.fromRawLevel(new ArrayList<>(rawLevel.getM_Lines()));
+                List<SolverResult> results = new ArrayList<>();
+                for (int threads : threadCounts)
+                    results.add(new Solver(algorithm, weight, timeLimitMillis, memoryLimitBytes, threads).solve(state));
+
+                // only levels solved with every thread count are comparable
+                boolean comparable = results.stream().allMatch(SolverResult::isSolved);
+                for (int run = 0; run < threadCounts.length; run++) {
+                    SolverResult result = results.get(run);
+                    String speedup = comparable ? String.format("%.2f", (double) Math.max(1, results.get(0).getM_ElapsedMillis()) / Math.max(1, result.getM_ElapsedMillis())) : "-";
+                    if (comparable)
+                        totalMillis[run] += result.getM_ElapsedMillis();
+                    System.out.printf("%-32s %7d %-22s %6d %10d %8d %8s%n", setName + "/" + rawLevel.getM_LevelName(), threadCounts[run],
+                            result.getM_Status(), result.getM_Moves(), result.getM_ExpandedStates(), result.getM_ElapsedMillis(), speedup);
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println("Total of levels solved with every thread count:");
+        for (int run = 0; run < threadCounts.length; run++)
+            System.out.printf("%7d threads %10d ms  speedup %.2f%n", threadCounts[run], totalMillis[run], (double) Math.max(1, totalMillis[0]) / Math.max(1, totalMillis[run]));
+    }
+}
@@ -0,0 +1,157 @@
+package org.ziqi.solver;
+
+/**
+ * SolverResult class holds the outcome of solving a level by Solver. <br />
+ * The solution is written in LURD format: lower case letters are moves, upper case letters are pushes and FLY_TOGGLE_CODE of Replay
+ * is a SPACE press to take off or land, so that a solution can be played back as a replay.
+ *
+ * @author Ziqi Yang
+ * @see Solver
+ * @see org.ziqi.model.Replay#FLY_TOGGLE_CODE
+ */
+public final class SolverResult {
+
+    /**
+     * Status enumeration specifying how the solving is ended.
+     */
+    public enum Status {
+        /**
+         * A solution is found.
+         */
+        SOLVED,
+        /**
+         * The whole search space is exhausted without finding a solution.
+         */
+        UNSOLVABLE,
+        /**
+         * The time limit is reached before a solution is found.
+         */
+        TIME_LIMIT_EXCEEDED,
+        /**
+         * The memory limit is reached before a solution is found.
+         */
+        MEMORY_LIMIT_EXCEEDED
+    }
+
+    /**
+     * Status specifying how the solving is ended.
+     */
+    private final Status m_Status;
+
+    /**
+     * String value specifying the solution in LURD format; Empty if no solution is found.
+     */
+    private final String m_Solution;
+
+    /**
+     * Integer specifying the move count of the solution counted as the game does; -1 if no solution is found.
+     */
+    private final int m_Moves;
+
+    /**
+     * Integer specifying the push count of the solution; -1 if no solution is found.
+     */
+    private final int m_Pushes;
+
+    /**
+     * Long integer specifying number of search states expanded.
+     */
+    private final long m_ExpandedStates;
+
+    /**
+     * Long integer specifying the milliseconds the solving takes.
+     */
+    private final long m_ElapsedMillis;
+
+    /**
+     * SolverResult constructor to initialize all information of the outcome.
+     *
+     * @param status         Status specifying how the solving is ended.
+     * @param solution       String value specifying the solution in LURD format.
+     * @param moves          Integer specifying the move count of the solution.
+     * @param pushes         Integer specifying the push count of the solution.
+     * @param expandedStates Long integer specifying number of search states expanded.
+     * @param elapsedMillis  Long integer specifying the milliseconds the solving takes.
+     */
+    SolverResult(Status status, String solution, int moves, int pushes, long expandedStates, long elapsedMillis) {
+        m_Status = status;
+        m_Solution = solution;
+        m_Moves = moves;
+        m_Pushes = pushes;
+        m_ExpandedStates = expandedStates;
+        m_ElapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Gets the status specifying how the solving is ended.
+     *
+     * @return Status of the solving is returned to caller.
+     */
+    public Status getM_Status() {
+        return m_Status;
+    }
+
+    /**
+     * Checks if a solution is found.
+     *
+     * @return True is returned if the status is SOLVED; Otherwise, false is returned.
+     */
+    public boolean isSolved() {
+        return m_Status == Status.SOLVED;
+    }
+
+    /**
+     * Gets the solution in LURD format.
+     *
+     * @return String value specifying the solution is returned; Empty if no solution is found.
+     */
+    public String getM_Solution() {
+        return m_Solution;
+    }
+
+    /**
+     * Gets the move count of the solution, where a flying step counts as the game does.
+     *
+     * @return Integer specifying the move count is returned; -1 if no solution is found.
+     */
+    public int getM_Moves() {
+        return m_Moves;
+    }
+
+    /**
+     * Gets the push count of the solution.
+     *
+     * @return Integer specifying the push count is returned; -1 if no solution is found.
+     */
+    public int getM_Pushes() {
+        return m_Pushes;
+    }
+
+    /**
+     * Gets number of search states expanded.
+     *
+     * @return Long integer specifying number of expanded states is returned.
+     */
+    public long getM_ExpandedStates() {
+        return m_ExpandedStates;
+    }
+
+    /**
+     * Gets the milliseconds the solving takes.
+     *
+     * @return Long integer specifying the elapsed milliseconds is returned.
+     */
+    public long getM_ElapsedMillis() {
+        return m_ElapsedMillis;
+    }
+
+    /**
+     * Gets a readable summary of the result.
+     *
+     * @return String value describing the result is returned.
+     */
+    @Override
+    public String toString() {
+        return m_Status + " moves=" + m_Moves + " pushes=" + m_Pushes + " states=" + m_ExpandedStates + " time=" + m_ElapsedMillis + "ms";
+    }
+}
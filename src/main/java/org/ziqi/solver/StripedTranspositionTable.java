@@ -0,0 +1,68 @@
+package org.ziqi.solver;
+
+/**
+ * StripedTranspositionTable class is a TranspositionTable shared by many search threads. <br />
+ * Hashes are spread over STRIPES independent tables by their highest bits, which the tables do not use for slots,
+ * and each table is guarded by its own lock, so that threads rarely wait for each other.
+ *
+ * @author Ziqi Yang
+ * @see TranspositionTable
+ * @see ParallelSearch
+ */
+final class StripedTranspositionTable {
+
+    /**
+     * Constant integer specifying the bits of a hash selecting the stripe.
+     */
+    private static final int STRIPE_BITS = 6;
+
+    /**
+     * Constant integer specifying number of stripes.
+     */
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    /**
+     * Array of tables, each guarded by its own monitor.
+     */
+    private final TranspositionTable[] m_Stripes;
+
+    /**
+     * StripedTranspositionTable constructor with the max number of entries, shared evenly by all stripes.
+     *
+     * @param capacity Integer specifying the max number of entries to be stored.
+     */
+    StripedTranspositionTable(int capacity) {
+        m_Stripes = new TranspositionTable[STRIPES];
+        for (int stripe = 0; stripe < STRIPES; stripe++)
+            m_Stripes[stripe] = new TranspositionTable(Math.max(1, capacity / STRIPES));
+    }
+
+    /**
+     * Stores the move count for given hash if it is lower than the stored one, as a single atomic step.
+     *
+     * @param key   Long value specifying the state hash.
+     * @param value Integer specifying the move count.
+     * @return True is returned if no lower or equal move count is stored; Otherwise, false is returned.
+     * A full stripe keeps nothing, so true is returned and the state is searched again, which only loses pruning.
+     */
+    boolean putIfLower(long key, int value) {
+        TranspositionTable stripe = m_Stripes[(int) (key >>> (Long.SIZE - STRIPE_BITS))];
+        synchronized (stripe) {
+            if (stripe.get(key) <= value)
+                return false;
+            stripe.put(key, value);
+            return true;
+        }
+    }
+
+    /**
+     * Removes all entries of all stripes.
+     */
+    void clear() {
+        for (TranspositionTable stripe : m_Stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+}
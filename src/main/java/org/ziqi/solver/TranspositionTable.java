@@ -0,0 +1,174 @@
+package org.ziqi.solver;
+
+import java.util.Arrays;
+
+/**
+ * TranspositionTable class maps the 64-bit hash of a search state to the lowest move count it has been reached with. <br />
+ * Entries are kept in open addressing arrays of primitives, which grow by doubling until the given capacity is reached.
+ *
+ * @author Ziqi Yang
+ * @see Solver
+ */
+final class TranspositionTable {
+
+    /**
+     * Constant integer specifying the initial number of slots.
+     */
+    private static final int INITIAL_SLOTS = 1 << 12;
+
+    /**
+     * Constant integer returned when a hash is not stored in the table.
+     */
+    static final int ABSENT = Integer.MAX_VALUE;
+
+    /**
+     * Constant integer specifying the approximate bytes used by one stored entry, including free slots.
+     */
+    static final int BYTES_PER_ENTRY = 2 * (Long.BYTES + Integer.BYTES);
+
+    /**
+     * Constant long marking a free slot; A state hashing to it is stored in a separate field.
+     */
+    private static final long FREE = 0L;
+
+    /**
+     * Integer specifying the max number of entries to be stored.
+     */
+    private final int m_Capacity;
+
+    /**
+     * Array of stored hashes.
+     */
+    private long[] m_Keys;
+
+    /**
+     * Array of stored move counts.
+     */
+    private int[] m_Values;
+
+    /**
+     * Integer specifying number of stored entries.
+     */
+    private int m_Size;
+
+    /**
+     * Move count of the state whose hash equals FREE.
+     */
+    private int m_FreeKeyValue = ABSENT;
+
+    /**
+     * TranspositionTable constructor with the max number of entries.
+     *
+     * @param capacity Integer specifying the max number of entries to be stored.
+     */
+    TranspositionTable(int capacity) {
+        m_Capacity = capacity;
+        m_Keys = new long[INITIAL_SLOTS];
+        m_Values = new int[INITIAL_SLOTS];
+    }
+
+    /**
+     * Gets the move count stored for given hash.
+     *
+     * @param key Long value specifying the state hash.
+     * @return The stored move count is returned; If absent, ABSENT is returned.
+     */
+    int get(long key) {
+        if (key == FREE)
+            return m_FreeKeyValue;
+        int mask = m_Keys.length - 1;
+        for (int slot = mix(key) & mask; m_Keys[slot] != FREE; slot = (slot + 1) & mask)
+            if (m_Keys[slot] == key)
+                return m_Values[slot];
+        return ABSENT;
+    }
+
+    /**
+     * Stores the move count for given hash, replacing any stored value.
+     *
+     * @param key   Long value specifying the state hash.
+     * @param value Integer specifying the move count.
+     * @return True is returned if the entry is stored; False is returned if the table is full.
+     */
+    boolean put(long key, int value) {
+        if (key == FREE) {
+            m_FreeKeyValue = value;
+            return true;
+        }
+        int slot = findSlot(m_Keys, key);
+        if (m_Keys[slot] == key) {
+            m_Values[slot] = value;
+            return true;
+        }
+        if (m_Size >= m_Capacity)
+            return false;
+        if ((m_Size + 1) * 2 > m_Keys.length) {
+            grow();
+            slot = findSlot(m_Keys, key);
+        }
+        m_Keys[slot] = key;
+        m_Values[slot] = value;
+        m_Size++;
+        return true;
+    }
+
+    /**
+     * Gets number of stored entries.
+     *
+     * @return Integer specifying number of stored entries is returned.
+     */
+    int size() {
+        return m_Size;
+    }
+
+    /**
+     * Removes all entries while keeping the allocated arrays.
+     */
+    void clear() {
+        Arrays.fill(m_Keys, FREE);
+        m_Size = 0;
+        m_FreeKeyValue = ABSENT;
+    }
+
+    /**
+     * Doubles the slots and rehashes all entries.
+     */
+    private void grow() {
+        long[] keys = new long[m_Keys.length * 2];
+        int[] values = new int[keys.length];
+        for (int i = 0; i < m_Keys.length; i++) {
+            if (m_Keys[i] == FREE)
+                continue;
+            int slot = findSlot(keys, m_Keys[i]);
+            keys[slot] = m_Keys[i];
+            values[slot] = m_Values[i];
+        }
+        m_Keys = keys;
+        m_Values = values;
+    }
+
+    /**
+     * Finds the slot holding given key or the free slot it should be put into.
+     *
+     * @param keys Array of hashes to search.
+     * @param key  Long value specifying the state hash.
+     * @return Integer specifying the slot index is returned.
+     */
+    private static int findSlot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Folds the high bits of a hash into the low bits used for slot indices.
+     *
+     * @param key Long value specifying the state hash.
+     * @return Integer specifying the mixed hash is returned.
+     */
+    private static int mix(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+}
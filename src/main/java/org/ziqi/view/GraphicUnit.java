@@ -1,6 +1,6 @@
 package org.ziqi.view;
 
-import javafx.scene.effect.ColorAdjust;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import org.ziqi.gameEngine.GameEngine;
@@ -87,6 +87,20 @@ public class GraphicUnit extends ImageView {
      */
     public static final double HUE_SAPPHIRE = 1;
 
+    /**
+     * Constant array of the hue values adjusted on walls of all sets, whose tinted wall sprites are packed in the sprite atlas.
+     *
+     * @see ResourceManager#getM_SpriteAtlas()
+     */
+    public static final double[] SET_HUES = {HUE_GROUND, HUE_EMERALD, HUE_PAOLUMU, HUE_SAPPHIRE};
+
+    /**
+     * Type of GameObject the GraphicUnit renders, which keys it in GraphicUnitPool.
+     *
+     * @see GraphicUnitPool
+     */
+    private final Class<? extends GameObject> m_SpriteType;
+
 
 
     /**
@@ -94,38 +108,82 @@ public class GraphicUnit extends ImageView {
      *
      * @param obj GameObject specifying what sprites should the GraphicUnit contains for the GameObject.
      * @see ResourceManager
-     * @see ResourceManager#loadSprite(String)
-     * @see Crate.CrateStatus#getM_CrateStatusAsString()
-     * @see Wall.WallStatus#getM_WallStatusAsString()
-     * @see Player.PlayerStatus#getM_PlayerStatusAsString()
-     * @see Player.PlayerDirection#getM_PlayerDirection()
+     * @see #updateSprite(GameObject)
      */
     public GraphicUnit(GameObject obj) {
-        ResourceManager resourceManager = GameEngine.getInstance().getM_ResourceManager();
+        m_SpriteType = obj.getClass();
+        updateSprite(obj);
+    }
 
-        Image sprite = null;
+    /**
+     * Gets the type of GameObject the GraphicUnit renders.
+     *
+     * @return Class of the GameObject rendered is returned to caller.
+     */
+    public Class<? extends GameObject> getM_SpriteType() {
+        return m_SpriteType;
+    }
 
-        if (obj instanceof Wall) {
-            sprite = resourceManager.loadSprite(((Wall) obj).getM_WallStatusAsString());
-            ColorAdjust colorAdjust = new ColorAdjust();
-            colorAdjust.setHue(m_WallColorHue);
-            this.setEffect(colorAdjust);
-        }
-        else if (obj instanceof Crate)
-            sprite = resourceManager.loadSprite(((Crate) obj).getM_CrateStatusAsString());
-        else if (obj instanceof Diamond)
-            sprite = resourceManager.loadSprite("DIAMOND_CLEFT");
-        else if (obj instanceof Player) {
-            sprite = resourceManager.loadSprite(((Player) obj).getM_PlayerStatusAsString() + "_" + ((Player) obj).getM_PlayerDirectionAsString());
-        }
+    /**
+     * Loads the sprite from ResourceManager according to the type of given GameObject and its current status,
+     * so that the same GraphicUnit can follow the GameObject as its status changes. <br />
+     * Walls are shown through their viewport of the sprite atlas, already tinted by the hue of current set.
+     *
+     * @param obj GameObject specifying what sprites should the GraphicUnit contains for the GameObject.
+     * @see #getSpriteOf(GameObject)
+     * @see ResourceManager#getAtlasViewport(String)
+     */
+    public void updateSprite(GameObject obj) {
+        ResourceManager resourceManager = GameEngine.getInstance().getM_ResourceManager();
+        Rectangle2D viewport = obj instanceof Wall
+                ? resourceManager.getAtlasViewport(ResourceManager.getTintedSpriteName(((Wall) obj).getM_WallStatusAsString(), m_WallColorHue)) : null;
+        Image sprite = viewport != null ? resourceManager.getM_SpriteAtlas() : getSpriteOf(obj);
         if (sprite != null) {
             this.setImage(sprite);
+            this.setViewport(viewport);
             this.setFitWidth(UNIT_SIZE);
             this.setFitHeight(UNIT_SIZE);
             this.setPreserveRatio(false);
         }
     }
 
+    /**
+     * Gets the sprite from ResourceManager according to the type of given GameObject and its current status. <br />
+     * This is shared by the node renderer and the canvas renderer. Walls are tinted by the hue of current set.
+     *
+     * @param obj GameObject to be rendered.
+     * @return The sprite image of the GameObject is returned; If no sprite is needed or found, null is returned.
+     * @see ResourceManager#loadSprite(String)
+     * @see ResourceManager#loadTintedSprite(String, double)
+     * @see Crate#getM_CrateStatusAsString()
+     * @see Wall#getM_WallStatusAsString()
+     * @see Player#getM_PlayerStatusAsString()
+     * @see Player#getM_PlayerDirectionAsString()
+     * @see org.ziqi.gameEngine.CanvasLevelRenderer
+     */
+    public static Image getSpriteOf(GameObject obj) {
+        ResourceManager resourceManager = GameEngine.getInstance().getM_ResourceManager();
+
+        if (obj instanceof Wall)
+            return resourceManager.loadTintedSprite(((Wall) obj).getM_WallStatusAsString(), m_WallColorHue);
+        else if (obj instanceof Crate)
+            return resourceManager.loadSprite(((Crate) obj).getM_CrateStatusAsString());
+        else if (obj instanceof Diamond)
+            return resourceManager.loadSprite("DIAMOND_CLEFT");
+        else if (obj instanceof Player)
+            return resourceManager.loadSprite(((Player) obj).getM_PlayerStatusAsString() + "_" + ((Player) obj).getM_PlayerDirectionAsString());
+        return null;
+    }
+
+    /**
+     * Gets the hue value adjusted on the original color of walls of current set.
+     *
+     * @return Double value specifying the hue value to adjust on original color is returned to caller.
+     */
+    public static double getM_WallColorHue() {
+        return m_WallColorHue;
+    }
+
     /**
      * Sets the color of wall to be rendered on different set.
      *
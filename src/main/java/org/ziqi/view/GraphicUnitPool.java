@@ -0,0 +1,104 @@
+package org.ziqi.view;
+
+import org.ziqi.gameEngine.base.GameObject;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * GraphicUnitPool class keeps graphic units no longer shown, keyed by the type of GameObject they render, so that gaming screen
+ * reuses them when a level is restarted or the next level is loaded instead of creating new ImageViews. <br />
+ * The numbers of units reused(hits) and created(misses) are counted; Restarting a level already played needs no new unit. <br />
+ * A pool is only accessed by the JavaFX application thread.
+ *
+ * @author Ziqi Yang
+ * @see GraphicUnit
+ * @see org.ziqi.gameEngine.GraphicUnitRenderer
+ */
+public class GraphicUnitPool {
+
+    /**
+     * HashMap containing the free graphic units keyed by the type of GameObject they render.
+     */
+    private final HashMap<Class<? extends GameObject>, ArrayDeque<GraphicUnit>> m_FreeUnits = new HashMap<>();
+
+    /**
+     * Long integer specifying the number of graphic units reused.
+     */
+    private long m_Hits;
+
+    /**
+     * Long integer specifying the number of graphic units created as none of the type was free.
+     */
+    private long m_Misses;
+
+    /**
+     * Gets a graphic unit for the given GameObject, reusing a free one of its type if any, whose sprite is then updated to the GameObject.
+     *
+     * @param gameObject GameObject to be rendered.
+     * @return A GraphicUnit showing the sprite of the GameObject is returned to caller.
+     * @see GraphicUnit#updateSprite(GameObject)
+     */
+    public GraphicUnit acquire(GameObject gameObject) {
+        ArrayDeque<GraphicUnit> freeUnits = m_FreeUnits.get(gameObject.getClass());
+        GraphicUnit graphicUnit = freeUnits == null ? null : freeUnits.poll();
+        if (graphicUnit == null) {
+            m_Misses++;
+            return new GraphicUnit(gameObject);
+        }
+        m_Hits++;
+        graphicUnit.updateSprite(gameObject);
+        return graphicUnit;
+    }
+
+    /**
+     * Gives back a graphic unit removed from gaming screen, clearing what its last rendering left, so that it can be reused.
+     *
+     * @param graphicUnit GraphicUnit no longer shown.
+     */
+    public void release(GraphicUnit graphicUnit) {
+        graphicUnit.setTranslateY(0);
+        graphicUnit.setEffect(null);
+        m_FreeUnits.computeIfAbsent(graphicUnit.getM_SpriteType(), type -> new ArrayDeque<>()).push(graphicUnit);
+    }
+
+    /**
+     * Gets the number of graphic units reused.
+     *
+     * @return Long integer specifying the number of pool hits is returned to caller.
+     */
+    public long getM_Hits() {
+        return m_Hits;
+    }
+
+    /**
+     * Gets the number of graphic units created as none of the type was free.
+     *
+     * @return Long integer specifying the number of pool misses is returned to caller.
+     */
+    public long getM_Misses() {
+        return m_Misses;
+    }
+
+    /**
+     * Counts the free graphic units of all types.
+     *
+     * @return Integer specifying the number of free units is returned to caller.
+     */
+    public int countFreeUnits() {
+        int count = 0;
+        for (ArrayDeque<GraphicUnit> freeUnits : m_FreeUnits.values())
+            count += freeUnits.size();
+        return count;
+    }
+
+    /**
+     * Describes the pool by its hits, misses and free units.
+     *
+     * @return String value describing the pool is returned.
+     */
+    @Override
+    public String toString() {
+        return "GraphicUnitPool hits=" + m_Hits + " misses=" + m_Misses + " free=" + countFreeUnits();
+    }
+}
@@ -0,0 +1,80 @@
+package org.ziqi.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MoveAllocationTest class checks that the movement path allocates nothing once warmed up: a player walking and pushing a crate
+ * by Player.move, and undoing both steps by Level.undo, so that the session journal never grows while bytes are counted. <br />
+ * Bytes allocated are read from the HotSpot ThreadMXBean of the current thread.
+ *
+ * @author Ziqi Yang
+ * @see Player#move(Direction)
+ * @see Level#undo()
+ */
+class MoveAllocationTest {
+
+    /**
+     * Constant integer specifying the moves made before bytes are counted, so that every method on the path is compiled.
+     */
+    private static final int WARM_UP_MOVES = 200_000;
+
+    /**
+     * Constant integer specifying the moves made while bytes are counted.
+     */
+    private static final int MEASURED_MOVES = 100_000;
+
+    /**
+     * Constant long integer specifying the most bytes the measured moves may allocate, far below the 16 bytes a single Point
+     * per move would cost, leaving room for the counter itself.
+     */
+    private static final long MAX_ALLOCATED_BYTES = 1024;
+
+    /**
+     * Raw level of a corridor: the player walks right once and then pushes the crate right once.
+     */
+    private static final List<String> RAW_LEVEL = List.of(
+            "WWWWWWWW",
+            "WS C D W",
+            "WWWWWWWW");
+
+    @Test
+    void movingAndPushingAllocatesNothing() {
+        Level level = new Level("Corridor", 0, RAW_LEVEL);
+        Player player = level.getM_Player();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported(), "thread allocated memory is not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        assertEquals(WARM_UP_MOVES, makeMoves(level, player, WARM_UP_MOVES), "moves made while warming up");
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int moves = makeMoves(level, player, MEASURED_MOVES);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(MEASURED_MOVES, moves, "moves made while measured");
+        assertTrue(allocated <= MAX_ALLOCATED_BYTES, MEASURED_MOVES + " moves allocated " + allocated + " bytes");
+    }
+
+    /**
+     * Makes moves in pairs of a walk and a push to the right, each pair undone afterwards.
+     *
+     * @param level  Level played.
+     * @param player Player of the level.
+     * @param moves  Integer specifying the number of moves to be made, which is even.
+     * @return Integer specifying the number of moves made and undone is returned.
+     */
+    private static int makeMoves(Level level, Player player, int moves) {
+        int made = 0;
+        for (int i = 0; i < moves; i += 2) {
+            if (player.move(Direction.RIGHT) && player.move(Direction.RIGHT) && level.undo() && level.undo())
+                made += 2;
+        }
+        return made;
+    }
+}
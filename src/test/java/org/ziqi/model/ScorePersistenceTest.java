@@ -0,0 +1,87 @@
+package org.ziqi.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ScorePersistenceTest class checks that the score board files recover from a crash while appending: a journal line torn by the crash
+ * is cut off, so that the records committed afterwards are read again.
+ *
+ * @author Ziqi Yang
+ * @see ScorePersistence
+ */
+class ScorePersistenceTest {
+
+    /**
+     * Record of the snapshot.
+     */
+    private static final String SNAPSHOT = "S,L1,10,al,20,al,rrll\n";
+
+    /**
+     * Journal line torn by a crash while appending.
+     */
+    private static final String TORN_LINE = "S,L2,11,bo";
+
+    /**
+     * Record committed after the crash.
+     */
+    private static final String RECORD = "S,L3,12,cy,30,cy,ddll";
+
+    @TempDir
+    Path m_Directory;
+
+    @Test
+    void recordAppendedAfterReloadIsKept() throws Exception {
+        File file = crash();
+        ScorePersistence persistence = new ScorePersistence(file);
+        assertEquals(1, persistence.reloadIfChanged().get().size(), "records read after the crash");
+        persistence.append(RECORD).get();
+
+        assertRecovered(file);
+    }
+
+    @Test
+    void recordAppendedWithoutReloadIsKept() throws Exception {
+        File file = crash();
+        new ScorePersistence(file).append(RECORD).get();
+
+        assertRecovered(file);
+    }
+
+    /**
+     * Writes a snapshot and a journal ending in a line torn by a crash.
+     *
+     * @return Score board file as the snapshot is returned.
+     * @throws IOException If the files cannot be written.
+     */
+    private File crash() throws IOException {
+        File file = m_Directory.resolve("ScoreBoard.csv").toFile();
+        Files.write(file.toPath(), SNAPSHOT.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(file.getPath() + ".journal").toPath(), TORN_LINE.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Checks that the journal holds only the record committed after the crash, and that both records are read again.
+     *
+     * @param file Score board file as the snapshot.
+     * @throws Exception If the files cannot be read.
+     */
+    private static void assertRecovered(File file) throws Exception {
+        assertEquals(RECORD + "\n", new String(Files.readAllBytes(new File(file.getPath() + ".journal").toPath()), StandardCharsets.UTF_8));
+        List<String[]> records = ScorePersistence.readLatestRecords(file);
+        assertEquals(2, records.size(), "records read after recovery");
+        assertEquals("L1", records.get(0)[1]);
+        assertEquals("L3", records.get(1)[1]);
+        assertEquals(2, new ScorePersistence(file).reloadIfChanged().get().size(), "records reloaded after recovery");
+    }
+}